@@ -79,6 +79,16 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
      */
     private boolean mEnableIndexMemoryMapping = true;
 
+    /**
+     * Use a {@link SharedBAMFileIndex} from the process-wide cache for BAI index files.
+     */
+    private boolean mEnableIndexSharing = false;
+
+    /**
+     * Plans index queries, merging nearby chunks and prefetching them; null to read the chunks as given by the index.
+     */
+    private IndexQueryPlanner mQueryPlanner = null;
+
     /**
      * Add information about the origin (reader and position) to SAM records.
      */
@@ -329,6 +339,37 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         mFirstRecordPointer = mCompressedInputStream.getFilePointer();
     }
 
+    /**
+     * Prepare to read records from a seekable BAM stream whose header has already been read, e.g. by another reader
+     * of the same file.  The stream is not read until it is queried.
+     * @param strm source of bytes
+     * @param header the header of the BAM file
+     * @param firstRecordPointer the virtual file offset of the first record in the BAM file
+     * @param validationStringency Controls how to handle invalidate reads or header lines.
+     * @param samRecordFactory SAM record factory
+     * @param inflaterFactory InflaterFactory used by BlockCompressedInputStream
+     */
+    BAMFileReader(final SeekableStream strm,
+                  final SAMFileHeader header,
+                  final long firstRecordPointer,
+                  final ValidationStringency validationStringency,
+                  final SAMRecordFactory samRecordFactory,
+                  final InflaterFactory inflaterFactory) {
+        mIsSeekable = true;
+        mCompressedInputStream = new BlockCompressedInputStream(strm, inflaterFactory);
+        mStream = new BinaryCodec(new DataInputStream(mCompressedInputStream));
+        this.eagerDecode = false;
+        this.mValidationStringency = validationStringency;
+        this.samRecordFactory = samRecordFactory;
+        this.mFileHeader = header;
+        mFirstRecordPointer = firstRecordPointer;
+    }
+
+    /** @return the virtual file offset of the first record in the BAM file. */
+    long getFirstRecordPointer() {
+        return mFirstRecordPointer;
+    }
+
     /** Reads through the header and sequence records to find the virtual file offset of the first record in the BAM file. */
     static long findVirtualOffsetOfFirstRecord(final File bam) throws IOException {
         final BAMFileReader reader = new BAMFileReader(bam, null, false, false, ValidationStringency.SILENT, new DefaultSAMRecordFactory());
@@ -379,6 +420,27 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         this.mEnableIndexMemoryMapping = enabled;
     }
 
+    /**
+     * If true, BAI index files are loaded with {@link SharedBAMFileIndex#getInstance(java.nio.file.Path)}, so that
+     * readers of the same BAM file share a single parsed copy of its index.
+     * @param enabled true to share the index.
+     */
+    public void enableIndexSharing(final boolean enabled) {
+        if (mIndex != null) {
+            throw new SAMException("Unable to turn on index sharing; index file has already been loaded.");
+        }
+        this.mEnableIndexSharing = enabled;
+    }
+
+    /**
+     * Sets the planner used to turn index queries into the chunks to read, or null to read the chunks given by the
+     * index.  With a planner, nearby chunks are merged and the compressed ranges to be read are announced to the
+     * underlying stream before reading, see {@link SeekableStream#prefetch(long, long)}.
+     */
+    public void setQueryPlanner(final IndexQueryPlanner queryPlanner) {
+        this.mQueryPlanner = queryPlanner;
+    }
+
     @Override void enableCrcChecking(final boolean enabled) {
         this.mCompressedInputStream.setCheckCrcs(enabled);
     }
@@ -414,6 +476,8 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             if (samIndex == null) {
                 mIndex = mEnableIndexCaching ? new CachingBAMFileIndex(mIndexStream, getFileHeader().getSequenceDictionary())
                         : new DiskBasedBAMFileIndex(mIndexStream, getFileHeader().getSequenceDictionary());
+            } else if (samIndex.equals(SamIndexes.BAI) && mEnableIndexSharing) {
+                    mIndex = SharedBAMFileIndex.getInstance(mIndexFile.toPath());
             } else if (samIndex.equals(SamIndexes.BAI)) {
                     mIndex = mEnableIndexCaching ? new CachingBAMFileIndex(mIndexFile, getFileHeader().getSequenceDictionary(), mEnableIndexMemoryMapping)
                             : new DiskBasedBAMFileIndex(mIndexFile, getFileHeader().getSequenceDictionary(), mEnableIndexMemoryMapping);
@@ -949,7 +1013,18 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
 
         assertIntervalsOptimized(intervals);
 
-        BAMFileSpan span = getFileSpan(intervals, getIndex());
+        final BAMFileSpan span;
+        if (mQueryPlanner == null) {
+            span = getFileSpan(intervals, getIndex());
+        } else {
+            span = mQueryPlanner.getFileSpan(intervals, getIndex());
+            if (span != null) {
+                final long[] ranges = mQueryPlanner.getByteRanges(span);
+                for (int i = 0; i < ranges.length; i += 2) {
+                    mCompressedInputStream.prefetch(ranges[i], ranges[i + 1]);
+                }
+            }
+        }
 
         // Create an iterator over the above chunk boundaries.
         final BAMFileIndexIterator iterator = new BAMFileIndexIterator(span == null ? null : span.toCoordinateArray());
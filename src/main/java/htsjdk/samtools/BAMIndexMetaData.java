@@ -130,10 +130,25 @@ public class BAMIndexMetaData {
             throw new SAMException("BAM cannot be indexed without setting a fileSource for record " + rec);
         }
         final Chunk newChunk = ((BAMFileSpan) rec.getFileSource().getFilePointer()).getSingleChunk();
-        final long start = newChunk.getChunkStart();
-        final long end = newChunk.getChunkEnd();
+        recordMetaData(alignmentStart, rec.getReadUnmappedFlag(), newChunk.getChunkStart(), newChunk.getChunkEnd());
+    }
+
+    /**
+     * Extract relevant metaData from the fields of a record and its virtual file offsets.
+     * Call only once per record in the file being indexed
+     *
+     * @param alignmentStart 1-based alignment start of the record, or 0 if it has none
+     * @param unmapped whether the record is unmapped
+     * @param start virtual file offset of the start of the record
+     * @param end virtual file offset of the end of the record
+     */
+    void recordMetaData(final int alignmentStart, final boolean unmapped, final long start, final long end) {
+        if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+            incrementNoCoordinateRecordCount();
+            return;
+        }
 
-        if (rec.getReadUnmappedFlag()) {
+        if (unmapped) {
             unAlignedRecords++;
         } else {
             alignedRecords++;
@@ -120,6 +120,31 @@ public class BAMIndexer {
         }
     }
 
+    /**
+     * Record index information for a BAM record given only the fields needed for indexing, e.g. when the
+     * records are parsed directly from the decompressed BAM without constructing SAMRecords.
+     * If this alignment starts a new reference, write out the old reference.
+     *
+     * @param reference      reference index of the record, or -1 if it has none
+     * @param alignmentStart 1-based alignment start, or 0 if the record has none
+     * @param alignmentEnd   1-based inclusive alignment end, or 0 if the record is unmapped
+     * @param unmapped       whether the record is unmapped
+     * @param chunkStart     virtual file offset of the start of the record
+     * @param chunkEnd       virtual file offset of the end of the record
+     */
+    void processAlignment(final int reference, final int alignmentStart, final int alignmentEnd, final boolean unmapped,
+                          final long chunkStart, final long chunkEnd) {
+        try {
+            if (reference != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && reference != currentReference) {
+                // process any completed references
+                advanceToReference(reference);
+            }
+            indexBuilder.processAlignment(reference, alignmentStart, alignmentEnd, unmapped, chunkStart, chunkEnd);
+        } catch (final Exception e) {
+            throw new SAMException("Exception creating BAM index for record at " + reference + ":" + alignmentStart, e);
+        }
+    }
+
     /**
      * After all the alignment records have been processed, finish is called.
      * Writes any final information and closes the output file.
@@ -245,6 +270,45 @@ public class BAMIndexer {
 
         }
 
+        /**
+         * Record any index information for a BAM record given its indexing fields
+         */
+        void processAlignment(final int reference, final int alignmentStart, final int alignmentEnd, final boolean unmapped,
+                              final long chunkStart, final long chunkEnd) {
+
+            // metadata
+            indexStats.recordMetaData(alignmentStart, unmapped, chunkStart, chunkEnd);
+
+            if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+                return; // do nothing for records without coordinates, but count them
+            }
+
+            if (reference != currentReference) {
+                throw new SAMException("Unexpected reference " + reference +
+                        " when constructing index for " + currentReference);
+            }
+
+            binningIndexBuilder.processFeature(new BinningIndexBuilder.FeatureToBeIndexed() {
+                @Override
+                public int getStart() {
+                    return alignmentStart;
+                }
+
+                @Override
+                public int getEnd() {
+                    return alignmentEnd;
+                }
+
+                @Override
+                public Integer getIndexingBin() { return null; }
+
+                @Override
+                public Chunk getChunk() {
+                    return new Chunk(chunkStart, chunkEnd);
+                }
+            });
+        }
+
         /**
          * Creates the BAMIndexContent for this reference.
          * Requires all alignments of the reference have already been processed.
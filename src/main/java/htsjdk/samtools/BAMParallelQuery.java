@@ -0,0 +1,308 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekablePathStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BlockGunzipper;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.zip.InflaterFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Executes multi-interval queries against an indexed BAM file using several threads.
+ *
+ * The intervals are resolved through the index into a single list of coalesced chunks, exactly as
+ * {@link BAMFileReader} does, and the chunk list is split into contiguous tasks of similar compressed size.  Each
+ * task is read on a worker thread through its own SeekableStream and BlockCompressedInputStream, and its records are
+ * decoded and filtered against the intervals on that thread.  The header is read once, when the query executor is
+ * created, and shared by all tasks along with the index.
+ *
+ * Results may be returned in coordinate order, in which case they are the same records in the same order as
+ * {@link SamReader#query(QueryInterval[], boolean)}, or in the order in which tasks complete, which avoids waiting on
+ * a slow task when order does not matter.  At most two tasks per thread are decoded ahead of the consumer.
+ *
+ * The {@link SAMFileSource} of returned records refers to a reader that has already been closed.
+ */
+public final class BAMParallelQuery implements Closeable {
+    /** Bounds on the approximate compressed size of the chunks read by a single task. */
+    private static final long MIN_TASK_BYTES = 256 * 1024;
+    private static final long MAX_TASK_BYTES = 16 * 1024 * 1024;
+    /** The number of tasks per thread to aim for, so that threads finishing early can pick up more work. */
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final Supplier<SeekableStream> bamStreams;
+    private final BAMIndex index;
+    private final int threads;
+    private final ValidationStringency validationStringency;
+    private final SAMRecordFactory samRecordFactory;
+    private final InflaterFactory inflaterFactory;
+    private final ExecutorService executor;
+    private final SAMFileHeader header;
+    private final long firstRecordPointer;
+
+    /**
+     * Creates a query executor for a BAM file on a file system.
+     *
+     * @param bam the BAM file
+     * @param index the index of the BAM file, e.g. from {@link SamReader.Indexing#getIndex()}
+     * @param threads the number of worker threads
+     */
+    public BAMParallelQuery(final Path bam, final BAMIndex index, final int threads) {
+        this(() -> {
+            try {
+                return new SeekablePathStream(bam);
+            } catch (final IOException e) {
+                throw new RuntimeIOException("Error opening " + bam.toUri(), e);
+            }
+        }, index, threads, ValidationStringency.DEFAULT_STRINGENCY, DefaultSAMRecordFactory.getInstance(),
+                BlockGunzipper.getDefaultInflaterFactory());
+    }
+
+    /**
+     * Creates a query executor.
+     *
+     * @param bamStreams opens a new, independent stream over the BAM file each time it is called; each stream is
+     *                   used by a single thread and closed after use
+     * @param index the index of the BAM file
+     * @param threads the number of worker threads
+     * @param validationStringency how to handle invalid records
+     * @param samRecordFactory creates the returned records
+     * @param inflaterFactory creates the inflaters used by each worker
+     */
+    public BAMParallelQuery(final Supplier<SeekableStream> bamStreams,
+                            final BAMIndex index,
+                            final int threads,
+                            final ValidationStringency validationStringency,
+                            final SAMRecordFactory samRecordFactory,
+                            final InflaterFactory inflaterFactory) {
+        if (bamStreams == null) throw new IllegalArgumentException("null bamStreams");
+        if (index == null) throw new IllegalArgumentException("null index");
+        if (threads <= 0) throw new IllegalArgumentException("threads must be positive: " + threads);
+        this.bamStreams = bamStreams;
+        this.index = index;
+        this.threads = threads;
+        this.validationStringency = validationStringency;
+        this.samRecordFactory = samRecordFactory;
+        this.inflaterFactory = inflaterFactory;
+
+        final BAMFileReader reader;
+        try {
+            reader = new BAMFileReader(bamStreams.get(), (SeekableStream) null, false, false,
+                    validationStringency, samRecordFactory, inflaterFactory);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading BAM header", e);
+        }
+        this.header = reader.getFileHeader();
+        this.firstRecordPointer = reader.getFirstRecordPointer();
+        reader.close();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** @return the header of the BAM file, shared by the records returned by all queries. */
+    public SAMFileHeader getFileHeader() {
+        return header;
+    }
+
+    /**
+     * Queries the BAM file for records matching the given intervals.  Only one iterator returned by this method
+     * should be open at a time.
+     *
+     * @param intervals sorted, non-overlapping and non-abutting intervals, see {@link QueryInterval#optimizeIntervals(QueryInterval[])}
+     * @param contained if true, return records that are strictly contained in the intervals, otherwise return
+     *                  records that overlap them
+     * @param ordered if true, return records in coordinate order, otherwise in the order in which they are decoded
+     */
+    public CloseableIterator<SAMRecord> query(final QueryInterval[] intervals, final boolean contained, final boolean ordered) {
+        final BAMFileSpan span = intervals.length == 0 ? null : BAMFileReader.getFileSpan(intervals, index);
+        final long[] filePointers = span == null ? null : span.toCoordinateArray();
+        final List<long[]> tasks = filePointers == null ? Collections.emptyList() : splitIntoTasks(filePointers, threads);
+        return new QueryIterator(tasks, intervals, contained, ordered);
+    }
+
+    /**
+     * Splits pairs of chunk start and end file pointers into contiguous groups of chunks of similar compressed size.
+     */
+    static List<long[]> splitIntoTasks(final long[] filePointers, final int threads) {
+        long totalBytes = 0;
+        for (int i = 0; i < filePointers.length; i += 2) {
+            totalBytes += compressedSize(filePointers[i], filePointers[i + 1]);
+        }
+        final long targetBytes = Math.max(MIN_TASK_BYTES, Math.min(MAX_TASK_BYTES, totalBytes / ((long) threads * TASKS_PER_THREAD)));
+
+        final List<long[]> tasks = new ArrayList<>();
+        int first = 0;
+        long taskBytes = 0;
+        for (int i = 0; i < filePointers.length; i += 2) {
+            taskBytes += compressedSize(filePointers[i], filePointers[i + 1]);
+            if (taskBytes >= targetBytes || i + 2 == filePointers.length) {
+                tasks.add(Arrays.copyOfRange(filePointers, first, i + 2));
+                first = i + 2;
+                taskBytes = 0;
+            }
+        }
+        return tasks;
+    }
+
+    /** The approximate number of compressed bytes between two virtual file pointers, counting at least one block. */
+    private static long compressedSize(final long start, final long end) {
+        return Math.max(1, (end >>> 16) - (start >>> 16));
+    }
+
+    /** Reads and filters the records in the given chunks through a stream of its own, reusing the shared header. */
+    private List<SAMRecord> readTask(final long[] filePointers, final QueryInterval[] intervals, final boolean contained) {
+        final BAMFileReader reader = new BAMFileReader(bamStreams.get(), header, firstRecordPointer,
+                validationStringency, samRecordFactory, inflaterFactory);
+        try (final CloseableIterator<SAMRecord> iterator = reader.createIndexIterator(intervals, contained, filePointers)) {
+            final List<SAMRecord> records = new ArrayList<>();
+            while (iterator.hasNext()) {
+                records.add(iterator.next());
+            }
+            return records;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /** Shuts down the worker threads. */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /** Submits tasks, keeping a bounded number outstanding, and returns their records in task or completion order. */
+    private final class QueryIterator implements CloseableIterator<SAMRecord> {
+        private final List<long[]> tasks;
+        private final QueryInterval[] intervals;
+        private final boolean contained;
+        private final boolean ordered;
+        private final int maxOutstanding = threads * 2;
+
+        /** Outstanding tasks in submission order, used when ordered. */
+        private final Deque<Future<List<SAMRecord>>> pending = new ArrayDeque<>();
+        /** Outstanding tasks in completion order, used when not ordered. */
+        private final CompletionService<List<SAMRecord>> completed = new ExecutorCompletionService<>(executor);
+        private int nextTask = 0;
+        private int outstanding = 0;
+        private Iterator<SAMRecord> current = Collections.emptyIterator();
+
+        private QueryIterator(final List<long[]> tasks, final QueryInterval[] intervals, final boolean contained, final boolean ordered) {
+            this.tasks = tasks;
+            this.intervals = intervals;
+            this.contained = contained;
+            this.ordered = ordered;
+            submitTasks();
+        }
+
+        private void submitTasks() {
+            while (outstanding < maxOutstanding && nextTask < tasks.size()) {
+                final long[] filePointers = tasks.get(nextTask++);
+                if (ordered) {
+                    pending.add(executor.submit(() -> readTask(filePointers, intervals, contained)));
+                } else {
+                    pending.add(completed.submit(() -> readTask(filePointers, intervals, contained)));
+                }
+                ++outstanding;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (outstanding == 0) {
+                    return false;
+                }
+                current = nextResult().iterator();
+            }
+            return true;
+        }
+
+        private List<SAMRecord> nextResult() {
+            try {
+                final Future<List<SAMRecord>> future;
+                if (ordered) {
+                    future = pending.removeFirst();
+                } else {
+                    future = completed.take();
+                    pending.remove(future);
+                }
+                final List<SAMRecord> records = future.get();
+                --outstanding;
+                submitTasks();
+                return records;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SAMException("Interrupted waiting for query results", e);
+            } catch (final ExecutionException e) {
+                close();
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                if (cause instanceof IOException) throw new RuntimeIOException(cause);
+                throw new SAMException("Error executing BAM query", cause);
+            }
+        }
+
+        @Override
+        public SAMRecord next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+
+        /** Cancels any outstanding tasks. */
+        @Override
+        public void close() {
+            for (final Future<List<SAMRecord>> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            outstanding = 0;
+            nextTask = tasks.size();
+            current = Collections.emptyIterator();
+        }
+    }
+}
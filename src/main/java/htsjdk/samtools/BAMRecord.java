@@ -27,6 +27,7 @@ import htsjdk.samtools.util.StringUtil;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 
 import static htsjdk.samtools.SAMTag.CG;
 
@@ -56,6 +57,8 @@ public class BAMRecord extends SAMRecord {
      */
     public final static int MAX_CIGAR_OPERATORS = 0xffff;
 
+    private static final short CG_TAG = CG.getBinaryTag();
+
     public final static int MAX_CIGAR_ELEMENT_LENGTH = (1 << 28) - 1;
     /**
      * Number of operators in "Sentinel" cigar xSyN
@@ -82,6 +85,12 @@ public class BAMRecord extends SAMRecord {
     private boolean mAttributesDecoded = false;
     private boolean mCigarDecoded = false;
 
+    /**
+     * Index over the tags in mRestOfBinaryData, used to look up single tags before all the attributes are decoded.
+     * Built on first use and discarded whenever the tags change.
+     */
+    private transient BinaryTagIndex mTagIndex = null;
+
     /**
      * If any of the properties set from mRestOfBinaryData have been overridden by calls to setters,
      * this is set to true, indicating that mRestOfBinaryData cannot be used to write this record to disk.
@@ -142,6 +151,7 @@ public class BAMRecord extends SAMRecord {
         getBinaryAttributes();
         super.eagerDecode();
         mRestOfBinaryData = null;
+        mTagIndex = null;
     }
 
     /**
@@ -170,8 +180,7 @@ public class BAMRecord extends SAMRecord {
         if (mBinaryDataStale || mRestOfBinaryData == null) {
             return -1;
         }
-        final int tagsOffset = readNameSize() + cigarSize() + basesSize() + qualsSize();
-        return mRestOfBinaryData.length - tagsOffset;
+        return mRestOfBinaryData.length - tagsOffset();
     }
 
     @Override
@@ -212,12 +221,52 @@ public class BAMRecord extends SAMRecord {
 
     @Override
     protected void setAttribute(final short tag, final Object value, final boolean isUnsignedArray) {
+        if (!mAttributesDecoded && !mBinaryDataStale && tag != CG_TAG && isEditableInPlace(value)) {
+            editTagInPlace(tag, value, isUnsignedArray);
+            return;
+        }
         // populate all the attributes from the binary block before overwriting one
         getBinaryAttributes();
         super.setAttribute(tag, value, isUnsignedArray);
         mBinaryDataStale = true;
     }
 
+    /**
+     * Only values that decode to an equal value of the same type can be written straight into the binary block,
+     * e.g. a Short would come back as an Integer.
+     */
+    private static boolean isEditableInPlace(final Object value) {
+        return value == null || value instanceof String || value instanceof Integer || value instanceof Character ||
+                value instanceof Float || value instanceof byte[] || value instanceof short[] ||
+                value instanceof int[] || value instanceof float[];
+    }
+
+    /**
+     * Replaces, adds or removes a tag in the binary block without decoding any other tags, so that the block remains
+     * valid for writing this record to disk.  A new tag is added after the existing ones.
+     */
+    private void editTagInPlace(final short tag, final Object value, final boolean isUnsignedArray) {
+        final BinaryTagIndex index = getTagIndex();
+        final int entry = index.find(tag);
+        final byte[] tagBytes;
+        if (value == null) {
+            if (entry < 0) {
+                return;
+            }
+            tagBytes = new byte[0];
+        } else {
+            tagBytes = BinaryTagCodec.encodeTag(isUnsignedArray ?
+                    new SAMBinaryTagAndUnsignedArrayValue(tag, value) : new SAMBinaryTagAndValue(tag, value));
+        }
+        final int start = entry < 0 ? mRestOfBinaryData.length : index.getStart(entry);
+        final int end = entry < 0 ? start : index.getEnd(entry);
+        final byte[] data = Arrays.copyOf(mRestOfBinaryData, mRestOfBinaryData.length - (end - start) + tagBytes.length);
+        System.arraycopy(tagBytes, 0, data, start, tagBytes.length);
+        System.arraycopy(mRestOfBinaryData, end, data, start + tagBytes.length, mRestOfBinaryData.length - end);
+        mRestOfBinaryData = data;
+        mTagIndex = null;
+    }
+
     /**
      * Removes all attributes.
      */
@@ -231,6 +280,7 @@ public class BAMRecord extends SAMRecord {
         }
         mAttributesDecoded = true;
         mBinaryDataStale = true;
+        mTagIndex = null;
         super.clearAttributes();
     }
 
@@ -388,11 +438,51 @@ public class BAMRecord extends SAMRecord {
     @Override
     public Object getAttribute(final short tag) {
         if (!mAttributesDecoded) {
+            // CG may turn into the cigar when decoded, so decode everything to get it
+            if (tag != CG_TAG) {
+                final BinaryTagIndex index = getTagIndex();
+                final int entry = index.find(tag);
+                return entry < 0 ? null : index.decode(entry, getValidationStringency()).value;
+            }
             decodeAttributes();
         }
         return super.getAttribute(tag);
     }
 
+    /**
+     * Avoids decoding the other tags, and boxing the value, to get an integer tag.
+     */
+    @Override
+    public int getIntAttribute(final short tag, final int defaultValue) {
+        if (mAttributesDecoded || tag == CG_TAG) {
+            return super.getIntAttribute(tag, defaultValue);
+        }
+        final BinaryTagIndex index = getTagIndex();
+        final int entry = index.find(tag);
+        return entry < 0 ? defaultValue : toIntAttribute(tag, index.getIntegerValue(entry));
+    }
+
+    /**
+     * Avoids decoding the other tags, and copying the array, to get a byte array tag.
+     */
+    @Override
+    public ByteBuffer getByteArrayAttributeView(final short tag) {
+        if (mAttributesDecoded || tag == CG_TAG) {
+            return super.getByteArrayAttributeView(tag);
+        }
+        final BinaryTagIndex index = getTagIndex();
+        final int entry = index.find(tag);
+        return entry < 0 ? null : index.getByteArrayView(entry);
+    }
+
+    private BinaryTagIndex getTagIndex() {
+        if (mTagIndex == null) {
+            final int tagsOffset = tagsOffset();
+            mTagIndex = new BinaryTagIndex(mRestOfBinaryData, tagsOffset, mRestOfBinaryData.length - tagsOffset);
+        }
+        return mTagIndex;
+    }
+
     @Override
     protected SAMBinaryTagAndValue getBinaryAttributes() {
         if (!mAttributesDecoded) {
@@ -407,7 +497,8 @@ public class BAMRecord extends SAMRecord {
         }
 
         mAttributesDecoded = true;
-        final int tagsOffset = readNameSize() + cigarSize() + basesSize() + qualsSize();
+        mTagIndex = null;
+        final int tagsOffset = tagsOffset();
         final int tagsSize = mRestOfBinaryData.length - tagsOffset;
         final SAMBinaryTagAndValue attributes = BinaryTagCodec.readTags(mRestOfBinaryData, tagsOffset, tagsSize, getValidationStringency());
         setAttributes(attributes);
@@ -471,4 +562,8 @@ public class BAMRecord extends SAMRecord {
     private int qualsSize() {
         return mReadLength;
     }
+
+    private int tagsOffset() {
+        return readNameSize() + cigarSize() + basesSize() + qualsSize();
+    }
 }
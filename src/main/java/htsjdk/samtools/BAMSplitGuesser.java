@@ -0,0 +1,226 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.samtools.util.BlockGunzipper;
+import htsjdk.samtools.util.zip.InflaterFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Finds BAM record boundaries near arbitrary positions in a BAM file, for splitting a file that has no SBI index.
+ *
+ * A BGZF block is recognised by its gzip header and BGZF extra field, and confirmed by the header of the block that
+ * follows it.  A record start within the decompressed data is recognised by checking that the fixed-length fields of
+ * the record are plausible and that the records following it form an unbroken chain of plausible records over the
+ * next {@link #CHAIN_BYTES} bytes.  Rejecting a true record start only moves a split boundary to a later record, so
+ * the checks are deliberately strict.
+ */
+final class BAMSplitGuesser {
+    /** The amount of decompressed data after a candidate record start that must parse as a chain of records. */
+    static final int CHAIN_BYTES = 128 * 1024;
+
+    private static final int MAX_BLOCK_SIZE = BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE;
+    private static final int HEADER_LENGTH = BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH;
+    /** The size of the fixed-length part of a record, including its block_size field. */
+    private static final int FIXED_LENGTH = 36;
+    private static final int MAX_CIGAR_OP = 8;
+
+    private final SeekableStream stream;
+    private final long fileLength;
+    private final int numberOfReferences;
+    private final BlockGunzipper gunzipper;
+    private final byte[] compressed = new byte[2 * MAX_BLOCK_SIZE + HEADER_LENGTH];
+    private byte[] uncompressed = new byte[CHAIN_BYTES + 2 * MAX_BLOCK_SIZE];
+    private int lastUncompressedLength;
+
+    BAMSplitGuesser(final SeekableStream stream, final int numberOfReferences, final InflaterFactory inflaterFactory) throws IOException {
+        this.stream = stream;
+        this.fileLength = stream.length();
+        this.numberOfReferences = numberOfReferences;
+        this.gunzipper = new BlockGunzipper(inflaterFactory);
+    }
+
+    /**
+     * @param position a position in the compressed file
+     * @return the virtual file pointer of the first record starting in the first block at or after the position that
+     * contains a record start, or -1 if there is none before the end of the file
+     */
+    long guessNextRecordStart(final long position) throws IOException {
+        long blockAddress = findNextBlock(position);
+        while (blockAddress >= 0 && blockAddress < fileLength) {
+            // Decompress the block and enough of the following blocks to check a chain of records
+            final int firstCompressedSize = readBlock(blockAddress, 0);
+            final int firstLength = lastUncompressedLength;
+            int length = firstLength;
+            long address = blockAddress + firstCompressedSize;
+            while (length < firstLength + CHAIN_BYTES && address < fileLength) {
+                address += readBlock(address, length);
+                length += lastUncompressedLength;
+            }
+            final boolean eof = address >= fileLength;
+            for (int offset = 0; offset < firstLength; ++offset) {
+                if (isRecordChain(uncompressed, offset, length, eof)) {
+                    return BlockCompressedFilePointerUtil.makeFilePointer(blockAddress, offset);
+                }
+            }
+            blockAddress += firstCompressedSize;
+        }
+        return -1;
+    }
+
+    /** @return the address of the first BGZF block starting at or after the position, or -1 if there is none */
+    long findNextBlock(final long position) throws IOException {
+        if (position >= fileLength) {
+            return -1;
+        }
+        final int length = (int) Math.min(compressed.length, fileLength - position);
+        stream.seek(position);
+        readFully(compressed, 0, length);
+        for (int i = 0; i < Math.min(length, MAX_BLOCK_SIZE); ++i) {
+            if (isBlockHeader(compressed, i, length)) {
+                final int next = i + blockSize(compressed, i);
+                if (position + next == fileLength || isBlockHeader(compressed, next, length)) {
+                    return position + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decompresses the block at the given address into the uncompressed buffer at the given offset, setting
+     * {@link #lastUncompressedLength}.
+     * @return the compressed size of the block
+     */
+    private int readBlock(final long address, final int offset) throws IOException {
+        stream.seek(address);
+        readFully(compressed, 0, HEADER_LENGTH);
+        if (!isBlockHeader(compressed, 0, HEADER_LENGTH)) {
+            throw new SAMFormatException("Invalid BGZF block header at " + address + " in " + stream.getSource());
+        }
+        final int size = blockSize(compressed, 0);
+        readFully(compressed, HEADER_LENGTH, size - HEADER_LENGTH);
+        if (uncompressed.length < offset + MAX_BLOCK_SIZE) {
+            uncompressed = Arrays.copyOf(uncompressed, offset + MAX_BLOCK_SIZE);
+        }
+        lastUncompressedLength = gunzipper.unzipBlock(uncompressed, offset, compressed, 0, size);
+        return size;
+    }
+
+    private void readFully(final byte[] buffer, final int offset, final int length) throws IOException {
+        int n = 0;
+        while (n < length) {
+            final int count = stream.read(buffer, offset + n, length - n);
+            if (count < 0) {
+                throw new SAMFormatException("Premature end of file in " + stream.getSource());
+            }
+            n += count;
+        }
+    }
+
+    private static boolean isBlockHeader(final byte[] buffer, final int offset, final int length) {
+        return offset + HEADER_LENGTH <= length &&
+                buffer[offset] == BlockCompressedStreamConstants.GZIP_ID1 &&
+                buffer[offset + 1] == (byte) BlockCompressedStreamConstants.GZIP_ID2 &&
+                buffer[offset + 2] == BlockCompressedStreamConstants.GZIP_CM_DEFLATE &&
+                (buffer[offset + 3] & BlockCompressedStreamConstants.GZIP_FLG) != 0 &&
+                readUnsignedShort(buffer, offset + 10) == BlockCompressedStreamConstants.GZIP_XLEN &&
+                buffer[offset + 12] == BlockCompressedStreamConstants.BGZF_ID1 &&
+                buffer[offset + 13] == BlockCompressedStreamConstants.BGZF_ID2 &&
+                buffer[offset + 14] == BlockCompressedStreamConstants.BGZF_LEN &&
+                buffer[offset + 15] == 0;
+    }
+
+    private static int blockSize(final byte[] buffer, final int offset) {
+        return readUnsignedShort(buffer, offset + BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) + 1;
+    }
+
+    /**
+     * @return true if a plausible record starts at the offset and is followed by plausible records up to the end of
+     * the data, where the last record may be cut off unless the data extends to the end of the file
+     */
+    boolean isRecordChain(final byte[] data, final int offset, final int length, final boolean eof) {
+        int position = offset;
+        int records = 0;
+        while (position < length) {
+            if (length - position < FIXED_LENGTH) {
+                return records > 0 && !eof;
+            }
+            final int blockSize = readInt(data, position);
+            final int referenceIndex = readInt(data, position + 4);
+            final int alignmentStart = readInt(data, position + 8);
+            final int readNameLength = data[position + 12] & 0xff;
+            final int cigarLength = readUnsignedShort(data, position + 16);
+            final int readLength = readInt(data, position + 20);
+            final int mateReferenceIndex = readInt(data, position + 24);
+            final int mateAlignmentStart = readInt(data, position + 28);
+            if (blockSize < FIXED_LENGTH - 4 ||
+                    referenceIndex < -1 || referenceIndex >= numberOfReferences || alignmentStart < -1 ||
+                    mateReferenceIndex < -1 || mateReferenceIndex >= numberOfReferences || mateAlignmentStart < -1 ||
+                    readNameLength < 1 || readLength < 0 ||
+                    (long) FIXED_LENGTH - 4 + readNameLength + 4L * cigarLength + (readLength + 1L) / 2 + readLength > blockSize) {
+                return false;
+            }
+            final int nameEnd = position + FIXED_LENGTH + readNameLength - 1;
+            if (nameEnd < length) {
+                if (data[nameEnd] != 0) {
+                    return false;
+                }
+                for (int i = position + FIXED_LENGTH; i < nameEnd; ++i) {
+                    if (data[i] < '!' || data[i] > '~') {
+                        return false;
+                    }
+                }
+                if (nameEnd + 4 * cigarLength < length) {
+                    for (int i = 0; i < cigarLength; ++i) {
+                        if ((data[nameEnd + 1 + 4 * i] & 0xf) > MAX_CIGAR_OP) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            ++records;
+            final long next = position + 4L + blockSize;
+            if (next >= length) {
+                return next == length || !eof;
+            }
+            position = (int) next;
+        }
+        return false;
+    }
+
+    private static int readUnsignedShort(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8);
+    }
+
+    private static int readInt(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8) |
+                ((buffer[offset + 2] & 0xff) << 16) | ((buffer[offset + 3] & 0xff) << 24);
+    }
+}
@@ -26,6 +26,7 @@ package htsjdk.samtools;
 import htsjdk.samtools.util.BinaryCodec;
 import htsjdk.samtools.util.StringUtil;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Array;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -275,16 +276,7 @@ public class BinaryTagCodec {
         SAMBinaryTagAndValue tail = null;
 
         while (byteBuffer.hasRemaining()) {
-            final short tag = byteBuffer.getShort();
-            final byte tagType = byteBuffer.get();
-            final SAMBinaryTagAndValue tmp;
-            if (tagType != 'B') {
-                tmp = new SAMBinaryTagAndValue(tag, readSingleValue(tagType, byteBuffer, validationStringency));
-            } else {
-                final TagValueAndUnsignedArrayFlag valueAndFlag = readArray(byteBuffer, validationStringency);
-                if (valueAndFlag.isUnsignedArray) tmp = new SAMBinaryTagAndUnsignedArrayValue(tag, valueAndFlag.value);
-                else tmp = new SAMBinaryTagAndValue(tag, valueAndFlag.value);
-            }
+            final SAMBinaryTagAndValue tmp = readTag(byteBuffer, validationStringency);
 
             // If samjdk wrote the BAM then the attributes will be in lowest->highest tag order, to inserting at the
             // head each time will be very inefficient. To fix that we check here to see if the tag should go right on
@@ -305,6 +297,31 @@ public class BinaryTagCodec {
         return head;
     }
 
+    /**
+     * Convert a single tag from little-endian disk representation to in-memory representation.
+     * @param byteBuffer Little-endian byte buffer positioned at the start of the tag.
+     */
+    static SAMBinaryTagAndValue readTag(final ByteBuffer byteBuffer, final ValidationStringency validationStringency) {
+        final short tag = byteBuffer.getShort();
+        final byte tagType = byteBuffer.get();
+        if (tagType != 'B') {
+            return new SAMBinaryTagAndValue(tag, readSingleValue(tagType, byteBuffer, validationStringency));
+        }
+        final TagValueAndUnsignedArrayFlag valueAndFlag = readArray(byteBuffer, validationStringency);
+        if (valueAndFlag.isUnsignedArray) return new SAMBinaryTagAndUnsignedArrayValue(tag, valueAndFlag.value);
+        else return new SAMBinaryTagAndValue(tag, valueAndFlag.value);
+    }
+
+    /**
+     * Convert a single tag to its little-endian disk representation.
+     * @return The bytes that {@link #writeTag(short, Object, boolean)} would write for the tag.
+     */
+    static byte[] encodeTag(final SAMBinaryTagAndValue tagAndValue) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(getTagSize(tagAndValue.value));
+        new BinaryTagCodec(new BinaryCodec(bytes)).writeTag(tagAndValue.tag, tagAndValue.value, tagAndValue.isUnsignedArray());
+        return bytes.toByteArray();
+    }
+
     /**
      * Read value of specified non-array type.
      * @param tagType What type to read.
@@ -0,0 +1,251 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * An index over tags in BAM binary form, built by a single pass over the tag block, that finds a tag with a hash
+ * lookup and decodes only the values that are asked for.
+ *
+ * The index refers to the tag block rather than copying it, so the block must not be modified while the index is in
+ * use.  If a tag occurs more than once, the last occurrence is found, which is the one that
+ * {@link BinaryTagCodec#readTags} keeps.
+ */
+public final class BinaryTagIndex {
+    private final byte[] block;
+    private final int count;
+    private final short[] tags;
+    // start of each tag in block, followed by the end of the last tag
+    private final int[] starts;
+    // open addressing hash table of entry + 1, 0 for an empty slot
+    private final int[] slots;
+
+    /**
+     * @param block Byte array containing file representation of tags.
+     * @param offset Where in block tags start.
+     * @param length How many bytes in block are tag storage.
+     */
+    public BinaryTagIndex(final byte[] block, final int offset, final int length) {
+        this.block = block;
+        final int end = offset + length;
+        short[] tags = new short[16];
+        int[] starts = new int[17];
+        int count = 0;
+        int position = offset;
+        while (position < end) {
+            if (count == tags.length) {
+                tags = Arrays.copyOf(tags, count * 2);
+                starts = Arrays.copyOf(starts, count * 2 + 1);
+            }
+            if (position + 3 > end) {
+                throw new SAMFormatException("Truncated tag at offset " + position);
+            }
+            tags[count] = (short) ((block[position] & 0xff) | (block[position + 1] << 8));
+            starts[count++] = position;
+            position = skipValue(block[position + 2], position + 3, end);
+        }
+        if (position != end) {
+            throw new SAMFormatException("Tag at offset " + starts[count - 1] + " extends beyond the end of the tags");
+        }
+        starts[count] = end;
+        this.count = count;
+        this.tags = tags;
+        this.starts = starts;
+
+        int size = 4;
+        while (size < count * 2) {
+            size *= 2;
+        }
+        slots = new int[size];
+        for (int entry = 0; entry < count; ++entry) {
+            int slot = slot(tags[entry]);
+            while (slots[slot] != 0 && tags[slots[slot] - 1] != tags[entry]) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    /** @return the position just after the value of the given type that starts at position */
+    private int skipValue(final byte type, final int position, final int end) {
+        switch (type) {
+            case 'A':
+            case 'c':
+            case 'C':
+                return position + 1;
+            case 's':
+            case 'S':
+                return position + 2;
+            case 'i':
+            case 'I':
+            case 'f':
+                return position + 4;
+            case 'Z':
+            case 'H':
+                for (int i = position; i < end; ++i) {
+                    if (block[i] == 0) {
+                        return i + 1;
+                    }
+                }
+                throw new SAMFormatException("Unterminated string tag at offset " + (position - 3));
+            case 'B':
+                if (position + 5 > end) {
+                    throw new SAMFormatException("Truncated array tag at offset " + (position - 3));
+                }
+                final int length = readInt(position + 1);
+                final long arrayEnd = position + 5 + (long) length * arrayElementSize(block[position]);
+                if (length < 0 || arrayEnd > end) {
+                    throw new SAMFormatException("Array tag at offset " + (position - 3) + " extends beyond the end of the tags");
+                }
+                return (int) arrayEnd;
+            default:
+                throw new SAMFormatException("Unrecognized tag type: " + (char) type);
+        }
+    }
+
+    private static int arrayElementSize(final byte arrayType) {
+        switch (Character.toLowerCase(arrayType)) {
+            case 'c':
+                return 1;
+            case 's':
+                return 2;
+            case 'i':
+            case 'f':
+                return 4;
+            default:
+                throw new SAMFormatException("Unrecognized tag array type: " + (char) arrayType);
+        }
+    }
+
+    private int slot(final short tag) {
+        final int hash = tag * 0x9E3779B1;
+        return (hash ^ (hash >>> 16)) & (slots.length - 1);
+    }
+
+    private int readInt(final int position) {
+        return (block[position] & 0xff) | (block[position + 1] & 0xff) << 8 |
+                (block[position + 2] & 0xff) << 16 | block[position + 3] << 24;
+    }
+
+    /**
+     * @return the number of tags in the block, counting repeated tags each time they occur
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param tag Binary representation of a 2-char String tag as created by SAMTagUtil.
+     * @return the entry of the tag, or -1 if the tag is not present
+     */
+    public int find(final short tag) {
+        int slot = slot(tag);
+        while (slots[slot] != 0) {
+            if (tags[slots[slot] - 1] == tag) {
+                return slots[slot] - 1;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        return -1;
+    }
+
+    public short getTag(final int entry) {
+        return tags[entry];
+    }
+
+    /**
+     * @return the BAM type code of the value of the tag, e.g. 'Z' or 'B'
+     */
+    public char getType(final int entry) {
+        return (char) block[starts[entry] + 2];
+    }
+
+    /**
+     * @return the position in the block at which the tag starts
+     */
+    public int getStart(final int entry) {
+        return starts[entry];
+    }
+
+    /**
+     * @return the position in the block just after the end of the tag, which is the start of the next tag
+     */
+    public int getEnd(final int entry) {
+        return starts[entry + 1];
+    }
+
+    /**
+     * Decodes the tag and its value into in-memory representation.
+     */
+    public SAMBinaryTagAndValue decode(final int entry, final ValidationStringency validationStringency) {
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(block, starts[entry], getEnd(entry) - starts[entry]);
+        byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        return BinaryTagCodec.readTag(byteBuffer, validationStringency);
+    }
+
+    /**
+     * Decodes the value of an integer tag of any size without boxing it.
+     * @throws SAMException if the tag does not have an integer type
+     */
+    public long getIntegerValue(final int entry) {
+        final int position = starts[entry] + 3;
+        switch (getType(entry)) {
+            case 'c':
+                return block[position];
+            case 'C':
+                return block[position] & 0xff;
+            case 's':
+                return (short) ((block[position] & 0xff) | (block[position + 1] << 8));
+            case 'S':
+                return (block[position] & 0xff) | (block[position + 1] & 0xff) << 8;
+            case 'i':
+                return readInt(position);
+            case 'I':
+                return readInt(position) & 0xffffffffL;
+            default:
+                throw new SAMException("Value for tag " + SAMTag.makeStringTag(tags[entry]) +
+                        " is not an integer: type " + getType(entry));
+        }
+    }
+
+    /**
+     * Returns a read-only view of the value of a byte array tag.  Signed and unsigned byte arrays are not copied;
+     * old-style hex arrays are decoded.
+     * @throws SAMException if the tag is not a byte array
+     */
+    public ByteBuffer getByteArrayView(final int entry) {
+        final int position = starts[entry] + 3;
+        final char type = getType(entry);
+        if (type == 'B' && Character.toLowerCase(block[position]) == 'c') {
+            return ByteBuffer.wrap(block, position + 5, readInt(position + 1)).slice().asReadOnlyBuffer();
+        }
+        if (type == 'H') {
+            return ByteBuffer.wrap((byte[]) decode(entry, ValidationStringency.SILENT).value).asReadOnlyBuffer();
+        }
+        throw new SAMException("Value for tag " + SAMTag.makeStringTag(tags[entry]) + " is not a byte[]: type " + type);
+    }
+}
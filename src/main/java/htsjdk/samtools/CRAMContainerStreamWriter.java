@@ -1,5 +1,6 @@
 package htsjdk.samtools;
 
+import htsjdk.samtools.cram.build.CRAMReferenceMode;
 import htsjdk.samtools.cram.build.ContainerFactory;
 import htsjdk.samtools.cram.build.Cram2SamRecordFactory;
 import htsjdk.samtools.cram.build.CramIO;
@@ -20,14 +21,21 @@ import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.samtools.util.SequenceUtil;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Class for writing SAMRecords into a series of CRAM containers on an output stream.
@@ -47,7 +55,7 @@ public class CRAMContainerStreamWriter {
     private final OutputStream outputStream;
     private CRAMReferenceSource source;
 
-    private final List<SAMRecord> samRecords = new ArrayList<SAMRecord>();
+    private List<SAMRecord> samRecords = new ArrayList<SAMRecord>();
     private ContainerFactory containerFactory;
     private int refSeqIndex = REF_SEQ_INDEX_NOT_INITIALIZED;
 
@@ -58,9 +66,16 @@ public class CRAMContainerStreamWriter {
     private boolean captureAllTags = true;
     private Set<String> captureTags = new TreeSet<>();
     private Set<String> ignoreTags = new TreeSet<>();
+    private CRAMReferenceMode referenceMode = CRAMReferenceMode.REFERENCE;
 
     private CRAMIndexer indexer;
     private long offset;
+    private long globalRecordCounter = 0;
+
+    private int threads = 1;
+    private ExecutorService executor;
+    /** Containers being built on the executor, in stream order. */
+    private final Deque<Future<SerializedContainer>> pendingContainers = new ArrayDeque<>();
 
     /**
      * Create a CRAMContainerStreamWriter for writing SAM records into a series of CRAM
@@ -139,6 +154,12 @@ public class CRAMContainerStreamWriter {
             if (!samRecords.isEmpty()) {
                 flushContainer();
             }
+            while (!pendingContainers.isEmpty()) {
+                writeNextPendingContainer();
+            }
+            if (executor != null) {
+                executor.shutdown();
+            }
             if (writeEOFContainer) {
                 CramIO.issueEOF(cramVersion, outputStream);
             }
@@ -192,6 +213,48 @@ public class CRAMContainerStreamWriter {
         this.ignoreTags = ignoreTags;
     }
 
+    public CRAMReferenceMode getReferenceMode() {
+        return referenceMode;
+    }
+
+    /**
+     * Set how the bases of aligned records are stored relative to the reference, see {@link CRAMReferenceMode}.
+     * The reference source is not used for containers stored without a reference.
+     *
+     * @param referenceMode the reference mode, which applies from the next container written
+     */
+    public void setReferenceMode(final CRAMReferenceMode referenceMode) {
+        if (referenceMode == null) {
+            throw new IllegalArgumentException("A reference mode is required");
+        }
+        this.referenceMode = referenceMode;
+    }
+
+    /**
+     * Sets the number of threads used to build containers.  With more than one thread, the records of each
+     * container are converted and compressed on a pool of worker threads while the calling thread goes on collecting
+     * the records of the next containers.  Containers are written, and indexed, in the order of their records, and
+     * the output is the same as with a single thread.  At most two containers per thread are held in memory.
+     *
+     * With more than one thread, the reference source is called from the worker threads and must be thread safe,
+     * and the other settings of this writer should not be changed once records have been written.
+     *
+     * @param threads the number of worker threads, or 1 to build containers on the calling thread
+     */
+    public void setThreads(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        if (executor != null) {
+            throw new IllegalStateException("The number of threads cannot be changed once containers have been written");
+        }
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
     /**
      * Decide if the current container should be completed and flushed. The decision is based on a) number of records and b) if the
      * reference sequence id has changed.
@@ -271,36 +334,64 @@ public class CRAMContainerStreamWriter {
     }
 
     /**
-     * Complete the current container and flush it to the output stream.
+     * Complete the current container and flush it to the output stream.  With more than one thread, the container
+     * is built on a worker thread and written once the containers before it have been written.
      *
      * @throws IllegalArgumentException
      * @throws IllegalAccessException
      * @throws IOException
      */
     protected void flushContainer() throws IllegalArgumentException {
+        final int containerRefSeqIndex = refSeqIndex;
+        final long firstRecordCounter = globalRecordCounter;
+        globalRecordCounter += samRecords.size();
+        refSeqIndex = REF_SEQ_INDEX_NOT_INITIALIZED;
+        containerFactory.setPreserveReadNames(preserveReadNames);
 
-        final byte[] referenceBases;
-        String refSeqName = null;
-        switch (refSeqIndex) {
-            case ReferenceContext.MULTIPLE_REFERENCE_ID:
-                if (preservation != null && preservation.areReferenceTracksRequired()) {
-                    throw new SAMException("Cannot apply reference-based lossy compression on non-coordinate sorted reads.");
-                }
-                referenceBases = new byte[0];
-                break;
-            case ReferenceContext.UNMAPPED_UNPLACED_ID:
-                referenceBases = new byte[0];
-                break;
-            default:
-                final SAMSequenceRecord sequence = samFileHeader.getSequence(refSeqIndex);
-                referenceBases = source.getReferenceBases(sequence, true);
-                refSeqName = sequence.getSequenceName();
-                break;
+        if (threads == 1) {
+            final Container container = buildContainer(samRecords, containerRefSeqIndex, firstRecordCounter, offset);
+            samRecords.clear();
+            offset += ContainerIO.writeContainer(cramVersion, container, outputStream);
+            indexContainer(container);
+            return;
         }
 
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                final Thread t = Executors.defaultThreadFactory().newThread(r);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        final List<SAMRecord> records = samRecords;
+        samRecords = new ArrayList<>();
+        pendingContainers.add(executor.submit(() -> {
+            // the byte offset is only known when the container is written
+            final Container container = buildContainer(records, containerRefSeqIndex, firstRecordCounter, 0);
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ContainerIO.writeContainer(cramVersion, container, bytes);
+            return new SerializedContainer(container, bytes);
+        }));
+        while (pendingContainers.size() >= 2 * threads) {
+            writeNextPendingContainer();
+        }
+    }
+
+    /**
+     * Convert and compress the records of a container.
+     *
+     * @param records the records of the container
+     * @param containerRefSeqIndex the reference sequence of the records, or {@link ReferenceContext#MULTIPLE_REFERENCE_ID}
+     * @param firstRecordCounter the number of records written before the container
+     * @param containerByteOffset the byte offset of the container in the stream
+     * @return the container, ready to be written
+     */
+    private Container buildContainer(final List<SAMRecord> records, final int containerRefSeqIndex,
+                                     final long firstRecordCounter, final long containerByteOffset) {
+
         int start = SAMRecord.NO_ALIGNMENT_START;
         int stop = SAMRecord.NO_ALIGNMENT_START;
-        for (final SAMRecord r : samRecords) {
+        for (final SAMRecord r : records) {
             if (r.getAlignmentStart() == SAMRecord.NO_ALIGNMENT_START) {
                 continue;
             }
@@ -313,26 +404,53 @@ public class CRAMContainerStreamWriter {
             stop = Math.max(r.getAlignmentEnd(), stop);
         }
 
+        final CRAMReferenceMode containerReferenceMode = getContainerReferenceMode(records, containerRefSeqIndex, start, stop);
+        final boolean useReference = containerReferenceMode != CRAMReferenceMode.NO_REFERENCE;
+
+        final byte[] referenceBases;
+        String refSeqName = null;
+        switch (containerRefSeqIndex) {
+            case ReferenceContext.MULTIPLE_REFERENCE_ID:
+                if (preservation != null && preservation.areReferenceTracksRequired()) {
+                    throw new SAMException("Cannot apply reference-based lossy compression on non-coordinate sorted reads.");
+                }
+                referenceBases = new byte[0];
+                break;
+            case ReferenceContext.UNMAPPED_UNPLACED_ID:
+                referenceBases = new byte[0];
+                break;
+            default:
+                final SAMSequenceRecord sequence = samFileHeader.getSequence(containerRefSeqIndex);
+                if (useReference) {
+                    referenceBases = source.getReferenceBases(sequence, true);
+                } else if (preservation != null && preservation.areReferenceTracksRequired()) {
+                    throw new SAMException("Cannot apply reference-based lossy compression to reads written without a reference.");
+                } else {
+                    referenceBases = null;
+                }
+                refSeqName = sequence.getSequenceName();
+                break;
+        }
+
         ReferenceTracks tracks = null;
         if (preservation != null && preservation.areReferenceTracksRequired()) {
-            tracks = new ReferenceTracks(refSeqIndex, refSeqName, referenceBases);
+            tracks = new ReferenceTracks(containerRefSeqIndex, refSeqName, referenceBases);
 
             tracks.ensureRange(start, stop - start + 1);
-            updateTracks(samRecords, tracks);
+            updateTracks(records, tracks);
         }
 
-        final List<CramCompressionRecord> cramRecords = new ArrayList<>(samRecords.size());
+        final List<CramCompressionRecord> cramRecords = new ArrayList<>(records.size());
 
-        final Sam2CramRecordFactory sam2CramRecordFactory = new Sam2CramRecordFactory(referenceBases, samFileHeader, cramVersion);
+        final Sam2CramRecordFactory sam2CramRecordFactory = new Sam2CramRecordFactory(useReference ? referenceBases : null, samFileHeader, cramVersion);
         sam2CramRecordFactory.preserveReadNames = preserveReadNames;
         sam2CramRecordFactory.captureAllTags = captureAllTags;
         sam2CramRecordFactory.captureTags.addAll(captureTags);
         sam2CramRecordFactory.ignoreTags.addAll(ignoreTags);
-        containerFactory.setPreserveReadNames(preserveReadNames);
 
         int index = 0;
-        for (final SAMRecord samRecord : samRecords) {
-            if (samRecord.getReferenceIndex() != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && refSeqIndex != samRecord.getReferenceIndex()) {
+        for (final SAMRecord samRecord : records) {
+            if (useReference && samRecord.getReferenceIndex() != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && containerRefSeqIndex != samRecord.getReferenceIndex()) {
                 // this may load all ref sequences into memory:
                 sam2CramRecordFactory.setRefBases(source.getReferenceBases(samFileHeader.getSequence(samRecord.getReferenceIndex()), true));
             }
@@ -443,27 +561,36 @@ public class CRAMContainerStreamWriter {
             //noinspection ConstantConditions
             if (assertsEnabled) {
                 final Cram2SamRecordFactory f = new Cram2SamRecordFactory(samFileHeader);
-                for (int i = 0; i < samRecords.size(); i++) {
+                for (int i = 0; i < records.size(); i++) {
                     final SAMRecord restoredSamRecord = f.create(cramRecords.get(i));
-                    assert (restoredSamRecord.getAlignmentStart() == samRecords.get(i).getAlignmentStart());
-                    assert (restoredSamRecord.getReferenceName().equals(samRecords.get(i).getReferenceName()));
+                    assert (restoredSamRecord.getAlignmentStart() == records.get(i).getAlignmentStart());
+                    assert (restoredSamRecord.getReferenceName().equals(records.get(i).getReferenceName()));
 
-                    if (!restoredSamRecord.getReadString().equals(samRecords.get(i).getReadString())) {
+                    if (!restoredSamRecord.getReadString().equals(records.get(i).getReadString())) {
                         // try to fix the original read bases by normalizing them to BAM set:
-                        final byte[] originalReadBases = samRecords.get(i).getReadString().getBytes();
+                        final byte[] originalReadBases = records.get(i).getReadString().getBytes();
                         final String originalReadBasesUpperCaseIupacNoDot = new String(SequenceUtil.toBamReadBasesInPlace(originalReadBases));
                         assert (restoredSamRecord.getReadString().equals(originalReadBasesUpperCaseIupacNoDot));
                     }
-                    assert (restoredSamRecord.getBaseQualityString().equals(samRecords.get(i).getBaseQualityString()));
+                    assert (restoredSamRecord.getBaseQualityString().equals(records.get(i).getBaseQualityString()));
                 }
             }
         }
 
-        final Container container = containerFactory.buildContainer(cramRecords, offset);
-        for (final Slice slice : container.getSlices()) {
-            slice.setRefMD5(referenceBases);
+        final Container container = containerFactory.buildContainer(cramRecords, containerByteOffset, firstRecordCounter);
+        container.compressionHeader.setReferenceRequired(useReference);
+        if (useReference) {
+            for (final Slice slice : container.getSlices()) {
+                slice.setRefMD5(referenceBases);
+                if (containerReferenceMode == CRAMReferenceMode.EMBEDDED_REFERENCE && slice.getReferenceContext().isMappedSingleRef()) {
+                    slice.setEmbeddedReference(referenceBases);
+                }
+            }
         }
-        offset += ContainerIO.writeContainer(cramVersion, container, outputStream);
+        return container;
+    }
+
+    private void indexContainer(final Container container) {
         if (indexer != null) {
             /**
              * Using silent validation here because the reads have been through validation already or
@@ -471,8 +598,91 @@ public class CRAMContainerStreamWriter {
              */
             indexer.processContainer(container, ValidationStringency.SILENT);
         }
-        samRecords.clear();
-        refSeqIndex = REF_SEQ_INDEX_NOT_INITIALIZED;
+    }
+
+    /**
+     * Wait for the oldest container being built on the executor, then write and index it.
+     */
+    private void writeNextPendingContainer() {
+        final SerializedContainer serializedContainer;
+        try {
+            serializedContainer = pendingContainers.removeFirst().get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAMException("Interrupted waiting for a CRAM container to be built", e);
+        } catch (final ExecutionException e) {
+            for (final Future<SerializedContainer> future : pendingContainers) {
+                future.cancel(true);
+            }
+            pendingContainers.clear();
+            executor.shutdownNow();
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new SAMException("Error building CRAM container", cause);
+        }
+
+        serializedContainer.container.setByteOffset(offset);
+        try {
+            serializedContainer.bytes.writeTo(outputStream);
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+        offset += serializedContainer.bytes.size();
+        indexContainer(serializedContainer.container);
+    }
+
+    /** A container built on a worker thread, with its bytes as they are to be written. */
+    private static final class SerializedContainer {
+        private final Container container;
+        private final ByteArrayOutputStream bytes;
+
+        private SerializedContainer(final Container container, final ByteArrayOutputStream bytes) {
+            this.container = container;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Choose how to store the bases of the current container.  Only containers of records on a single reference
+     * sequence can embed the reference; others are stored without one unless the mode is
+     * {@link CRAMReferenceMode#REFERENCE}.
+     *
+     * @param records the records of the container
+     * @param containerRefSeqIndex the reference sequence of the records
+     * @param start the minimum alignment start of the records
+     * @param stop the maximum alignment end of the records
+     * @return the reference mode of the container, which is never {@link CRAMReferenceMode#AUTO}
+     */
+    private CRAMReferenceMode getContainerReferenceMode(final List<SAMRecord> records, final int containerRefSeqIndex,
+                                                        final int start, final int stop) {
+        if (referenceMode == CRAMReferenceMode.REFERENCE || referenceMode == CRAMReferenceMode.NO_REFERENCE) {
+            return referenceMode;
+        }
+        if (containerRefSeqIndex < 0 || start == SAMRecord.NO_ALIGNMENT_START) {
+            return CRAMReferenceMode.NO_REFERENCE;
+        }
+        if (referenceMode == CRAMReferenceMode.EMBEDDED_REFERENCE) {
+            return referenceMode;
+        }
+
+        // both the embedded reference and verbatim bases compress to about two bits per base
+        final long referenceSpan = stop - start + 1;
+        long alignedBases = 0;
+        for (final SAMRecord samRecord : records) {
+            if (samRecord.getReadUnmappedFlag() || samRecord.getReadBases() == SAMRecord.NULL_SEQUENCE) {
+                continue;
+            }
+            for (final CigarElement cigarElement : samRecord.getCigar().getCigarElements()) {
+                if (cigarElement.getOperator().isAlignment()) {
+                    alignedBases += cigarElement.getLength();
+                }
+            }
+            if (alignedBases >= referenceSpan) {
+                return CRAMReferenceMode.EMBEDDED_REFERENCE;
+            }
+        }
+        return CRAMReferenceMode.NO_REFERENCE;
     }
 
     /**
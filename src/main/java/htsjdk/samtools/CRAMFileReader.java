@@ -17,9 +17,12 @@ package htsjdk.samtools;
 
 import htsjdk.samtools.SAMFileHeader.SortOrder;
 import htsjdk.samtools.SamReader.Type;
+import htsjdk.samtools.cram.CRAIEntry;
 import htsjdk.samtools.cram.CRAIIndex;
+import htsjdk.samtools.cram.CRAISliceIndex;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.ref.ReferenceSource;
+import htsjdk.samtools.cram.structure.CRAMRecordField;
 import htsjdk.samtools.cram.structure.Container;
 import htsjdk.samtools.cram.structure.ContainerHeaderIO;
 import htsjdk.samtools.seekablestream.SeekableFileStream;
@@ -28,6 +31,7 @@ import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.RuntimeEOFException;
+import htsjdk.samtools.util.RuntimeIOException;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -36,7 +40,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * {@link htsjdk.samtools.BAMFileReader BAMFileReader} analogue for CRAM files.
@@ -52,8 +58,11 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
     private CRAMIterator iterator;
     private BAMIndex mIndex;
     private File mIndexFile;
+    private CRAISliceIndex mCraiIndex;
     private boolean mEnableIndexCaching;
     private boolean mEnableIndexMemoryMapping;
+    private IndexQueryPlanner queryPlanner;
+    private long[] containerStarts;
 
     private ValidationStringency validationStringency;
 
@@ -224,7 +233,9 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         this.inputStream = inputStream;
         this.validationStringency = validationStringency;
         iterator = new CRAMIterator(inputStream, referenceSource, validationStringency);
-        if (indexInputStream != null) {
+        if (indexInputStream != null && isCraiStream(indexInputStream)) {
+            mCraiIndex = CRAISliceIndex.read(indexInputStream);
+        } else if (indexInputStream != null) {
             SeekableStream baiStream = SamIndexes.asBaiSeekableStreamOrNull(indexInputStream, iterator.getSAMFileHeader().getSequenceDictionary());
             if (null != baiStream)  {
                 mIndex = new CachingBAMFileIndex(baiStream, iterator.getSAMFileHeader().getSequenceDictionary());
@@ -235,6 +246,16 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         }
     }
 
+    private static boolean isCraiStream(final SeekableStream indexInputStream) throws IOException {
+        indexInputStream.seek(0);
+        boolean isCrai = true;
+        for (final byte b : SamIndexes.CRAI.magic) {
+            isCrai &= indexInputStream.read() == (0xFF & b);
+        }
+        indexInputStream.seek(0);
+        return isCrai;
+    }
+
     private File findIndexForFile(File indexFile, final File cramFile) {
         indexFile = indexFile == null ? SamFiles.findIndex(cramFile) : indexFile;
         if (indexFile != null && indexFile.lastModified() < cramFile.lastModified()) {
@@ -267,7 +288,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
 
     @Override
     public boolean hasIndex() {
-        return mIndex != null || mIndexFile != null;
+        return mIndex != null || mIndexFile != null || mCraiIndex != null;
     }
 
     @Override
@@ -277,6 +298,13 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         if (mIndex == null) {
             final SAMSequenceDictionary dictionary = getFileHeader()
                     .getSequenceDictionary();
+            if (mCraiIndex != null) {
+                // the CRAI has already been read for queries, so translate it rather than reading it again
+                final SeekableStream baiStream = CRAIIndex.openCraiEntriesAsBaiStream(mCraiIndex.getEntries(), dictionary);
+                mIndex = mEnableIndexCaching ? new CachingBAMFileIndex(baiStream, dictionary) :
+                        new DiskBasedBAMFileIndex(baiStream, dictionary);
+                return mIndex;
+            }
             if (mIndexFile.getName().endsWith(BAMIndex.BAI_INDEX_SUFFIX)) {
                 mIndex = mEnableIndexCaching ? new CachingBAMFileIndex(mIndexFile,
                         dictionary, mEnableIndexMemoryMapping)
@@ -300,6 +328,23 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         return mIndex;
     }
 
+    /**
+     * Returns the CRAI index of this file, if it has one, which region queries use to read only the slices they need
+     * instead of going through {@link #getIndex()}.
+     *
+     * @return the CRAI index, or null if the file is not indexed by a CRAI
+     */
+    public CRAISliceIndex getCraiIndex() {
+        if (mCraiIndex == null && mIndexFile != null && mIndexFile.getName().endsWith(CRAIIndex.CRAI_INDEX_SUFFIX)) {
+            try (final InputStream indexStream = new FileInputStream(mIndexFile)) {
+                mCraiIndex = CRAISliceIndex.read(indexStream);
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }
+        return mCraiIndex;
+    }
+
     @Override
     public boolean hasBrowseableIndex() {
         return false;
@@ -452,6 +497,26 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         return new CRAMIntervalIterator(intervals, contained);
     }
 
+    /**
+     * Queries the records matching the intervals, decoding only some of their fields.  For instance, a coverage
+     * calculation needs no fields beyond the positions, flags, mapping quality and CIGAR that are always decoded,
+     * and then neither reads the reference nor decompresses the blocks of read names, bases, quality scores or tags.
+     *
+     * @param intervals the intervals to query, see {@link #query(QueryInterval[], boolean)}
+     * @param contained if true, return records that are strictly contained in the intervals, otherwise return
+     *                  records that overlap them
+     * @param fields the fields to decode, see {@link CRAMRecordField}
+     */
+    public CloseableIterator<SAMRecord> query(final QueryInterval[] intervals,
+                                              final boolean contained,
+                                              final Set<CRAMRecordField> fields) {
+        final CRAMIterator unfilteredIterator = openQueryIterator(intervals);
+        if (unfilteredIterator != null) {
+            unfilteredIterator.setDecodedFields(fields);
+        }
+        return new CRAMIntervalIterator(intervals, contained, unfilteredIterator);
+    }
+
     @Override
     public Type type() {
         return Type.CRAM_TYPE;
@@ -477,6 +542,78 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         return new CRAMIntervalIterator(intervals, contained, filePointers);
     }
 
+    /**
+     * Sets the planner used to turn index queries into the containers to read, or null to read the containers given
+     * by the index.  With a planner, nearby containers are read together.  If the index is a CRAI and the input is a
+     * seekable stream, the containers to be read are announced to the stream before reading, see
+     * {@link SeekableStream#prefetch(long, long)}; with a BAI the container sizes are not known, so nothing is
+     * announced.
+     */
+    public void setQueryPlanner(final IndexQueryPlanner queryPlanner) {
+        this.queryPlanner = queryPlanner;
+    }
+
+    private long[] planQuery(final QueryInterval[] queries) {
+        if (queryPlanner == null) {
+            return coordinatesFromQueryIntervals(getIndex(), queries);
+        }
+        // CRAM index offsets are container offsets, so gaps and byte ranges are measured against the container
+        // boundaries, which are only known from a CRAI
+        final long[] blockStarts = getContainerStarts();
+        final BAMFileSpan span = queryPlanner.getFileSpan(queries, getIndex(), blockStarts);
+        if (span == null) {
+            return null;
+        }
+        if (blockStarts != null) {
+            final long[] ranges = queryPlanner.getByteRanges(span, blockStarts);
+            for (int i = 0; i < ranges.length; i += 2) {
+                ((SeekableStream) inputStream).prefetch(ranges[i], ranges[i + 1]);
+            }
+        }
+        return span.toCoordinateArray();
+    }
+
+    /**
+     * @return the sorted offsets of the containers in the CRAI followed by the length of the file, or null if there
+     * is no CRAI or the input is not a seekable stream of known length
+     */
+    private long[] getContainerStarts() {
+        if (containerStarts == null && cramFile == null && inputStream instanceof SeekableStream) {
+            final CRAISliceIndex craiIndex = getCraiIndex();
+            final long length = ((SeekableStream) inputStream).length();
+            if (craiIndex != null && length > 0) {
+                final long[] starts = craiIndex.getEntries().stream()
+                        .mapToLong(CRAIEntry::getContainerStartByteOffset)
+                        .distinct()
+                        .sorted()
+                        .toArray();
+                containerStarts = Arrays.copyOf(starts, starts.length + 1);
+                containerStarts[starts.length] = length;
+            }
+        }
+        return containerStarts;
+    }
+
+    // with a CRAI and no planner, read only the slices overlapping the queries
+    private CRAMIterator openQueryIterator(final QueryInterval[] queries) {
+        final CRAISliceIndex craiIndex = queryPlanner == null ? getCraiIndex() : null;
+        if (craiIndex == null) {
+            return openSpanIterator(planQuery(queries));
+        }
+        final List<CRAIEntry> slices = craiIndex.getSlicesOverlapping(queries);
+        if (slices.isEmpty()) {
+            return null;
+        }
+        return new CRAMIterator(getSeekableStreamOrFailWithRTE(), referenceSource, slices, validationStringency);
+    }
+
+    private CRAMIterator openSpanIterator(final long[] coordinates) {
+        if (coordinates == null || coordinates.length == 0) {
+            return null;
+        }
+        return new CRAMIterator(getSeekableStreamOrFailWithRTE(), referenceSource, coordinates, validationStringency);
+    }
+
     // convert queries -> merged BAMFileSpan -> coordinate array
     private static long[] coordinatesFromQueryIntervals(BAMIndex index, QueryInterval[] queries) {
         ArrayList<BAMFileSpan> spanList = new ArrayList<>(1);
@@ -498,21 +635,20 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         SAMRecord nextRec = null;
 
         public CRAMIntervalIterator(final QueryInterval[] queries, final boolean contained) {
-            this(queries, contained, coordinatesFromQueryIntervals(getIndex(), queries));
+            this(queries, contained, openQueryIterator(queries));
         }
 
         public CRAMIntervalIterator(final QueryInterval[] queries, final boolean contained, final long[] coordinates) {
-            super(queries, contained);
+            this(queries, contained, openSpanIterator(coordinates));
+        }
 
-            if (coordinates != null && coordinates.length != 0) {
+        private CRAMIntervalIterator(final QueryInterval[] queries, final boolean contained, final CRAMIterator unfilteredIterator) {
+            super(queries, contained);
 
-                unfilteredIterator = new CRAMIterator(
-                        getSeekableStreamOrFailWithRTE(),
-                        referenceSource,
-                        coordinates,
-                        validationStringency
-                );
-                
+            this.unfilteredIterator = unfilteredIterator;
+            if (unfilteredIterator != null) {
+                // containers may also hold slices which do not overlap the queries
+                unfilteredIterator.setSliceIntervals(queries);
                 getNextRecord(); // advance to the first record that matches the filter criteria
             }
         }
@@ -15,6 +15,7 @@
  ******************************************************************************/
 package htsjdk.samtools;
 
+import htsjdk.samtools.cram.build.CRAMReferenceMode;
 import htsjdk.samtools.cram.lossy.PreservationPolicy;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.ref.ReferenceSource;
@@ -169,4 +170,30 @@ public class CRAMFileWriter extends SAMFileWriterImpl {
     public void setIgnoreTags(final Set<String> ignoreTags) {
         cramContainerStream.setIgnoreTags(ignoreTags);
     }
+
+    public CRAMReferenceMode getReferenceMode() {
+        return cramContainerStream.getReferenceMode();
+    }
+
+    /**
+     * Set how the bases of aligned records are stored relative to the reference, see {@link CRAMReferenceMode}.
+     *
+     * @param referenceMode the reference mode
+     */
+    public void setReferenceMode(final CRAMReferenceMode referenceMode) {
+        cramContainerStream.setReferenceMode(referenceMode);
+    }
+
+    public int getThreads() {
+        return cramContainerStream.getThreads();
+    }
+
+    /**
+     * Set the number of threads used to build containers, see {@link CRAMContainerStreamWriter#setThreads(int)}.
+     *
+     * @param threads the number of worker threads
+     */
+    public void setThreads(final int threads) {
+        cramContainerStream.setThreads(threads);
+    }
 }
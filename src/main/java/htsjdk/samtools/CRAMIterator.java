@@ -16,15 +16,19 @@
 package htsjdk.samtools;
 
 import htsjdk.samtools.SAMFileHeader.SortOrder;
+import htsjdk.samtools.cram.CRAIEntry;
+import htsjdk.samtools.cram.CRAISliceIndex;
 import htsjdk.samtools.cram.build.ContainerParser;
 import htsjdk.samtools.cram.build.Cram2SamRecordFactory;
 import htsjdk.samtools.cram.build.CramContainerIterator;
 import htsjdk.samtools.cram.build.CramNormalizer;
+import htsjdk.samtools.cram.build.CramSliceContainerIterator;
 import htsjdk.samtools.cram.build.CramSpanContainerIterator;
 import htsjdk.samtools.cram.io.CountingInputStream;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.ref.ReferenceContext;
 import htsjdk.samtools.cram.structure.Container;
+import htsjdk.samtools.cram.structure.CRAMRecordField;
 import htsjdk.samtools.cram.structure.ContainerIO;
 import htsjdk.samtools.cram.structure.CramCompressionRecord;
 import htsjdk.samtools.cram.structure.CramHeader;
@@ -58,6 +62,9 @@ public class CRAMIterator implements SAMRecordIterator {
 
     private ValidationStringency validationStringency = ValidationStringency.DEFAULT_STRINGENCY;
 
+    private Set<CRAMRecordField> decodedFields = CRAMRecordField.ALL;
+    private QueryInterval[] sliceIntervals;
+
     public ValidationStringency getValidationStringency() {
         return validationStringency;
     }
@@ -116,6 +123,68 @@ public class CRAMIterator implements SAMRecordIterator {
         parser = new ContainerParser(cramHeader.getSamFileHeader());
     }
 
+    /**
+     * Iterates over the records of the given slices only, see {@link CRAISliceIndex#getSlicesOverlapping}.
+     *
+     * @param seekableStream the CRAM stream
+     * @param referenceSource the reference source
+     * @param slices the slices to read, ordered by file offset without duplicates
+     * @param validationStringency the validation stringency of the records
+     */
+    public CRAMIterator(final SeekableStream seekableStream,
+                        final CRAMReferenceSource referenceSource,
+                        final List<CRAIEntry> slices,
+                        final ValidationStringency validationStringency) {
+        if (null == referenceSource) {
+            throw new CRAMException("A reference source is required for CRAM files");
+        }
+
+        this.countingInputStream = new CountingInputStream(seekableStream);
+        this.referenceSource = referenceSource;
+        this.validationStringency = validationStringency;
+        final CramSliceContainerIterator containerIterator = new CramSliceContainerIterator(seekableStream, slices);
+        cramHeader = containerIterator.getCramHeader();
+        this.containerIterator = containerIterator;
+
+        firstContainerOffset = containerIterator.getFirstContainerOffset();
+        records = new ArrayList<>(CRAMContainerStreamWriter.DEFAULT_RECORDS_PER_SLICE);
+        normalizer = new CramNormalizer(cramHeader.getSamFileHeader(),
+                referenceSource);
+        parser = new ContainerParser(cramHeader.getSamFileHeader());
+    }
+
+    /**
+     * Iterates over the records of containers which have already been read from a stream, so that containers can be
+     * decoded concurrently, each with its own iterator.
+     *
+     * @param cramHeader the header of the stream
+     * @param containers the containers to decode
+     * @param referenceSource the reference source
+     * @param recordCounter the number of records in the stream before the first container, from which the names of
+     *                      records stored without one are generated
+     * @param validationStringency the validation stringency of the records
+     */
+    CRAMIterator(final CramHeader cramHeader,
+                 final Iterator<Container> containers,
+                 final CRAMReferenceSource referenceSource,
+                 final long recordCounter,
+                 final ValidationStringency validationStringency) {
+        if (null == referenceSource) {
+            throw new CRAMException("A reference source is required for CRAM files");
+        }
+
+        this.countingInputStream = null;
+        this.referenceSource = referenceSource;
+        this.validationStringency = validationStringency;
+        this.cramHeader = cramHeader;
+        this.containerIterator = containers;
+
+        records = new ArrayList<>(CRAMContainerStreamWriter.DEFAULT_RECORDS_PER_SLICE);
+        // the counter of a single stream wraps around in the same way
+        normalizer = new CramNormalizer(cramHeader.getSamFileHeader(), referenceSource, (int) recordCounter);
+        parser = new ContainerParser(cramHeader.getSamFileHeader());
+    }
+
     @Deprecated
     public CRAMIterator(final SeekableStream seekableStream,
                         final CRAMReferenceSource referenceSource,
@@ -127,6 +196,66 @@ public class CRAMIterator implements SAMRecordIterator {
         return cramHeader;
     }
 
+    /**
+     * Sets the fields of the records to decode.  Other fields are left empty, see {@link CRAMRecordField}.
+     * If bases are not decoded, the reference is not read and the reference MD5 of the slices is not checked.
+     *
+     * @param fields the fields to decode, which apply from the next container read
+     */
+    public void setDecodedFields(final Set<CRAMRecordField> fields) {
+        this.decodedFields = fields.isEmpty() ? EnumSet.noneOf(CRAMRecordField.class) : EnumSet.copyOf(fields);
+    }
+
+    /**
+     * Restricts decoding to the slices which may hold records overlapping the intervals, as given by the alignment
+     * span in each slice header.  The records of other slices are skipped without decompressing their blocks, and
+     * so are slices of unplaced records.  Multiple reference slices are always decoded.
+     *
+     * @param intervals the intervals of interest, or null to decode all slices
+     */
+    public void setSliceIntervals(final QueryInterval[] intervals) {
+        this.sliceIntervals = intervals;
+    }
+
+    /**
+     * @return true if each decoded slice of the container which needs a reference embeds it, see
+     * {@link Slice#setEmbeddedReference(byte[])}
+     */
+    private boolean hasEmbeddedReference(final Container container) {
+        boolean embedded = false;
+        for (final Slice slice : container.getSlices()) {
+            if (!isSliceDecoded(slice) || slice.getReferenceContext().isUnmappedUnplaced()) {
+                continue;
+            }
+            if (slice.embeddedRefBlock == null) {
+                return false;
+            }
+            embedded = true;
+        }
+        return embedded;
+    }
+
+    private boolean isSliceDecoded(final Slice slice) {
+        if (sliceIntervals == null) {
+            return true;
+        }
+        final ReferenceContext sliceContext = slice.getReferenceContext();
+        if (sliceContext.isMultiRef()) {
+            return true;
+        }
+        if (!sliceContext.isMappedSingleRef()) {
+            return false;
+        }
+        final int sliceEnd = slice.alignmentStart + Math.max(slice.alignmentSpan, 1) - 1;
+        for (final QueryInterval interval : sliceIntervals) {
+            if (interval.referenceIndex == sliceContext.getSequenceId() &&
+                    (interval.end <= 0 || interval.end >= slice.alignmentStart) && interval.start <= sliceEnd) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     void nextContainer() throws IllegalArgumentException, CRAMException {
 
         if (containerIterator != null) {
@@ -153,34 +282,44 @@ public class CRAMIterator implements SAMRecordIterator {
         else
             cramRecords.clear();
 
-        parser.getRecords(container, cramRecords, validationStringency);
+        parser.getRecords(container, cramRecords, validationStringency, this::isSliceDecoded, decodedFields);
 
+        final boolean restoreBases = decodedFields.contains(CRAMRecordField.BASES) && !cramRecords.isEmpty();
+        final boolean embeddedReference = restoreBases && hasEmbeddedReference(container);
+        // no reference is needed without bases, or if the container has the reference or does not use one
+        final boolean referenceRequired = restoreBases && !embeddedReference &&
+                container.compressionHeader.isReferenceRequired();
         final ReferenceContext containerContext = container.getReferenceContext();
-        switch (containerContext.getType()) {
-            case UNMAPPED_UNPLACED_TYPE:
-                referenceBases = new byte[]{};
-                prevSeqId = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
-                break;
-            case MULTIPLE_REFERENCE_TYPE:
-                referenceBases = null;
-                prevSeqId = ReferenceContext.MULTIPLE_REFERENCE_ID;
-                break;
-            default:
-                if (prevSeqId != containerContext.getSequenceId()) {
-                    final SAMSequenceRecord sequence = cramHeader.getSamFileHeader()
-                            .getSequence(containerContext.getSequenceId());
-                    referenceBases = referenceSource.getReferenceBases(sequence, true);
-                    if (referenceBases == null) {
-                        throw new CRAMException(String.format("Contig %s not found in the reference file.", sequence.getSequenceName()));
+        if (restoreBases && !referenceRequired) {
+            referenceBases = new byte[]{};
+            prevSeqId = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+        } else if (restoreBases) {
+            switch (containerContext.getType()) {
+                case UNMAPPED_UNPLACED_TYPE:
+                    referenceBases = new byte[]{};
+                    prevSeqId = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+                    break;
+                case MULTIPLE_REFERENCE_TYPE:
+                    referenceBases = null;
+                    prevSeqId = ReferenceContext.MULTIPLE_REFERENCE_ID;
+                    break;
+                default:
+                    if (prevSeqId != containerContext.getSequenceId()) {
+                        final SAMSequenceRecord sequence = cramHeader.getSamFileHeader()
+                                .getSequence(containerContext.getSequenceId());
+                        referenceBases = referenceSource.getReferenceBases(sequence, true);
+                        if (referenceBases == null) {
+                            throw new CRAMException(String.format("Contig %s not found in the reference file.", sequence.getSequenceName()));
+                        }
+                        prevSeqId = containerContext.getSequenceId();
                     }
-                    prevSeqId = containerContext.getSequenceId();
-                }
+            }
         }
 
         for (final Slice slice : container.getSlices()) {
             final ReferenceContext sliceContext = slice.getReferenceContext();
 
-            if (! sliceContext.isMappedSingleRef())
+            if (! sliceContext.isMappedSingleRef() || !referenceRequired || !isSliceDecoded(slice))
                 continue;
 
             if (!slice.validateRefMD5(referenceBases)) {
@@ -194,15 +333,32 @@ public class CRAMIterator implements SAMRecordIterator {
             }
         }
 
-        normalizer.normalize(cramRecords, referenceBases, 0,
-                container.compressionHeader.substitutionMatrix);
+        if (embeddedReference) {
+            // each slice carries the reference bases from its own alignment start
+            int sliceRecordStart = 0;
+            for (final Slice slice : container.getSlices()) {
+                if (!isSliceDecoded(slice)) {
+                    continue;
+                }
+                final ArrayList<CramCompressionRecord> sliceRecords = new ArrayList<>(
+                        cramRecords.subList(sliceRecordStart, sliceRecordStart + slice.nofRecords));
+                sliceRecordStart += slice.nofRecords;
+                final byte[] sliceReferenceBases = slice.getEmbeddedReferenceBases();
+                normalizer.normalize(sliceRecords, sliceReferenceBases == null ? new byte[]{} : sliceReferenceBases,
+                        Math.max(slice.alignmentStart - 1, 0),
+                        container.compressionHeader.substitutionMatrix, decodedFields);
+            }
+        } else {
+            normalizer.normalize(cramRecords, referenceBases, 0,
+                    container.compressionHeader.substitutionMatrix, decodedFields);
+        }
 
         final Cram2SamRecordFactory cramToSamRecordFactory = new Cram2SamRecordFactory(
                 cramHeader.getSamFileHeader());
 
         for (final CramCompressionRecord cramRecord : cramRecords) {
             final SAMRecord samRecord = cramToSamRecordFactory.create(cramRecord);
-            if (!cramRecord.isSegmentUnmapped()) {
+            if (!cramRecord.isSegmentUnmapped() && referenceRequired) {
                 final SAMSequenceRecord sequence = cramHeader.getSamFileHeader()
                         .getSequence(cramRecord.sequenceId);
                 referenceBases = referenceSource.getReferenceBases(sequence, true);
@@ -255,7 +411,10 @@ public class CRAMIterator implements SAMRecordIterator {
     public boolean hasNext() {
         if (container != null && container.isEOF()) return false;
         if (!iterator.hasNext()) {
-            nextContainer();
+            // a container may have no records to return if its slices were skipped
+            do {
+                nextContainer();
+            } while (records.isEmpty() && containerIterator.hasNext() && !container.isEOF());
         }
 
         return !records.isEmpty();
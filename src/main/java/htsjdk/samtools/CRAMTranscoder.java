@@ -0,0 +1,199 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.cram.build.CramContainerIterator;
+import htsjdk.samtools.cram.ref.CRAMReferenceSource;
+import htsjdk.samtools.cram.structure.Container;
+import htsjdk.samtools.cram.structure.CramHeader;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.RuntimeIOException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Converts files between BAM and CRAM using several threads.
+ *
+ * When writing CRAM, records are read with asynchronous IO, so that BGZF blocks are inflated and records decoded
+ * ahead of the calling thread, and each container is converted and compressed on a pool of worker threads, see
+ * {@link CRAMContainerStreamWriter#setThreads(int)}.
+ *
+ * When writing BAM, containers are read on the calling thread, and their blocks are decompressed and their records
+ * restored on a pool of worker threads, at most two containers per thread ahead of the writer.  Records are encoded
+ * and BGZF compressed by an asynchronous BAM writer.
+ *
+ * In both directions records are written in the order of the input, so the output is the same as with a single
+ * thread, and when requested the index is built as the output is written.  The reference source is called from the
+ * worker threads and must be thread safe, as {@link htsjdk.samtools.cram.ref.ReferenceSource} is.
+ */
+public final class CRAMTranscoder {
+    private final CRAMReferenceSource referenceSource;
+    private final int threads;
+    private boolean createIndex = false;
+    private ValidationStringency validationStringency = ValidationStringency.DEFAULT_STRINGENCY;
+
+    /**
+     * @param referenceSource the reference source used to read and write CRAM
+     * @param threads the number of worker threads
+     */
+    public CRAMTranscoder(final CRAMReferenceSource referenceSource, final int threads) {
+        if (referenceSource == null) throw new IllegalArgumentException("A reference source is required for CRAM files");
+        if (threads <= 0) throw new IllegalArgumentException("threads must be positive: " + threads);
+        this.referenceSource = referenceSource;
+        this.threads = threads;
+    }
+
+    /**
+     * Sets whether to write a BAI index next to coordinate sorted output.
+     */
+    public CRAMTranscoder setCreateIndex(final boolean createIndex) {
+        this.createIndex = createIndex;
+        return this;
+    }
+
+    public boolean getCreateIndex() {
+        return createIndex;
+    }
+
+    /**
+     * Sets how to handle invalid input records.
+     */
+    public CRAMTranscoder setValidationStringency(final ValidationStringency validationStringency) {
+        this.validationStringency = validationStringency;
+        return this;
+    }
+
+    public ValidationStringency getValidationStringency() {
+        return validationStringency;
+    }
+
+    /**
+     * Converts a BAM file, or any other file that {@link SamReaderFactory} can open, to CRAM.
+     *
+     * @param input the file to convert
+     * @param output the CRAM file to write
+     */
+    public void toCRAM(final Path input, final Path output) {
+        final SamReaderFactory readerFactory = SamReaderFactory.makeDefault()
+                .validationStringency(validationStringency)
+                .referenceSource(referenceSource)
+                .setUseAsyncIo(true);
+        try (final SamReader reader = readerFactory.open(input);
+             final OutputStream cramStream = IOUtil.maybeBufferOutputStream(Files.newOutputStream(output));
+             final OutputStream indexStream = createIndex ?
+                     Files.newOutputStream(IOUtil.addExtension(output, BAMIndex.BAI_INDEX_SUFFIX)) : null;
+             final CRAMFileWriter writer = new CRAMFileWriter(cramStream, indexStream, true, referenceSource,
+                     reader.getFileHeader(), output.toUri().toString())) {
+            writer.setThreads(threads);
+            for (final SAMRecord record : reader) {
+                writer.addAlignment(record);
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error converting " + input.toUri() + " to CRAM", e);
+        }
+    }
+
+    /**
+     * Converts a CRAM file to BAM.
+     *
+     * @param input the CRAM file to convert
+     * @param output the BAM file to write
+     */
+    public void toBAM(final Path input, final Path output) {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        try (final InputStream cramStream = IOUtil.maybeBufferInputStream(Files.newInputStream(input))) {
+            final CramContainerIterator containers = new CramContainerIterator(cramStream);
+            final CramHeader cramHeader = containers.getCramHeader();
+            final SAMFileWriterFactory writerFactory = new SAMFileWriterFactory()
+                    .setCreateIndex(createIndex)
+                    .setUseAsyncIo(true);
+            try (final SAMFileWriter writer = writerFactory.makeBAMWriter(cramHeader.getSamFileHeader(), true, output)) {
+                final Deque<Future<List<SAMRecord>>> pending = new ArrayDeque<>();
+                long recordCounter = 0;
+                while (containers.hasNext()) {
+                    final Container container = containers.next();
+                    final long firstRecordCounter = recordCounter;
+                    recordCounter += container.nofRecords;
+                    pending.add(executor.submit(() -> decodeContainer(cramHeader, container, firstRecordCounter)));
+                    while (pending.size() >= 2 * threads) {
+                        writeRecords(pending.removeFirst(), writer);
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    writeRecords(pending.removeFirst(), writer);
+                }
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error converting " + input.toUri() + " to BAM", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Restores the records of a container, numbering records without a name from the given count. */
+    private List<SAMRecord> decodeContainer(final CramHeader cramHeader, final Container container, final long firstRecordCounter) {
+        final CRAMIterator iterator = new CRAMIterator(cramHeader, Collections.singletonList(container).iterator(),
+                referenceSource, firstRecordCounter, validationStringency);
+        final List<SAMRecord> records = new ArrayList<>(container.nofRecords);
+        while (iterator.hasNext()) {
+            records.add(iterator.next());
+        }
+        return records;
+    }
+
+    private static void writeRecords(final Future<List<SAMRecord>> future, final SAMFileWriter writer) {
+        final List<SAMRecord> records;
+        try {
+            records = future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAMException("Interrupted waiting for CRAM records to be decoded", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new SAMException("Error decoding CRAM container", cause);
+        }
+        for (final SAMRecord record : records) {
+            writer.addAlignment(record);
+        }
+    }
+}
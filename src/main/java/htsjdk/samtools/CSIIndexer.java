@@ -0,0 +1,301 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Constructs a coordinate-sorted index (.csi) for a BAM file and writes it out.  CSI indexes use a variable number
+ * of binning levels and so, unlike BAI indexes, can index references longer than 2^29 bases.
+ *
+ * As with {@link BAMIndexer}, processAlignment is called for each alignment record in file order and finish() is
+ * called at the end.  The index is written in the format produced by samtools, with an empty auxiliary data section
+ * and the same pseudo-bin of per-reference metadata.
+ */
+public class CSIIndexer {
+    /** The default minimum bin width, 2^14 = 16kb, as in BAI. */
+    public static final int DEFAULT_MIN_SHIFT = 14;
+
+    private final int numReferences;
+    private final int minShift;
+    private final int binDepth;
+    private final int maxBins;
+    private final BinaryCodec codec;
+
+    private int currentReference = 0;
+    private ReferenceBuilder referenceBuilder = new ReferenceBuilder();
+
+    // metadata for the current reference and the count of records without coordinates
+    private final BAMIndexMetaData indexStats = new BAMIndexMetaData();
+
+    /**
+     * @param output     CSI index file, written block compressed
+     * @param fileHeader header for the corresponding bam file
+     */
+    public CSIIndexer(final Path output, final SAMFileHeader fileHeader) {
+        this(output, fileHeader, DEFAULT_MIN_SHIFT);
+    }
+
+    /**
+     * @param output     CSI index file, written block compressed
+     * @param fileHeader header for the corresponding bam file
+     * @param minShift   log2 of the width of the smallest bins and of the linear index windows
+     */
+    public CSIIndexer(final Path output, final SAMFileHeader fileHeader, final int minShift) {
+        if (fileHeader.getSortOrder() != SAMFileHeader.SortOrder.coordinate &&
+                fileHeader.getSortOrder() != SAMFileHeader.SortOrder.unsorted) {
+            throw new SAMException("Indexing requires a coordinate-sorted input BAM.");
+        }
+        if (minShift <= 0 || minShift > 30) {
+            throw new IllegalArgumentException("Invalid minShift " + minShift);
+        }
+        final SAMSequenceDictionary dictionary = fileHeader.getSequenceDictionary();
+        this.numReferences = dictionary.size();
+        this.minShift = minShift;
+        this.binDepth = computeBinDepth(dictionary, minShift);
+        this.maxBins = ((1 << 3 * binDepth) - 1) / 7;
+        try {
+            codec = new BinaryCodec(new BlockCompressedOutputStream(output,
+                    BlockCompressedOutputStream.getDefaultCompressionLevel(),
+                    BlockCompressedOutputStream.getDefaultDeflaterFactory()));
+            codec.writeBytes(BAMFileConstants.CSI_INDEX_MAGIC);
+            codec.writeInt(minShift);
+            codec.writeInt(binDepth - 1); // HTSlib doesn't count the first level (bin 0)
+            codec.writeInt(0); // l_aux
+            codec.writeInt(numReferences);
+        } catch (final Exception e) {
+            throw new SAMException("Exception opening output file " + output, e);
+        }
+    }
+
+    /**
+     * Computes the number of binning levels, including bin 0, needed to index the given references the way
+     * samtools does: enough levels for the longest reference plus 256 bases.
+     */
+    static int computeBinDepth(final SAMSequenceDictionary dictionary, final int minShift) {
+        long maxLength = 0;
+        for (final SAMSequenceRecord sequence : dictionary.getSequences()) {
+            maxLength = Math.max(maxLength, sequence.getSequenceLength());
+        }
+        maxLength += 256;
+        int levels = 0;
+        for (long span = 1L << minShift; maxLength > span; span <<= 3) {
+            ++levels;
+        }
+        return levels + 1;
+    }
+
+    /**
+     * Record any index information for a given BAM record.
+     * If this alignment starts a new reference, write out the old reference.
+     * Requires a non-null value for rec.getFileSource().
+     *
+     * @param rec The BAM record
+     */
+    public void processAlignment(final SAMRecord rec) {
+        final int alignmentStart = rec.getAlignmentStart();
+        long chunkStart = 0;
+        long chunkEnd = 0;
+        if (alignmentStart != SAMRecord.NO_ALIGNMENT_START) {
+            if (rec.getFileSource() == null) {
+                throw new SAMException("BAM cannot be indexed without setting a fileSource for record " + rec);
+            }
+            final Chunk chunk = ((BAMFileSpan) rec.getFileSource().getFilePointer()).getSingleChunk();
+            chunkStart = chunk.getChunkStart();
+            chunkEnd = chunk.getChunkEnd();
+        }
+        processAlignment(rec.getReferenceIndex(), alignmentStart, rec.getAlignmentEnd(), rec.getReadUnmappedFlag(),
+                chunkStart, chunkEnd);
+    }
+
+    /**
+     * Record index information for a BAM record given only the fields needed for indexing.
+     *
+     * @param reference      reference index of the record, or -1 if it has none
+     * @param alignmentStart 1-based alignment start, or 0 if the record has none
+     * @param alignmentEnd   1-based inclusive alignment end, or 0 if the record is unmapped
+     * @param unmapped       whether the record is unmapped
+     * @param chunkStart     virtual file offset of the start of the record
+     * @param chunkEnd       virtual file offset of the end of the record
+     */
+    void processAlignment(final int reference, final int alignmentStart, final int alignmentEnd, final boolean unmapped,
+                          final long chunkStart, final long chunkEnd) {
+        if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+            indexStats.incrementNoCoordinateRecordCount();
+            return;
+        }
+        if (reference != currentReference) {
+            if (reference < currentReference) {
+                throw new SAMException("Unexpected reference " + reference + " when constructing index for " +
+                        currentReference + "; is the input coordinate sorted?");
+            }
+            advanceToReference(reference);
+        }
+        indexStats.recordMetaData(alignmentStart, unmapped, chunkStart, chunkEnd);
+        referenceBuilder.processFeature(alignmentStart, alignmentEnd, chunkStart, chunkEnd);
+    }
+
+    /**
+     * After all the alignment records have been processed, finish is called.
+     * Writes any final information and closes the output file.
+     */
+    public void finish() {
+        advanceToReference(numReferences);
+        codec.writeLong(indexStats.getNoCoordinateRecordCount());
+        codec.close();
+    }
+
+    /** write out any references between the currentReference and the nextReference */
+    private void advanceToReference(final int nextReference) {
+        while (currentReference < nextReference) {
+            writeReference(referenceBuilder);
+            indexStats.newReference();
+            ++currentReference;
+            referenceBuilder = new ReferenceBuilder();
+        }
+    }
+
+    private void writeReference(final ReferenceBuilder builder) {
+        if (builder.bins.isEmpty()) {
+            codec.writeInt(0);
+            return;
+        }
+        final long[] linearIndex = builder.completeLinearIndex(indexStats.getFirstOffset());
+        final int[] binNumbers = builder.bins.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+
+        codec.writeInt(binNumbers.length + 1); // n_bin, including the metadata pseudo-bin
+        for (final int binNumber : binNumbers) {
+            final Bin bin = builder.bins.get(binNumber);
+            codec.writeInt(binNumber);
+            codec.writeLong(getLinearOffset(binNumber, linearIndex));
+            codec.writeInt(bin.getChunkList().size());
+            for (final Chunk chunk : bin.getChunkList()) {
+                codec.writeLong(chunk.getChunkStart());
+                codec.writeLong(chunk.getChunkEnd());
+            }
+        }
+
+        codec.writeInt(maxBins + 1);
+        codec.writeLong(0);
+        codec.writeInt(2);
+        codec.writeLong(indexStats.getFirstOffset());
+        codec.writeLong(indexStats.getLastOffset());
+        codec.writeLong(indexStats.getAlignedRecordCount());
+        codec.writeLong(indexStats.getUnalignedRecordCount());
+    }
+
+    /**
+     * The smallest file offset of any record overlapping the first linear index window covered by the bin, or 0
+     * if the bin starts beyond the last window.
+     */
+    private long getLinearOffset(final int binNumber, final long[] linearIndex) {
+        int level = 0;
+        while (level + 1 < binDepth && binNumber >= firstBinInLevel(level + 1)) {
+            ++level;
+        }
+        final long window = (long) (binNumber - firstBinInLevel(level)) << 3 * (binDepth - 1 - level);
+        return window < linearIndex.length ? linearIndex[(int) window] : 0;
+    }
+
+    private static int firstBinInLevel(final int level) {
+        return ((1 << 3 * level) - 1) / 7;
+    }
+
+    /** Bins and linear index for a single reference */
+    private final class ReferenceBuilder {
+        private final Map<Integer, Bin> bins = new HashMap<>();
+        private long[] linearIndex = new long[0];
+        private int largestWindowSeen = -1;
+
+        void processFeature(final int start, final int end, final long chunkStart, final long chunkEnd) {
+            // regionToBin has zero-based, half-open API; treat features without an end as one base long
+            final int binNumber = GenomicIndexUtil.regionToBin(start - 1, end <= 0 ? start : end, minShift, binDepth);
+            Bin bin = bins.get(binNumber);
+            if (bin == null) {
+                bin = new Bin(currentReference, binNumber);
+                bins.put(binNumber, bin);
+            }
+
+            final Chunk newChunk = new Chunk(chunkStart, chunkEnd);
+            if (!bin.containsChunks()) {
+                bin.addInitialChunk(newChunk);
+            } else {
+                final Chunk lastChunk = bin.getLastChunk();
+                // Coalesce chunks that are in the same or adjacent file blocks, as BinningIndexBuilder does
+                if (BlockCompressedFilePointerUtil.areInSameOrAdjacentBlocks(lastChunk.getChunkEnd(), chunkStart)) {
+                    lastChunk.setChunkEnd(chunkEnd);
+                } else {
+                    bin.getChunkList().add(newChunk);
+                    bin.setLastChunk(newChunk);
+                }
+            }
+
+            // linear index, following the same window rules as BinningIndexBuilder
+            final int startWindow;
+            final int endWindow;
+            if (end == GenomicIndexUtil.UNSET_GENOMIC_LOCATION) {
+                startWindow = Math.max(start - 2, 0) >> minShift;
+                endWindow = startWindow;
+            } else {
+                startWindow = (start - 1) >> minShift;
+                endWindow = Math.max(end - 1, 0) >> minShift;
+            }
+            if (endWindow >= linearIndex.length) {
+                final int oldLength = linearIndex.length;
+                linearIndex = Arrays.copyOf(linearIndex, Math.max(endWindow + 1, oldLength * 2));
+                Arrays.fill(linearIndex, oldLength, linearIndex.length, -1L);
+            }
+            largestWindowSeen = Math.max(largestWindowSeen, endWindow);
+            for (int window = startWindow; window <= endWindow; ++window) {
+                if (linearIndex[window] == -1L || chunkStart < linearIndex[window]) {
+                    linearIndex[window] = chunkStart;
+                }
+            }
+        }
+
+        /**
+         * Fills windows without any overlapping record, as samtools does: leading windows with the first offset
+         * of the reference and the others with the offset of the preceding window.
+         */
+        long[] completeLinearIndex(final long firstOffset) {
+            final long[] result = Arrays.copyOf(linearIndex, largestWindowSeen + 1);
+            long previous = firstOffset;
+            for (int i = 0; i < result.length; ++i) {
+                if (result[i] == -1L) {
+                    result[i] = previous;
+                } else {
+                    previous = result[i];
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -99,6 +99,12 @@ public class Defaults {
      */
     public static final boolean SRA_LIBRARIES_DOWNLOAD;
 
+    /**
+     * The number of threads shared by all {@link htsjdk.samtools.seekablestream.CachingSeekableHTTPStream}s that
+     * are not given an executor of their own for prefetching.  Default = 8.
+     */
+    public static final int HTTP_PREFETCH_THREADS;
+
 
     /**
      * The name of the system property that disables snappy.  Default = "snappy.disable".
@@ -133,6 +139,7 @@ public class Defaults {
         CUSTOM_READER_FACTORY = getStringProperty("custom_reader", "");
         SAM_FLAG_FIELD_FORMAT = SamFlagField.valueOf(getStringProperty("sam_flag_field_format", SamFlagField.DECIMAL.name()));
         SRA_LIBRARIES_DOWNLOAD = getBooleanProperty("sra_libraries_download", false);
+        HTTP_PREFETCH_THREADS = getIntProperty("http_prefetch_threads", 8);
         DISABLE_SNAPPY_COMPRESSOR = getBooleanProperty(DISABLE_SNAPPY_PROPERTY_NAME, false);
     }
 
@@ -157,6 +164,7 @@ public class Defaults {
         result.put("CUSTOM_READER_FACTORY", CUSTOM_READER_FACTORY);
         result.put("SAM_FLAG_FIELD_FORMAT", SAM_FLAG_FIELD_FORMAT);
         result.put("DISABLE_SNAPPY_COMPRESSOR", DISABLE_SNAPPY_COMPRESSOR);
+        result.put("HTTP_PREFETCH_THREADS", HTTP_PREFETCH_THREADS);
         return Collections.unmodifiableSortedMap(result);
     }
 
@@ -0,0 +1,238 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Turns a set of query intervals into the list of file chunks to read, optimized for the number and size of reads
+ * rather than for reading as few bytes as possible.  Works with any {@link BAMIndex}, so applies to BAI, CSI and
+ * (through their BAI representation) CRAI indexes.
+ *
+ * <ul>
+ *     <li>For indexes whose linear index is held in memory, the chunks of each interval are trimmed to start no
+ *     earlier than the smallest offset of any record overlapping the start of the interval.  Chunks of coarse bins
+ *     often start long before the interval, and only their first records are skipped by the linear index
+ *     otherwise.</li>
+ *     <li>The chunks of all the intervals are sorted into file order and any that are separated by fewer than
+ *     maxGapBytes compressed bytes are merged, trading a few unneeded bytes for fewer seeks and requests.  The
+ *     extra records are removed by the query's interval filter.</li>
+ *     <li>{@link #getByteRanges(BAMFileSpan)} gives the compressed byte ranges the plan will read, so that they can
+ *     be passed ahead of time to {@link htsjdk.samtools.seekablestream.SeekableStream#prefetch(long, long)}.</li>
+ * </ul>
+ *
+ * By default the block size is assumed to be that of BGZF: the end of a chunk is padded by the largest possible BGZF
+ * block, and gaps are measured from the start of the last block of a chunk.  For files whose blocks are much larger,
+ * such as the containers of a CRAM file, the overloads taking blockStarts use the known block boundaries instead.
+ */
+public class IndexQueryPlanner {
+    /** The default maximum gap between merged chunks, the largest possible size of a BGZF block. */
+    public static final long DEFAULT_MAX_GAP_BYTES = BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE;
+    /** The default maximum number of bytes announced to the stream for prefetching per query. */
+    public static final long DEFAULT_MAX_PREFETCH_BYTES = 16 * 1024 * 1024;
+
+    private final long maxGapBytes;
+    private final long maxPrefetchBytes;
+
+    public IndexQueryPlanner() {
+        this(DEFAULT_MAX_GAP_BYTES, DEFAULT_MAX_PREFETCH_BYTES);
+    }
+
+    /**
+     * @param maxGapBytes chunks separated by at most this many compressed bytes are merged
+     * @param maxPrefetchBytes the maximum total length of the byte ranges returned by {@link #getByteRanges(BAMFileSpan)}
+     */
+    public IndexQueryPlanner(final long maxGapBytes, final long maxPrefetchBytes) {
+        if (maxGapBytes < 0) throw new IllegalArgumentException("maxGapBytes must not be negative: " + maxGapBytes);
+        if (maxPrefetchBytes < 0) throw new IllegalArgumentException("maxPrefetchBytes must not be negative: " + maxPrefetchBytes);
+        this.maxGapBytes = maxGapBytes;
+        this.maxPrefetchBytes = maxPrefetchBytes;
+    }
+
+    public long getMaxGapBytes() {
+        return maxGapBytes;
+    }
+
+    public long getMaxPrefetchBytes() {
+        return maxPrefetchBytes;
+    }
+
+    /**
+     * Plans the chunks to read for the given intervals.
+     *
+     * @param index the index to query
+     * @param intervals the intervals to restrict reads to
+     * @return the chunks to read in file order, or null if there are none
+     */
+    public BAMFileSpan getFileSpan(final QueryInterval[] intervals, final BAMIndex index) {
+        return getFileSpan(intervals, index, null);
+    }
+
+    /**
+     * Plans the chunks to read for the given intervals, measuring the gaps between chunks from the end of the block
+     * containing the end of each chunk.
+     *
+     * @param index the index to query
+     * @param intervals the intervals to restrict reads to
+     * @param blockStarts the sorted start offsets of the blocks of the file followed by the length of the file, e.g.
+     *                    the CRAM container offsets from a CRAI, or null to assume BGZF blocks
+     * @return the chunks to read in file order, or null if there are none
+     */
+    public BAMFileSpan getFileSpan(final QueryInterval[] intervals, final BAMIndex index, final long[] blockStarts) {
+        final List<Chunk> chunks = new ArrayList<>();
+        for (final QueryInterval interval : intervals) {
+            final BAMFileSpan span = index.getSpanOverlapping(interval.referenceIndex, interval.start, interval.end);
+            if (span == null) {
+                continue;
+            }
+            final long minimumOffset = getMinimumOffset(index, interval);
+            for (final Chunk chunk : span.getChunks()) {
+                if (chunk.getChunkEnd() <= minimumOffset) {
+                    continue;
+                }
+                chunks.add(new Chunk(Math.max(chunk.getChunkStart(), minimumOffset), chunk.getChunkEnd()));
+            }
+        }
+        if (chunks.isEmpty()) {
+            return intervals.length == 0 ? null : new BAMFileSpan();
+        }
+        return coalesce(new BAMFileSpan(Chunk.optimizeChunkList(chunks, 0)), blockStarts);
+    }
+
+    /**
+     * @return the span with chunks separated by no more than maxGapBytes compressed bytes merged
+     */
+    public BAMFileSpan coalesce(final BAMFileSpan span) {
+        return coalesce(span, null);
+    }
+
+    /**
+     * @param blockStarts the sorted start offsets of the blocks of the file followed by the length of the file, or
+     *                    null to assume BGZF blocks
+     * @return the span with chunks separated by no more than maxGapBytes compressed bytes merged
+     */
+    public BAMFileSpan coalesce(final BAMFileSpan span, final long[] blockStarts) {
+        final List<Chunk> chunks = new ArrayList<>();
+        for (final Chunk chunk : span.getChunks()) {
+            chunks.add(chunk.clone());
+        }
+        final List<Chunk> result = new ArrayList<>();
+        for (final Chunk chunk : Chunk.optimizeChunkList(chunks, 0)) {
+            final Chunk last = result.isEmpty() ? null : result.get(result.size() - 1);
+            final long lastEnd = last == null ? 0 : blockStarts == null ?
+                    BlockCompressedFilePointerUtil.getBlockAddress(last.getChunkEnd()) : getEndAddress(last.getChunkEnd(), blockStarts);
+            if (last != null && BlockCompressedFilePointerUtil.getBlockAddress(chunk.getChunkStart()) - lastEnd <= maxGapBytes) {
+                last.setChunkEnd(Math.max(last.getChunkEnd(), chunk.getChunkEnd()));
+            } else {
+                result.add(chunk);
+            }
+        }
+        return new BAMFileSpan(result);
+    }
+
+    /**
+     * Computes the compressed byte ranges that reading the span will touch, in file order, up to maxPrefetchBytes
+     * in total.  The exact size of the last block of a chunk is not known from the index, so the largest possible
+     * block size is assumed.
+     *
+     * @return pairs of start offset and length
+     */
+    public long[] getByteRanges(final BAMFileSpan span) {
+        return getByteRanges(span, null);
+    }
+
+    /**
+     * Computes the byte ranges that reading the span will touch, in file order, up to maxPrefetchBytes in total.
+     *
+     * @param blockStarts the sorted start offsets of the blocks of the file followed by the length of the file, so
+     *                    that a chunk ending within a block extends to the start of the next block, or null to assume
+     *                    BGZF blocks
+     * @return pairs of start offset and length
+     */
+    public long[] getByteRanges(final BAMFileSpan span, final long[] blockStarts) {
+        final List<Chunk> chunks = span.getChunks();
+        final long[] ranges = new long[2 * chunks.size()];
+        long total = 0;
+        int n = 0;
+        for (final Chunk chunk : chunks) {
+            if (total >= maxPrefetchBytes) {
+                break;
+            }
+            final long start = BlockCompressedFilePointerUtil.getBlockAddress(chunk.getChunkStart());
+            final long end = getEndAddress(chunk.getChunkEnd(), blockStarts);
+            final long length = Math.min(end - start, maxPrefetchBytes - total);
+            if (length > 0 && n > 0 && ranges[n - 2] + ranges[n - 1] >= start) {
+                // Chunks in the same block
+                final long extended = Math.max(ranges[n - 2] + ranges[n - 1], start + length) - ranges[n - 2];
+                total += extended - ranges[n - 1];
+                ranges[n - 1] = extended;
+            } else if (length > 0) {
+                ranges[n++] = start;
+                ranges[n++] = length;
+                total += length;
+            }
+        }
+        return n == ranges.length ? ranges : Arrays.copyOf(ranges, n);
+    }
+
+    /**
+     * @return the offset just past the block containing the end of a chunk, which is the next block start if
+     * blockStarts is given, or the largest possible end of a BGZF block otherwise
+     */
+    private static long getEndAddress(final long chunkEnd, final long[] blockStarts) {
+        final long address = BlockCompressedFilePointerUtil.getBlockAddress(chunkEnd);
+        if (BlockCompressedFilePointerUtil.getBlockOffset(chunkEnd) == 0) {
+            return address;
+        }
+        if (blockStarts != null) {
+            int i = Arrays.binarySearch(blockStarts, address);
+            i = i < 0 ? -i - 1 : i + 1;
+            if (i < blockStarts.length) {
+                return blockStarts[i];
+            }
+        }
+        return address + BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE;
+    }
+
+    /**
+     * @return the smallest file offset of any record that may overlap the interval, according to the linear index,
+     * or 0 if the linear index is not available without reading the index again
+     */
+    private static long getMinimumOffset(final BAMIndex index, final QueryInterval interval) {
+        if (index instanceof CachingBAMFileIndex) {
+            final BAMIndexContent content = ((CachingBAMFileIndex) index).getQueryResults(interval.referenceIndex);
+            if (content != null && content.getLinearIndex() != null) {
+                return content.getLinearIndex().getMinimumOffset(interval.start);
+            }
+        } else if (index instanceof SharedBAMFileIndex) {
+            return ((SharedBAMFileIndex) index).getMinimumOffset(interval.referenceIndex, interval.start);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BlockCompressedBatchReader;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.samtools.util.BlockGunzipper;
+import htsjdk.samtools.util.RuntimeIOException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds a BAI or CSI index for an existing coordinate-sorted BAM file using several threads.
+ *
+ * Most of the cost of indexing with {@link BAMIndexer#createIndex(SamReader, Path)} is inflating BGZF blocks and
+ * decoding full {@link SAMRecord}s.  Here the compressed blocks are read sequentially and inflated in batches on a
+ * pool of worker threads, while the calling thread walks the inflated records in file order, reading only the fixed
+ * fields and CIGAR operations needed for indexing, and feeds them to a {@link BAMIndexer} or {@link CSIIndexer}.
+ * Since BAI and CSI bins and linear indexes depend on the records of a reference in file order, the index content is
+ * built on the calling thread; later batches are inflated meanwhile.
+ *
+ * The BAI written is identical to the one written by {@link BAMIndexer#createIndex(SamReader, Path)}.
+ */
+public final class ParallelBAMIndexer {
+    /** The number of BGZF blocks inflated by each task, about 4MB of records. */
+    private static final int BLOCKS_PER_BATCH = 64;
+    private static final int FLAG_UNMAPPED = 0x4;
+
+    private static final ThreadLocal<BlockGunzipper> gunzippers =
+            ThreadLocal.withInitial(() -> new BlockGunzipper(BlockGunzipper.getDefaultInflaterFactory()));
+
+    private ParallelBAMIndexer() {
+    }
+
+    /**
+     * @return true if any reference in the dictionary is too long to be indexed by a BAI index
+     */
+    public static boolean requiresCsi(final SAMSequenceDictionary dictionary) {
+        for (final SAMSequenceRecord sequence : dictionary.getSequences()) {
+            if (sequence.getSequenceLength() > GenomicIndexUtil.BIN_GENOMIC_SPAN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates a BAI index for a BAM file.
+     *
+     * @param bam     coordinate-sorted BAM file
+     * @param output  BAI index file to write
+     * @param threads number of threads used to inflate the BAM file
+     * @throws SAMException if a reference is too long for a BAI index, see {@link #requiresCsi(SAMSequenceDictionary)}
+     */
+    public static void createIndex(final Path bam, final Path output, final int threads) {
+        final SAMFileHeader header = SamReaderFactory.makeDefault().getFileHeader(bam);
+        if (requiresCsi(header.getSequenceDictionary())) {
+            throw new SAMException("References longer than " + GenomicIndexUtil.BIN_GENOMIC_SPAN +
+                    " bases cannot be indexed by a BAI index; use a CSI index for " + bam.toUri());
+        }
+        final BAMIndexer indexer = new BAMIndexer(output, header);
+        scan(bam, threads, indexer::processAlignment);
+        indexer.finish();
+    }
+
+    /**
+     * Generates a CSI index with the default minimum bin width for a BAM file.
+     *
+     * @param bam     coordinate-sorted BAM file
+     * @param output  CSI index file to write
+     * @param threads number of threads used to inflate the BAM file
+     */
+    public static void createCsiIndex(final Path bam, final Path output, final int threads) {
+        final SAMFileHeader header = SamReaderFactory.makeDefault().getFileHeader(bam);
+        final CSIIndexer indexer = new CSIIndexer(output, header);
+        scan(bam, threads, indexer::processAlignment);
+        indexer.finish();
+    }
+
+    /** Receives the indexing fields of each record, in file order */
+    private interface AlignmentConsumer {
+        void processAlignment(int reference, int alignmentStart, int alignmentEnd, boolean unmapped,
+                              long chunkStart, long chunkEnd);
+    }
+
+    private static void scan(final Path bam, final int threads, final AlignmentConsumer consumer) {
+        if (threads <= 0) throw new IllegalArgumentException("threads must be positive: " + threads);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        try (final InputStream in = new BufferedInputStream(Files.newInputStream(bam), BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE)) {
+            new RecordScanner(new BatchReader(in, executor, threads * 2)).scan(consumer);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error indexing " + bam.toUri(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** A run of consecutive BGZF blocks, inflated into one array */
+    private static final class Batch {
+        final BlockCompressedBatchReader.Batch blocks;
+        byte[] uncompressed;
+
+        Batch(final BlockCompressedBatchReader.Batch blocks) {
+            this.blocks = blocks;
+        }
+
+        Batch inflate() {
+            uncompressed = blocks.inflate(gunzippers.get());
+            return this;
+        }
+    }
+
+    /** Reads batches of compressed blocks and inflates them in parallel, returning them in file order */
+    private static final class BatchReader {
+        private final BlockCompressedBatchReader in;
+        private final ExecutorService executor;
+        private final int maxPending;
+        private final Deque<Future<Batch>> pending = new ArrayDeque<>();
+        private boolean eof = false;
+
+        BatchReader(final InputStream in, final ExecutorService executor, final int maxPending) {
+            this.in = new BlockCompressedBatchReader(in);
+            this.executor = executor;
+            this.maxPending = maxPending;
+        }
+
+        /** @return the next inflated batch, or null at the end of the file */
+        Batch next() throws IOException {
+            while (!eof && pending.size() < maxPending) {
+                final BlockCompressedBatchReader.Batch blocks = in.readBatch(BLOCKS_PER_BATCH);
+                if (blocks == null) {
+                    eof = true;
+                    break;
+                }
+                final Batch batch = new Batch(blocks);
+                pending.add(executor.submit(batch::inflate));
+            }
+            final Future<Batch> future = pending.pollFirst();
+            if (future == null) {
+                return null;
+            }
+            try {
+                return future.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SAMException("Interrupted while inflating BAM blocks", e);
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new SAMException("Error inflating BAM blocks", cause);
+            }
+        }
+    }
+
+    /**
+     * Walks the records in the inflated batches.  Records may span batches, so the unread bytes of one batch are
+     * carried over together with the blocks that contain them.
+     */
+    private static final class RecordScanner {
+        private final BatchReader batches;
+
+        private byte[] data = new byte[0];
+        private int dataLength = 0;
+        private int position = 0;
+        /** uncompressed offset in the file of data[0] */
+        private long dataStart = 0;
+
+        // blocks that overlap data, in file order
+        private long[] blockAddresses = new long[0];
+        private int[] blockCompressedSizes = new int[0];
+        private long[] blockStarts = new long[0];
+        private int[] blockLengths = new int[0];
+        private int blockCount = 0;
+        private int currentBlock = 0;
+
+        RecordScanner(final BatchReader batches) {
+            this.batches = batches;
+        }
+
+        void scan(final AlignmentConsumer consumer) throws IOException {
+            skipHeader();
+            while (ensure(4)) {
+                final int recordLength = 4 + readInt(data, position);
+                if (!ensure(recordLength)) {
+                    throw new SAMFormatException("Truncated BAM record at the end of the file");
+                }
+                final int reference = readInt(data, position + 4);
+                final int alignmentStart = readInt(data, position + 8) + 1;
+                final int readNameLength = data[position + 12] & 0xff;
+                final int cigarLength = readUnsignedShort(data, position + 16);
+                final boolean unmapped = (readUnsignedShort(data, position + 18) & FLAG_UNMAPPED) != 0;
+
+                int alignmentEnd = 0;
+                if (!unmapped) {
+                    int referenceLength = 0;
+                    final int cigarStart = position + 36 + readNameLength;
+                    for (int i = 0; i < cigarLength; ++i) {
+                        final int op = readInt(data, cigarStart + 4 * i);
+                        switch (op & 0xf) {
+                            case 0: // M
+                            case 2: // D
+                            case 3: // N
+                            case 7: // =
+                            case 8: // X
+                                referenceLength += op >>> 4;
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                    alignmentEnd = alignmentStart + referenceLength - 1;
+                }
+
+                final long recordStart = dataStart + position;
+                final long chunkStart = toVirtualOffset(recordStart);
+                final long chunkEnd = toVirtualOffset(recordStart + recordLength);
+                consumer.processAlignment(reference, alignmentStart, alignmentEnd, unmapped, chunkStart, chunkEnd);
+                position += recordLength;
+            }
+        }
+
+        private void skipHeader() throws IOException {
+            if (!ensure(8) || !Arrays.equals(Arrays.copyOfRange(data, position, position + 4), BAMFileConstants.BAM_MAGIC)) {
+                throw new SAMFormatException("Invalid BAM file header");
+            }
+            skip(4);
+            skip(4 + readInt(data, position)); // l_text, text
+            if (!ensure(4)) throw new SAMFormatException("Truncated BAM header");
+            final int referenceCount = readInt(data, position);
+            skip(4);
+            for (int i = 0; i < referenceCount; ++i) {
+                if (!ensure(4)) throw new SAMFormatException("Truncated BAM header");
+                skip(4 + readInt(data, position) + 4); // l_name, name, l_ref
+            }
+        }
+
+        private void skip(final int length) throws IOException {
+            if (!ensure(length)) throw new SAMFormatException("Truncated BAM header");
+            position += length;
+        }
+
+        /**
+         * Converts an offset in the uncompressed file into a virtual file offset.  An offset at the end of a block
+         * is given as the start of the next block, as BlockCompressedInputStream does.
+         */
+        private long toVirtualOffset(final long offset) {
+            while (currentBlock < blockCount - 1 &&
+                    (blockLengths[currentBlock] == 0 || blockStarts[currentBlock] + blockLengths[currentBlock] < offset)) {
+                ++currentBlock;
+            }
+            final long blockEnd = blockStarts[currentBlock] + blockLengths[currentBlock];
+            if (offset == blockEnd) {
+                return (blockAddresses[currentBlock] + blockCompressedSizes[currentBlock]) << 16;
+            }
+            return blockAddresses[currentBlock] << 16 | (offset - blockStarts[currentBlock]);
+        }
+
+        /** Makes sure that at least length unread bytes are in data, returning false at the end of the file */
+        private boolean ensure(final int length) throws IOException {
+            while (dataLength - position < length) {
+                final Batch batch = batches.next();
+                if (batch == null) {
+                    return false;
+                }
+                append(batch);
+            }
+            return true;
+        }
+
+        private void append(final Batch batch) {
+            final int carried = dataLength - position;
+            final byte[] newData = new byte[carried + batch.uncompressed.length];
+            System.arraycopy(data, position, newData, 0, carried);
+            System.arraycopy(batch.uncompressed, 0, newData, carried, batch.uncompressed.length);
+            final long newDataStart = dataStart + position;
+
+            // keep the blocks that may still be needed for the carried over bytes
+            int firstKept = currentBlock;
+            while (firstKept < blockCount && blockStarts[firstKept] + blockLengths[firstKept] < newDataStart) {
+                ++firstKept;
+            }
+            final int kept = blockCount - firstKept;
+            final BlockCompressedBatchReader.Batch blocks = batch.blocks;
+            final int newBlockCount = kept + blocks.getBlockCount();
+            final long batchStart = newDataStart + carried;
+            blockAddresses = Arrays.copyOfRange(blockAddresses, firstKept, firstKept + newBlockCount);
+            blockCompressedSizes = Arrays.copyOfRange(blockCompressedSizes, firstKept, firstKept + newBlockCount);
+            blockLengths = Arrays.copyOfRange(blockLengths, firstKept, firstKept + newBlockCount);
+            blockStarts = Arrays.copyOfRange(blockStarts, firstKept, firstKept + newBlockCount);
+            for (int i = 0; i < blocks.getBlockCount(); ++i) {
+                blockAddresses[kept + i] = blocks.getAddress(i);
+                blockCompressedSizes[kept + i] = blocks.getCompressedSize(i);
+                blockLengths[kept + i] = blocks.getUncompressedOffset(i + 1) - blocks.getUncompressedOffset(i);
+                blockStarts[kept + i] = batchStart + blocks.getUncompressedOffset(i);
+            }
+            blockCount = newBlockCount;
+            currentBlock = 0;
+
+            data = newData;
+            dataLength = newData.length;
+            dataStart = newDataStart;
+            position = 0;
+        }
+    }
+
+    private static int readInt(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8 |
+                (buffer[offset + 2] & 0xff) << 16 | (buffer[offset + 3] & 0xff) << 24;
+    }
+
+    private static int readUnsignedShort(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8;
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.seekablestream.SeekablePathStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BlockGunzipper;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.zip.InflaterFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scans a whole BAM file using several threads.
+ *
+ * The file is divided into splits, contiguous ranges of records that can be read independently of each other.  With
+ * an {@link SBIIndex} the splits come from {@link SBIIndex#split(long)}; otherwise the record boundaries are found
+ * by examining the compressed file near each split point.  The splits are handed to a {@link ForkJoinPool} through a
+ * {@link Spliterator}, and each split is decoded on a worker thread with a reader of its own.
+ *
+ * This suits order-insensitive reductions over all the records in a file, such as counting flags:
+ * <pre>
+ *     try (final ParallelBAMScanner scanner = new ParallelBAMScanner(bam, 8)) {
+ *         final Map&lt;Boolean, Long&gt; duplicates = scanner.collect(
+ *                 Collectors.partitioningBy(SAMRecord::getDuplicateReadFlag, Collectors.counting()));
+ *     }
+ * </pre>
+ *
+ * The {@link SAMFileSource} of returned records refers to a reader that has already been closed.
+ */
+public final class ParallelBAMScanner implements Closeable {
+    /** Bounds on the compressed size of a split when no split size is given. */
+    private static final long MIN_SPLIT_SIZE = 1024 * 1024;
+    private static final long MAX_SPLIT_SIZE = 64 * 1024 * 1024;
+    /** The number of splits per thread to aim for, so that threads finishing early can pick up more work. */
+    private static final int SPLITS_PER_THREAD = 4;
+
+    private final Supplier<SeekableStream> bamStreams;
+    private final ValidationStringency validationStringency;
+    private final SAMRecordFactory samRecordFactory;
+    private final InflaterFactory inflaterFactory;
+    private final SAMFileHeader header;
+    private final List<Chunk> splits;
+    private final ForkJoinPool pool;
+    private final Set<BAMFileReader> openReaders = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a scanner for a BAM file on a file system, using the SBI index next to it if there is one.
+     *
+     * @param bam the BAM file
+     * @param threads the number of worker threads
+     */
+    public ParallelBAMScanner(final Path bam, final int threads) {
+        this(() -> {
+            try {
+                return new SeekablePathStream(bam);
+            } catch (final IOException e) {
+                throw new RuntimeIOException("Error opening " + bam.toUri(), e);
+            }
+        }, loadSbiIndex(bam), threads, 0, ValidationStringency.DEFAULT_STRINGENCY, DefaultSAMRecordFactory.getInstance(),
+                BlockGunzipper.getDefaultInflaterFactory());
+    }
+
+    /**
+     * Creates a scanner.
+     *
+     * @param bamStreams opens a new, independent stream over the BAM file each time it is called; each stream is
+     *                   used by a single thread and closed after use
+     * @param sbiIndex the SBI index of the BAM file, or null to find split boundaries in the file itself
+     * @param threads the number of worker threads
+     * @param splitSize the approximate compressed size of each split, or 0 to choose one from the file size and the
+     *                  number of threads
+     * @param validationStringency how to handle invalid records
+     * @param samRecordFactory creates the returned records
+     * @param inflaterFactory creates the inflaters used by each worker
+     */
+    public ParallelBAMScanner(final Supplier<SeekableStream> bamStreams,
+                              final SBIIndex sbiIndex,
+                              final int threads,
+                              final long splitSize,
+                              final ValidationStringency validationStringency,
+                              final SAMRecordFactory samRecordFactory,
+                              final InflaterFactory inflaterFactory) {
+        if (bamStreams == null) throw new IllegalArgumentException("null bamStreams");
+        if (threads <= 0) throw new IllegalArgumentException("threads must be positive: " + threads);
+        if (splitSize < 0) throw new IllegalArgumentException("splitSize must not be negative: " + splitSize);
+        this.bamStreams = bamStreams;
+        this.validationStringency = validationStringency;
+        this.samRecordFactory = samRecordFactory;
+        this.inflaterFactory = inflaterFactory;
+
+        final SeekableStream stream = bamStreams.get();
+        try {
+            final BAMFileReader reader = new BAMFileReader(stream, (SeekableStream) null, false, false,
+                    validationStringency, samRecordFactory, inflaterFactory);
+            this.header = reader.getFileHeader();
+            final long fileLength = stream.length();
+            final long size = splitSize > 0 ? splitSize
+                    : Math.max(MIN_SPLIT_SIZE, Math.min(MAX_SPLIT_SIZE, fileLength / ((long) threads * SPLITS_PER_THREAD)));
+            if (sbiIndex != null) {
+                this.splits = Collections.unmodifiableList(sbiIndex.split(size));
+            } else {
+                final long firstRecord = ((BAMFileSpan) reader.getFilePointerSpanningReads()).getFirstOffset();
+                this.splits = Collections.unmodifiableList(guessSplits(
+                        new BAMSplitGuesser(stream, header.getSequenceDictionary().size(), inflaterFactory),
+                        firstRecord, fileLength, size));
+            }
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error splitting " + stream.getSource(), e);
+        } finally {
+            try {
+                stream.close();
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }
+
+        this.pool = new ForkJoinPool(threads, p -> {
+            final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+    }
+
+    private static SBIIndex loadSbiIndex(final Path bam) {
+        final Path sbi = bam.resolveSibling(bam.getFileName() + SBIIndex.FILE_EXTENSION);
+        if (!Files.exists(sbi)) {
+            return null;
+        }
+        try {
+            return SBIIndex.load(sbi);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading " + sbi.toUri(), e);
+        }
+    }
+
+    /**
+     * Divides the records starting at the given virtual file pointer into splits starting at the first record after
+     * each multiple of the split size.  The last split extends to the end of the file.
+     */
+    static List<Chunk> guessSplits(final BAMSplitGuesser guesser, final long firstRecord, final long fileLength, final long splitSize) throws IOException {
+        final List<Long> starts = new ArrayList<>();
+        starts.add(firstRecord);
+        for (long position = splitSize; position < fileLength; position += splitSize) {
+            final long last = starts.get(starts.size() - 1);
+            if (position <= (last >>> 16)) {
+                continue;
+            }
+            final long start = guesser.guessNextRecordStart(position);
+            if (start < 0) {
+                break;
+            }
+            if (start > last) {
+                starts.add(start);
+            }
+        }
+        final List<Chunk> chunks = new ArrayList<>(starts.size());
+        for (int i = 0; i < starts.size(); ++i) {
+            chunks.add(new Chunk(starts.get(i), i + 1 < starts.size() ? starts.get(i + 1) : Long.MAX_VALUE));
+        }
+        return chunks;
+    }
+
+    /** @return the header of the BAM file */
+    public SAMFileHeader getFileHeader() {
+        return header;
+    }
+
+    /** @return the splits of the file, contiguous chunks that together contain every record once */
+    public List<Chunk> getSplits() {
+        return splits;
+    }
+
+    /**
+     * Returns a parallel stream of all the records in the file.  Terminal operations run in the common fork-join
+     * pool, or in the pool of the calling thread; use {@link #collect(Collector)} or {@link #forEach(Consumer)} to
+     * run them in this scanner's threads.
+     */
+    public Stream<SAMRecord> stream() {
+        return StreamSupport.stream(new SplitSpliterator(0, splits.size()), true);
+    }
+
+    /**
+     * Performs a reduction over all the records in the file using this scanner's threads.  The collector must not
+     * depend on the order of the records unless it is {@link Collector.Characteristics#UNORDERED unordered}.
+     */
+    public <R> R collect(final Collector<? super SAMRecord, ?, R> collector) {
+        return execute(() -> stream().collect(collector));
+    }
+
+    /**
+     * Calls the action for each record in the file using this scanner's threads.  The action is called concurrently
+     * and in no particular order.
+     */
+    public void forEach(final Consumer<? super SAMRecord> action) {
+        execute(() -> {
+            stream().forEach(action);
+            return null;
+        });
+    }
+
+    private <R> R execute(final Callable<R> task) {
+        try {
+            return pool.submit(task).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAMException("Interrupted scanning BAM file", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new SAMException("Error scanning BAM file", cause);
+        }
+    }
+
+    private void closeReaders() {
+        for (final BAMFileReader reader : openReaders) {
+            reader.close();
+        }
+        openReaders.clear();
+    }
+
+    /** Shuts down the worker threads and closes any readers left open by an incomplete stream. */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        closeReaders();
+    }
+
+    /** Iterates over a range of splits, each with its own reader, and splits off halves of the splits not yet started. */
+    private final class SplitSpliterator implements Spliterator<SAMRecord> {
+        private int next;
+        private final int end;
+        private BAMFileReader reader;
+        private CloseableIterator<SAMRecord> iterator;
+
+        private SplitSpliterator(final int next, final int end) {
+            this.next = next;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super SAMRecord> action) {
+            while (true) {
+                if (iterator != null) {
+                    if (iterator.hasNext()) {
+                        action.accept(iterator.next());
+                        return true;
+                    }
+                    closeCurrent();
+                }
+                if (next >= end) {
+                    return false;
+                }
+                open(splits.get(next++));
+            }
+        }
+
+        private void open(final Chunk split) {
+            try {
+                reader = new BAMFileReader(bamStreams.get(), (SeekableStream) null, false, false,
+                        validationStringency, samRecordFactory, inflaterFactory);
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+            openReaders.add(reader);
+            iterator = reader.getIterator(new BAMFileSpan(split));
+        }
+
+        private void closeCurrent() {
+            iterator.close();
+            reader.close();
+            openReaders.remove(reader);
+            iterator = null;
+            reader = null;
+        }
+
+        @Override
+        public Spliterator<SAMRecord> trySplit() {
+            // Only splits not yet started can be handed off without changing the order of the records
+            if (iterator != null || end - next < 2) {
+                return null;
+            }
+            final int middle = (next + end) >>> 1;
+            final SplitSpliterator prefix = new SplitSpliterator(next, middle);
+            next = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+}
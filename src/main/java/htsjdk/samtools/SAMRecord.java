@@ -33,6 +33,7 @@ import htsjdk.samtools.util.BinaryCodec;
 
 import java.io.Serializable;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 
@@ -1177,6 +1178,44 @@ public class SAMRecord implements Cloneable, Locatable, Serializable {
         return (int)longVal;
     }
 
+    /**
+     * Get the value of an integer tag without boxing it.
+     * @param tag Two-character tag name.
+     * @param defaultValue The value to return if the tag is not present.
+     * @return The value of the tag as a signed int, or defaultValue if the tag is not present.
+     * @throws SAMException If the value is not an integer type, or will not fit in a signed int.
+     */
+    public int getIntAttribute(final String tag, final int defaultValue) {
+        return getIntAttribute(SAMTag.makeBinaryTag(tag), defaultValue);
+    }
+
+    /**
+     * @see SAMRecord#getIntAttribute(java.lang.String, int)
+     * @param tag Binary representation of a 2-char String tag as created by SAMTagUtil.
+     */
+    public int getIntAttribute(final short tag, final int defaultValue) {
+        final Object val = getAttribute(tag);
+        if (val == null) return defaultValue;
+        if (val instanceof Integer) {
+            return (Integer) val;
+        }
+        if (!(val instanceof Long || val instanceof Short || val instanceof Byte)) {
+            throw new SAMException("Value for tag " + SAMTag.makeStringTag(tag) + " is not an integer: " + val.getClass());
+        }
+        return toIntAttribute(tag, ((Number) val).longValue());
+    }
+
+    /**
+     * @return value as an int
+     * @throws SAMException if value will not fit in a signed int
+     */
+    protected static int toIntAttribute(final short tag, final long value) {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new SAMException("Value for tag " + SAMTag.makeStringTag(tag) + " is not in Integer range: " + value);
+        }
+        return (int) value;
+    }
+
     /**
      * A convenience method that will return a valid unsigned integer as a Long,
      * or fail with an exception if the tag value is invalid.
@@ -1298,6 +1337,30 @@ public class SAMRecord implements Cloneable, Locatable, Serializable {
         throw new SAMException("Value for tag " + tag + " is not a byte[]: " + val.getClass());
     }
 
+    /**
+     * Get a read-only view of a byte array tag.  Records that keep their tags in binary form, such as BAMRecord,
+     * may return a view of that form rather than decoding and copying the array.
+     * Will work for signed byte array, unsigned byte array, or old-style hex array.
+     * @param tag Two-character tag name.
+     * @return The value of the tag, or null if the tag is not present.
+     */
+    public ByteBuffer getByteArrayAttributeView(final String tag) {
+        return getByteArrayAttributeView(SAMTag.makeBinaryTag(tag));
+    }
+
+    /**
+     * @see SAMRecord#getByteArrayAttributeView(java.lang.String)
+     * @param tag Binary representation of a 2-char String tag as created by SAMTagUtil.
+     */
+    public ByteBuffer getByteArrayAttributeView(final short tag) {
+        final Object val = getAttribute(tag);
+        if (val == null) return null;
+        if (val instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) val).asReadOnlyBuffer();
+        }
+        throw new SAMException("Value for tag " + SAMTag.makeStringTag(tag) + " is not a byte[]: " + val.getClass());
+    }
+
     public byte[] getUnsignedByteArrayAttribute(final String tag) {
         final byte[] ret = getByteArrayAttribute(tag);
         if (ret != null) requireUnsigned(tag);
@@ -1364,7 +1427,8 @@ public class SAMRecord implements Cloneable, Locatable, Serializable {
      * @throws SAMException if the tag is not present.
      */
     public boolean isUnsignedArrayAttribute(final String tag) {
-        final SAMBinaryTagAndValue tmp = this.mAttributes.find(SAMTag.makeBinaryTag(tag));
+        final SAMBinaryTagAndValue attributes = getBinaryAttributes();
+        final SAMBinaryTagAndValue tmp = attributes == null ? null : attributes.find(SAMTag.makeBinaryTag(tag));
         if (tmp != null) return tmp.isUnsignedArray();
         throw new SAMException("Tag " + tag + " is not present in this SAMRecord");
     }
@@ -1714,12 +1778,10 @@ public class SAMRecord implements Cloneable, Locatable, Serializable {
         addField(buffer, getInferredInsertSize(), 0, "*");
         addField(buffer, getReadString(), null, "*");
         addField(buffer, getBaseQualityString(), null, "*");
-        if (mAttributes != null) {
-            SAMBinaryTagAndValue entry = getBinaryAttributes();
-            while (entry != null) {
-                addField(buffer, formatTagValue(entry.tag, entry.value));
-                entry = entry.getNext();
-            }
+        SAMBinaryTagAndValue entry = getBinaryAttributes();
+        while (entry != null) {
+            addField(buffer, formatTagValue(entry.tag, entry.value));
+            entry = entry.getNext();
         }
         return buffer.toString();
     }
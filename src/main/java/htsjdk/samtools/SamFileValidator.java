@@ -53,8 +53,10 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -62,6 +64,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -105,6 +113,9 @@ public class SamFileValidator {
     private final int maxTempFiles;
     private int qualityNotStoredErrorCount = 0;
     public static final int MAX_QUALITY_NOT_STORED_ERRORS = 100;
+    /** The number of records validated together on a worker thread when validating with several threads. */
+    private static final int RECORD_BATCH_SIZE = 10000;
+    private int threads = 1;
 
     public SamFileValidator(final PrintWriter out, final int maxTempFiles) {
         this.out = out;
@@ -299,53 +310,25 @@ public class SamFileValidator {
         final ProgressLogger progress = new ProgressLogger(log, 10000000, "Validated Read");
         final QualityEncodingDetector qualityDetector = new QualityEncodingDetector();
         try {
-            while (iter.hasNext()) {
-                final SAMRecord record = iter.next();
-
-                qualityDetector.add(record);
-
-                final long recordNumber = progress.getCount() + 1;
-                final Collection<SAMValidationError> errors = record.isValid();
-                if (errors != null) {
-                    for (final SAMValidationError error : errors) {
-                        error.setRecordNumber(recordNumber);
-                        addError(error);
-                    }
-                }
+            if (threads > 1) {
+                validateSamRecordsInParallel(iter, header, progress, qualityDetector);
+            } else {
+                final Consumer<SAMValidationError> errorSink = this::addError;
+                while (iter.hasNext()) {
+                    final SAMRecord record = iter.next();
 
-                validateMateFields(record, recordNumber);
-                final boolean hasValidSortOrder = validateSortOrder(record, recordNumber);
-                validateReadGroup(record, header);
-                final boolean cigarIsValid = validateCigar(record, recordNumber);
-                if (cigarIsValid) {
-                    try {
-                        validateNmTag(record, recordNumber);
-                    } catch (SAMException e) {
-                        if (hasValidSortOrder) {
-                            // If a CRAM file has an invalid sort order, the ReferenceFileWalker will throw a
-                            // SAMException due to an out of order request when retrieving reference bases during NM
-                            // tag validation; rethrow the exception only if the sort order is valid, otherwise
-                            // swallow the exception and carry on validating
-                            throw e;
-                        }
-                    }
-                }
-                validateSecondaryBaseCalls(record, recordNumber);
-                validateTags(record, recordNumber);
-                if (sequenceDictionaryEmptyAndNoWarningEmitted && !record.getReadUnmappedFlag()) {
-                    addError(new SAMValidationError(Type.MISSING_SEQUENCE_DICTIONARY, "Sequence dictionary is empty", null));
-                    sequenceDictionaryEmptyAndNoWarningEmitted = false;
+                    qualityDetector.add(record);
 
-                }
+                    final long recordNumber = progress.getCount() + 1;
+                    validateRecordFields(record, recordNumber, errorSink);
+                    validateMatePairing(record, recordNumber, errorSink);
+                    final boolean hasValidSortOrder = validateSortOrder(record, recordNumber, errorSink);
+                    validateRecordContent(record, recordNumber, header, hasValidSortOrder,
+                            refFileWalker == null ? null : () -> refFileWalker.get(record.getReferenceIndex()), errorSink);
+                    validateRecordSequentially(record, recordNumber, errorSink);
 
-                if ((qualityNotStoredErrorCount++ < MAX_QUALITY_NOT_STORED_ERRORS) && record.getBaseQualityString().equals("*")) {
-                    addError(new SAMValidationError(Type.QUALITY_NOT_STORED,
-                            "QUAL field is set to * (unspecified quality scores), this is allowed by the SAM" +
-                                    " specification but many tools expect reads to include qualities ",
-                            record.getReadName(), recordNumber));
+                    progress.record(record);
                 }
-
-                progress.record(record);
             }
 
             try {
@@ -371,13 +354,108 @@ public class SamFileValidator {
         }
     }
 
-    private void validateReadGroup(final SAMRecord record, final SAMFileHeader header) {
+    /**
+     * Validates the records in batches on a pool of threads.  The checks that depend on the order of the records are
+     * made on this thread as each batch is read, the other checks on a worker thread, and the errors are reported in
+     * the order in which a single thread would have found them.
+     */
+    private void validateSamRecordsInParallel(final SAMRecordIterator iter, final SAMFileHeader header,
+                                              final ProgressLogger progress, final QualityEncodingDetector qualityDetector) {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        final Deque<Future<RecordBatch>> pending = new ArrayDeque<>();
+        try {
+            while (iter.hasNext() || !pending.isEmpty()) {
+                while (iter.hasNext() && pending.size() < 2 * threads) {
+                    final RecordBatch batch = new RecordBatch(iter, progress);
+                    pending.add(executor.submit(() -> batch.validate(header)));
+                }
+                final RecordBatch batch;
+                try {
+                    batch = pending.removeFirst().get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SAMException("Interrupted while validating records", e);
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new SAMException("Error validating records", cause);
+                }
+                batch.report(qualityDetector);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Validates the fields of a record that can be checked on their own. */
+    private void validateRecordFields(final SAMRecord record, final long recordNumber, final Consumer<SAMValidationError> errorSink) {
+        final Collection<SAMValidationError> errors = record.isValid();
+        if (errors != null) {
+            for (final SAMValidationError error : errors) {
+                error.setRecordNumber(recordNumber);
+                errorSink.accept(error);
+            }
+        }
+        if (record.getReadPairedFlag() && !record.isSecondaryOrSupplementary()) {
+            validateMateCigar(record, recordNumber, errorSink);
+        }
+    }
+
+    /**
+     * Validates the read group, CIGAR, NM tag and other tags of a record.
+     * @param reference supplies the reference sequence of the record, or null to skip NM tag validation against the
+     *                  reference
+     */
+    private void validateRecordContent(final SAMRecord record, final long recordNumber, final SAMFileHeader header,
+                                       final boolean hasValidSortOrder, final Supplier<ReferenceSequence> reference,
+                                       final Consumer<SAMValidationError> errorSink) {
+        validateReadGroup(record, header, errorSink);
+        final boolean cigarIsValid = validateCigar(record, recordNumber, errorSink);
+        if (cigarIsValid) {
+            try {
+                validateNmTag(record, recordNumber, reference, errorSink);
+            } catch (SAMException e) {
+                if (hasValidSortOrder) {
+                    // If a CRAM file has an invalid sort order, the ReferenceFileWalker will throw a
+                    // SAMException due to an out of order request when retrieving reference bases during NM
+                    // tag validation; rethrow the exception only if the sort order is valid, otherwise
+                    // swallow the exception and carry on validating
+                    throw e;
+                }
+            }
+        }
+        validateSecondaryBaseCalls(record, recordNumber, errorSink);
+        validateTags(record, recordNumber, errorSink);
+    }
+
+    /** Makes the last checks of a record, which depend on the records before it. */
+    private void validateRecordSequentially(final SAMRecord record, final long recordNumber, final Consumer<SAMValidationError> errorSink) {
+        if (sequenceDictionaryEmptyAndNoWarningEmitted && !record.getReadUnmappedFlag()) {
+            errorSink.accept(new SAMValidationError(Type.MISSING_SEQUENCE_DICTIONARY, "Sequence dictionary is empty", null));
+            sequenceDictionaryEmptyAndNoWarningEmitted = false;
+
+        }
+
+        if ((qualityNotStoredErrorCount++ < MAX_QUALITY_NOT_STORED_ERRORS) && record.getBaseQualityString().equals("*")) {
+            errorSink.accept(new SAMValidationError(Type.QUALITY_NOT_STORED,
+                    "QUAL field is set to * (unspecified quality scores), this is allowed by the SAM" +
+                            " specification but many tools expect reads to include qualities ",
+                    record.getReadName(), recordNumber));
+        }
+    }
+
+    private void validateReadGroup(final SAMRecord record, final SAMFileHeader header, final Consumer<SAMValidationError> errorSink) {
         final SAMReadGroupRecord rg = record.getReadGroup();
         if (rg == null) {
-            addError(new SAMValidationError(Type.RECORD_MISSING_READ_GROUP,
+            errorSink.accept(new SAMValidationError(Type.RECORD_MISSING_READ_GROUP,
                     "A record is missing a read group", record.getReadName()));
         } else if (header.getReadGroup(rg.getId()) == null) {
-            addError(new SAMValidationError(Type.READ_GROUP_NOT_FOUND,
+            errorSink.accept(new SAMValidationError(Type.READ_GROUP_NOT_FOUND,
                     "A record has a read group not found in the header: ",
                     record.getReadName() + ", " + rg.getReadGroupId()));
         }
@@ -388,37 +466,37 @@ public class SamFileValidator {
      * or if there's a CG tag is obvered (CG tags are converted to cigars in
      * the bam code, and should not appear in other formats)
      */
-    private void validateTags(final SAMRecord record, final long recordNumber) {
+    private void validateTags(final SAMRecord record, final long recordNumber, final Consumer<SAMValidationError> errorSink) {
         final List<SAMRecord.SAMTagAndValue> attributes = record.getAttributes();
 
         final Set<String> tags = new HashSet<>(attributes.size());
 
         for (final SAMRecord.SAMTagAndValue tagAndValue : attributes) {
             if (tagAndValue.value instanceof Long) {
-                addError(new SAMValidationError(Type.TAG_VALUE_TOO_LARGE,
+                errorSink.accept(new SAMValidationError(Type.TAG_VALUE_TOO_LARGE,
                         "Numeric value too large for tag " + tagAndValue.tag,
                         record.getReadName(), recordNumber));
             }
 
             if (!tags.add(tagAndValue.tag)) {
-                addError(new SAMValidationError(Type.DUPLICATE_SAM_TAG,
+                errorSink.accept(new SAMValidationError(Type.DUPLICATE_SAM_TAG,
                         "Duplicate SAM tag (" + tagAndValue.tag + ") found.", record.getReadName(), recordNumber));
             }
         }
 
         if (tags.contains(SAMTag.CG.name())){
-            addError(new SAMValidationError(Type.CG_TAG_FOUND_IN_ATTRIBUTES,
+            errorSink.accept(new SAMValidationError(Type.CG_TAG_FOUND_IN_ATTRIBUTES,
                     "The CG Tag should only be used in BAM format to hold a large cigar. " +
                             "It was found containing the value: " +
                             record.getAttribute(SAMTag.CG.getBinaryTag()), record.getReadName(), recordNumber));
         }
     }
 
-    private void validateSecondaryBaseCalls(final SAMRecord record, final long recordNumber) {
+    private void validateSecondaryBaseCalls(final SAMRecord record, final long recordNumber, final Consumer<SAMValidationError> errorSink) {
         final String e2 = (String) record.getAttribute(SAMTag.E2.name());
         if (e2 != null) {
             if (e2.length() != record.getReadLength()) {
-                addError(new SAMValidationError(Type.MISMATCH_READ_LENGTH_AND_E2_LENGTH,
+                errorSink.accept(new SAMValidationError(Type.MISMATCH_READ_LENGTH_AND_E2_LENGTH,
                         String.format("E2 tag length (%d) != read length (%d)", e2.length(), record.getReadLength()),
                         record.getReadName(), recordNumber));
             }
@@ -429,7 +507,7 @@ public class SamFileValidator {
                     continue;
                 }
                 if (SequenceUtil.basesEqual(bases[i], secondaryBases[i])) {
-                    addError(new SAMValidationError(Type.E2_BASE_EQUALS_PRIMARY_BASE,
+                    errorSink.accept(new SAMValidationError(Type.E2_BASE_EQUALS_PRIMARY_BASE,
                             String.format("Secondary base call  (%c) == primary base call (%c)",
                                     (char) secondaryBases[i], (char) bases[i]),
                             record.getReadName(), recordNumber));
@@ -439,21 +517,22 @@ public class SamFileValidator {
         }
         final String u2 = (String) record.getAttribute(SAMTag.U2.name());
         if (u2 != null && u2.length() != record.getReadLength()) {
-            addError(new SAMValidationError(Type.MISMATCH_READ_LENGTH_AND_U2_LENGTH,
+            errorSink.accept(new SAMValidationError(Type.MISMATCH_READ_LENGTH_AND_U2_LENGTH,
                     String.format("U2 tag length (%d) != read length (%d)", u2.length(), record.getReadLength()),
                     record.getReadName(), recordNumber));
         }
     }
 
-    private boolean validateCigar(final SAMRecord record, final long recordNumber) {
-        return record.getReadUnmappedFlag() || validateCigar(record, recordNumber, true);
+    private boolean validateCigar(final SAMRecord record, final long recordNumber, final Consumer<SAMValidationError> errorSink) {
+        return record.getReadUnmappedFlag() || validateCigar(record, recordNumber, true, errorSink);
     }
 
-    private boolean validateMateCigar(final SAMRecord record, final long recordNumber) {
-        return validateCigar(record, recordNumber, false);
+    private boolean validateMateCigar(final SAMRecord record, final long recordNumber, final Consumer<SAMValidationError> errorSink) {
+        return validateCigar(record, recordNumber, false, errorSink);
     }
 
-    private boolean validateCigar(final SAMRecord record, final long recordNumber, final boolean isReadCigar) {
+    private boolean validateCigar(final SAMRecord record, final long recordNumber, final boolean isReadCigar,
+                                  final Consumer<SAMValidationError> errorSink) {
         final ValidationStringency savedStringency = record.getValidationStringency();
         record.setValidationStringency(ValidationStringency.LENIENT);
         final List<SAMValidationError> errors = isReadCigar ? record.validateCigar(recordNumber) : SAMUtils.validateMateCigar(record, recordNumber);
@@ -463,17 +542,17 @@ public class SamFileValidator {
         }
         boolean valid = true;
         for (final SAMValidationError error : errors) {
-            addError(error);
+            errorSink.accept(error);
             valid = false;
         }
         return valid;
     }
 
-    private boolean validateSortOrder(final SAMRecord record, final long recordNumber) {
+    private boolean validateSortOrder(final SAMRecord record, final long recordNumber, final Consumer<SAMValidationError> errorSink) {
         final SAMRecord prev = orderChecker.getPreviousRecord();
         boolean isValidSortOrder = orderChecker.isSorted(record);
         if (!isValidSortOrder) {
-            addError(new SAMValidationError(
+            errorSink.accept(new SAMValidationError(
                     Type.RECORD_OUT_OF_ORDER,
                     String.format(
                             "The record is out of [%s] order, prior read name [%s], prior coodinates [%d:%d]",
@@ -505,22 +584,23 @@ public class SamFileValidator {
         this.refFileWalker = null;
     }
 
-    private void validateNmTag(final SAMRecord record, final long recordNumber) {
+    private void validateNmTag(final SAMRecord record, final long recordNumber, final Supplier<ReferenceSequence> reference,
+                               final Consumer<SAMValidationError> errorSink) {
         if (!record.getReadUnmappedFlag()) {
             final Integer tagNucleotideDiffs = record.getIntegerAttribute(ReservedTagConstants.NM);
             if (tagNucleotideDiffs == null) {
-                addError(new SAMValidationError(
+                errorSink.accept(new SAMValidationError(
                         Type.MISSING_TAG_NM,
                         "NM tag (nucleotide differences) is missing",
                         record.getReadName(),
                         recordNumber));
-            } else if (refFileWalker != null) {
-                final ReferenceSequence refSequence = refFileWalker.get(record.getReferenceIndex());
+            } else if (reference != null) {
+                final ReferenceSequence refSequence = reference.get();
                 final int actualNucleotideDiffs = SequenceUtil.calculateSamNmTag(record, refSequence.getBases(),
                         0, isBisulfiteSequenced());
 
                 if (!tagNucleotideDiffs.equals(actualNucleotideDiffs)) {
-                    addError(new SAMValidationError(
+                    errorSink.accept(new SAMValidationError(
                             Type.INVALID_TAG_NM,
                             "NM tag (nucleotide differences) in file [" + tagNucleotideDiffs +
                                     "] does not match reality [" + actualNucleotideDiffs + "]",
@@ -531,13 +611,8 @@ public class SamFileValidator {
         }
     }
 
-    private void validateMateFields(final SAMRecord record, final long recordNumber) {
-        if (!record.getReadPairedFlag() || record.isSecondaryOrSupplementary()) {
-            return;
-        }
-        validateMateCigar(record, recordNumber);
-
-        if (skipMateValidation) {
+    private void validateMatePairing(final SAMRecord record, final long recordNumber, final Consumer<SAMValidationError> errorSink) {
+        if (!record.getReadPairedFlag() || record.isSecondaryOrSupplementary() || skipMateValidation) {
             return;
         }
 
@@ -548,7 +623,7 @@ public class SamFileValidator {
             final List<SAMValidationError> errors =
                     pairEndInfo.validateMates(new PairEndInfo(record, recordNumber), record.getReadName());
             for (final SAMValidationError error : errors) {
-                addError(error);
+                errorSink.accept(error);
             }
         }
     }
@@ -704,9 +779,146 @@ public class SamFileValidator {
         return this;
     }
 
+    /**
+     * Sets the number of threads used to validate records.  With more than one thread, records are read in batches on
+     * the calling thread, which also checks the sort order and pairs up mates, while the other checks of each batch
+     * are made on a pool of worker threads.  Errors are reported in the same order as with a single thread.  When a
+     * reference is given, the reference sequence of every mapped record with an NM tag is fetched on the calling
+     * thread, since the reference is read sequentially.
+     *
+     * @param threads the number of worker threads, or 1 to validate on the calling thread only
+     */
+    public SamFileValidator setThreads(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
     public static class ValidationMetrics extends MetricBase {
     }
 
+    /**
+     * Collects the errors found in a batch of records, remembering which record each error belongs to so that they can
+     * be reported record by record.
+     */
+    private static class BatchErrors implements Consumer<SAMValidationError> {
+        private final List<SAMValidationError> errors = new ArrayList<>();
+        private final int[] ends;
+        private int record = 0;
+
+        private BatchErrors(final int numRecords) {
+            this.ends = new int[numRecords];
+        }
+
+        @Override
+        public void accept(final SAMValidationError error) {
+            errors.add(error);
+        }
+
+        /** Marks the end of the errors of the current record. */
+        private void endRecord() {
+            ends[record++] = errors.size();
+        }
+
+        private void report(final int record, final Consumer<SAMValidationError> sink) {
+            for (int i = record == 0 ? 0 : ends[record - 1]; i < ends[record]; ++i) {
+                sink.accept(errors.get(i));
+            }
+        }
+    }
+
+    /**
+     * A batch of records being validated with several threads.  The checks that depend on the records before are made
+     * when the batch is read, on the calling thread, and the remaining checks by {@link #validate(SAMFileHeader)}.
+     */
+    private class RecordBatch {
+        private final SAMRecord[] records;
+        private final long[] recordNumbers;
+        private final boolean[] hasValidSortOrder;
+        private final ReferenceSequence[] referenceSequences;
+        private final SAMException[] referenceExceptions;
+        private final BatchErrors pairingErrors;
+        private final BatchErrors sequentialErrors;
+        private BatchErrors fieldErrors;
+        private BatchErrors contentErrors;
+        private final QualityEncodingDetector qualityDetector = new QualityEncodingDetector();
+
+        private RecordBatch(final Iterator<SAMRecord> iter, final ProgressLogger progress) {
+            final List<SAMRecord> batch = new ArrayList<>(RECORD_BATCH_SIZE);
+            while (batch.size() < RECORD_BATCH_SIZE && iter.hasNext()) {
+                batch.add(iter.next());
+            }
+            final int n = batch.size();
+            records = batch.toArray(new SAMRecord[n]);
+            recordNumbers = new long[n];
+            hasValidSortOrder = new boolean[n];
+            referenceSequences = refFileWalker == null ? null : new ReferenceSequence[n];
+            referenceExceptions = refFileWalker == null ? null : new SAMException[n];
+            pairingErrors = new BatchErrors(n);
+            sequentialErrors = new BatchErrors(n);
+
+            for (int i = 0; i < n; ++i) {
+                final SAMRecord record = records[i];
+                final long recordNumber = progress.getCount() + 1;
+                recordNumbers[i] = recordNumber;
+                validateMatePairing(record, recordNumber, pairingErrors);
+                hasValidSortOrder[i] = validateSortOrder(record, recordNumber, pairingErrors);
+                if (refFileWalker != null && !record.getReadUnmappedFlag() &&
+                        record.getIntegerAttribute(ReservedTagConstants.NM) != null) {
+                    try {
+                        referenceSequences[i] = refFileWalker.get(record.getReferenceIndex());
+                    } catch (final SAMException e) {
+                        referenceExceptions[i] = e;
+                    }
+                }
+                validateRecordSequentially(record, recordNumber, sequentialErrors);
+                pairingErrors.endRecord();
+                sequentialErrors.endRecord();
+                progress.record(record);
+            }
+        }
+
+        /** Makes the checks of each record that do not depend on the other records. */
+        private RecordBatch validate(final SAMFileHeader header) {
+            fieldErrors = new BatchErrors(records.length);
+            contentErrors = new BatchErrors(records.length);
+            for (int i = 0; i < records.length; ++i) {
+                final SAMRecord record = records[i];
+                qualityDetector.add(record);
+                validateRecordFields(record, recordNumbers[i], fieldErrors);
+                final int index = i;
+                validateRecordContent(record, recordNumbers[i], header, hasValidSortOrder[i],
+                        referenceSequences == null ? null : () -> {
+                            if (referenceExceptions[index] != null) {
+                                throw referenceExceptions[index];
+                            }
+                            return referenceSequences[index];
+                        }, contentErrors);
+                fieldErrors.endRecord();
+                contentErrors.endRecord();
+            }
+            return this;
+        }
+
+        /** Reports the errors of each record in the order in which they would have been found by a single thread. */
+        private void report(final QualityEncodingDetector qualityDetector) {
+            qualityDetector.add(this.qualityDetector);
+            final Consumer<SAMValidationError> sink = SamFileValidator.this::addError;
+            for (int i = 0; i < records.length; ++i) {
+                fieldErrors.report(i, sink);
+                pairingErrors.report(i, sink);
+                contentErrors.report(i, sink);
+                sequentialErrors.report(i, sink);
+            }
+        }
+    }
+
     /**
      * This class is used so we don't have to store the entire SAMRecord in memory while we wait
      * to find a record's mate and also to store the record number.
@@ -922,7 +1134,7 @@ public class SamFileValidator {
                             readUnmappedFlag, readCigarString, mateAlignmentStart, mateReferenceIndex, mateNegStrandFlag,
                             mateUnmappedFlag, mateCigarString,
                             firstOfPairFlag, recordNumber);
-                    return new AbstractMap.SimpleEntry(key, rec);
+                    return new AbstractMap.SimpleEntry<>(key, rec);
                 } catch (IOException e) {
                     throw new SAMException("Error reading PairInfo from disk", e);
                 }
@@ -605,6 +605,62 @@ public abstract class SamReaderFactory {
                 logDebugIgnoringOption(reader, this);
             }
 
+        },
+
+        /**
+         * The factory's BAM {@link SamReader}s load BAI index files through {@link SharedBAMFileIndex#getInstance(java.nio.file.Path)},
+         * so that all readers of the same file in the process share one parsed, immutable copy of its index.
+         *
+         * @see SamReader#indexing()
+         * @see htsjdk.samtools.SamReader.Indexing#getIndex()
+         */
+        SHARE_FILE_BASED_INDEXES {
+            @Override
+            void applyTo(final BAMFileReader underlyingReader, final SamReader reader) {
+                underlyingReader.enableIndexSharing(true);
+            }
+
+            @Override
+            void applyTo(final SAMTextReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final CRAMFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final SRAFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+        },
+
+        /**
+         * The factory's BAM and CRAM {@link SamReader}s plan index queries with an {@link IndexQueryPlanner}, which merges
+         * nearby chunks into larger reads and announces the ranges to be read to the underlying stream so that it can
+         * prefetch them.  This mostly benefits queries over network file systems and remote files.
+         */
+        PLAN_INDEX_QUERIES {
+            @Override
+            void applyTo(final BAMFileReader underlyingReader, final SamReader reader) {
+                underlyingReader.setQueryPlanner(new IndexQueryPlanner());
+            }
+
+            @Override
+            void applyTo(final SAMTextReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
+
+            @Override
+            void applyTo(final CRAMFileReader underlyingReader, final SamReader reader) {
+                underlyingReader.setQueryPlanner(new IndexQueryPlanner());
+            }
+
+            @Override
+            void applyTo(final SRAFileReader underlyingReader, final SamReader reader) {
+                logDebugIgnoringOption(reader, this);
+            }
         };
 
         public static final EnumSet<Option> DEFAULTS = EnumSet.noneOf(Option.class);
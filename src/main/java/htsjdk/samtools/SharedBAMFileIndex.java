@@ -0,0 +1,433 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.RuntimeIOException;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * An immutable BAI index that is parsed once into primitive arrays and can be shared by any number of readers and
+ * threads.
+ *
+ * {@link CachingBAMFileIndex} keeps only the content of the most recently queried reference and each reader loads its
+ * own copy, so applications that open the same BAM file many times re-parse the index over and over.  This index
+ * holds the whole file in a compact form:
+ * <ul>
+ *     <li>a per-reference offset table into the bin arrays and the linear index,</li>
+ *     <li>the bin numbers of each reference, sorted, with an offset table into a single array of chunk
+ *     boundaries,</li>
+ *     <li>the linear index of every reference in a single long[].</li>
+ * </ul>
+ * A query finds the bins of each level by binary search within its reference's bins, so the cost does not depend on
+ * the number of references or on which reference was queried last.
+ *
+ * {@link #getInstance(Path)} returns instances from a process-wide cache keyed by the path, modification time and
+ * size of the index file, so a changed index file is parsed again.  {@link #close()} does nothing, since instances
+ * may be shared.
+ */
+public final class SharedBAMFileIndex implements BrowseableBAMIndex {
+    /** The default maximum number of indexes held by the process-wide cache. */
+    public static final int DEFAULT_MAX_CACHED_INDEXES = 128;
+
+    private static int maxCachedIndexes = DEFAULT_MAX_CACHED_INDEXES;
+    private static final Map<CacheKey, SharedBAMFileIndex> cache = new LinkedHashMap<CacheKey, SharedBAMFileIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<CacheKey, SharedBAMFileIndex> eldest) {
+            return size() > maxCachedIndexes;
+        }
+    };
+
+    private final int numberOfReferences;
+    /** binsStart[r] to binsStart[r + 1] are the indexes into binNumbers of the bins of reference r. */
+    private final int[] binsStart;
+    /** The bin numbers of each reference, in increasing order. */
+    private final int[] binNumbers;
+    /** chunksStart[b] to chunksStart[b + 1] are the indexes into chunks of the chunks of bin b, in pairs. */
+    private final int[] chunksStart;
+    /** Chunk start and end virtual file offsets. */
+    private final long[] chunks;
+    /** linearStart[r] to linearStart[r + 1] are the indexes into linearIndex of the entries of reference r. */
+    private final int[] linearStart;
+    private final long[] linearIndex;
+    /** The metadata pseudo-bin chunks of each reference, 4 longs per reference, or null if it has none. */
+    private final long[][] metaData;
+    private final Long noCoordinateCount;
+
+    /**
+     * Parses a BAI index file.  Prefer {@link #getInstance(Path)} to share instances.
+     */
+    public SharedBAMFileIndex(final Path indexPath) {
+        try (final FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            final byte[] magic = new byte[BAMFileConstants.BAM_INDEX_MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, BAMFileConstants.BAM_INDEX_MAGIC)) {
+                throw new SAMFormatException("Invalid file header in BAM index " + indexPath + ": " + new String(magic));
+            }
+            numberOfReferences = buffer.getInt();
+            binsStart = new int[numberOfReferences + 1];
+            linearStart = new int[numberOfReferences + 1];
+            metaData = new long[numberOfReferences][];
+
+            // First pass to size the arrays
+            final int start = buffer.position();
+            int totalBins = 0;
+            int totalChunks = 0;
+            int totalLinear = 0;
+            for (int r = 0; r < numberOfReferences; ++r) {
+                final int nBins = buffer.getInt();
+                for (int b = 0; b < nBins; ++b) {
+                    final int bin = buffer.getInt();
+                    final int nChunks = buffer.getInt();
+                    skip(buffer, 16 * nChunks);
+                    if (bin != GenomicIndexUtil.MAX_BINS) {
+                        ++totalBins;
+                        totalChunks += nChunks;
+                    }
+                }
+                final int nLinear = buffer.getInt();
+                skip(buffer, 8 * nLinear);
+                totalLinear += nLinear;
+            }
+            noCoordinateCount = buffer.remaining() >= 8 ? buffer.getLong() : null;
+
+            binNumbers = new int[totalBins];
+            chunksStart = new int[totalBins + 1];
+            chunks = new long[2 * totalChunks];
+            linearIndex = new long[totalLinear];
+
+            buffer.position(start);
+            int binIndex = 0;
+            int chunkIndex = 0;
+            int linearIndexPosition = 0;
+            for (int r = 0; r < numberOfReferences; ++r) {
+                binsStart[r] = binIndex;
+                final int nBins = buffer.getInt();
+                final long[][] binChunks = new long[nBins][];
+                final int[] numbers = new int[nBins];
+                int n = 0;
+                for (int b = 0; b < nBins; ++b) {
+                    final int bin = buffer.getInt();
+                    final long[] values = new long[2 * buffer.getInt()];
+                    buffer.asLongBuffer().get(values);
+                    skip(buffer, 8 * values.length);
+                    if (bin == GenomicIndexUtil.MAX_BINS) {
+                        metaData[r] = values;
+                    } else {
+                        numbers[n] = bin;
+                        binChunks[n++] = values;
+                    }
+                }
+                // Bins are usually, but not necessarily, stored in order
+                final Integer[] order = new Integer[n];
+                for (int i = 0; i < n; ++i) order[i] = i;
+                Arrays.sort(order, (a, b) -> Integer.compare(numbers[a], numbers[b]));
+                for (final int i : order) {
+                    binNumbers[binIndex] = numbers[i];
+                    chunksStart[binIndex] = chunkIndex;
+                    System.arraycopy(binChunks[i], 0, chunks, chunkIndex, binChunks[i].length);
+                    chunkIndex += binChunks[i].length;
+                    ++binIndex;
+                }
+
+                linearStart[r] = linearIndexPosition;
+                final int nLinear = buffer.getInt();
+                buffer.asLongBuffer().get(linearIndex, linearIndexPosition, nLinear);
+                skip(buffer, 8 * nLinear);
+                linearIndexPosition += nLinear;
+            }
+            binsStart[numberOfReferences] = binIndex;
+            chunksStart[binIndex] = chunkIndex;
+            linearStart[numberOfReferences] = linearIndexPosition;
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading BAM index " + indexPath, e);
+        } catch (final BufferUnderflowException e) {
+            throw new SAMFormatException("Truncated BAM index " + indexPath, e);
+        }
+    }
+
+    private static void skip(final ByteBuffer buffer, final int length) {
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Returns the index for the given BAI file from the process-wide cache, parsing it if it is not cached or if the
+     * file has changed since it was cached.
+     */
+    public static SharedBAMFileIndex getInstance(final Path indexPath) {
+        final CacheKey key;
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+            key = new CacheKey(indexPath.toAbsolutePath().normalize(), attributes.lastModifiedTime().toMillis(), attributes.size());
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading BAM index " + indexPath, e);
+        }
+        synchronized (cache) {
+            final SharedBAMFileIndex cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // Parse outside the lock; if two threads race, both results are equivalent
+        final SharedBAMFileIndex index = new SharedBAMFileIndex(indexPath);
+        synchronized (cache) {
+            final SharedBAMFileIndex cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            cache.put(key, index);
+            return index;
+        }
+    }
+
+    /** Sets the maximum number of indexes held by the process-wide cache. */
+    public static void setMaxCachedIndexes(final int maxCachedIndexes) {
+        if (maxCachedIndexes < 0) throw new IllegalArgumentException("maxCachedIndexes must not be negative: " + maxCachedIndexes);
+        synchronized (cache) {
+            SharedBAMFileIndex.maxCachedIndexes = maxCachedIndexes;
+            final Iterator<CacheKey> it = cache.keySet().iterator();
+            while (cache.size() > maxCachedIndexes && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /** Removes all indexes from the process-wide cache. */
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int getNumberOfReferences() {
+        return numberOfReferences;
+    }
+
+    @Override
+    public BAMFileSpan getSpanOverlapping(final int referenceIndex, final int startPos, final int endPos) {
+        if (referenceIndex < 0 || referenceIndex >= numberOfReferences) {
+            return null;
+        }
+        final int maxPos = 0x1FFFFFFF;
+        final int start = (startPos <= 0) ? 0 : (startPos - 1) & maxPos;
+        final int end = (endPos <= 0) ? maxPos : (endPos - 1) & maxPos;
+        if (start > end) {
+            return null;
+        }
+
+        final List<Chunk> chunkList = new ArrayList<>();
+        final int firstBin = binsStart[referenceIndex];
+        final int lastBin = binsStart[referenceIndex + 1];
+        // The bins overlapping the region on each level, as in GenomicIndexUtil.regionToBins
+        addChunks(chunkList, firstBin, lastBin, 0, 0);
+        int binStart = 1;
+        for (int shift = 26; shift >= 14; shift -= 3) {
+            addChunks(chunkList, firstBin, lastBin, binStart + (start >> shift), binStart + (end >> shift));
+            binStart = binStart * 8 + 1;
+        }
+        if (chunkList.isEmpty()) {
+            return null;
+        }
+        return new BAMFileSpan(Chunk.optimizeChunkList(chunkList, getMinimumOffset(referenceIndex, startPos)));
+    }
+
+    /** Adds the chunks of the bins numbered from firstNumber to lastNumber inclusive within bins [from, to). */
+    private void addChunks(final List<Chunk> chunkList, final int from, final int to, final int firstNumber, final int lastNumber) {
+        int b = Arrays.binarySearch(binNumbers, from, to, firstNumber);
+        if (b < 0) {
+            b = -b - 1;
+        }
+        for (; b < to && binNumbers[b] <= lastNumber; ++b) {
+            for (int c = chunksStart[b]; c < chunksStart[b + 1]; c += 2) {
+                chunkList.add(new Chunk(chunks[c], chunks[c + 1]));
+            }
+        }
+    }
+
+    /**
+     * @return the smallest file offset of any record overlapping the 16kb window containing startPos according to
+     * the linear index, or 0 if the window is beyond the end of the linear index
+     */
+    public long getMinimumOffset(final int referenceIndex, final int startPos) {
+        if (referenceIndex < 0 || referenceIndex >= numberOfReferences) {
+            return 0;
+        }
+        final int window = LinearIndex.convertToLinearIndexOffset(startPos);
+        final int index = linearStart[referenceIndex] + window;
+        return index < linearStart[referenceIndex + 1] ? linearIndex[index] : 0;
+    }
+
+    @Override
+    public int getLevelSize(final int levelNumber) {
+        if (levelNumber == AbstractBAMFileIndex.getNumIndexLevels() - 1) {
+            return GenomicIndexUtil.MAX_BINS - AbstractBAMFileIndex.getFirstBinInLevel(levelNumber) - 1;
+        } else {
+            return AbstractBAMFileIndex.getFirstBinInLevel(levelNumber + 1) - AbstractBAMFileIndex.getFirstBinInLevel(levelNumber);
+        }
+    }
+
+    @Override
+    public int getLevelForBin(final Bin bin) {
+        if (bin.getBinNumber() >= GenomicIndexUtil.MAX_BINS) {
+            throw new SAMException("Tried to get level for invalid bin.");
+        }
+        for (int i = AbstractBAMFileIndex.getNumIndexLevels() - 1; i >= 0; i--) {
+            if (bin.getBinNumber() >= GenomicIndexUtil.LEVEL_STARTS[i]) {
+                return i;
+            }
+        }
+        throw new SAMException("Unable to find correct bin for bin " + bin);
+    }
+
+    @Override
+    public int getFirstLocusInBin(final Bin bin) {
+        final int level = getLevelForBin(bin);
+        return (bin.getBinNumber() - GenomicIndexUtil.LEVEL_STARTS[level]) * (GenomicIndexUtil.BIN_GENOMIC_SPAN / getLevelSize(level)) + 1;
+    }
+
+    @Override
+    public int getLastLocusInBin(final Bin bin) {
+        final int level = getLevelForBin(bin);
+        return (bin.getBinNumber() - GenomicIndexUtil.LEVEL_STARTS[level] + 1) * (GenomicIndexUtil.BIN_GENOMIC_SPAN / getLevelSize(level));
+    }
+
+    @Override
+    public BinList getBinsOverlapping(final int referenceIndex, final int startPos, final int endPos) {
+        final BitSet regionBins = GenomicIndexUtil.regionToBins(startPos, endPos);
+        if (regionBins == null) {
+            return null;
+        }
+        return new BinList(referenceIndex, regionBins);
+    }
+
+    /**
+     * Returns the chunks of the given bin and of the bins containing it on every lower level, as
+     * {@link CachingBAMFileIndex#getSpanOverlapping(Bin)} does.
+     */
+    @Override
+    public BAMFileSpan getSpanOverlapping(final Bin bin) {
+        if (bin == null) {
+            return null;
+        }
+        final int referenceIndex = bin.getReferenceSequence();
+        if (referenceIndex < 0 || referenceIndex >= numberOfReferences) {
+            return null;
+        }
+        final int firstBin = binsStart[referenceIndex];
+        final int lastBin = binsStart[referenceIndex + 1];
+        final int firstLocusInBin = getFirstLocusInBin(bin);
+
+        final List<Chunk> chunkList = new ArrayList<>();
+        addChunks(chunkList, firstBin, lastBin, bin.getBinNumber(), bin.getBinNumber());
+        for (int level = getLevelForBin(bin) - 1; level >= 0; --level) {
+            final int binWidth = GenomicIndexUtil.BIN_GENOMIC_SPAN / getLevelSize(level);
+            final int binNumber = firstLocusInBin / binWidth + AbstractBAMFileIndex.getFirstBinInLevel(level);
+            addChunks(chunkList, firstBin, lastBin, binNumber, binNumber);
+        }
+        return new BAMFileSpan(Chunk.optimizeChunkList(chunkList, getMinimumOffset(referenceIndex, firstLocusInBin)));
+    }
+
+    @Override
+    public long getStartOfLastLinearBin() {
+        for (int r = numberOfReferences - 1; r >= 0; --r) {
+            if (linearStart[r + 1] > linearStart[r]) {
+                return linearIndex[linearStart[r + 1] - 1];
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public BAMIndexMetaData getMetaData(final int reference) {
+        if (reference >= numberOfReferences) {
+            return null;
+        }
+        final List<Chunk> metaDataChunks = new ArrayList<>();
+        final long[] values = metaData[reference];
+        if (values != null) {
+            for (int i = 0; i < values.length; i += 2) {
+                metaDataChunks.add(new Chunk(values[i], values[i + 1]));
+            }
+        }
+        return new BAMIndexMetaData(metaDataChunks);
+    }
+
+    /**
+     * @return the count of records with no coordinates, or null for old index files without it
+     */
+    public Long getNoCoordinateCount() {
+        return noCoordinateCount;
+    }
+
+    /** Does nothing, since the index holds no resources and may be shared. */
+    @Override
+    public void close() {
+    }
+
+    private static final class CacheKey {
+        private final Path path;
+        private final long lastModified;
+        private final long size;
+
+        CacheKey(final Path path, final long lastModified, final long size) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CacheKey)) return false;
+            final CacheKey that = (CacheKey) o;
+            return lastModified == that.lastModified && size == that.size && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, size);
+        }
+    }
+}
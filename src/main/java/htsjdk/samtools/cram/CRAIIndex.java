@@ -72,7 +72,18 @@ public class CRAIIndex {
     }
 
     public static SeekableStream openCraiFileAsBaiStream(final InputStream indexStream, final SAMSequenceDictionary dictionary) {
-        final List<CRAIEntry> full = CRAMCRAIIndexer.readIndex(indexStream).getCRAIEntries();
+        return openCraiEntriesAsBaiStream(CRAMCRAIIndexer.readIndex(indexStream).getCRAIEntries(), dictionary);
+    }
+
+    /**
+     * Translate CRAI entries into an in-memory BAI.
+     *
+     * @param entries the entries of a CRAI index
+     * @param dictionary the sequence dictionary of the indexed CRAM
+     * @return a stream of the BAI content
+     */
+    public static SeekableStream openCraiEntriesAsBaiStream(final List<CRAIEntry> entries, final SAMSequenceDictionary dictionary) {
+        final List<CRAIEntry> full = new ArrayList<>(entries);
         Collections.sort(full);
 
         final SAMFileHeader header = new SAMFileHeader();
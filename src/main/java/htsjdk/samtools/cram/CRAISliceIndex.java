@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram;
+
+import htsjdk.samtools.CRAMCRAIIndexer;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.cram.ref.ReferenceContext;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A CRAI index held as per-reference arrays of slices sorted by alignment start, which answers region queries with
+ * the slices to read rather than translating the CRAI into a BAI.
+ *
+ * Each query result identifies a slice by its container's byte offset and the slice's offset from the start of the
+ * container's compression header, so a reader can seek directly to the slice and decode only it.
+ */
+public class CRAISliceIndex {
+    /** Orders entries by their location in the file. */
+    public static final Comparator<CRAIEntry> BY_FILE_OFFSET = Comparator
+            .comparingLong(CRAIEntry::getContainerStartByteOffset)
+            .thenComparingInt(CRAIEntry::getSliceByteOffsetFromCompressionHeaderStart);
+
+    private final List<CRAIEntry> entries;
+    private final Map<Integer, ReferenceSlices> slicesByReference = new HashMap<>();
+    private final List<CRAIEntry> unmappedSlices = new ArrayList<>();
+
+    /**
+     * @param entries the entries of a CRAI index, in any order
+     */
+    public CRAISliceIndex(final Collection<CRAIEntry> entries) {
+        this.entries = new ArrayList<>(entries);
+        Collections.sort(this.entries);
+
+        final Map<Integer, List<CRAIEntry>> grouped = new HashMap<>();
+        for (final CRAIEntry entry : this.entries) {
+            if (entry.getSequenceId() == ReferenceContext.UNMAPPED_UNPLACED_ID) {
+                unmappedSlices.add(entry);
+            } else {
+                grouped.computeIfAbsent(entry.getSequenceId(), k -> new ArrayList<>()).add(entry);
+            }
+        }
+        unmappedSlices.sort(BY_FILE_OFFSET);
+        grouped.forEach((sequenceId, list) -> slicesByReference.put(sequenceId, new ReferenceSlices(list)));
+    }
+
+    /**
+     * Reads a CRAI index.
+     *
+     * @param craiStream the gzipped CRAI content
+     * @return the index
+     */
+    public static CRAISliceIndex read(final InputStream craiStream) {
+        return new CRAISliceIndex(CRAMCRAIIndexer.readIndex(craiStream).getCRAIEntries());
+    }
+
+    /** @return all entries of the index, in {@link CRAIEntry} order */
+    public List<CRAIEntry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Finds the slices containing records which may overlap any of the intervals.
+     *
+     * @param intervals the query intervals; an end of 0 or less means the end of the reference
+     * @return one entry per slice, ordered by file offset
+     */
+    public List<CRAIEntry> getSlicesOverlapping(final QueryInterval[] intervals) {
+        final List<CRAIEntry> result = new ArrayList<>();
+        for (final QueryInterval interval : intervals) {
+            final ReferenceSlices slices = slicesByReference.get(interval.referenceIndex);
+            if (slices != null) {
+                slices.addOverlapping(interval.start, interval.end <= 0 ? Integer.MAX_VALUE : interval.end, result);
+            }
+        }
+        return sortedUniqueSlices(result);
+    }
+
+    /**
+     * @return the slices of unmapped, unplaced records, ordered by file offset
+     */
+    public List<CRAIEntry> getUnmappedSlices() {
+        return Collections.unmodifiableList(unmappedSlices);
+    }
+
+    // a multiple reference slice has an entry for each of its references, so it may be found more than once
+    private static List<CRAIEntry> sortedUniqueSlices(final List<CRAIEntry> slices) {
+        slices.sort(BY_FILE_OFFSET);
+        final List<CRAIEntry> unique = new ArrayList<>(slices.size());
+        for (final CRAIEntry slice : slices) {
+            if (unique.isEmpty() || BY_FILE_OFFSET.compare(unique.get(unique.size() - 1), slice) != 0) {
+                unique.add(slice);
+            }
+        }
+        return unique;
+    }
+
+    /** The slices of one reference, sorted by alignment start. */
+    private static final class ReferenceSlices {
+        private final CRAIEntry[] slices;
+        private final int[] starts;
+        private final int[] ends;
+        // the largest end of this and all preceding slices, which does not decrease
+        private final int[] maxEnds;
+
+        ReferenceSlices(final List<CRAIEntry> sortedSlices) {
+            slices = sortedSlices.toArray(new CRAIEntry[0]);
+            starts = new int[slices.length];
+            ends = new int[slices.length];
+            maxEnds = new int[slices.length];
+            int maxEnd = Integer.MIN_VALUE;
+            for (int i = 0; i < slices.length; i++) {
+                starts[i] = slices[i].getAlignmentStart();
+                ends[i] = starts[i] + Math.max(slices[i].getAlignmentSpan(), 1) - 1;
+                maxEnd = Math.max(maxEnd, ends[i]);
+                maxEnds[i] = maxEnd;
+            }
+        }
+
+        void addOverlapping(final int start, final int end, final List<CRAIEntry> result) {
+            // slices before the first one reaching start cannot overlap, nor can those starting after end
+            int first = Arrays.binarySearch(maxEnds, start);
+            if (first < 0) {
+                first = -first - 1;
+            } else {
+                while (first > 0 && maxEnds[first - 1] == start) {
+                    first--;
+                }
+            }
+            for (int i = first; i < slices.length && starts[i] <= end; i++) {
+                if (ends[i] >= start) {
+                    result.add(slices[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.build;
+
+/**
+ * How a CRAM writer stores the bases of aligned records relative to the reference sequence.
+ */
+public enum CRAMReferenceMode {
+    /** Bases are stored as differences from the reference, which readers must supply. */
+    REFERENCE,
+
+    /**
+     * Bases are stored as differences from the reference, and the reference bases spanned by each slice are
+     * embedded in the slice, so that readers need no reference.  Containers of records on several reference
+     * sequences are stored as with {@link #NO_REFERENCE}.
+     */
+    EMBEDDED_REFERENCE,
+
+    /** Aligned bases are stored verbatim, and neither the writer nor readers need a reference. */
+    NO_REFERENCE,
+
+    /**
+     * Each container is stored either as with {@link #EMBEDDED_REFERENCE} or as with {@link #NO_REFERENCE},
+     * whichever stores fewer bases: the reference span of the records, or their aligned bases.  The reference is
+     * only fetched for containers that embed it, so sparse records, such as those of small targeted regions, are
+     * written without loading the reference.
+     */
+    AUTO
+}
@@ -23,6 +23,7 @@ import htsjdk.samtools.cram.encoding.*;
 import htsjdk.samtools.cram.encoding.core.CanonicalHuffmanIntegerEncoding;
 import htsjdk.samtools.cram.encoding.external.*;
 import htsjdk.samtools.cram.compression.rans.RANS;
+import htsjdk.samtools.cram.encoding.readfeatures.Bases;
 import htsjdk.samtools.cram.encoding.readfeatures.ReadFeature;
 import htsjdk.samtools.cram.encoding.readfeatures.Substitution;
 import htsjdk.samtools.cram.structure.CompressionHeader;
@@ -79,7 +80,10 @@ public class CompressionHeaderFactory {
 
         builder.addExternalRansOrderZeroEncoding(DataSeries.AP_AlignmentPositionOffset);
         builder.addExternalRansOrderOneEncoding(DataSeries.BA_Base);
-        // BB is not used
+        // BB is only used by records stored without a reference
+        if (hasReadFeature(records, Bases.operator)) {
+            builder.addExternalByteArrayStopTabGzipEncoding(DataSeries.BB_bases);
+        }
         builder.addExternalRansOrderOneEncoding(DataSeries.BF_BitFlags);
         builder.addExternalGzipEncoding(DataSeries.BS_BaseSubstitutionCode);
         builder.addExternalRansOrderOneEncoding(DataSeries.CF_CompressionBitFlags);
@@ -120,6 +124,19 @@ public class CompressionHeaderFactory {
         return builder.getHeader();
     }
 
+    private static boolean hasReadFeature(final List<CramCompressionRecord> records, final byte operator) {
+        for (final CramCompressionRecord record : records) {
+            if (record.readFeatures != null) {
+                for (final ReadFeature readFeature : record.readFeatures) {
+                    if (readFeature.getOperator() == operator) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Iterate over the records and for each tag found come up with an encoding.
      * Tag encodings are registered via the builder.
@@ -50,6 +50,23 @@ public class ContainerFactory {
      * @return the container built from these records
      */
     public Container buildContainer(final List<CramCompressionRecord> records, final long containerByteOffset) {
+        final Container container = buildContainer(records, containerByteOffset, globalRecordCounter);
+        globalRecordCounter += records.size();
+        return container;
+    }
+
+    /**
+     * Build a Container from {@link CramCompressionRecord}s, numbering its records from the given counter.  Unlike
+     * {@link #buildContainer(List, long)} this does not advance the record counter of the factory, so containers
+     * may be built concurrently provided that the caller numbers them.
+     *
+     * @param records the records used to build the Container
+     * @param containerByteOffset the Container's byte offset from the start of the stream
+     * @param firstRecordCounter the number of records in the stream before this Container
+     * @return the container built from these records
+     */
+    public Container buildContainer(final List<CramCompressionRecord> records, final long containerByteOffset,
+                                    final long firstRecordCounter) {
         // sets header APDelta
         final boolean coordinateSorted = samFileHeader.getSortOrder() == SAMFileHeader.SortOrder.coordinate;
         final CompressionHeader compressionHeader = new CompressionHeaderFactory().build(records, null, coordinateSorted);
@@ -59,20 +76,20 @@ public class ContainerFactory {
         final List<Slice> slices = new ArrayList<>();
 
         int baseCount = 0;
-        long lastGlobalRecordCounter = globalRecordCounter;
+        long recordCounter = firstRecordCounter;
         for (int i = 0; i < records.size(); i += recordsPerSlice) {
             final List<CramCompressionRecord> sliceRecords = records.subList(i,
                     Math.min(records.size(), i + recordsPerSlice));
             final Slice slice = Slice.buildSlice(sliceRecords, compressionHeader);
-            slice.globalRecordCounter = globalRecordCounter;
-            globalRecordCounter += slice.nofRecords;
+            slice.globalRecordCounter = recordCounter;
+            recordCounter += slice.nofRecords;
             baseCount += slice.bases;
             slices.add(slice);
         }
 
         final Container container = Container.initializeFromSlices(slices, compressionHeader, containerByteOffset);
         container.nofRecords = records.size();
-        container.globalRecordCounter = lastGlobalRecordCounter;
+        container.globalRecordCounter = firstRecordCounter;
         container.blockCount = 0;
         container.bases += baseCount;
         return container;
@@ -23,6 +23,7 @@ import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.ValidationStringency;
 import htsjdk.samtools.cram.ref.ReferenceContext;
 import htsjdk.samtools.cram.encoding.reader.CramRecordReader;
+import htsjdk.samtools.cram.structure.CRAMRecordField;
 import htsjdk.samtools.cram.structure.CompressionHeader;
 import htsjdk.samtools.cram.structure.Container;
 import htsjdk.samtools.cram.structure.CramCompressionRecord;
@@ -31,6 +32,8 @@ import htsjdk.samtools.cram.structure.Slice;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
 
 public class ContainerParser {
     private final SAMFileHeader samFileHeader;
@@ -42,6 +45,24 @@ public class ContainerParser {
     public List<CramCompressionRecord> getRecords(final Container container,
                                                   ArrayList<CramCompressionRecord> records,
                                                   final ValidationStringency validationStringency) {
+        return getRecords(container, records, validationStringency, slice -> true, CRAMRecordField.ALL);
+    }
+
+    /**
+     * Decodes some of the slices of a container, and some of the fields of their records.
+     *
+     * @param container the container to decode
+     * @param records the list to add the records to, or null to create one
+     * @param validationStringency how strict to be when reading records
+     * @param sliceFilter accepts the slices to decode; the records of other slices are skipped without decompressing their blocks
+     * @param fields the fields of each record to decode
+     * @return the records of the accepted slices
+     */
+    public List<CramCompressionRecord> getRecords(final Container container,
+                                                  ArrayList<CramCompressionRecord> records,
+                                                  final ValidationStringency validationStringency,
+                                                  final Predicate<Slice> sliceFilter,
+                                                  final Set<CRAMRecordField> fields) {
         if (container.isEOF()) {
             return Collections.emptyList();
         }
@@ -51,7 +72,9 @@ public class ContainerParser {
         }
 
         for (final Slice slice : container.getSlices()) {
-            records.addAll(getRecords(slice, container.compressionHeader, validationStringency));
+            if (sliceFilter.test(slice)) {
+                records.addAll(getRecords(slice, container.compressionHeader, validationStringency, fields));
+            }
         }
 
         return records;
@@ -59,7 +82,8 @@ public class ContainerParser {
 
     private ArrayList<CramCompressionRecord> getRecords(final Slice slice,
                                                         final CompressionHeader header,
-                                                        final ValidationStringency validationStringency) {
+                                                        final ValidationStringency validationStringency,
+                                                        final Set<CRAMRecordField> fields) {
         final ReferenceContext sliceContext = slice.getReferenceContext();
         String seqName = SAMRecord.NO_ALIGNMENT_REFERENCE_NAME;
         if (sliceContext.isMappedSingleRef()) {
@@ -68,7 +92,7 @@ public class ContainerParser {
 
         }
 
-        final CramRecordReader reader = slice.createCramRecordReader(header, validationStringency);
+        final CramRecordReader reader = slice.createCramRecordReader(header, validationStringency, fields);
 
         final ArrayList<CramCompressionRecord> records = new ArrayList<>(slice.nofRecords);
 
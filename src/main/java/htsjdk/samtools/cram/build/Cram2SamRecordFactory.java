@@ -21,8 +21,9 @@ import htsjdk.samtools.Cigar;
 import htsjdk.samtools.CigarElement;
 import htsjdk.samtools.CigarOperator;
 import htsjdk.samtools.SAMFileHeader;
-import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.cram.encoding.readfeatures.Bases;
 import htsjdk.samtools.cram.encoding.readfeatures.Deletion;
 import htsjdk.samtools.cram.encoding.readfeatures.HardClip;
 import htsjdk.samtools.cram.encoding.readfeatures.InsertBase;
@@ -35,6 +36,7 @@ import htsjdk.samtools.cram.encoding.readfeatures.SoftClip;
 import htsjdk.samtools.cram.encoding.readfeatures.Substitution;
 import htsjdk.samtools.cram.structure.CramCompressionRecord;
 import htsjdk.samtools.cram.structure.ReadTag;
+import htsjdk.samtools.util.StringUtil;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -50,7 +52,7 @@ public class Cram2SamRecordFactory {
     }
 
     public SAMRecord create(final CramCompressionRecord cramRecord) {
-        final SAMRecord samRecord = new SAMRecord(header);
+        final SAMRecord samRecord = new CramSAMRecord(header, getBinaryAttributes(cramRecord));
 
         samRecord.setReadName(cramRecord.readName);
         copyFlags(cramRecord, samRecord);
@@ -88,17 +90,49 @@ public class Cram2SamRecordFactory {
         samRecord.setReadBases(cramRecord.readBases);
         samRecord.setBaseQualities(cramRecord.qualityScores);
 
+        return samRecord;
+    }
+
+    /**
+     * Lays out the tags of a record, followed by its read group if it has one, in BAM binary form, so that they are
+     * only decoded if the SAMRecord's attributes are accessed.
+     *
+     * @return the binary tags, or null if there are none
+     */
+    private byte[] getBinaryAttributes(final CramCompressionRecord cramRecord) {
+        final byte[] readGroupId = cramRecord.readGroupID > -1 ?
+                StringUtil.stringToBytes(header.getReadGroups().get(cramRecord.readGroupID).getId()) : null;
+
+        int size = readGroupId == null ? 0 : 3 + readGroupId.length + 1;
         if (cramRecord.tags != null)
             for (final ReadTag tag : cramRecord.tags)
-                samRecord.setAttribute(tag.getKey(), tag.getValue());
+                size += 3 + tag.getValueAsByteArray().length;
+        if (size == 0)
+            return null;
 
-        if (cramRecord.readGroupID > -1) {
-            final SAMReadGroupRecord readGroupRecord = header.getReadGroups().get(
-                    cramRecord.readGroupID);
-            samRecord.setAttribute("RG", readGroupRecord.getId());
+        final byte[] bytes = new byte[size];
+        int offset = 0;
+        if (cramRecord.tags != null)
+            for (final ReadTag tag : cramRecord.tags) {
+                offset = putTagAndType(bytes, offset, tag.keyType3BytesAsInt);
+                final byte[] value = tag.getValueAsByteArray();
+                System.arraycopy(value, 0, bytes, offset, value.length);
+                offset += value.length;
+            }
+
+        if (readGroupId != null) {
+            // a later RG replaces any RG tag stored with the record, as setAttribute would
+            offset = putTagAndType(bytes, offset, ReadTag.nameType3BytesToInt(SAMTag.RG.name(), 'Z'));
+            System.arraycopy(readGroupId, 0, bytes, offset, readGroupId.length);
         }
+        return bytes;
+    }
 
-        return samRecord;
+    private static int putTagAndType(final byte[] bytes, final int offset, final int tagAndType) {
+        bytes[offset] = (byte) (tagAndType >> 16);
+        bytes[offset + 1] = (byte) (tagAndType >> 8);
+        bytes[offset + 2] = (byte) tagAndType;
+        return offset + 3;
     }
 
     private static void copyFlags(final CramCompressionRecord cramRecord, final SAMRecord samRecord) {
@@ -179,6 +213,10 @@ public class Cram2SamRecordFactory {
                     cigarOperator = CigarOperator.MATCH_OR_MISMATCH;
                     readFeatureLength = 1;
                     break;
+                case Bases.operator:
+                    cigarOperator = CigarOperator.MATCH_OR_MISMATCH;
+                    readFeatureLength = ((Bases) feature).getBases().length;
+                    break;
                 default:
                     continue;
             }
@@ -20,6 +20,7 @@ package htsjdk.samtools.cram.build;
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.cram.encoding.readfeatures.BaseQualityScore;
+import htsjdk.samtools.cram.encoding.readfeatures.Bases;
 import htsjdk.samtools.cram.encoding.readfeatures.Deletion;
 import htsjdk.samtools.cram.encoding.readfeatures.InsertBase;
 import htsjdk.samtools.cram.encoding.readfeatures.Insertion;
@@ -29,6 +30,7 @@ import htsjdk.samtools.cram.encoding.readfeatures.RefSkip;
 import htsjdk.samtools.cram.encoding.readfeatures.SoftClip;
 import htsjdk.samtools.cram.encoding.readfeatures.Substitution;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
+import htsjdk.samtools.cram.structure.CRAMRecordField;
 import htsjdk.samtools.cram.structure.CramCompressionRecord;
 import htsjdk.samtools.cram.structure.SubstitutionMatrix;
 import htsjdk.samtools.util.Log;
@@ -37,6 +39,7 @@ import htsjdk.samtools.util.SequenceUtil;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 public class CramNormalizer {
     private final SAMFileHeader header;
@@ -50,16 +53,36 @@ public class CramNormalizer {
     }
 
     public CramNormalizer(final SAMFileHeader header, final CRAMReferenceSource referenceSource) {
+        this(header, referenceSource, 0);
+    }
+
+    /**
+     * @param readCounter the number of records normalized before, for a normalizer which starts part way through a
+     *                    stream; read names generated for records without one are based on this count
+     */
+    public CramNormalizer(final SAMFileHeader header, final CRAMReferenceSource referenceSource, final int readCounter) {
         if (referenceSource == null) {
             throw new IllegalArgumentException("A reference is required.");
         }
         this.header = header;
         this.referenceSource = referenceSource;
+        this.readCounter = readCounter;
     }
 
     public void normalize(final ArrayList<CramCompressionRecord> records,
                           final byte[] ref, final int refOffset_zeroBased,
                           final SubstitutionMatrix substitutionMatrix) {
+        normalize(records, ref, refOffset_zeroBased, substitutionMatrix, CRAMRecordField.ALL);
+    }
+
+    /**
+     * Restores the records of a slice, which were decoded with only the given fields.  Bases and quality scores
+     * which were not decoded are left empty, and no reference is needed if bases were not decoded.
+     */
+    public void normalize(final ArrayList<CramCompressionRecord> records,
+                          final byte[] ref, final int refOffset_zeroBased,
+                          final SubstitutionMatrix substitutionMatrix,
+                          final Set<CRAMRecordField> fields) {
 
         final int startCounter = readCounter;
 
@@ -113,14 +136,19 @@ public class CramNormalizer {
 
         // resolve bases:
         for (final CramCompressionRecord record : records) {
+            if (!fields.contains(CRAMRecordField.BASES)) {
+                record.readBases = SAMRecord.NULL_SEQUENCE;
+                continue;
+            }
             if (record.isSegmentUnmapped())
                 continue;
 
             byte[] refBases = ref;
             {
                 // ref could be supplied (aka forced) already or needs looking up:
-                // ref.length=0 is a special case of seqId=-2 (multiref)
-                if ((ref == null || ref.length == 0) && referenceSource != null)
+                // ref=null is a special case of seqId=-2 (multiref), while an empty ref means bases are stored
+                // without a reference
+                if (ref == null && referenceSource != null)
                     refBases = referenceSource.getReferenceBases(
                             header.getSequence(record.sequenceId), true);
             }
@@ -133,8 +161,14 @@ public class CramNormalizer {
         }
 
         // restore quality scores:
-        final byte defaultQualityScore = '?' - '!';
-        restoreQualityScores(defaultQualityScore, records);
+        if (fields.contains(CRAMRecordField.QUALITY_SCORES)) {
+            final byte defaultQualityScore = '?' - '!';
+            restoreQualityScores(defaultQualityScore, records);
+        } else {
+            for (final CramCompressionRecord record : records) {
+                record.qualityScores = SAMRecord.NULL_QUALS;
+            }
+        }
     }
 
     private static void restoreMateInfo(final CramCompressionRecord record) {
@@ -178,32 +212,30 @@ public class CramNormalizer {
     private static byte[] restoreQualityScores(final byte defaultQualityScore,
                                                final CramCompressionRecord record) {
         if (!record.isForcePreserveQualityScores()) {
-            boolean star = true;
-            final byte[] scores = new byte[record.readLength];
-            Arrays.fill(scores, defaultQualityScore);
+            // the scores are only allocated once a read feature carries one, so reads without any share NULL_QUALS
+            byte[] scores = null;
             if (record.readFeatures != null)
                 for (final ReadFeature feature : record.readFeatures) {
+                    final byte score;
                     switch (feature.getOperator()) {
                         case BaseQualityScore.operator:
-                            int pos = feature.getPosition();
-                            scores[pos - 1] = ((BaseQualityScore) feature).getQualityScore();
-                            star = false;
+                            score = ((BaseQualityScore) feature).getQualityScore();
                             break;
                         case ReadBase.operator:
-                            pos = feature.getPosition();
-                            scores[pos - 1] = ((ReadBase) feature).getQualityScore();
-                            star = false;
+                            score = ((ReadBase) feature).getQualityScore();
                             break;
 
                         default:
-                            break;
+                            continue;
+                    }
+                    if (scores == null) {
+                        scores = new byte[record.readLength];
+                        Arrays.fill(scores, defaultQualityScore);
                     }
+                    scores[feature.getPosition() - 1] = score;
                 }
 
-            if (star)
-                record.qualityScores = SAMRecord.NULL_QUALS;
-            else
-                record.qualityScores = scores;
+            record.qualityScores = scores == null ? SAMRecord.NULL_QUALS : scores;
         } else {
             final byte[] scores = record.qualityScores;
             int missingScores = 0;
@@ -233,13 +265,14 @@ public class CramNormalizer {
             if (ref.length + refOffsetZeroBased < alignmentStart
                     + bases.length) {
                 Arrays.fill(bases, (byte) 'N');
-                System.arraycopy(
-                        ref,
-                        alignmentStart - refOffsetZeroBased,
-                        bases,
-                        0,
-                        Math.min(bases.length, ref.length + refOffsetZeroBased
-                                - alignmentStart));
+                final int available = ref.length + refOffsetZeroBased - alignmentStart;
+                if (available > 0)
+                    System.arraycopy(
+                            ref,
+                            alignmentStart - refOffsetZeroBased,
+                            bases,
+                            0,
+                            Math.min(bases.length, available));
             } else
                 System.arraycopy(ref, alignmentStart - refOffsetZeroBased,
                         bases, 0, bases.length);
@@ -284,6 +317,12 @@ public class CramNormalizer {
                     final InsertBase insert = (InsertBase) variation;
                     bases[posInRead++ - 1] = insert.getBase();
                     break;
+                case Bases.operator:
+                    final byte[] alignedBases = ((Bases) variation).getBases();
+                    System.arraycopy(alignedBases, 0, bases, posInRead - 1, alignedBases.length);
+                    posInRead += alignedBases.length;
+                    posInSeq += alignedBases.length;
+                    break;
                 case RefSkip.operator:
                     posInSeq += ((RefSkip) variation).getLength();
                     break;
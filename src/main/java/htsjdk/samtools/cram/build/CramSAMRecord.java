@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.build;
+
+import htsjdk.samtools.BinaryTagCodec;
+import htsjdk.samtools.BinaryTagIndex;
+import htsjdk.samtools.SAMBinaryTagAndValue;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A SAMRecord restored from CRAM whose tags are kept in BAM binary form until they are first accessed, as
+ * {@link htsjdk.samtools.BAMRecord} does, so that records whose tags are never looked at do not pay for decoding
+ * them.  Single tags are looked up through a {@link BinaryTagIndex} until the tags are modified.
+ */
+class CramSAMRecord extends SAMRecord {
+    // tags in BAM binary form, null once they have been decoded
+    private byte[] binaryAttributes;
+    // index over binaryAttributes, built on the first lookup of a single tag
+    private transient BinaryTagIndex tagIndex;
+
+    CramSAMRecord(final SAMFileHeader header, final byte[] binaryAttributes) {
+        super(header);
+        this.binaryAttributes = binaryAttributes;
+    }
+
+    @Override
+    public Object getAttribute(final short tag) {
+        if (binaryAttributes != null) {
+            final int entry = getTagIndex().find(tag);
+            return entry < 0 ? null : tagIndex.decode(entry, getValidationStringency()).value;
+        }
+        return super.getAttribute(tag);
+    }
+
+    @Override
+    public int getIntAttribute(final short tag, final int defaultValue) {
+        if (binaryAttributes != null) {
+            final int entry = getTagIndex().find(tag);
+            return entry < 0 ? defaultValue : toIntAttribute(tag, tagIndex.getIntegerValue(entry));
+        }
+        return super.getIntAttribute(tag, defaultValue);
+    }
+
+    @Override
+    public ByteBuffer getByteArrayAttributeView(final short tag) {
+        if (binaryAttributes != null) {
+            final int entry = getTagIndex().find(tag);
+            return entry < 0 ? null : tagIndex.getByteArrayView(entry);
+        }
+        return super.getByteArrayAttributeView(tag);
+    }
+
+    @Override
+    protected SAMBinaryTagAndValue getBinaryAttributes() {
+        decodeAttributes();
+        return super.getBinaryAttributes();
+    }
+
+    @Override
+    protected void setAttribute(final short tag, final Object value, final boolean isUnsignedArray) {
+        // populate all the attributes from the binary block before overwriting one
+        decodeAttributes();
+        super.setAttribute(tag, value, isUnsignedArray);
+    }
+
+    @Override
+    public void clearAttributes() {
+        binaryAttributes = null;
+        tagIndex = null;
+        super.clearAttributes();
+    }
+
+    @Override
+    protected void eagerDecode() {
+        decodeAttributes();
+        super.eagerDecode();
+    }
+
+    @Override
+    public int hashCode() {
+        decodeAttributes();
+        return super.hashCode();
+    }
+
+    private BinaryTagIndex getTagIndex() {
+        if (tagIndex == null) {
+            tagIndex = new BinaryTagIndex(binaryAttributes, 0, binaryAttributes.length);
+        }
+        return tagIndex;
+    }
+
+    private void decodeAttributes() {
+        if (binaryAttributes == null) {
+            return;
+        }
+        final byte[] bytes = binaryAttributes;
+        binaryAttributes = null;
+        tagIndex = null;
+        setAttributes(BinaryTagCodec.readTags(bytes, 0, bytes.length, getValidationStringency()));
+    }
+}
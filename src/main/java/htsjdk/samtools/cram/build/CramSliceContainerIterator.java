@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.build;
+
+import htsjdk.samtools.cram.CRAIEntry;
+import htsjdk.samtools.cram.CRAISliceIndex;
+import htsjdk.samtools.cram.structure.Container;
+import htsjdk.samtools.cram.structure.ContainerIO;
+import htsjdk.samtools.cram.structure.CramHeader;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.RuntimeIOException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator of CRAM containers holding only the slices named by CRAI entries, for example those returned by
+ * {@link CRAISliceIndex#getSlicesOverlapping}. Each container is read with its compression header and the blocks of
+ * the requested slices only; the other slices of the container are skipped over.
+ */
+public class CramSliceContainerIterator implements Iterator<Container> {
+    private final CramHeader cramHeader;
+    private final SeekableStream seekableStream;
+    private final long firstContainerOffset;
+    private final long[] containerOffsets;
+    private final List<int[]> sliceOffsets;
+    private int nextContainer = 0;
+
+    /**
+     * @param seekableStream the CRAM stream
+     * @param slices the slices to read, ordered by file offset without duplicates
+     */
+    public CramSliceContainerIterator(final SeekableStream seekableStream, final List<CRAIEntry> slices) {
+        this.seekableStream = seekableStream;
+        try {
+            seekableStream.seek(0);
+            this.cramHeader = CramIO.readCramHeader(seekableStream);
+            this.firstContainerOffset = seekableStream.position();
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+
+        // group the slices by container
+        final List<Long> containers = new ArrayList<>();
+        sliceOffsets = new ArrayList<>();
+        int first = 0;
+        for (int i = 1; i <= slices.size(); i++) {
+            if (i == slices.size() ||
+                    slices.get(i).getContainerStartByteOffset() != slices.get(first).getContainerStartByteOffset()) {
+                final int[] offsets = new int[i - first];
+                for (int j = first; j < i; j++) {
+                    offsets[j - first] = slices.get(j).getSliceByteOffsetFromCompressionHeaderStart();
+                }
+                containers.add(slices.get(first).getContainerStartByteOffset());
+                sliceOffsets.add(offsets);
+                first = i;
+            }
+        }
+        containerOffsets = containers.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextContainer < containerOffsets.length;
+    }
+
+    @Override
+    public Container next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Container container = ContainerIO.readContainerSlices(cramHeader.getVersion(), seekableStream,
+                containerOffsets[nextContainer], sliceOffsets.get(nextContainer));
+        nextContainer++;
+        return container;
+    }
+
+    public CramHeader getCramHeader() {
+        return cramHeader;
+    }
+
+    public long getFirstContainerOffset() {
+        return firstContainerOffset;
+    }
+}
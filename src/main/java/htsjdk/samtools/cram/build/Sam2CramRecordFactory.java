@@ -168,7 +168,7 @@ public class Sam2CramRecordFactory {
         try {
             return createVariations(cramRecord, samRecord);
         } catch (final ArrayIndexOutOfBoundsException e) {
-            log.error("Reference bases array length=" + refBases.length);
+            log.error("Reference bases array length=" + (refBases == null ? "none" : refBases.length));
             log.error("Offensive CRAM record: " + cramRecord.toString());
             log.error("Offensive SAM record: " + samRecord.getSAMString());
             throw e;
@@ -221,6 +221,10 @@ public class Sam2CramRecordFactory {
                 case M:
                 case X:
                 case EQ:
+                    if (refBases == null) {
+                        addBases(features, zeroBasedPositionInRead, cigarElementLength, bases);
+                        break;
+                    }
                     addMismatchReadFeatures(cramRecord.alignmentStart, features, zeroBasedPositionInRead, alignmentStartOffset,
                             cigarElementLength, bases, qualityScore);
                     break;
@@ -252,6 +256,14 @@ public class Sam2CramRecordFactory {
         features.add(hardClip);
     }
 
+    /**
+     * Stores aligned read bases verbatim, for records written without a reference.
+     */
+    private void addBases(final List<ReadFeature> features, final int zeroBasedPositionInRead, final int cigarElementLength, final byte[] bases) {
+        features.add(new Bases(zeroBasedPositionInRead + 1,
+                Arrays.copyOfRange(bases, zeroBasedPositionInRead, zeroBasedPositionInRead + cigarElementLength)));
+    }
+
     private void addInsertion(final List<ReadFeature> features, final int zeroBasedPositionInRead, final int cigarElementLength, final byte[] bases) {
         final byte[] insertedBases = Arrays.copyOfRange(bases, zeroBasedPositionInRead, zeroBasedPositionInRead + cigarElementLength);
 
@@ -310,6 +322,10 @@ public class Sam2CramRecordFactory {
         return refBases;
     }
 
+    /**
+     * @param refBases the bases of the reference sequence of the records, or null to store aligned read bases
+     *                 verbatim rather than as differences from a reference
+     */
     public void setRefBases(final byte[] refBases) {
         this.refBases = refBases;
     }
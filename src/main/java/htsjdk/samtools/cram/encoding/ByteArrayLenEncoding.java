@@ -77,6 +77,11 @@ public class ByteArrayLenEncoding extends CRAMEncoding<byte[]> {
         return byteArrayOutputStream.toByteArray();
     }
 
+    @Override
+    public boolean usesCoreBlock() {
+        return lenEncoding.usesCoreBlock() || byteEncoding.usesCoreBlock();
+    }
+
     @Override
     public CRAMCodec<byte[]> buildCodec(final BitInputStream coreBlockInputStream,
                                         final BitOutputStream coreBlockOutputStream,
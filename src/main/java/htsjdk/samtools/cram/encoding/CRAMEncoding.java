@@ -58,6 +58,14 @@ public abstract class CRAMEncoding<T> {
      */
     public abstract byte[] toByteArray();
 
+    /**
+     * @return true if the codecs of this encoding read from or write to the core block, false if they only use
+     * external blocks, in which case values need not be read in order to read the values of other data series
+     */
+    public boolean usesCoreBlock() {
+        return true;
+    }
+
     /**
      * Instantiate the codec represented by this encoding by supplying it with the appropriate streams
      *
@@ -0,0 +1,54 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.encoding;
+
+/**
+ * A {@link CRAMCodec} for integer data series which can also read and write unboxed values.
+ * Record readers and writers use the primitive methods to avoid boxing every field of every record.
+ */
+public interface CRAMIntCodec extends CRAMCodec<Integer> {
+    /**
+     * Read a single value from the stream
+     *
+     * @return the value read
+     */
+    int readInt();
+
+    /**
+     * Write a single value to the stream
+     *
+     * @param value the value to write
+     */
+    void writeInt(final int value);
+
+    @Override
+    default Integer read() {
+        return readInt();
+    }
+
+    @Override
+    default void write(final Integer value) {
+        writeInt(value);
+    }
+}
@@ -17,6 +17,7 @@
  */
 package htsjdk.samtools.cram.encoding.core;
 
+import htsjdk.samtools.cram.encoding.CRAMIntCodec;
 import htsjdk.samtools.cram.io.BitInputStream;
 import htsjdk.samtools.cram.io.BitOutputStream;
 
@@ -28,7 +29,7 @@ import htsjdk.samtools.cram.io.BitOutputStream;
  * Choosing the offset -10,000 means every encoded value will be stored as 0 - 100,
  * requiring only ceil(log2(100)) = 7 bits per value.
  */
-public class BetaIntegerCodec extends CoreCodec<Integer> {
+public class BetaIntegerCodec extends CoreCodec<Integer> implements CRAMIntCodec {
     private final int offset;
     private final int bitsPerValue;
     private final long valueLimit;    // 1 << bitsPerValue (max 32) so int is too small
@@ -53,7 +54,7 @@ public class BetaIntegerCodec extends CoreCodec<Integer> {
     }
 
     @Override
-    public final Integer read() {
+    public final int readInt() {
         return coreBlockInputStream.readBits(bitsPerValue) - offset;
     }
 
@@ -79,7 +80,7 @@ public class BetaIntegerCodec extends CoreCodec<Integer> {
     }
 
     @Override
-    public final void write(final Integer value) {
+    public final void writeInt(final int value) {
         coreBlockOutputStream.write(getAndCheckOffsetValue(value), bitsPerValue);
     }
 }
@@ -17,6 +17,7 @@
  */
 package htsjdk.samtools.cram.encoding.core;
 
+import htsjdk.samtools.cram.encoding.CRAMIntCodec;
 import htsjdk.samtools.cram.encoding.core.huffmanUtils.HuffmanIntHelper;
 import htsjdk.samtools.cram.io.BitInputStream;
 import htsjdk.samtools.cram.io.BitOutputStream;
@@ -25,7 +26,7 @@ import htsjdk.samtools.cram.io.BitOutputStream;
  * Encode Integers using the Canonical Huffman Codec.
  * https://en.wikipedia.org/wiki/Canonical_Huffman_code
  */
-class CanonicalHuffmanIntegerCodec extends CoreCodec<Integer> {
+class CanonicalHuffmanIntegerCodec extends CoreCodec<Integer> implements CRAMIntCodec {
     private final HuffmanIntHelper helper;
 
     /**
@@ -44,12 +45,12 @@ class CanonicalHuffmanIntegerCodec extends CoreCodec<Integer> {
     }
 
     @Override
-    public Integer read() {
+    public int readInt() {
         return helper.read(coreBlockInputStream);
     }
 
     @Override
-    public void write(final Integer value) {
+    public void writeInt(final int value) {
         helper.write(coreBlockOutputStream, value);
     }
 
@@ -17,10 +17,11 @@
  */
 package htsjdk.samtools.cram.encoding.core.experimental;
 
+import htsjdk.samtools.cram.encoding.CRAMIntCodec;
 import htsjdk.samtools.cram.io.BitInputStream;
 import htsjdk.samtools.cram.io.BitOutputStream;
 
-class GolombIntegerCodec extends ExperimentalCodec<Integer> {
+class GolombIntegerCodec extends ExperimentalCodec<Integer> implements CRAMIntCodec {
     private final int m;
     private final boolean quotientBit = true;
     private final int offset;
@@ -38,12 +39,8 @@ class GolombIntegerCodec extends ExperimentalCodec<Integer> {
     }
 
     @Override
-    public final Integer read() {
-        int quotient = 0;
-
-        while (coreBlockInputStream.readBit() == quotientBit) {
-            quotient++;
-        }
+    public final int readInt() {
+        final int quotient = coreBlockInputStream.readUnary(quotientBit);
 
         final int ceiling = (int) (Math.log(m) / Math.log(2) + 1);
         int reminder = coreBlockInputStream.readBits(ceiling - 1);
@@ -57,7 +54,7 @@ class GolombIntegerCodec extends ExperimentalCodec<Integer> {
     }
 
     @Override
-    public final void write(final Integer value) {
+    public final void writeInt(final int value) {
         final int newValue = value + offset;
         final int quotient = newValue / m;
         final int reminder = newValue % m;
@@ -19,6 +19,7 @@ package htsjdk.samtools.cram.encoding.core.huffmanUtils;
 
 import htsjdk.samtools.cram.io.BitInputStream;
 import htsjdk.samtools.cram.io.BitOutputStream;
+import htsjdk.samtools.cram.io.ByteArrayBitInputStream;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -39,6 +40,7 @@ public class HuffmanByteHelper {
     private final int[] sortedValuesByBitCode;
     private final int[] sortedBitLensByBitCode;
     private final int[] bitCodeToValue;
+    private final HuffmanDecodingTable decodingTable;
     private final HuffmanBitCode[] valueToCode;
 
     public HuffmanByteHelper(final byte[] values, final int[] bitLengths) {
@@ -74,6 +76,7 @@ public class HuffmanByteHelper {
         for (int i = 0; i < sortedCodes.length; i++) {
             bitCodeToValue[sortedCodes[i].bitCode] = i;
         }
+        decodingTable = new HuffmanDecodingTable(sortedCodes);
 
         valueToCode = new HuffmanBitCode[255];
         Arrays.fill(valueToCode, null);
@@ -134,6 +137,10 @@ public class HuffmanByteHelper {
     }
 
     final public byte read(final BitInputStream bitInputStream) {
+        if (bitInputStream instanceof ByteArrayBitInputStream) {
+            return (byte) (0xFF & sortedValuesByBitCode[decodingTable.decode((ByteArrayBitInputStream) bitInputStream)]);
+        }
+
         int prevLen = 0;
         int bits = 0;
         for (int i = 0; i < sortedCodes.length; i++) {
@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.encoding.core.huffmanUtils;
+
+import htsjdk.samtools.cram.io.ByteArrayBitInputStream;
+
+import java.util.Arrays;
+
+/**
+ * Decodes canonical Huffman codes by table lookup rather than by reading one code length at a time.
+ *
+ * Codes of up to {@link #MAX_PRIMARY_BITS} bits are resolved with a single lookup on the next bits of the stream.
+ * Longer codes fall back to a search over the code lengths, using the fact that the canonical codes of a given
+ * length are consecutive integers.
+ */
+class HuffmanDecodingTable {
+    static final int MAX_PRIMARY_BITS = 10;
+    private static final int LENGTH_BITS = 6;
+    private static final int LENGTH_MASK = (1 << LENGTH_BITS) - 1;
+
+    private final int primaryBits;
+    private final int maxLength;
+    // (index << LENGTH_BITS) | length for each possible value of the next primaryBits bits, or -1 for longer codes
+    private final int[] primary;
+
+    // for each code length, the first code, the index of that code and the number of codes of that length
+    private final long[] firstCode;
+    private final int[] firstIndex;
+    private final int[] count;
+
+    /**
+     * @param sortedCodes canonical codes sorted by bit length then by code; decoded values are indexes into this array
+     */
+    HuffmanDecodingTable(final HuffmanBitCode[] sortedCodes) {
+        maxLength = sortedCodes.length == 0 ? 0 : sortedCodes[sortedCodes.length - 1].bitLength;
+        if (maxLength > 32) {
+            throw new IllegalArgumentException("Huffman codes longer than 32 bits are not supported: " + maxLength);
+        }
+        primaryBits = Math.min(maxLength, MAX_PRIMARY_BITS);
+        primary = new int[1 << primaryBits];
+        Arrays.fill(primary, -1);
+
+        firstCode = new long[maxLength + 1];
+        firstIndex = new int[maxLength + 1];
+        count = new int[maxLength + 1];
+
+        for (int i = 0; i < sortedCodes.length; i++) {
+            final int length = sortedCodes[i].bitLength;
+            final int code = sortedCodes[i].bitCode;
+            if (count[length]++ == 0) {
+                firstCode[length] = code & 0xFFFFFFFFL;
+                firstIndex[length] = i;
+            }
+            if (length <= primaryBits) {
+                final int shift = primaryBits - length;
+                final int start = code << shift;
+                Arrays.fill(primary, start, start + (1 << shift), (i << LENGTH_BITS) | length);
+            }
+        }
+    }
+
+    /**
+     * Decodes the next symbol
+     *
+     * @param bitInputStream the stream to read from
+     * @return the index of the symbol's code in the sorted codes
+     */
+    int decode(final ByteArrayBitInputStream bitInputStream) {
+        final int entry = primary[bitInputStream.peekBits(primaryBits)];
+        if (entry >= 0) {
+            bitInputStream.skipBits(entry & LENGTH_MASK);
+            return entry >>> LENGTH_BITS;
+        }
+
+        final long bits = bitInputStream.peekBits(maxLength) & 0xFFFFFFFFL;
+        for (int length = primaryBits + 1; length <= maxLength; length++) {
+            final long code = bits >>> (maxLength - length);
+            if (count[length] > 0 && code >= firstCode[length] && code - firstCode[length] < count[length]) {
+                bitInputStream.skipBits(length);
+                return firstIndex[length] + (int) (code - firstCode[length]);
+            }
+        }
+        throw new RuntimeException("Not found.");
+    }
+}
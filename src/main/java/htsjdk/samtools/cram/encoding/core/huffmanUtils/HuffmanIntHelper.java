@@ -19,6 +19,7 @@ package htsjdk.samtools.cram.encoding.core.huffmanUtils;
 
 import htsjdk.samtools.cram.io.BitInputStream;
 import htsjdk.samtools.cram.io.BitOutputStream;
+import htsjdk.samtools.cram.io.ByteArrayBitInputStream;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -41,6 +42,7 @@ public class HuffmanIntHelper {
     private final int[] sortedValuesByBitCode;
     private final int[] sortedBitLensByBitCode;
     private final int[] bitCodeToValue;
+    private final HuffmanDecodingTable decodingTable;
 
     public HuffmanIntHelper(final int[] values, final int[] bitLengths) {
         this.values = values;
@@ -82,6 +84,7 @@ public class HuffmanIntHelper {
         for (int i = 0; i < sortedBitCodes.length; i++) {
             bitCodeToValue[sortedCodes[i].bitCode] = i;
         }
+        decodingTable = new HuffmanDecodingTable(sortedCodes);
     }
 
     private void buildCodeBook() {
@@ -136,6 +139,10 @@ public class HuffmanIntHelper {
     }
 
     public final int read(final BitInputStream bitInputStream) {
+        if (bitInputStream instanceof ByteArrayBitInputStream) {
+            return sortedValuesByBitCode[decodingTable.decode((ByteArrayBitInputStream) bitInputStream)];
+        }
+
         int prevLen = 0;
         int bits = 0;
         for (int i = 0; i < sortedCodes.length; i++) {
@@ -65,6 +65,11 @@ public class ByteArrayStopEncoding extends CRAMEncoding<byte[]> {
         return array;
     }
 
+    @Override
+    public boolean usesCoreBlock() {
+        return false;
+    }
+
     @Override
     public CRAMCodec<byte[]> buildCodec(final BitInputStream coreBlockInputStream,
                                         final BitOutputStream coreBlockOutputStream,
@@ -17,13 +17,16 @@
  */
 package htsjdk.samtools.cram.encoding.external;
 
+import htsjdk.samtools.cram.encoding.CRAMByteCodec;
+
 import java.io.ByteArrayOutputStream;
 import java.io.ByteArrayInputStream;
+import java.util.Arrays;
 
 /**
  * Encode Bytes using an External Data Block
  */
-public class ExternalByteCodec extends ExternalCodec<Byte> {
+public class ExternalByteCodec extends ExternalCodec<Byte> implements CRAMByteCodec {
 
     /**
      * Construct an External Codec for Bytes
@@ -37,12 +40,19 @@ public class ExternalByteCodec extends ExternalCodec<Byte> {
     }
 
     @Override
-    public Byte read() {
+    public byte readByte() {
         return (byte) inputStream.read();
     }
 
     @Override
-    public void write(final Byte object) {
+    public void readByteArray(final byte[] values, final int offset, final int length) {
+        final int read = Math.max(0, inputStream.read(values, offset, length));
+        // as with readByte(), reading past the end of the block yields -1 rather than an error
+        Arrays.fill(values, offset + read, offset + length, (byte) -1);
+    }
+
+    @Override
+    public void writeByte(final byte object) {
         outputStream.write(object);
     }
 
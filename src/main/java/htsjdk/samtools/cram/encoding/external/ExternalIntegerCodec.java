@@ -17,6 +17,7 @@
  */
 package htsjdk.samtools.cram.encoding.external;
 
+import htsjdk.samtools.cram.encoding.CRAMIntCodec;
 import htsjdk.samtools.cram.io.ITF8;
 
 import java.io.ByteArrayInputStream;
@@ -25,7 +26,7 @@ import java.io.ByteArrayOutputStream;
 /**
  * Encode Integers using an External Data Block
  */
-class ExternalIntegerCodec extends ExternalCodec<Integer> {
+class ExternalIntegerCodec extends ExternalCodec<Integer> implements CRAMIntCodec {
     /**
      * Construct an External Codec for Integers
      *
@@ -38,12 +39,12 @@ class ExternalIntegerCodec extends ExternalCodec<Integer> {
     }
 
     @Override
-    public Integer read() {
+    public int readInt() {
         return ITF8.readUnsignedITF8(inputStream);
     }
 
     @Override
-    public void write(final Integer value) {
+    public void writeInt(final int value) {
         ITF8.writeUnsignedITF8(value, outputStream);
     }
 
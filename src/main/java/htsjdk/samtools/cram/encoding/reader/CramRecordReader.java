@@ -20,6 +20,7 @@ package htsjdk.samtools.cram.encoding.reader;
 import htsjdk.samtools.SAMFormatException;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.cram.encoding.EncodingFactory;
 import htsjdk.samtools.cram.encoding.readfeatures.*;
 import htsjdk.samtools.cram.ref.ReferenceContext;
 import htsjdk.samtools.cram.structure.*;
@@ -28,11 +29,18 @@ import htsjdk.samtools.util.RuntimeIOException;
 
 import java.io.ByteArrayInputStream;
 import java.nio.charset.Charset;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class CramRecordReader {
+    // stand-ins for values which are not decoded
+    private static final byte SKIPPED_BASE = 'N';
+    private static final byte SKIPPED_SCORE = -1;
+    private static final byte[] SKIPPED_BYTES = new byte[0];
+
     private final DataSeriesReader<Integer> bitFlagsCodec;
     private final DataSeriesReader<Integer> compressionBitFlagsCodec;
     private final DataSeriesReader<Integer> readLengthCodec;
@@ -67,6 +75,7 @@ public class CramRecordReader {
     private final Charset charset = Charset.forName("UTF8");
 
     private final boolean captureReadNames;
+    private final boolean decodeTags;
     private final byte[][][] tagIdDictionary;
     private final ReferenceContext refContext;
     protected final ValidationStringency validationStringency;
@@ -76,6 +85,7 @@ public class CramRecordReader {
     private final Map<DataSeries, EncodingParams> encodingMap;
     private final BitInputStream coreBlockInputStream;
     private final Map<Integer, ByteArrayInputStream> externalBlockInputMap;
+    private final Set<CRAMRecordField> fields;
 
     private CramCompressionRecord prevRecord;
     private int recordCounter = 0;
@@ -95,7 +105,29 @@ public class CramRecordReader {
                             final CompressionHeader header,
                             final ReferenceContext refContext,
                             final ValidationStringency validationStringency) {
+        this(coreInputStream, externalInputMap, header, refContext, validationStringency, CRAMRecordField.ALL);
+    }
+
+    /**
+     * Initialize a Cram Record Reader which decodes only some fields of each record.  Data series used only by other
+     * fields are not read if they are stored in external blocks, so the streams of those blocks are not requested
+     * from the external input map.
+     *
+     * @param coreInputStream Core data block bit stream, to be read by non-external Encodings
+     * @param externalInputMap External data block byte stream map, to be read by external Encodings
+     * @param header the associated Cram Compression Header
+     * @param refContext the reference context to assign to these records
+     * @param validationStringency how strict to be when reading this CRAM record
+     * @param fields the fields to decode
+     */
+    public CramRecordReader(final BitInputStream coreInputStream,
+                            final Map<Integer, ByteArrayInputStream> externalInputMap,
+                            final CompressionHeader header,
+                            final ReferenceContext refContext,
+                            final ValidationStringency validationStringency,
+                            final Set<CRAMRecordField> fields) {
         this.captureReadNames = header.readNamesIncluded;
+        this.decodeTags = fields.contains(CRAMRecordField.TAGS);
         this.tagIdDictionary = header.dictionary;
         this.refContext = refContext;
         this.validationStringency = validationStringency;
@@ -104,20 +136,21 @@ public class CramRecordReader {
         this.encodingMap = header.encodingMap;
         this.coreBlockInputStream = coreInputStream;
         this.externalBlockInputMap = externalInputMap;
+        this.fields = fields;
 
         bitFlagsCodec =                 createDataReader(DataSeries.BF_BitFlags);
         compressionBitFlagsCodec =      createDataReader(DataSeries.CF_CompressionBitFlags);
         readLengthCodec =               createDataReader(DataSeries.RL_ReadLength);
         alignmentStartCodec =           createDataReader(DataSeries.AP_AlignmentPositionOffset);
         readGroupCodec =                createDataReader(DataSeries.RG_ReadGroup);
-        readNameCodec =                 createDataReader(DataSeries.RN_ReadName);
+        readNameCodec =                 createDataReader(DataSeries.RN_ReadName, CRAMRecordField.READ_NAME);
         distanceToNextFragmentCodec =   createDataReader(DataSeries.NF_RecordsToNextFragment);
         numberOfReadFeaturesCodec =     createDataReader(DataSeries.FN_NumberOfReadFeatures);
         readFeaturePositionCodec =      createDataReader(DataSeries.FP_FeaturePosition);
         readFeatureCodeCodec =          createDataReader(DataSeries.FC_FeatureCode);
-        baseCodec =                     createDataReader(DataSeries.BA_Base);
-        qualityScoreCodec =             createDataReader(DataSeries.QS_QualityScore);
-        baseSubstitutionCodec =         createDataReader(DataSeries.BS_BaseSubstitutionCode);
+        baseCodec =                     createDataReader(DataSeries.BA_Base, CRAMRecordField.BASES);
+        qualityScoreCodec =             createDataReader(DataSeries.QS_QualityScore, CRAMRecordField.QUALITY_SCORES);
+        baseSubstitutionCodec =         createDataReader(DataSeries.BS_BaseSubstitutionCode, CRAMRecordField.BASES);
         insertionCodec =                createDataReader(DataSeries.IN_Insertion);
         softClipCodec =                 createDataReader(DataSeries.SC_SoftClip);
         hardClipCodec =                 createDataReader(DataSeries.HC_HardClip);
@@ -132,17 +165,41 @@ public class CramRecordReader {
         refIdCodec =                    createDataReader(DataSeries.RI_RefId);
         refSkipCodec =                  createDataReader(DataSeries.RS_RefSkip);
         basesCodec =                    createDataReader(DataSeries.BB_bases);
-        scoresCodec =                   createDataReader(DataSeries.QQ_scores);
+        scoresCodec =                   createDataReader(DataSeries.QQ_scores, CRAMRecordField.QUALITY_SCORES);
 
         // special case: re-encodes QS as a byte array
-        qualityScoreArrayCodec = new DataSeriesReader<>(DataSeriesType.BYTE_ARRAY, header.encodingMap.get(DataSeries.QS_QualityScore), coreInputStream, externalInputMap);
+        qualityScoreArrayCodec = isRead(DataSeriesType.BYTE_ARRAY, header.encodingMap.get(DataSeries.QS_QualityScore), CRAMRecordField.QUALITY_SCORES) ?
+                new DataSeriesReader<>(DataSeriesType.BYTE_ARRAY, header.encodingMap.get(DataSeries.QS_QualityScore), coreInputStream, externalInputMap) :
+                null;
 
+        // a tag without a reader is skipped
         tagValueCodecs = header.tMap.entrySet()
                 .stream()
+                .filter(mapEntry -> isRead(DataSeriesType.BYTE_ARRAY, mapEntry.getValue(), CRAMRecordField.TAGS))
                 .collect(Collectors.toMap(Map.Entry::getKey,
                         mapEntry -> new DataSeriesReader<>(DataSeriesType.BYTE_ARRAY, mapEntry.getValue(), coreInputStream, externalInputMap)));
     }
 
+    /**
+     * A data series must be read if its field is decoded, or if it is in the core block, whose values are read in order.
+     */
+    private boolean isRead(final DataSeriesType type, final EncodingParams params, final CRAMRecordField field) {
+        return fields.contains(field) || params == null ||
+                EncodingFactory.createEncoding(type, params.id, params.params).usesCoreBlock();
+    }
+
+    /**
+     * Create a Data Reader for a Data Series which is only needed for one field of a record
+     *
+     * @param dataSeries Which Data Series to read
+     * @param field the field the Data Series is used for
+     * @param <T> The Java data type associated with the Data Series
+     * @return a Data Reader for the given Data Series, or null if it's not in the encoding map or need not be read
+     */
+    private <T> DataSeriesReader<T> createDataReader(final DataSeries dataSeries, final CRAMRecordField field) {
+        return isRead(dataSeries.getType(), encodingMap.get(dataSeries), field) ? createDataReader(dataSeries) : null;
+    }
+
     /**
      * Look up a Data Series in the Cram Compression Header's Encoding Map.  If found, create a Data Reader
      *
@@ -174,76 +231,81 @@ public class CramRecordReader {
             // throw new RuntimeException("Test mark not found.");
             // }
 
-            cramRecord.flags = bitFlagsCodec.readData();
-            cramRecord.compressionFlags = compressionBitFlagsCodec.readData();
+            cramRecord.flags = bitFlagsCodec.readIntData();
+            cramRecord.compressionFlags = compressionBitFlagsCodec.readIntData();
             if (refContext.isMultiRef()) {
-                cramRecord.sequenceId = refIdCodec.readData();
+                cramRecord.sequenceId = refIdCodec.readIntData();
             } else {
                 // either unmapped (-1) or a valid ref
                 cramRecord.sequenceId = refContext.getSerializableId();
             }
 
-            cramRecord.readLength = readLengthCodec.readData();
+            cramRecord.readLength = readLengthCodec.readIntData();
             if (APDelta) {
-                cramRecord.alignmentStart = prevAlignmentStart + alignmentStartCodec.readData();
+                cramRecord.alignmentStart = prevAlignmentStart + alignmentStartCodec.readIntData();
             } else {
-                cramRecord.alignmentStart = alignmentStartCodec.readData();
+                cramRecord.alignmentStart = alignmentStartCodec.readIntData();
             }
 
-            cramRecord.readGroupID = readGroupCodec.readData();
+            cramRecord.readGroupID = readGroupCodec.readIntData();
 
-            if (captureReadNames) {
+            if (captureReadNames && readNameCodec != null) {
                 cramRecord.readName = new String(readNameCodec.readData(), charset);
             }
 
             // mate record:
             if (cramRecord.isDetached()) {
-                cramRecord.mateFlags = mateBitFlagCodec.readData();
-                if (!captureReadNames) {
+                cramRecord.mateFlags = mateBitFlagCodec.readIntData();
+                if (!captureReadNames && readNameCodec != null) {
                     cramRecord.readName = new String(readNameCodec.readData(), charset);
                 }
 
-                cramRecord.mateSequenceID = mateReferenceIdCodec.readData();
-                cramRecord.mateAlignmentStart = mateAlignmentStartCodec.readData();
-                cramRecord.templateSize = insertSizeCodec.readData();
+                cramRecord.mateSequenceID = mateReferenceIdCodec.readIntData();
+                cramRecord.mateAlignmentStart = mateAlignmentStartCodec.readIntData();
+                cramRecord.templateSize = insertSizeCodec.readIntData();
             } else if (cramRecord.isHasMateDownStream()) {
-                cramRecord.recordsToNextFragment = distanceToNextFragmentCodec.readData();
+                cramRecord.recordsToNextFragment = distanceToNextFragmentCodec.readIntData();
             }
 
-            final Integer tagIdList = tagIdListCodec.readData();
+            final int tagIdList = tagIdListCodec.readIntData();
             final byte[][] ids = tagIdDictionary[tagIdList];
             if (ids.length > 0) {
-                final int tagCount = ids.length;
-                cramRecord.tags = new ReadTag[tagCount];
+                final ReadTag[] tags = decodeTags ? new ReadTag[ids.length] : null;
                 for (int i = 0; i < ids.length; i++) {
                     final int id = ReadTag.name3BytesToInt(ids[i]);
                     final DataSeriesReader<byte[]> dataSeriesReader = tagValueCodecs.get(id);
-                    final ReadTag tag = new ReadTag(id, dataSeriesReader.readData(), validationStringency);
-                    cramRecord.tags[i] = tag;
+                    if (!decodeTags) {
+                        if (dataSeriesReader != null) {
+                            dataSeriesReader.readData();
+                        }
+                        continue;
+                    }
+                    tags[i] = new ReadTag(id, dataSeriesReader.readData(), validationStringency);
                 }
+                cramRecord.tags = tags;
             }
 
             if (!cramRecord.isSegmentUnmapped()) {
                 // reading read features:
-                final int size = numberOfReadFeaturesCodec.readData();
+                final int size = numberOfReadFeaturesCodec.readIntData();
                 int prevPos = 0;
-                final java.util.List<ReadFeature> readFeatures = new LinkedList<>();
+                final java.util.List<ReadFeature> readFeatures = new ArrayList<>(size);
                 cramRecord.readFeatures = readFeatures;
                 for (int i = 0; i < size; i++) {
-                    final Byte operator = readFeatureCodeCodec.readData();
+                    final byte operator = readFeatureCodeCodec.readByteData();
 
-                    final int pos = prevPos + readFeaturePositionCodec.readData();
+                    final int pos = prevPos + readFeaturePositionCodec.readIntData();
                     prevPos = pos;
 
                     switch (operator) {
                         case ReadBase.operator:
-                            final ReadBase readBase = new ReadBase(pos, baseCodec.readData(), qualityScoreCodec.readData());
+                            final ReadBase readBase = new ReadBase(pos, readBase(), readScore());
                             readFeatures.add(readBase);
                             break;
                         case Substitution.operator:
                             final Substitution substitution = new Substitution();
                             substitution.setPosition(pos);
-                            final byte code = baseSubstitutionCodec.readData();
+                            final byte code = baseSubstitutionCodec == null ? 0 : baseSubstitutionCodec.readByteData();
                             substitution.setCode(code);
                             readFeatures.add(substitution);
                             break;
@@ -256,35 +318,35 @@ public class CramRecordReader {
                             readFeatures.add(softClip);
                             break;
                         case HardClip.operator:
-                            final HardClip hardCLip = new HardClip(pos, hardClipCodec.readData());
+                            final HardClip hardCLip = new HardClip(pos, hardClipCodec.readIntData());
                             readFeatures.add(hardCLip);
                             break;
                         case Padding.operator:
-                            final Padding padding = new Padding(pos, paddingCodec.readData());
+                            final Padding padding = new Padding(pos, paddingCodec.readIntData());
                             readFeatures.add(padding);
                             break;
                         case Deletion.operator:
-                            final Deletion deletion = new Deletion(pos, deletionLengthCodec.readData());
+                            final Deletion deletion = new Deletion(pos, deletionLengthCodec.readIntData());
                             readFeatures.add(deletion);
                             break;
                         case RefSkip.operator:
-                            final RefSkip refSkip = new RefSkip(pos, refSkipCodec.readData());
+                            final RefSkip refSkip = new RefSkip(pos, refSkipCodec.readIntData());
                             readFeatures.add(refSkip);
                             break;
                         case InsertBase.operator:
-                            final InsertBase insertBase = new InsertBase(pos, baseCodec.readData());
+                            final InsertBase insertBase = new InsertBase(pos, readBase());
                             readFeatures.add(insertBase);
                             break;
                         case BaseQualityScore.operator:
-                            final BaseQualityScore baseQualityScore = new BaseQualityScore(pos, qualityScoreCodec.readData());
+                            final BaseQualityScore baseQualityScore = new BaseQualityScore(pos, readScore());
                             readFeatures.add(baseQualityScore);
                             break;
                         case Bases.operator:
-                            final Bases bases = new Bases(pos, basesCodec.readData());
+                            final Bases bases = new Bases(pos, basesCodec == null ? SKIPPED_BYTES : basesCodec.readData());
                             readFeatures.add(bases);
                             break;
                         case Scores.operator:
-                            final Scores scores = new Scores(pos, scoresCodec.readData());
+                            final Scores scores = new Scores(pos, scoresCodec == null ? SKIPPED_BYTES : scoresCodec.readData());
                             readFeatures.add(scores);
                             break;
                         default:
@@ -293,24 +355,25 @@ public class CramRecordReader {
                 }
 
                 // mapping quality:
-                cramRecord.mappingQuality = mappingScoreCodec.readData();
+                cramRecord.mappingQuality = mappingScoreCodec.readIntData();
                 if (cramRecord.isForcePreserveQualityScores()) {
-                    cramRecord.qualityScores = qualityScoreArrayCodec.readDataArray(cramRecord.readLength);
+                    cramRecord.qualityScores = readScores(cramRecord.readLength);
                 }
             } else {
                 if (cramRecord.isUnknownBases()) {
                     cramRecord.readBases = SAMRecord.NULL_SEQUENCE;
                     cramRecord.qualityScores = SAMRecord.NULL_QUALS;
                 } else {
-                    final byte[] bases = new byte[cramRecord.readLength];
-                    for (int i = 0; i < bases.length; i++) {
-                        bases[i] = baseCodec.readData();
+                    if (baseCodec != null) {
+                        final byte[] bases = new byte[cramRecord.readLength];
+                        baseCodec.readByteData(bases, 0, bases.length);
+                        cramRecord.readBases = bases;
+                    } else {
+                        cramRecord.readBases = SAMRecord.NULL_SEQUENCE;
                     }
 
-                    cramRecord.readBases = bases;
-
                     if (cramRecord.isForcePreserveQualityScores()) {
-                        cramRecord.qualityScores = qualityScoreArrayCodec.readDataArray(cramRecord.readLength);
+                        cramRecord.qualityScores = readScores(cramRecord.readLength);
                     }
                 }
             }
@@ -337,4 +400,21 @@ public class CramRecordReader {
         return cramRecord.alignmentStart;
     }
 
+    private byte readBase() {
+        return baseCodec == null ? SKIPPED_BASE : baseCodec.readByteData();
+    }
+
+    private byte readScore() {
+        return qualityScoreCodec == null ? SKIPPED_SCORE : qualityScoreCodec.readByteData();
+    }
+
+    private byte[] readScores(final int length) {
+        if (qualityScoreArrayCodec == null) {
+            final byte[] scores = new byte[length];
+            Arrays.fill(scores, SKIPPED_SCORE);
+            return scores;
+        }
+        return qualityScoreArrayCodec.readDataArray(length);
+    }
+
 }
@@ -17,7 +17,9 @@
  */
 package htsjdk.samtools.cram.encoding.reader;
 
+import htsjdk.samtools.cram.encoding.CRAMByteCodec;
 import htsjdk.samtools.cram.encoding.CRAMCodec;
+import htsjdk.samtools.cram.encoding.CRAMIntCodec;
 import htsjdk.samtools.cram.structure.DataSeriesType;
 import htsjdk.samtools.cram.encoding.CRAMEncoding;
 import htsjdk.samtools.cram.encoding.EncodingFactory;
@@ -34,6 +36,9 @@ import java.util.Map;
  */
 public class DataSeriesReader<T> {
     private final CRAMCodec<T> codec;
+    // the codec, if it can read unboxed values
+    private final CRAMIntCodec intCodec;
+    private final CRAMByteCodec byteCodec;
 
     /**
      * Initialize a Data Series reader
@@ -51,6 +56,8 @@ public class DataSeriesReader<T> {
         final CRAMEncoding<T> encoding = EncodingFactory.createEncoding(valueType, params.id, params.params);
 
         this.codec = encoding.buildReadCodec(bitInputStream, inputMap);
+        this.intCodec = codec instanceof CRAMIntCodec ? (CRAMIntCodec) codec : null;
+        this.byteCodec = codec instanceof CRAMByteCodec ? (CRAMByteCodec) codec : null;
     }
 
     /**
@@ -69,4 +76,36 @@ public class DataSeriesReader<T> {
     T readDataArray(final int length) {
         return codec.read(length);
     }
+
+    /**
+     * Read a single int value without boxing it. Only valid for integer data series.
+     * @return the value read
+     */
+    int readIntData() {
+        return intCodec != null ? intCodec.readInt() : (Integer) codec.read();
+    }
+
+    /**
+     * Read a single byte value without boxing it. Only valid for byte data series.
+     * @return the value read
+     */
+    byte readByteData() {
+        return byteCodec != null ? byteCodec.readByte() : (Byte) codec.read();
+    }
+
+    /**
+     * Read consecutive byte values into an existing array. Only valid for byte data series.
+     * @param values the array to read into
+     * @param offset the position in the array of the first value
+     * @param length the number of values to read
+     */
+    void readByteData(final byte[] values, final int offset, final int length) {
+        if (byteCodec != null) {
+            byteCodec.readByteArray(values, offset, length);
+        } else {
+            for (int i = offset; i < offset + length; i++) {
+                values[i] = (Byte) codec.read();
+            }
+        }
+    }
 }
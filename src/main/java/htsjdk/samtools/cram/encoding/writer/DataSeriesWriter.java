@@ -17,7 +17,9 @@
  */
 package htsjdk.samtools.cram.encoding.writer;
 
+import htsjdk.samtools.cram.encoding.CRAMByteCodec;
 import htsjdk.samtools.cram.encoding.CRAMCodec;
+import htsjdk.samtools.cram.encoding.CRAMIntCodec;
 import htsjdk.samtools.cram.structure.DataSeriesType;
 import htsjdk.samtools.cram.encoding.CRAMEncoding;
 import htsjdk.samtools.cram.encoding.EncodingFactory;
@@ -39,6 +41,9 @@ import java.util.Map;
  */
 public class DataSeriesWriter<T> {
     private final CRAMCodec<T> codec;
+    // the codec, if it can write unboxed values
+    private final CRAMIntCodec intCodec;
+    private final CRAMByteCodec byteCodec;
 
     /**
      * Initialize a Data Series writer
@@ -56,6 +61,8 @@ public class DataSeriesWriter<T> {
         final CRAMEncoding<T> encoding = EncodingFactory.createEncoding(valueType, params.id, params.params);
 
         this.codec = encoding.buildWriteCodec(bitOutputStream, outputMap);
+        this.intCodec = codec instanceof CRAMIntCodec ? (CRAMIntCodec) codec : null;
+        this.byteCodec = codec instanceof CRAMByteCodec ? (CRAMByteCodec) codec : null;
     }
 
     /**
@@ -66,5 +73,32 @@ public class DataSeriesWriter<T> {
     void writeData(final T value) {
         codec.write(value);
     }
-}
 
+    /**
+     * Write a single int value without boxing it. Only valid for integer data series.
+     *
+     * @param value data to be written
+     */
+    @SuppressWarnings("unchecked")
+    void writeIntData(final int value) {
+        if (intCodec != null) {
+            intCodec.writeInt(value);
+        } else {
+            ((CRAMCodec<Integer>) codec).write(value);
+        }
+    }
+
+    /**
+     * Write a single byte value without boxing it. Only valid for byte data series.
+     *
+     * @param value data to be written
+     */
+    @SuppressWarnings("unchecked")
+    void writeByteData(final byte value) {
+        if (byteCodec != null) {
+            byteCodec.writeByte(value);
+        } else {
+            ((CRAMCodec<Byte>) codec).write(value);
+        }
+    }
+}
@@ -45,4 +45,19 @@ public interface BitInputStream extends Closeable {
      * @param length number of bits to read
      */
     long readLongBits(int length);
+
+    /**
+     * Read a unary code: a run of bits equal to the given bit, terminated by a single bit of the opposite value.
+     * The terminating bit is consumed.
+     *
+     * @param bit the value of the bits in the run
+     * @return the length of the run, not counting the terminating bit
+     */
+    default int readUnary(final boolean bit) {
+        int count = 0;
+        while (readBit() == bit) {
+            count++;
+        }
+        return count;
+    }
 }
@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.io;
+
+import htsjdk.samtools.util.RuntimeEOFException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link BitInputStream} over an in-memory block, such as the uncompressed CRAM core block.
+ *
+ * Bits are served from a 64-bit buffer which is refilled several bytes at a time, so most reads are a shift and a
+ * mask rather than a call per byte. The buffer also allows callers to look ahead without consuming bits, which
+ * table-driven decoders use through {@link #peekBits(int)} and {@link #skipBits(int)}.
+ */
+public final class ByteArrayBitInputStream implements BitInputStream {
+    private final byte[] data;
+    private final int limit;
+    private int position;
+
+    // unread bits, left-aligned so that the next bit is the most significant one; the remaining bits are 0
+    private long buffer = 0;
+    private int bufferedBits = 0;
+
+    /**
+     * @param data the bytes to read bits from
+     */
+    public ByteArrayBitInputStream(final byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * @param data the array containing the bytes to read bits from
+     * @param offset the position in the array of the first byte
+     * @param length the number of bytes to read
+     */
+    public ByteArrayBitInputStream(final byte[] data, final int offset, final int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid offset %d and length %d for an array of length %d", offset, length, data.length));
+        }
+        this.data = data;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Reads the remaining bytes of a buffer. The buffer's position is not changed.
+     *
+     * @param byteBuffer the bytes to read bits from
+     */
+    public ByteArrayBitInputStream(final ByteBuffer byteBuffer) {
+        if (byteBuffer.hasArray()) {
+            this.data = byteBuffer.array();
+            this.position = byteBuffer.arrayOffset() + byteBuffer.position();
+        } else {
+            this.data = new byte[byteBuffer.remaining()];
+            byteBuffer.duplicate().get(data);
+            this.position = 0;
+        }
+        this.limit = position + byteBuffer.remaining();
+    }
+
+    /** Moves as many whole bytes as will fit into the bit buffer. */
+    private void refill() {
+        if (bufferedBits == 0 && position + 8 <= limit) {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (data[position + i] & 0xFFL);
+            }
+            position += 8;
+            buffer = bits;
+            bufferedBits = 64;
+            return;
+        }
+        while (bufferedBits <= 56 && position < limit) {
+            buffer |= (data[position++] & 0xFFL) << (56 - bufferedBits);
+            bufferedBits += 8;
+        }
+    }
+
+    private void consume(final int n) {
+        buffer = n == 64 ? 0 : buffer << n;
+        bufferedBits -= n;
+    }
+
+    @Override
+    public boolean readBit() {
+        if (bufferedBits == 0) {
+            refill();
+            if (bufferedBits == 0) {
+                throw new RuntimeEOFException("End of stream.");
+            }
+        }
+        final boolean bit = buffer < 0;
+        buffer <<= 1;
+        bufferedBits--;
+        return bit;
+    }
+
+    @Override
+    public int readBits(final int n) {
+        if (n == 0) {
+            return 0;
+        }
+        if (n < 0 || n > 32) {
+            throw new IllegalArgumentException("Can only read between 0 and 32 bits into an int: " + n);
+        }
+        if (bufferedBits < n) {
+            refill();
+            if (bufferedBits < n) {
+                throw new RuntimeEOFException("End of stream.");
+            }
+        }
+        final int bits = (int) (buffer >>> (64 - n));
+        consume(n);
+        return bits;
+    }
+
+    @Override
+    public long readLongBits(final int n) {
+        if (n > 64) {
+            throw new IllegalArgumentException("More then 64 bits are requested in one read from bit stream.");
+        }
+        if (n <= 32) {
+            return readBits(n) & 0xFFFFFFFFL;
+        }
+        final long high = readBits(n - 32) & 0xFFFFFFFFL;
+        return (high << 32) | (readBits(32) & 0xFFFFFFFFL);
+    }
+
+    @Override
+    public int readUnary(final boolean bit) {
+        int count = 0;
+        while (true) {
+            if (bufferedBits == 0) {
+                refill();
+                if (bufferedBits == 0) {
+                    throw new RuntimeEOFException("End of stream.");
+                }
+            }
+            // a run reaching past the buffered bits may continue in the next bytes
+            final int run = Long.numberOfLeadingZeros(bit ? ~buffer : buffer);
+            if (run < bufferedBits) {
+                consume(run + 1);
+                return count + run;
+            }
+            count += bufferedBits;
+            consume(bufferedBits);
+        }
+    }
+
+    /**
+     * Returns the next bits of the stream without consuming them. Bits beyond the end of the stream are returned as 0.
+     *
+     * @param n the number of bits, at most 32
+     * @return the bits in the low end of an int
+     */
+    public int peekBits(final int n) {
+        if (n == 0) {
+            return 0;
+        }
+        if (bufferedBits < n) {
+            refill();
+        }
+        return (int) (buffer >>> (64 - n));
+    }
+
+    /**
+     * Consumes bits which have been examined with {@link #peekBits(int)}.
+     *
+     * @param n the number of bits to consume, no more than the last peek
+     */
+    public void skipBits(final int n) {
+        if (bufferedBits < n) {
+            refill();
+            if (bufferedBits < n) {
+                throw new RuntimeEOFException("End of stream.");
+            }
+        }
+        consume(n);
+    }
+
+    /** @return the number of bits which have not been read */
+    public long available() {
+        return bufferedBits + 8L * (limit - position);
+    }
+
+    @Override
+    public void close() {
+    }
+}
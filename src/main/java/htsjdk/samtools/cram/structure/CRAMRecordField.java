@@ -0,0 +1,56 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.structure;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The parts of a CRAM record which a reader may be asked not to decode.
+ *
+ * Positions, flags, mapping quality, CIGAR, read group and mate information are always decoded.  A data series which
+ * is only used by fields that are not decoded is not read, as long as it is stored in an external block, and an
+ * external block is not decompressed if none of its data series are read.
+ */
+public enum CRAMRecordField {
+    /** Read names; records whose names are not decoded are given generated names, as for CRAMs without read names. */
+    READ_NAME,
+
+    /**
+     * Read bases.  Records whose bases are not decoded have none, and no reference sequence is needed to decode them.
+     * The bases of insertions and soft clips, and aligned bases stored without a reference, are still read, since the
+     * CIGAR depends on their length.
+     */
+    BASES,
+
+    /** Base quality scores.  Records with quality scores but no bases do not pass validation. */
+    QUALITY_SCORES,
+
+    /** Tags, apart from RG which is always decoded. */
+    TAGS;
+
+    /** All fields, for decoding complete records. */
+    public static final Set<CRAMRecordField> ALL = Collections.unmodifiableSet(EnumSet.allOf(CRAMRecordField.class));
+}
@@ -75,6 +75,18 @@ public class CompressionHeader {
         return APDelta;
     }
 
+    /**
+     * @return false if the bases of the records are stored without reference to a reference sequence, so that the
+     * container can be read without one
+     */
+    public boolean isReferenceRequired() {
+        return referenceRequired;
+    }
+
+    public void setReferenceRequired(final boolean referenceRequired) {
+        this.referenceRequired = referenceRequired;
+    }
+
     private byte[][][] parseDictionary(final byte[] bytes) {
         final List<List<byte[]>> dictionary = new ArrayList<List<byte[]>>();
         {
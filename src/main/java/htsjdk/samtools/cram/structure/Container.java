@@ -103,6 +103,18 @@ public class Container {
         this.byteOffset = byteOffset;
     }
 
+    /**
+     * Set the byteOffset of this Container and its {@link Slice}s, for a Container built before its position in the
+     * stream was known.
+     * @param byteOffset the byte location in the stream where this Container begins
+     */
+    public void setByteOffset(final long byteOffset) {
+        for (final Slice slice : slices) {
+            slice.containerByteOffset = byteOffset;
+        }
+        this.byteOffset = byteOffset;
+    }
+
     /**
      * Construct this Container by providing its {@link ReferenceContext}
      * @param refContext the reference context associated with this container
@@ -1,5 +1,6 @@
 package htsjdk.samtools.cram.structure;
 
+import htsjdk.samtools.cram.CRAMException;
 import htsjdk.samtools.cram.build.CramIO;
 import htsjdk.samtools.cram.common.CramVersionPolicies;
 import htsjdk.samtools.cram.common.Version;
@@ -81,6 +82,58 @@ public class ContainerIO {
         return readContainer(version, countingInputStream, containerByteOffset);
     }
 
+    /**
+     * Reads the header and compression header of the container at the given offset, followed by only the requested
+     * slices. The slices are located with the container's landmarks, so the blocks of other slices are not read.
+     *
+     * @param version CRAM version to expect
+     * @param seekableInputStream the {@link SeekableStream} stream to read from
+     * @param containerByteOffset the byte offset of the container from the start of the stream
+     * @param sliceByteOffsets the offsets of the slices to read from the start of the compression header, as found in
+     *                         the container's landmarks and in CRAI entries, in increasing order
+     * @return a container holding only the requested slices
+     */
+    public static Container readContainerSlices(final Version version,
+                                                final SeekableStream seekableInputStream,
+                                                final long containerByteOffset,
+                                                final int[] sliceByteOffsets) {
+        try {
+            seekableInputStream.seek(containerByteOffset);
+            final Container container = ContainerHeaderIO.readContainerHeader(version.major, seekableInputStream, containerByteOffset);
+            if (container.isEOF()) {
+                throw new CRAMException("Expected a container but found EOF at byte offset " + containerByteOffset);
+            }
+            final long compressionHeaderOffset = seekableInputStream.position();
+            container.compressionHeader = CompressionHeader.read(version.major, seekableInputStream);
+
+            final List<Slice> slices = new ArrayList<>(sliceByteOffsets.length);
+            int landmarkIndex = 0;
+            for (final int sliceByteOffset : sliceByteOffsets) {
+                while (landmarkIndex < container.landmarks.length && container.landmarks[landmarkIndex] < sliceByteOffset) {
+                    landmarkIndex++;
+                }
+                if (landmarkIndex == container.landmarks.length || container.landmarks[landmarkIndex] != sliceByteOffset) {
+                    throw new CRAMException(String.format("No slice starts at offset %d in the container at byte offset %d",
+                            sliceByteOffset, containerByteOffset));
+                }
+
+                seekableInputStream.seek(compressionHeaderOffset + sliceByteOffset);
+                final Slice slice = SliceIO.read(version.major, seekableInputStream);
+                slice.index = landmarkIndex;
+                slice.byteOffsetFromCompressionHeaderStart = sliceByteOffset;
+                slice.byteSize = (landmarkIndex + 1 < container.landmarks.length ?
+                        container.landmarks[landmarkIndex + 1] : container.containerBlocksByteSize) - sliceByteOffset;
+                slices.add(slice);
+            }
+
+            container.setSlicesAndByteOffset(slices, containerByteOffset);
+            return container;
+        }
+        catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
     /**
      * Reads next container from the stream.
      *
@@ -163,9 +216,7 @@ public class ContainerIO {
             container.blockCount++;
             // 1 Core Data Block per Slice
             container.blockCount++;
-            // TODO: should we count the embedded reference block as an additional block?
-            if (slice.embeddedRefBlock != null) container.blockCount++;
-            // Each Slice has a variable number of External Data Blocks
+            // Each Slice has a variable number of External Data Blocks, including the embedded reference block if any
             container.blockCount += slice.external.size();
         }
         container.landmarks = landmarks.stream().mapToInt(Integer::intValue).toArray();
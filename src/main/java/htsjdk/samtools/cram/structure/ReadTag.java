@@ -48,10 +48,15 @@ public class ReadTag implements Comparable<ReadTag> {
     private short code;
     private byte index;
 
+    // the encoded value of a decoded tag, which is only restored to an Object on demand
+    private byte[] valueBytes;
+    private ValidationStringency validationStringency;
+
     public ReadTag(final int id, final byte[] dataAsByteArray, ValidationStringency validationStringency) {
         this.type = (char) (0xFF & id);
         key = new String(new char[]{(char) ((id >> 16) & 0xFF), (char) ((id >> 8) & 0xFF)});
-        value = restoreValueFromByteArray(type, dataAsByteArray, validationStringency);
+        valueBytes = dataAsByteArray;
+        this.validationStringency = validationStringency;
         keyType3Bytes = this.key + this.type;
 
         keyType3BytesAsInt = id;
@@ -120,7 +125,7 @@ public class ReadTag implements Comparable<ReadTag> {
     }
 
     public SAMTagAndValue createSAMTag() {
-        return new SAMTagAndValue(key, value);
+        return new SAMTagAndValue(key, getValue());
     }
 
     public static ReadTag deriveTypeFromKeyAndType(final String keyAndType, final Object value) {
@@ -147,6 +152,9 @@ public class ReadTag implements Comparable<ReadTag> {
     }
 
     public Object getValue() {
+        if (value == null && valueBytes != null) {
+            value = restoreValueFromByteArray(type, valueBytes, validationStringency);
+        }
         return value;
     }
 
@@ -158,7 +166,14 @@ public class ReadTag implements Comparable<ReadTag> {
         return keyAndType;
     }
 
+    /**
+     * @return the value in BAM binary form, without the tag and type; for a decoded tag this is the encoded value
+     * itself and must not be modified
+     */
     public byte[] getValueAsByteArray() {
+        if (valueBytes != null) {
+            return valueBytes;
+        }
         return writeSingleValue((byte) type, value, false);
     }
 
@@ -476,11 +491,11 @@ public class ReadTag implements Comparable<ReadTag> {
                 Objects.equals(key, readTag.key) &&
                 Objects.equals(keyAndType, readTag.keyAndType) &&
                 Objects.equals(keyType3Bytes, readTag.keyType3Bytes) &&
-                Objects.equals(value, readTag.value);
+                Objects.equals(getValue(), readTag.getValue());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(key, keyAndType, keyType3Bytes, keyType3BytesAsInt, type, value, code, index);
+        return Objects.hash(key, keyAndType, keyType3Bytes, keyType3BytesAsInt, type, getValue(), code, index);
     }
 }
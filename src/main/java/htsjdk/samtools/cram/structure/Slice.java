@@ -21,12 +21,13 @@ import htsjdk.samtools.*;
 import htsjdk.samtools.cram.CRAIEntry;
 import htsjdk.samtools.cram.CRAMException;
 import htsjdk.samtools.cram.compression.ExternalCompressor;
+import htsjdk.samtools.cram.compression.rans.RANS;
 import htsjdk.samtools.cram.digest.ContentDigests;
 import htsjdk.samtools.cram.encoding.reader.CramRecordReader;
 import htsjdk.samtools.cram.encoding.reader.MultiRefSliceAlignmentSpanReader;
 import htsjdk.samtools.cram.encoding.writer.CramRecordWriter;
 import htsjdk.samtools.cram.io.BitInputStream;
-import htsjdk.samtools.cram.io.DefaultBitInputStream;
+import htsjdk.samtools.cram.io.ByteArrayBitInputStream;
 import htsjdk.samtools.cram.io.DefaultBitOutputStream;
 import htsjdk.samtools.cram.ref.ReferenceContext;
 import htsjdk.samtools.cram.structure.block.Block;
@@ -301,6 +302,37 @@ public class Slice {
         }
     }
 
+    /**
+     * Embed the reference bases spanned by this single reference slice in an external block, so that the slice can
+     * be read without a reference source.  The block is given a content ID greater than those of the other external
+     * blocks of the slice.
+     *
+     * @param ref the bases of the reference sequence of the slice
+     */
+    public void setEmbeddedReference(final byte[] ref) {
+        if (!referenceContext.isMappedSingleRef()) {
+            throw new CRAMException("Only single reference slices can embed their reference: " + referenceContext);
+        }
+        alignmentBordersSanityCheck(ref);
+
+        final int span = Math.min(alignmentSpan, ref.length - alignmentStart + 1);
+        final byte[] rawContent = Arrays.copyOfRange(ref, alignmentStart - 1, alignmentStart - 1 + span);
+        final ExternalCompressor compressor = ExternalCompressor.createRANS(RANS.ORDER.ONE);
+
+        embeddedRefBlockContentID = external.isEmpty() ? 1 : Collections.max(external.keySet()) + 1;
+        embeddedRefBlock = Block.createExternalBlock(compressor.getMethod(), embeddedRefBlockContentID,
+                compressor.compress(rawContent), rawContent.length);
+        external.put(embeddedRefBlockContentID, embeddedRefBlock);
+    }
+
+    /**
+     * @return the reference bases embedded in this slice, starting at its alignment start, or null if the slice
+     * has no embedded reference
+     */
+    public byte[] getEmbeddedReferenceBases() {
+        return embeddedRefBlock == null ? null : embeddedRefBlock.getUncompressedContent();
+    }
+
     /**
      * Hijacking attributes-related methods from SAMRecord:
      */
@@ -361,7 +393,7 @@ public class Slice {
     }
 
     private BitInputStream getCoreBlockInputStream() {
-        return new DefaultBitInputStream(new ByteArrayInputStream(coreBlock.getUncompressedContent()));
+        return new ByteArrayBitInputStream(coreBlock.getUncompressedContent());
     }
 
     private Map<Integer, ByteArrayInputStream> getExternalBlockInputMap() {
@@ -387,6 +419,58 @@ public class Slice {
                 validationStringency);
     }
 
+    /**
+     * Initialize a Cram Record Reader from a Slice which decodes only some fields of each record.
+     * External blocks are decompressed only if the reader reads from them.
+     *
+     * @param header the associated Cram Compression Header
+     * @param validationStringency how strict to be when reading this CRAM record
+     * @param fields the fields to decode
+     */
+    public CramRecordReader createCramRecordReader(final CompressionHeader header,
+                                                   final ValidationStringency validationStringency,
+                                                   final Set<CRAMRecordField> fields) {
+        return new CramRecordReader(getCoreBlockInputStream(),
+                new LazyExternalBlockInputMap(external),
+                header,
+                referenceContext,
+                validationStringency,
+                fields);
+    }
+
+    /**
+     * A map of external block streams which decompresses each block when its stream is first requested.
+     */
+    private static final class LazyExternalBlockInputMap extends AbstractMap<Integer, ByteArrayInputStream> {
+        private final Map<Integer, Block> blocks;
+        private final Map<Integer, ByteArrayInputStream> streams = new HashMap<>();
+
+        LazyExternalBlockInputMap(final Map<Integer, Block> blocks) {
+            this.blocks = blocks;
+        }
+
+        @Override
+        public ByteArrayInputStream get(final Object contentId) {
+            final Block block = blocks.get(contentId);
+            if (block == null) {
+                return null;
+            }
+            return streams.computeIfAbsent((Integer) contentId, id -> new ByteArrayInputStream(block.getUncompressedContent()));
+        }
+
+        @Override
+        public boolean containsKey(final Object contentId) {
+            return blocks.containsKey(contentId);
+        }
+
+        @Override
+        public Set<Entry<Integer, ByteArrayInputStream>> entrySet() {
+            final Map<Integer, ByteArrayInputStream> all = new HashMap<>();
+            blocks.keySet().forEach(contentId -> all.put(contentId, get(contentId)));
+            return Collections.unmodifiableMap(all).entrySet();
+        }
+    }
+
     /**
      * Uses a Multiple Reference Slice Alignment Reader to determine the Reference Spans of a Slice.
      * The intended use is for CRAI indexing.
@@ -141,10 +141,9 @@ class SliceIO {
         // Container's blockCount in ContainerIO.writeContainer()
 
         // 1 Core Data Block per Slice
-        // Each Slice has a variable number of External Data Blocks
-        // TODO: should we count the embedded reference block as an additional block?
-        
-        slice.nofBlocks = 1 + slice.external.size() + (slice.embeddedRefBlock == null ? 0 : 1);
+        // Each Slice has a variable number of External Data Blocks, including the embedded reference block if any
+
+        slice.nofBlocks = 1 + slice.external.size();
 
         {
             slice.contentIDs = new int[slice.external.size()];
@@ -0,0 +1,349 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.fastq;
+
+import htsjdk.samtools.Defaults;
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.ParallelBlockCompressedInputStream;
+import htsjdk.samtools.util.RuntimeIOException;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a FASTQ file with four lines per record, working on bytes rather than lines of text.
+ *
+ * Large chunks of the input are read into a buffer, lines are found by scanning the buffer for newlines, and each
+ * record is presented as a {@link FastqRecordView} of the buffer, so that no objects are created per record.  The
+ * records accepted and the errors reported are those of {@link FastqReader} without skipping of blank lines.
+ *
+ * {@link #open(Path, int)} detects compressed input: BGZF is inflated on several threads with a
+ * {@link ParallelBlockCompressedInputStream}, and other gzip data is inflated on a thread of its own.
+ */
+public class FastqByteReader implements Closeable {
+    /** The initial size of the buffer, which grows to hold records that do not fit. */
+    public static final int DEFAULT_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    /** The names of the four lines of a record, as in {@link FastqReader}'s error messages. */
+    private static final String[] LINE_TYPES = {"Sequence Header", "Sequence Line", "Quality Header", "Quality Line"};
+
+    private final InputStream in;
+    private final String source;
+    private byte[] buffer;
+    /** The first byte of the buffer not yet returned as part of a record. */
+    private int start = 0;
+    /** The end of the data in the buffer. */
+    private int end = 0;
+    private boolean eof = false;
+    private long line = 1;
+    /** The ends of the four lines of the current record, at their newline or at the end of the data. */
+    private final int[] lineEnds = new int[4];
+
+    /**
+     * @param in uncompressed FASTQ, which is closed by {@link #close()}
+     * @param source the name of the input for error messages, or null if not known
+     */
+    public FastqByteReader(final InputStream in, final String source) {
+        this(in, source, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param in uncompressed FASTQ, which is closed by {@link #close()}
+     * @param source the name of the input for error messages, or null if not known
+     * @param bufferSize the initial size of the buffer
+     */
+    public FastqByteReader(final InputStream in, final String source, final int bufferSize) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        this.in = in;
+        this.source = source == null ? "" : source;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Opens a FASTQ file, which may be gzip or BGZF compressed.
+     *
+     * @param path the FASTQ file
+     * @param threads the number of threads used to inflate BGZF input; gzip input that is not BGZF is inflated on a
+     *                single additional thread
+     */
+    public static FastqByteReader open(final Path path, final int threads) {
+        if (threads <= 0) throw new IllegalArgumentException("threads must be positive: " + threads);
+        try {
+            final InputStream in = new BufferedInputStream(Files.newInputStream(path), Defaults.NON_ZERO_BUFFER_SIZE);
+            final InputStream uncompressed;
+            if (BlockCompressedInputStream.isValidFile(in)) {
+                uncompressed = new ParallelBlockCompressedInputStream(in, threads);
+            } else if (IOUtil.isGZIPInputStream(in)) {
+                uncompressed = new ReadAheadInputStream(new GZIPInputStream(in, Defaults.NON_ZERO_BUFFER_SIZE));
+            } else {
+                uncompressed = in;
+            }
+            return new FastqByteReader(uncompressed, path.toAbsolutePath().toString());
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error opening " + path.toUri(), e);
+        }
+    }
+
+    /**
+     * Reads the next record into the view, which remains valid until the next call.
+     *
+     * @return false at the end of the input
+     * @throws SAMException if the record is malformed
+     */
+    public boolean next(final FastqRecordView record) {
+        int position = start;
+        for (int i = 0; i < 4; ++i) {
+            int newline;
+            while ((newline = indexOfNewline(position)) < 0) {
+                if (eof) {
+                    if (position < end) {
+                        // The last line has no terminator
+                        newline = end;
+                        break;
+                    }
+                    if (i == 0 && position == start) {
+                        return false;
+                    }
+                    throw new SAMException(error("File is too short - missing " + LINE_TYPES[i]));
+                }
+                final int shift = fill();
+                position -= shift;
+                for (int j = 0; j < i; ++j) {
+                    lineEnds[j] -= shift;
+                }
+            }
+            lineEnds[i] = newline;
+            position = newline + 1;
+        }
+
+        final int headerStart = start;
+        final int headerEnd = trimCarriageReturn(headerStart, lineEnds[0]);
+        final int basesStart = lineEnds[0] + 1;
+        final int basesEnd = trimCarriageReturn(basesStart, lineEnds[1]);
+        final int qualityHeaderStart = lineEnds[1] + 1;
+        final int qualityHeaderEnd = trimCarriageReturn(qualityHeaderStart, lineEnds[2]);
+        final int qualitiesStart = lineEnds[2] + 1;
+        final int qualitiesEnd = trimCarriageReturn(qualitiesStart, lineEnds[3]);
+
+        if (headerEnd == headerStart) {
+            throw new SAMException(error("Missing sequence header"));
+        }
+        if (buffer[headerStart] != FastqConstants.SEQUENCE_HEADER.charAt(0)) {
+            throw new SAMException(error("Sequence header must start with " + FastqConstants.SEQUENCE_HEADER + ": " + text(headerStart, headerEnd)));
+        }
+        if (basesEnd == basesStart) {
+            throw new SAMException(error("Missing " + LINE_TYPES[1]));
+        }
+        if (qualityHeaderEnd == qualityHeaderStart) {
+            throw new SAMException(error("Missing " + LINE_TYPES[2]));
+        }
+        if (buffer[qualityHeaderStart] != FastqConstants.QUALITY_HEADER.charAt(0)) {
+            throw new SAMException(error("Quality header must start with " + FastqConstants.QUALITY_HEADER + ": " + text(qualityHeaderStart, qualityHeaderEnd)));
+        }
+        if (qualitiesEnd == qualitiesStart) {
+            throw new SAMException(error("Missing " + LINE_TYPES[3]));
+        }
+        if (basesEnd - basesStart != qualitiesEnd - qualitiesStart) {
+            throw new SAMException(error("Sequence and quality line must be the same length"));
+        }
+
+        record.set(buffer, headerStart + 1, headerEnd - headerStart - 1, basesStart,
+                qualityHeaderStart + 1, qualityHeaderEnd - qualityHeaderStart - 1, qualitiesStart, basesEnd - basesStart);
+        start = Math.min(position, end);
+        line += 4;
+        return true;
+    }
+
+    /** @return the index of the first newline at or after the position, or -1 if there is none in the buffer */
+    private int indexOfNewline(final int position) {
+        final byte[] data = buffer;
+        final int limit = end;
+        for (int i = position; i < limit; ++i) {
+            if (data[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int trimCarriageReturn(final int lineStart, final int lineEnd) {
+        return lineEnd > lineStart && buffer[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+    }
+
+    /**
+     * Moves the unread data to the start of the buffer, growing the buffer if it is full, and reads more data.
+     * @return the distance the data was moved
+     */
+    private int fill() {
+        final int shift = start;
+        if (shift > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        if (end == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        try {
+            final int count = in.read(buffer, end, buffer.length - end);
+            if (count < 0) {
+                eof = true;
+            } else {
+                end += count;
+            }
+        } catch (final IOException e) {
+            throw new SAMException(error(e.getMessage()), e);
+        }
+        return shift;
+    }
+
+    private String text(final int from, final int to) {
+        return new String(buffer, from, to - from, StandardCharsets.US_ASCII);
+    }
+
+    /** @return the line number of the start of the next record */
+    public long getLineNumber() {
+        return line;
+    }
+
+    /** Generates an error message with line number information. */
+    private String error(final String msg) {
+        return msg + " at line " + line + " in fastq " + source;
+    }
+
+    @Override
+    public void close() {
+        try {
+            in.close();
+        } catch (final IOException e) {
+            throw new SAMException(error(e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FastqByteReader[" + source + " Line:" + line + "]";
+    }
+
+    /** Reads an input stream on a thread of its own, so that inflating gzip overlaps with parsing. */
+    private static final class ReadAheadInputStream extends InputStream {
+        private static final int CHUNK_SIZE = 1024 * 1024;
+        private static final byte[] END = new byte[0];
+
+        private final InputStream in;
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(4);
+        private final Thread thread;
+        private volatile IOException error;
+        private byte[] current = new byte[0];
+        private int position = 0;
+        private boolean done = false;
+
+        ReadAheadInputStream(final InputStream in) {
+            this.in = in;
+            this.thread = new Thread(this::readAhead, "FastqReadAheadThread");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void readAhead() {
+            try {
+                while (true) {
+                    final byte[] chunk = new byte[CHUNK_SIZE];
+                    int n = 0;
+                    int count = 0;
+                    while (n < chunk.length && (count = in.read(chunk, n, chunk.length - n)) >= 0) {
+                        n += count;
+                    }
+                    if (n > 0) {
+                        chunks.put(n == chunk.length ? chunk : Arrays.copyOf(chunk, n));
+                    }
+                    if (count < 0) {
+                        break;
+                    }
+                }
+            } catch (final IOException e) {
+                error = e;
+            } catch (final InterruptedException e) {
+                return;
+            }
+            try {
+                chunks.put(END);
+            } catch (final InterruptedException e) {
+                // closed
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == current.length) {
+                if (done) {
+                    return -1;
+                }
+                try {
+                    current = chunks.take();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while reading", e);
+                }
+                position = 0;
+                if (current == END) {
+                    done = true;
+                    if (error != null) {
+                        throw error;
+                    }
+                }
+            }
+            final int n = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            thread.interrupt();
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.fastq;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Md5CalculatingOutputStream;
+import htsjdk.samtools.util.ParallelBlockCompressedOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Writes FASTQ records as bytes into a buffer of its own, without creating Strings or going through a
+ * {@link java.io.PrintStream}.  Records read by a {@link FastqByteReader} can be written straight from their
+ * {@link FastqRecordView}.  The output is the same as that of {@link BasicFastqWriter}.
+ *
+ * {@link #open(File, int, boolean)} compresses files with a gzip or BGZF extension as BGZF on several threads, which
+ * any gzip reader can read.
+ */
+public class FastqByteWriter implements FastqWriter, Flushable {
+    private static final int BUFFER_SIZE = 128 * 1024;
+
+    private final String path;
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count = 0;
+
+    /**
+     * @param out the stream to write to, which is closed by {@link #close()}
+     * @param path the name of the output for error messages, or null if not known
+     */
+    public FastqByteWriter(final OutputStream out, final String path) {
+        this.out = out;
+        this.path = path == null ? "" : path;
+    }
+
+    /**
+     * Opens a FASTQ file for writing.  Files ending in one of {@link IOUtil#BLOCK_COMPRESSED_EXTENSIONS} are BGZF
+     * compressed using the given number of threads; other files are not compressed.
+     *
+     * @param file the file to write
+     * @param threads the number of compression threads
+     * @param createMd5 if true, write an MD5 file of the output next to it
+     */
+    public static FastqByteWriter open(final File file, final int threads, final boolean createMd5) {
+        try {
+            OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()), BUFFER_SIZE);
+            if (createMd5) {
+                out = new Md5CalculatingOutputStream(out, new File(file.getAbsolutePath() + ".md5"));
+            }
+            if (IOUtil.hasBlockCompressedExtension(file)) {
+                out = new ParallelBlockCompressedOutputStream(out, threads);
+            }
+            return new FastqByteWriter(out, file.getAbsolutePath());
+        } catch (final IOException e) {
+            throw new SAMException("Error opening file for writing: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    @Override
+    public void write(final FastqRecord rec) {
+        write(FastqConstants.SEQUENCE_HEADER.charAt(0));
+        write(rec.getReadName());
+        write('\n');
+        write(rec.getReadString());
+        write('\n');
+        write(FastqConstants.QUALITY_HEADER.charAt(0));
+        write(rec.getBaseQualityHeader());
+        write('\n');
+        write(rec.getBaseQualityString());
+        write('\n');
+    }
+
+    /** Writes the record in the view, which is copied byte for byte. */
+    public void write(final FastqRecordView rec) {
+        final byte[] data = rec.getData();
+        write(FastqConstants.SEQUENCE_HEADER.charAt(0));
+        write(data, rec.getReadNameOffset(), rec.getReadNameLength());
+        write('\n');
+        write(data, rec.getBasesOffset(), rec.getReadLength());
+        write('\n');
+        write(FastqConstants.QUALITY_HEADER.charAt(0));
+        write(data, rec.getQualityHeaderOffset(), rec.getQualityHeaderLength());
+        write('\n');
+        write(data, rec.getQualitiesOffset(), rec.getReadLength());
+        write('\n');
+    }
+
+    private void write(final char c) {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) c;
+    }
+
+    private void write(final String s) {
+        if (s == null) {
+            return;
+        }
+        for (int i = 0; i < s.length(); ++i) {
+            write(s.charAt(i));
+        }
+    }
+
+    private void write(final byte[] data, int offset, int length) {
+        while (length > 0) {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            final int n = Math.min(length, buffer.length - count);
+            System.arraycopy(data, offset, buffer, count, n);
+            count += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private void flushBuffer() {
+        try {
+            out.write(buffer, 0, count);
+            count = 0;
+        } catch (final IOException e) {
+            throw new SAMException("Error in writing fastq file " + path, e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        flushBuffer();
+        try {
+            out.flush();
+        } catch (final IOException e) {
+            throw new SAMException("Error in writing fastq file " + path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flushBuffer();
+        try {
+            out.close();
+        } catch (final IOException e) {
+            throw new SAMException("Error in writing fastq file " + path, e);
+        }
+    }
+}
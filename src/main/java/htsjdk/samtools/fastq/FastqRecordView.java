@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.fastq;
+
+import htsjdk.samtools.SAMUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A reusable view of a FASTQ record in the buffer of a {@link FastqByteReader}.
+ *
+ * The read name, bases, quality header and qualities are ranges of {@link #getData()}, without the
+ * {@link FastqConstants#SEQUENCE_HEADER} and {@link FastqConstants#QUALITY_HEADER} characters and without line
+ * terminators.  The view is only valid until the next call to {@link FastqByteReader#next(FastqRecordView)}; use
+ * {@link #toFastqRecord()} or the copy methods to keep a record.
+ */
+public final class FastqRecordView {
+    private byte[] data;
+    private int readNameOffset;
+    private int readNameLength;
+    private int basesOffset;
+    private int qualityHeaderOffset;
+    private int qualityHeaderLength;
+    private int qualitiesOffset;
+    private int readLength;
+
+    void set(final byte[] data, final int readNameOffset, final int readNameLength, final int basesOffset,
+             final int qualityHeaderOffset, final int qualityHeaderLength, final int qualitiesOffset, final int readLength) {
+        this.data = data;
+        this.readNameOffset = readNameOffset;
+        this.readNameLength = readNameLength;
+        this.basesOffset = basesOffset;
+        this.qualityHeaderOffset = qualityHeaderOffset;
+        this.qualityHeaderLength = qualityHeaderLength;
+        this.qualitiesOffset = qualitiesOffset;
+        this.readLength = readLength;
+    }
+
+    /** @return the buffer holding the record */
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getReadNameOffset() {
+        return readNameOffset;
+    }
+
+    public int getReadNameLength() {
+        return readNameLength;
+    }
+
+    public int getBasesOffset() {
+        return basesOffset;
+    }
+
+    public int getQualityHeaderOffset() {
+        return qualityHeaderOffset;
+    }
+
+    public int getQualityHeaderLength() {
+        return qualityHeaderLength;
+    }
+
+    /** @return the offset of the ASCII-encoded qualities */
+    public int getQualitiesOffset() {
+        return qualitiesOffset;
+    }
+
+    /** @return the number of bases, which is also the number of qualities */
+    public int getReadLength() {
+        return readLength;
+    }
+
+    /** @return the read name, or null if it is empty */
+    public String getReadName() {
+        return readNameLength == 0 ? null : new String(data, readNameOffset, readNameLength, StandardCharsets.US_ASCII);
+    }
+
+    /** @return a copy of the bases as ASCII bytes */
+    public byte[] copyReadBases() {
+        return Arrays.copyOfRange(data, basesOffset, basesOffset + readLength);
+    }
+
+    /** @return a copy of the qualities as binary PHRED scores (not ASCII) */
+    public byte[] copyBaseQualities() {
+        final byte[] qualities = Arrays.copyOfRange(data, qualitiesOffset, qualitiesOffset + readLength);
+        SAMUtils.fastqToPhred(qualities);
+        return qualities;
+    }
+
+    /** @return a {@link FastqRecord} with the content of this view */
+    public FastqRecord toFastqRecord() {
+        return new FastqRecord(getReadName(),
+                new String(data, basesOffset, readLength, StandardCharsets.US_ASCII),
+                qualityHeaderLength == 0 ? null : new String(data, qualityHeaderOffset, qualityHeaderLength, StandardCharsets.US_ASCII),
+                new String(data, qualitiesOffset, readLength, StandardCharsets.US_ASCII));
+    }
+}
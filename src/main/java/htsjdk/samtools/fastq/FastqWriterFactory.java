@@ -12,6 +12,7 @@ import java.io.File;
 public class FastqWriterFactory {
     boolean useAsyncIo = Defaults.USE_ASYNC_IO_WRITE_FOR_SAMTOOLS;
     boolean createMd5  = Defaults.CREATE_MD5;
+    int compressionThreads = 0;
 
     /** Sets whether or not to use async io (i.e. a dedicated thread per writer. */
     public void setUseAsyncIo(final boolean useAsyncIo) { this.useAsyncIo = useAsyncIo; }
@@ -19,8 +20,15 @@ public class FastqWriterFactory {
     /** If true, compute MD5 and write appropriately-named file when file is closed. */
     public void setCreateMd5(final boolean createMd5) { this.createMd5 = createMd5; }
 
+    /**
+     * If positive, writers are {@link FastqByteWriter}s, which compress files with a gzip or BGZF extension as BGZF
+     * using this many threads.
+     */
+    public void setCompressionThreads(final int compressionThreads) { this.compressionThreads = compressionThreads; }
+
     public FastqWriter newWriter(final File out) {
-        final FastqWriter writer = new BasicFastqWriter(out, createMd5);
+        final FastqWriter writer = compressionThreads > 0 ? FastqByteWriter.open(out, compressionThreads, createMd5)
+                : new BasicFastqWriter(out, createMd5);
         if (useAsyncIo) {
             return new AsyncFastqWriter(writer, AsyncFastqWriter.DEFAULT_QUEUE_SIZE);
         }
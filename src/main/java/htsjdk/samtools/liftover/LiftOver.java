@@ -115,6 +115,14 @@ public class LiftOver {
 
     }
 
+    /**
+     * @return a compiled, thread-safe index of the chains of this LiftOver, for lifting over large numbers of
+     * intervals or positions without per-call allocation.
+     */
+    public LiftOverIndex compileIndex() {
+        return new LiftOverIndex(chains.getAll());
+    }
+
     /**
      * Lift over the given interval to the new genome build using the liftOverMinMatch set for this
      * LiftOver object.
@@ -0,0 +1,386 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.liftover;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Interval;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled, immutable form of the chains used by {@link LiftOver}.  The chains on each "from" sequence are
+ * sorted by start, and the ContinuousBlocks of all chains are held in flat primitive arrays, so lifting an
+ * interval is a pair of binary searches and a scan over contiguous memory, with no per-call allocation.
+ *
+ * Results are identical to {@link LiftOver#liftOver(Interval, double)}, but no logging is done and no count of
+ * failed intervals is kept.  Instances are safe to use from multiple threads, e.g. to lift each contig of a
+ * sorted file in parallel using {@link #liftOver(String, int[], int[], int, int, double, LiftedIntervals)}.
+ *
+ * Coordinates in the API are standard Picard 1-based, inclusive.
+ */
+public final class LiftOverIndex {
+    /** Names of the "to" sequences, indexed by the contig index reported in lift over results. */
+    private final String[] toSequenceNames;
+    private final Map<String, SourceContig> sourceContigs = new HashMap<>();
+
+    // Per-chain data, indexed by chain number
+    private final int[] chainToSequence;
+    private final int[] chainToSequenceSize;
+    private final boolean[] chainToOppositeStrand;
+    /** Index of the first block of each chain in the block arrays; has one extra entry marking the end. */
+    private final int[] chainFirstBlock;
+
+    // Per-block data, 0-based, for the blocks of all chains concatenated in chain order
+    private final int[] blockFromStart;
+    private final int[] blockFromEnd;
+    private final int[] blockToStart;
+
+    /**
+     * Loads and compiles the given UCSC chain file.
+     */
+    public LiftOverIndex(final File chainFile) {
+        this(loadChains(chainFile));
+    }
+
+    LiftOverIndex(final Collection<Chain> chainCollection) {
+        final List<Chain> chains = new ArrayList<>(chainCollection);
+        chains.sort(Comparator.comparing((Chain c) -> c.fromSequenceName).thenComparingInt(c -> c.fromChainStart).thenComparingInt(c -> c.id));
+
+        final Map<String, Integer> toSequenceIndexes = new LinkedHashMap<>();
+        int blockCount = 0;
+        for (final Chain chain : chains) {
+            toSequenceIndexes.putIfAbsent(chain.toSequenceName, toSequenceIndexes.size());
+            blockCount += chain.getBlocks().size();
+        }
+        this.toSequenceNames = toSequenceIndexes.keySet().toArray(new String[0]);
+
+        final int n = chains.size();
+        this.chainToSequence = new int[n];
+        this.chainToSequenceSize = new int[n];
+        this.chainToOppositeStrand = new boolean[n];
+        this.chainFirstBlock = new int[n + 1];
+        this.blockFromStart = new int[blockCount];
+        this.blockFromEnd = new int[blockCount];
+        this.blockToStart = new int[blockCount];
+
+        int block = 0;
+        for (int i = 0; i < n; ++i) {
+            final Chain chain = chains.get(i);
+            chainToSequence[i] = toSequenceIndexes.get(chain.toSequenceName);
+            chainToSequenceSize[i] = chain.toSequenceSize;
+            chainToOppositeStrand[i] = chain.toOppositeStrand;
+            chainFirstBlock[i] = block;
+            for (final Chain.ContinuousBlock b : chain.getBlocks()) {
+                blockFromStart[block] = b.fromStart;
+                blockFromEnd[block] = b.getFromEnd();
+                blockToStart[block] = b.toStart;
+                ++block;
+            }
+        }
+        chainFirstBlock[n] = block;
+
+        // Chains are sorted by from sequence, so each source contig is a contiguous run of chains
+        for (int first = 0; first < n; ) {
+            int last = first;
+            while (last < n && chains.get(last).fromSequenceName.equals(chains.get(first).fromSequenceName)) ++last;
+            sourceContigs.put(chains.get(first).fromSequenceName, new SourceContig(chains.subList(first, last), first));
+            first = last;
+        }
+    }
+
+    private static Collection<Chain> loadChains(final File chainFile) {
+        IOUtil.assertFileIsReadable(chainFile);
+        return Chain.loadChains(chainFile).getAll();
+    }
+
+    /**
+     * @return the names of the "to" sequences; contig indexes in lift over results index into this list.
+     */
+    public List<String> getToSequenceNames() {
+        return Collections.unmodifiableList(Arrays.asList(toSequenceNames));
+    }
+
+    /**
+     * @return the name of the "to" sequence with the given contig index.
+     */
+    public String getToSequenceName(final int contigIndex) {
+        return toSequenceNames[contigIndex];
+    }
+
+    /**
+     * Lift over the given interval to the new genome build.
+     * @param interval Interval to be lifted over.
+     * @param liftOverMinMatch Minimum fraction of bases that must remap.
+     * @return Interval in the output build coordinates, or null if it cannot be lifted over.
+     */
+    public Interval liftOver(final Interval interval, final double liftOverMinMatch) {
+        final LiftedIntervals result = new LiftedIntervals(1);
+        if (!liftOver(interval.getContig(), interval.getStart(), interval.getEnd(), liftOverMinMatch, result, 0)) {
+            return null;
+        }
+        final boolean negativeStrand = interval.isNegativeStrand() != result.isNegativeStrand(0);
+        return new Interval(toSequenceNames[result.getContigIndex(0)], result.getStart(0), result.getEnd(0), negativeStrand, interval.getName());
+    }
+
+    /**
+     * Lift over a single interval, storing the result at the given position of the result holder.  On failure the
+     * contig index of that position is set to -1.
+     *
+     * @param contig the "from" sequence of the interval
+     * @param start 1-based inclusive start of the interval
+     * @param end 1-based inclusive end of the interval
+     * @param liftOverMinMatch Minimum fraction of bases that must remap.
+     * @return true if the interval could be lifted over.
+     */
+    public boolean liftOver(final String contig, final int start, final int end, final double liftOverMinMatch,
+                            final LiftedIntervals result, final int resultIndex) {
+        final SourceContig source = sourceContigs.get(contig);
+        if (end < start) {
+            throw new IllegalArgumentException("Zero-length interval cannot be lifted over: " + contig + ":" + start + "-" + end);
+        }
+        return liftOver(source, start, end, liftOverMinMatch, result, resultIndex);
+    }
+
+    /**
+     * Lift over a batch of intervals on a single "from" sequence.  The intervals need not be sorted, but lifting
+     * sorted intervals makes best use of the processor cache.
+     *
+     * @param contig the "from" sequence of all the intervals
+     * @param starts 1-based inclusive starts of the intervals
+     * @param ends 1-based inclusive ends of the intervals
+     * @param offset index of the first interval in starts and ends to lift over
+     * @param length number of intervals to lift over
+     * @param liftOverMinMatch Minimum fraction of bases that must remap.
+     * @param results receives the result of lifting starts[offset + i] at position i
+     * @return the number of intervals that were lifted over
+     */
+    public int liftOver(final String contig, final int[] starts, final int[] ends, final int offset, final int length,
+                        final double liftOverMinMatch, final LiftedIntervals results) {
+        checkBatch(starts.length, offset, length, results);
+        if (ends.length < offset + length) {
+            throw new IllegalArgumentException("ends has fewer than " + (offset + length) + " elements");
+        }
+        final SourceContig source = sourceContigs.get(contig);
+        int lifted = 0;
+        for (int i = 0; i < length; ++i) {
+            final int start = starts[offset + i];
+            final int end = ends[offset + i];
+            if (end < start) {
+                throw new IllegalArgumentException("Zero-length interval cannot be lifted over: " + contig + ":" + start + "-" + end);
+            }
+            if (liftOver(source, start, end, liftOverMinMatch, results, i)) ++lifted;
+        }
+        return lifted;
+    }
+
+    /**
+     * Lift over a batch of single-base positions on a single "from" sequence, e.g. the starts of the
+     * VariantContexts on one contig.  A position either lifts over completely or not at all, so no minimum match
+     * fraction is needed.
+     *
+     * @param contig the "from" sequence of all the positions
+     * @param positions 1-based positions
+     * @param offset index of the first position to lift over
+     * @param length number of positions to lift over
+     * @param results receives the result of lifting positions[offset + i] at position i
+     * @return the number of positions that were lifted over
+     */
+    public int liftOverPositions(final String contig, final int[] positions, final int offset, final int length,
+                                 final LiftedIntervals results) {
+        checkBatch(positions.length, offset, length, results);
+        final SourceContig source = sourceContigs.get(contig);
+        int lifted = 0;
+        for (int i = 0; i < length; ++i) {
+            final int position = positions[offset + i];
+            if (liftOver(source, position, position, 1.0, results, i)) ++lifted;
+        }
+        return lifted;
+    }
+
+    private static void checkBatch(final int inputLength, final int offset, final int length, final LiftedIntervals results) {
+        if (offset < 0 || length < 0 || offset + length > inputLength) {
+            throw new IllegalArgumentException("Invalid offset " + offset + " and length " + length + " for array of " + inputLength);
+        }
+        if (results.capacity() < length) {
+            throw new IllegalArgumentException("Results can hold " + results.capacity() + " intervals but " + length + " are to be lifted");
+        }
+    }
+
+    private boolean liftOver(final SourceContig source, final int start1, final int end1, final double liftOverMinMatch,
+                             final LiftedIntervals result, final int resultIndex) {
+        result.contigIndexes[resultIndex] = -1;
+        if (source == null) return false;
+
+        // Convert to 0-based, half-open
+        final int start = start1 - 1;
+        final int end = end1;
+        // Number of bases in interval that can be lifted over must be >= this.
+        final double minMatchSize = liftOverMinMatch * (end - start);
+
+        int hitChain = -1;
+        int hitFirstBlock = -1;
+        int hitLastBlock = -1;
+
+        // Walk back from the last chain starting before the interval end, until no earlier chain can reach the start
+        for (int i = source.lastChainStartingBefore(end); i >= 0 && source.maxChainEnds[i] > start; --i) {
+            if (source.chainEnds[i] <= start) continue;
+
+            final int chain = source.firstChain + i;
+            final int chainEnd = chainFirstBlock[chain + 1];
+            int intersectionLength = 0;
+            int firstBlock = -1;
+            int lastBlock = -1;
+            for (int b = firstBlockEndingAfter(chainFirstBlock[chain], chainEnd, start); b < chainEnd && blockFromStart[b] < end; ++b) {
+                if (firstBlock == -1) firstBlock = b;
+                lastBlock = b;
+                intersectionLength += Math.min(end, blockFromEnd[b]) - Math.max(start, blockFromStart[b]);
+            }
+
+            if (intersectionLength > 0 && intersectionLength >= minMatchSize) {
+                if (hitChain != -1) {
+                    // In basic liftOver, multiple hits are not allowed.
+                    return false;
+                }
+                hitChain = chain;
+                hitFirstBlock = firstBlock;
+                hitLastBlock = lastBlock;
+            }
+        }
+        if (hitChain == -1) return false;
+
+        // Compute the "to" interval from the offsets of the interval start and end into the first and last blocks
+        final int startOffset = Math.max(0, start - blockFromStart[hitFirstBlock]);
+        final int offsetFromEnd = Math.max(0, blockFromEnd[hitLastBlock] - end);
+        int toStart = blockToStart[hitFirstBlock] + startOffset;
+        int toEnd = blockToStart[hitLastBlock] + (blockFromEnd[hitLastBlock] - blockFromStart[hitLastBlock]) - offsetFromEnd;
+        if (toEnd <= toStart || toStart < 0) {
+            throw new SAMException("Something strange lifting over interval starting at " + start1);
+        }
+        if (chainToOppositeStrand[hitChain]) {
+            final int negativeStart = chainToSequenceSize[hitChain] - toEnd;
+            toEnd = chainToSequenceSize[hitChain] - toStart;
+            toStart = negativeStart;
+        }
+
+        result.contigIndexes[resultIndex] = chainToSequence[hitChain];
+        result.starts[resultIndex] = toStart + 1;
+        result.ends[resultIndex] = toEnd;
+        result.negativeStrands[resultIndex] = chainToOppositeStrand[hitChain];
+        return true;
+    }
+
+    /** Binary search for the first block in [from, to) whose 0-based half-open end is greater than position. */
+    private int firstBlockEndingAfter(int from, int to, final int position) {
+        // Blocks within a chain are sorted and non-overlapping, so block ends are increasing
+        while (from < to) {
+            final int mid = (from + to) >>> 1;
+            if (blockFromEnd[mid] <= position) from = mid + 1;
+            else to = mid;
+        }
+        return from;
+    }
+
+    /** The chains on a single "from" sequence, sorted by start. */
+    private static final class SourceContig {
+        /** Index of the first chain of this contig in the per-chain arrays. */
+        private final int firstChain;
+        private final int[] chainStarts;
+        private final int[] chainEnds;
+        /** maxChainEnds[i] is the maximum of chainEnds[0..i]. */
+        private final int[] maxChainEnds;
+
+        private SourceContig(final List<Chain> chains, final int firstChain) {
+            this.firstChain = firstChain;
+            final int n = chains.size();
+            this.chainStarts = new int[n];
+            this.chainEnds = new int[n];
+            this.maxChainEnds = new int[n];
+            int maxEnd = Integer.MIN_VALUE;
+            for (int i = 0; i < n; ++i) {
+                chainStarts[i] = chains.get(i).fromChainStart;
+                chainEnds[i] = chains.get(i).fromChainEnd;
+                maxEnd = Math.max(maxEnd, chainEnds[i]);
+                maxChainEnds[i] = maxEnd;
+            }
+        }
+
+        /** Returns the index of the last chain that starts before the given 0-based position, or -1 if none. */
+        private int lastChainStartingBefore(final int position) {
+            int lo = 0;
+            int hi = chainStarts.length;
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (chainStarts[mid] < position) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo - 1;
+        }
+    }
+
+    /**
+     * A reusable holder for the results of lifting over a batch of intervals, stored in parallel primitive arrays.
+     * A result with a contig index of -1 could not be lifted over.  Strand is relative to the "from" interval, i.e.
+     * negative strand means the interval maps to the opposite strand of the "to" sequence.
+     */
+    public static final class LiftedIntervals {
+        private final int[] contigIndexes;
+        private final int[] starts;
+        private final int[] ends;
+        private final boolean[] negativeStrands;
+
+        /** Creates a holder with room for the given number of results. */
+        public LiftedIntervals(final int capacity) {
+            this.contigIndexes = new int[capacity];
+            this.starts = new int[capacity];
+            this.ends = new int[capacity];
+            this.negativeStrands = new boolean[capacity];
+        }
+
+        public int capacity() { return contigIndexes.length; }
+
+        /** @return true if the i'th interval was lifted over. */
+        public boolean isLifted(final int i) { return contigIndexes[i] != -1; }
+
+        /** @return the index of the "to" sequence of the i'th result, or -1 if it was not lifted over. */
+        public int getContigIndex(final int i) { return contigIndexes[i]; }
+
+        /** @return 1-based inclusive start of the i'th result. */
+        public int getStart(final int i) { return starts[i]; }
+
+        /** @return 1-based inclusive end of the i'th result. */
+        public int getEnd(final int i) { return ends[i]; }
+
+        public boolean isNegativeStrand(final int i) { return negativeStrands[i]; }
+    }
+}
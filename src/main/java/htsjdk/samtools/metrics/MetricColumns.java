@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.metrics;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.util.FormatUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The columns of a metrics class, i.e. its public fields, together with method handles for reading and
+ * writing them.  Instances are built once per class and cached, so that writing or reading a metrics row
+ * does not need to look up fields reflectively.  Fields of primitive numeric and boolean types are read
+ * and written without boxing.
+ */
+final class MetricColumns {
+    private static final ClassValue<MetricColumns> CACHE = new ClassValue<MetricColumns>() {
+        @Override
+        protected MetricColumns computeValue(final Class<?> type) {
+            return new MetricColumns(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final Column[] columns;
+    private final Map<String, Column> columnsByName;
+
+    private MetricColumns(final Class<?> type) {
+        this.type = type;
+        final Field[] fields = type.getFields();
+        this.columns = new Column[fields.length];
+        final Map<String, Column> byName = new HashMap<>();
+        for (int i = 0; i < fields.length; ++i) {
+            columns[i] = new Column(fields[i]);
+            byName.putIfAbsent(fields[i].getName(), columns[i]);
+        }
+        this.columnsByName = Collections.unmodifiableMap(byName);
+    }
+
+    /** Returns the cached columns for the given metrics class. */
+    static MetricColumns forClass(final Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    Class<?> getType() { return type; }
+
+    /** Returns the number of columns, i.e. public fields, of the metrics class. */
+    int size() { return columns.length; }
+
+    /** Returns the i'th column, in the order returned by {@link Class#getFields()}. */
+    Column get(final int i) { return columns[i]; }
+
+    /** Returns the column with the given name, throwing a SAMException if there is no such public field. */
+    Column get(final String name) {
+        final Column column = columnsByName.get(name);
+        if (column == null) {
+            throw new SAMException("Could not get field with name " + name + " from class " + type.getName());
+        }
+        return column;
+    }
+
+    /** Creates a new instance of the metrics class using its no-arg constructor. */
+    Object newInstance() {
+        try {
+            return type.getDeclaredConstructor().newInstance();
+        } catch (final ReflectiveOperationException e) {
+            throw new SAMException("Error instantiating a " + type.getName(), e);
+        }
+    }
+
+    /** The kinds of field that are formatted and parsed without boxing. */
+    private enum Kind { INT, LONG, SHORT, DOUBLE, FLOAT, BOOLEAN, OBJECT }
+
+    /** A single public field of a metrics class. */
+    static final class Column {
+        private final String name;
+        private final Class<?> fieldType;
+        private final Kind kind;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private Column(final Field field) {
+            this.name = field.getName();
+            this.fieldType = field.getType();
+            this.kind = kindOf(fieldType);
+
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            final Class<?> handleType = kind == Kind.OBJECT ? Object.class : fieldType;
+            try {
+                if (!Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+                    field.setAccessible(true);
+                }
+                this.getter = lookup.unreflectGetter(field).asType(MethodType.methodType(handleType, Object.class));
+                this.setter = Modifier.isFinal(field.getModifiers()) ? null :
+                        lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, handleType));
+            } catch (final IllegalAccessException e) {
+                throw new SAMException("Could not access field " + name + " of class " + field.getDeclaringClass().getName(), e);
+            }
+        }
+
+        private static Kind kindOf(final Class<?> type) {
+            if (type == Integer.TYPE) return Kind.INT;
+            if (type == Long.TYPE)    return Kind.LONG;
+            if (type == Short.TYPE)   return Kind.SHORT;
+            if (type == Double.TYPE)  return Kind.DOUBLE;
+            if (type == Float.TYPE)   return Kind.FLOAT;
+            if (type == Boolean.TYPE) return Kind.BOOLEAN;
+            return Kind.OBJECT;
+        }
+
+        String getName() { return name; }
+
+        Class<?> getType() { return fieldType; }
+
+        /** Formats the value of this column in the given bean using the supplied formatter. */
+        String format(final Object bean, final FormatUtil formatter) {
+            try {
+                switch (kind) {
+                    case INT:     return formatter.format((int) getter.invokeExact(bean));
+                    case LONG:    return formatter.format((long) getter.invokeExact(bean));
+                    case SHORT:   return formatter.format((short) getter.invokeExact(bean));
+                    case DOUBLE:  return formatter.format((double) getter.invokeExact(bean));
+                    case FLOAT:   return formatter.format((float) getter.invokeExact(bean));
+                    case BOOLEAN: return formatter.format((boolean) getter.invokeExact(bean));
+                    default:      return formatter.format((Object) getter.invokeExact(bean));
+                }
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable t) {
+                throw new SAMException("Could not read property " + name + " from class of type " + bean.getClass(), t);
+            }
+        }
+
+        /**
+         * Parses the given String and sets it as the value of this column in the given bean.  An empty
+         * String is treated as null, which is an error for primitive fields.
+         */
+        void parseAndSet(final Object bean, final String value, final FormatUtil formatter) {
+            if (setter == null || (value.isEmpty() && kind != Kind.OBJECT)) {
+                throw new SAMException("Error setting field " + name + " on class of type " + bean.getClass().getName());
+            }
+            try {
+                if (value.isEmpty()) {
+                    setter.invokeExact(bean, (Object) null);
+                    return;
+                }
+                switch (kind) {
+                    case INT:     setter.invokeExact(bean, formatter.parseInt(value)); break;
+                    case LONG:    setter.invokeExact(bean, formatter.parseLong(value)); break;
+                    case SHORT:   setter.invokeExact(bean, formatter.parseShort(value)); break;
+                    case DOUBLE:  setter.invokeExact(bean, formatter.parseDouble(value)); break;
+                    case FLOAT:   setter.invokeExact(bean, formatter.parseFloat(value)); break;
+                    case BOOLEAN: setter.invokeExact(bean, formatter.parseBoolean(value)); break;
+                    default:      setter.invokeExact(bean, formatter.parseObject(value, fieldType)); break;
+                }
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable t) {
+                throw new SAMException("Error setting field " + name + " on class of type " + bean.getClass().getName(), t);
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.metrics;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.FormatUtil;
+import htsjdk.samtools.util.Histogram;
+import htsjdk.samtools.util.IOUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a metrics file incrementally.  Headers are parsed on construction, metric beans are parsed one row
+ * at a time as the reader is iterated, and histograms are available from {@link #getHistograms()} once all
+ * the metrics have been consumed.
+ *
+ * Optionally, only a subset of the columns may be loaded; the values of other columns are not parsed and the
+ * corresponding fields of the returned beans are left at their default values.
+ */
+public class MetricsFileReader<BEAN extends MetricBase, HKEY extends Comparable> implements CloseableIterator<BEAN> {
+    private final BufferedReader in;
+    private final FormatUtil formatter = new FormatUtil();
+    private final List<Header> headers = new ArrayList<>();
+    private final List<String> columnLabels = new ArrayList<>();
+    private List<Histogram<HKEY>> histograms = null;
+
+    private MetricColumns beanColumns = null;
+    /** The column to load for each position in a row, or null if that position is not to be loaded. */
+    private MetricColumns.Column[] projection = null;
+    private boolean inMetrics = false;
+    private BEAN nextBean = null;
+    private String line = null;
+
+    /** Opens the given metrics file, loading all columns. */
+    public MetricsFileReader(final File file) {
+        this(IOUtil.openFileForBufferedReading(file), null);
+    }
+
+    /** Reads from the given reader, loading all columns. */
+    public MetricsFileReader(final Reader reader) {
+        this(reader, null);
+    }
+
+    /**
+     * Reads from the given reader, loading only the named columns of each metric.
+     *
+     * @param reader the reader to read the metrics file from; closed by {@link #close()}
+     * @param columnsToLoad the names of the columns to parse, or null to parse all columns
+     */
+    public MetricsFileReader(final Reader reader, final Collection<String> columnsToLoad) {
+        this.in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        try {
+            readHeaders();
+
+            // Read space between headers and metrics, if any
+            while (line != null && ! line.trim().startsWith(MetricsFile.MAJOR_HEADER_PREFIX)) {
+                line = in.readLine();
+            }
+
+            if (line != null) {
+                line = line.trim();
+                if (line.startsWith(MetricsFile.METRIC_HEADER)) {
+                    readColumnHeaders(columnsToLoad);
+                }
+            }
+        } catch (final IOException ioe) {
+            CloserUtil.close(in);
+            throw new SAMException("Could not read metrics from reader.", ioe);
+        }
+    }
+
+    private void readHeaders() throws IOException {
+        Header header = null;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if ("".equals(line)) {
+                // Do nothing! Nothing to be done!
+            }
+            else if (line.startsWith(MetricsFile.METRIC_HEADER) || line.startsWith(MetricsFile.HISTO_HEADER)) {
+                // A line that starts with "## METRICS CLASS" heralds the start of the actual
+                // data. Bounce our butts out of header parsing without reading the next line.
+                // This isn't in the while loop's conditional because we want to trim() first.
+                break;
+            }
+            else if (line.startsWith(MetricsFile.MAJOR_HEADER_PREFIX)) {
+                if (header != null) {
+                    throw new IllegalStateException("Consecutive header class lines encountered.");
+                }
+
+                final String className = line.substring(MetricsFile.MAJOR_HEADER_PREFIX.length()).trim();
+                try {
+                    header = (Header) loadClass(className, true).getDeclaredConstructor().newInstance();
+                }
+                catch (final ReflectiveOperationException | ClassCastException e) {
+                    throw new SAMException("Error load and/or instantiating an instance of " + className, e);
+                }
+            }
+            else if (line.startsWith(MetricsFile.MINOR_HEADER_PREFIX)) {
+                if (header == null) {
+                    throw new IllegalStateException("Header class must precede header value:" + line);
+                }
+                header.parse(line.substring(MetricsFile.MINOR_HEADER_PREFIX.length()));
+                this.headers.add(header);
+                header = null;
+            }
+            else {
+                throw new SAMException("Illegal state. Found following string in metrics file header: " + line);
+            }
+        }
+    }
+
+    private void readColumnHeaders(final Collection<String> columnsToLoad) throws IOException {
+        // Get the metric class from the header
+        final String className = line.split(MetricsFile.SEPARATOR)[1];
+        final Class<?> type;
+        try {
+            type = loadClass(className, true);
+        }
+        catch (final ClassNotFoundException cnfe) {
+            throw new SAMException("Could not locate class with name " + className, cnfe);
+        }
+        this.beanColumns = MetricColumns.forClass(type);
+
+        // Read the next line with the column headers
+        final String[] fieldNames = in.readLine().split(MetricsFile.SEPARATOR);
+        Collections.addAll(columnLabels, fieldNames);
+        this.projection = new MetricColumns.Column[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; ++i) {
+            final MetricColumns.Column column = beanColumns.get(fieldNames[i]);
+            if (columnsToLoad == null || columnsToLoad.contains(fieldNames[i])) {
+                projection[i] = column;
+            }
+        }
+        this.inMetrics = true;
+    }
+
+    /** Returns the headers of the metrics file. */
+    public List<Header> getHeaders() { return Collections.unmodifiableList(headers); }
+
+    /** Returns the metrics column labels in file order, or an empty list if the file contains no metrics. */
+    public List<String> getColumnLabels() { return Collections.unmodifiableList(columnLabels); }
+
+    /** Returns the class of the metrics in the file, or null if the file contains no metrics. */
+    public Class<?> getBeanType() { return beanColumns == null ? null : beanColumns.getType(); }
+
+    @Override
+    public boolean hasNext() {
+        if (nextBean == null && inMetrics) {
+            try {
+                line = in.readLine();
+            } catch (final IOException ioe) {
+                throw new SAMException("Could not read metrics from reader.", ioe);
+            }
+
+            if (line == null || "".equals(line.trim())) {
+                inMetrics = false;
+            } else {
+                nextBean = parseBean(line);
+            }
+        }
+        return nextBean != null;
+    }
+
+    @Override
+    public BEAN next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        final BEAN bean = nextBean;
+        nextBean = null;
+        return bean;
+    }
+
+    /** Parses one row of metrics, scanning for separators rather than splitting so that skipped columns cost nothing. */
+    @SuppressWarnings("unchecked")
+    private BEAN parseBean(final String row) {
+        final BEAN bean = (BEAN) beanColumns.newInstance();
+        int start = 0;
+        for (int i = 0; i < projection.length; ++i) {
+            if (start > row.length()) {
+                throw new SAMException("Too few values in metrics line, expected " + projection.length + ": " + row);
+            }
+            int end = row.indexOf(MetricsFile.SEPARATOR, start);
+            if (end < 0) end = row.length();
+
+            if (projection[i] != null) {
+                projection[i].parseAndSet(bean, row.substring(start, end), formatter);
+            }
+            start = end + 1;
+        }
+        return bean;
+    }
+
+    /**
+     * Returns the histograms in the metrics file.  May only be called once all the metrics have been read.
+     */
+    public List<Histogram<HKEY>> getHistograms() {
+        if (histograms == null) {
+            if (hasNext()) {
+                throw new IllegalStateException("Histograms cannot be read until all metrics have been read.");
+            }
+            try {
+                histograms = readHistograms();
+            } catch (final IOException ioe) {
+                throw new SAMException("Could not read metrics from reader.", ioe);
+            }
+        }
+        return Collections.unmodifiableList(histograms);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Histogram<HKEY>> readHistograms() throws IOException {
+        final List<Histogram<HKEY>> histograms = new ArrayList<>();
+
+        // Read away any blank lines between metrics and histograms
+        while (line != null && ! line.trim().startsWith(MetricsFile.MAJOR_HEADER_PREFIX)) {
+            line = in.readLine();
+        }
+
+        // Then read the histograms if any are present
+        if (line != null) {
+            line = line.trim();
+
+            if (line.startsWith(MetricsFile.HISTO_HEADER)) {
+                // Get the key type of the histogram
+                final String keyClassName = line.split(MetricsFile.SEPARATOR)[1].trim();
+                Class<?> keyClass = null;
+
+                try { keyClass = loadClass(keyClassName, true); }
+                catch (final ClassNotFoundException cnfe) { throw new SAMException("Could not load class with name " + keyClassName); }
+
+                // Read the next line with the bin and value labels
+                final String[] labels = in.readLine().split(MetricsFile.SEPARATOR);
+                for (int i=1; i<labels.length; ++i) {
+                    histograms.add(new Histogram<HKEY>(labels[0], labels[i]));
+                }
+
+                // Read the entries in the histograms
+                while ((line = in.readLine()) != null && !"".equals(line)) {
+                    final String[] fields = line.trim().split(MetricsFile.SEPARATOR);
+                    final HKEY key = (HKEY) formatter.parseObject(fields[0], keyClass);
+
+                    for (int i=1; i<fields.length; ++i) {
+                        final double value = formatter.parseDouble(fields[i]);
+                        histograms.get(i-1).increment(key, value);
+                    }
+                }
+            }
+        }
+        return histograms;
+    }
+
+    @Override
+    public void close() {
+        CloserUtil.close(in);
+    }
+
+    /** Attempts to load a class, taking into account that some classes have "migrated" from the broad to sf. */
+    static Class<?> loadClass(final String className, final boolean tryOtherPackages) throws ClassNotFoundException {
+        // List of alternative packages to check in case classes moved around
+        final String[] packages = new String[] {
+                "edu.mit.broad.picard.genotype.concordance",
+                "edu.mit.broad.picard.genotype.fingerprint",
+                "edu.mit.broad.picard.ic",
+                "edu.mit.broad.picard.illumina",
+                "edu.mit.broad.picard.jumping",
+                "edu.mit.broad.picard.quality",
+                "edu.mit.broad.picard.samplevalidation",
+                "htsjdk.samtools.analysis",
+                "htsjdk.samtools.analysis.directed",
+                "htsjdk.samtools.sam",
+                "htsjdk.samtools.metrics",
+                "picard.sam",
+                "picard.metrics",
+                "picard.illumina",
+                "picard.analysis",
+                "picard.analysis.directed",
+                "picard.vcf"
+        };
+
+        try { return Class.forName(className); }
+        catch (ClassNotFoundException cnfe) {
+            if (tryOtherPackages) {
+                for (final String p : packages) {
+                    try {
+                        return loadClass(p + className.substring(className.lastIndexOf('.')), false);
+                    }
+                    catch (ClassNotFoundException cnf2) {/* do nothing */}
+                    // If it ws an inner class, try and see if it's a stand-alone class now
+                    if (className.indexOf('$') > -1) {
+                        try {
+                            return loadClass(p + "." + className.substring(className.lastIndexOf('$') + 1), false);
+                        }
+                        catch (ClassNotFoundException cnf2) {/* do nothing */}
+                    }
+                }
+            }
+
+            throw cnfe;
+        }
+    }
+}
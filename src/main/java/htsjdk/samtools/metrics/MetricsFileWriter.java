@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.metrics;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.util.FormatUtil;
+import htsjdk.samtools.util.Histogram;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.StringUtil;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes a metrics file incrementally, in the same format as {@link MetricsFile#write(Writer)}, without
+ * holding the metric beans in memory.  Headers are written on construction, each bean is formatted and
+ * written as soon as it is passed to {@link #write(MetricBase)}, and any histograms added are written
+ * when the writer is closed.
+ *
+ * Field access for the bean class is resolved once, on the first call to {@link #write(MetricBase)},
+ * rather than reflectively for every row.
+ */
+public class MetricsFileWriter<BEAN extends MetricBase, HKEY extends Comparable> implements Closeable {
+    private final BufferedWriter out;
+    private final FormatUtil formatter = new FormatUtil();
+    private final List<Histogram<HKEY>> histograms = new ArrayList<>();
+    private MetricColumns columns = null;
+    private boolean finished = false;
+
+    /**
+     * Creates a writer that writes to the given file, starting with the given headers.
+     */
+    public MetricsFileWriter(final File file, final Collection<Header> headers) {
+        this(IOUtil.openFileForBufferedWriting(file), headers);
+    }
+
+    /**
+     * Creates a writer that writes to the given writer, starting with the given headers.
+     * The writer is closed by {@link #close()}.
+     */
+    public MetricsFileWriter(final Writer writer, final Collection<Header> headers) {
+        this.out = writer instanceof BufferedWriter ? (BufferedWriter) writer : new BufferedWriter(writer);
+        try {
+            for (final Header h : headers) {
+                out.append(MetricsFile.MAJOR_HEADER_PREFIX);
+                out.append(h.getClass().getName());
+                out.newLine();
+                out.append(MetricsFile.MINOR_HEADER_PREFIX);
+                out.append(h.toString());
+                out.newLine();
+            }
+            out.newLine();
+        } catch (final IOException ioe) {
+            throw new SAMException("Could not write metrics file.", ioe);
+        }
+    }
+
+    /**
+     * Writes a single metrics row.  The class of the first bean written determines the columns of the file,
+     * and all subsequent beans must be instances of that class.
+     */
+    public void write(final BEAN bean) {
+        if (finished) throw new IllegalStateException("Cannot write metrics after the writer has been closed.");
+        try {
+            if (columns == null) {
+                columns = MetricColumns.forClass(bean.getClass());
+                writeColumnHeaders();
+            } else if (!columns.getType().isInstance(bean)) {
+                throw new IllegalArgumentException("Metrics of type " + bean.getClass().getName() +
+                        " cannot be written to a file of " + columns.getType().getName());
+            }
+
+            final int columnCount = columns.size();
+            for (int i = 0; i < columnCount; ++i) {
+                out.append(StringUtil.assertCharactersNotInString(columns.get(i).format(bean, formatter), '\t', '\n'));
+                if (i < columnCount - 1) {
+                    out.append(MetricsFile.SEPARATOR);
+                }
+            }
+            out.newLine();
+        } catch (final IOException ioe) {
+            throw new SAMException("Could not write metrics file.", ioe);
+        }
+    }
+
+    /** Writes all the given beans. */
+    public void writeAll(final Iterable<BEAN> beans) {
+        for (final BEAN bean : beans) {
+            write(bean);
+        }
+    }
+
+    /** Adds a histogram to be written after the metrics when the writer is closed. */
+    public void addHistogram(final Histogram<HKEY> histogram) {
+        if (finished) throw new IllegalStateException("Cannot add histograms after the writer has been closed.");
+        this.histograms.add(histogram);
+    }
+
+    private void writeColumnHeaders() throws IOException {
+        // Write out a header row with the type of the metric class
+        out.append(MetricsFile.METRIC_HEADER);
+        out.append(columns.getType().getName());
+        out.newLine();
+
+        // Write out the column headers
+        final int columnCount = columns.size();
+        for (int i = 0; i < columnCount; ++i) {
+            out.append(columns.get(i).getName());
+            if (i < columnCount - 1) {
+                out.append(MetricsFile.SEPARATOR);
+            }
+        }
+        out.newLine();
+    }
+
+    /** Writes the histograms and trailing separators and flushes, without closing the underlying writer. */
+    void finish() {
+        if (finished) return;
+        finished = true;
+        try {
+            out.newLine();
+            printHistograms();
+            out.newLine();
+            out.flush();
+        } catch (final IOException ioe) {
+            throw new SAMException("Could not write metrics file.", ioe);
+        }
+    }
+
+    /** Writes any histograms and closes the underlying writer. */
+    @Override
+    public void close() {
+        finish();
+        try {
+            out.close();
+        } catch (final IOException ioe) {
+            throw new SAMException("Could not close metrics file.", ioe);
+        }
+    }
+
+    /** Prints the histograms if any non-empty ones are present. */
+    private void printHistograms() throws IOException {
+        final List<Histogram<HKEY>> nonEmptyHistograms = new ArrayList<>();
+        for (final Histogram<HKEY> histo : this.histograms) {
+            if (!histo.isEmpty()) nonEmptyHistograms.add(histo);
+        }
+
+        if (nonEmptyHistograms.isEmpty()) {
+            return;
+        }
+
+        // Build a combined key set.  Assume comparator is the same for all Histograms
+        final Set<HKEY> keys = new TreeSet<>(nonEmptyHistograms.get(0).comparator());
+        for (final Histogram<HKEY> histo : nonEmptyHistograms) {
+            if (histo != null) keys.addAll(histo.keySet());
+        }
+
+        // Add a header for the histogram key type
+        out.append(MetricsFile.HISTO_HEADER + nonEmptyHistograms.get(0).keySet().iterator().next().getClass().getName());
+        out.newLine();
+
+        // Output a header row
+        out.append(StringUtil.assertCharactersNotInString(nonEmptyHistograms.get(0).getBinLabel(), '\t', '\n'));
+        for (final Histogram<HKEY> histo : nonEmptyHistograms) {
+            out.append(MetricsFile.SEPARATOR);
+            out.append(StringUtil.assertCharactersNotInString(histo.getValueLabel(), '\t', '\n'));
+        }
+        out.newLine();
+
+        for (final HKEY key : keys) {
+            out.append(key.toString());
+
+            for (final Histogram<HKEY> histo : nonEmptyHistograms) {
+                final Histogram.Bin<HKEY> bin = histo.get(key);
+                final double value = (bin == null ? 0 : bin.getValue());
+
+                out.append(MetricsFile.SEPARATOR);
+                out.append(formatter.format(value));
+            }
+
+            out.newLine();
+        }
+    }
+}
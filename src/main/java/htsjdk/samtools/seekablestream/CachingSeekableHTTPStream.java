@@ -0,0 +1,442 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.seekablestream;
+
+import htsjdk.samtools.Defaults;
+import htsjdk.samtools.util.HttpUtils;
+import htsjdk.samtools.util.Lazy;
+import htsjdk.samtools.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link SeekableStream} over HTTP that reads the remote resource in fixed-size blocks and keeps the most
+ * recently used blocks in memory, so that seeking back and forth within a small region, as index-driven queries
+ * do, does not issue a request per read.
+ *
+ * <ul>
+ *     <li>A read that misses the cache fetches the whole run of missing blocks it spans with a single range
+ *     request.</li>
+ *     <li>After a miss, or a read that waits for a block being prefetched, the following blocks are fetched in
+ *     the background, each with its own request, so that sequential reading keeps several requests in flight.</li>
+ *     <li>Ranges announced through {@link #prefetch(long, long)}, e.g. the planned chunks of an index query, are
+ *     fetched in the background in the same way.</li>
+ *     <li>Response bodies are read to completion and closed rather than disconnected, so the JDK's keep-alive
+ *     cache can reuse connections between requests.</li>
+ * </ul>
+ *
+ * Background fetches run on the executor given to the constructor, or by default on a pool of
+ * {@link Defaults#HTTP_PREFETCH_THREADS} daemon threads shared by all instances.
+ *
+ * Cache hits, misses, requests and bytes fetched are counted and available from getters for monitoring.
+ * Like other SeekableStreams, instances should be read from one thread at a time.
+ */
+public class CachingSeekableHTTPStream extends SeekableStream {
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_CACHED_BLOCKS = 256;
+    public static final int DEFAULT_READ_AHEAD_BLOCKS = 2;
+
+    private static final Log log = Log.getInstance(CachingSeekableHTTPStream.class);
+
+    private static final Lazy<ExecutorService> defaultPrefetchPool = new Lazy<>(() ->
+            Executors.newFixedThreadPool(Math.max(1, Defaults.HTTP_PREFETCH_THREADS), r -> {
+                final Thread t = Executors.defaultThreadFactory().newThread(r);
+                t.setDaemon(true);
+                return t;
+            }));
+
+    private final URL url;
+    private final Proxy proxy;
+    private final int blockSize;
+    private final int maxCachedBlocks;
+    private final int readAheadBlocks;
+    private final Executor prefetchExecutor;
+
+    /** The length of the resource, or -1 if not known.  Updated if the end of the resource is found by reading. */
+    private volatile long contentLength = -1;
+    private long position = 0;
+
+    /** Guards the cache, the in-flight prefetches and closed. */
+    private final Object lock = new Object();
+    private final Map<Long, byte[]> cache;
+    private final Map<Long, Future<byte[]>> inFlight = new HashMap<>();
+    private volatile boolean closed = false;
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesFetched = new AtomicLong();
+
+    public CachingSeekableHTTPStream(final URL url) {
+        this(url, null);
+    }
+
+    public CachingSeekableHTTPStream(final URL url, final Proxy proxy) {
+        this(url, proxy, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_CACHED_BLOCKS, DEFAULT_READ_AHEAD_BLOCKS);
+    }
+
+    /**
+     * @param url the resource to read
+     * @param proxy the proxy to connect through, or null to connect directly
+     * @param blockSize the size in bytes of the blocks fetched and cached
+     * @param maxCachedBlocks the maximum number of blocks held in the cache
+     * @param readAheadBlocks the number of blocks to prefetch after a cache miss, or 0 to disable prefetching
+     */
+    public CachingSeekableHTTPStream(final URL url, final Proxy proxy, final int blockSize,
+                                     final int maxCachedBlocks, final int readAheadBlocks) {
+        this(url, proxy, blockSize, maxCachedBlocks, readAheadBlocks, null);
+    }
+
+    /**
+     * @param url the resource to read
+     * @param proxy the proxy to connect through, or null to connect directly
+     * @param blockSize the size in bytes of the blocks fetched and cached
+     * @param maxCachedBlocks the maximum number of blocks held in the cache
+     * @param readAheadBlocks the number of blocks to prefetch after a cache miss, or 0 to disable prefetching
+     * @param prefetchExecutor runs the background fetches, or null to use the default pool shared by all instances
+     */
+    public CachingSeekableHTTPStream(final URL url, final Proxy proxy, final int blockSize,
+                                     final int maxCachedBlocks, final int readAheadBlocks,
+                                     final Executor prefetchExecutor) {
+        if (blockSize <= 0) throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+        if (maxCachedBlocks <= 0) throw new IllegalArgumentException("maxCachedBlocks must be positive: " + maxCachedBlocks);
+        if (readAheadBlocks < 0) throw new IllegalArgumentException("readAheadBlocks must not be negative: " + readAheadBlocks);
+
+        this.url = url;
+        this.proxy = proxy;
+        this.blockSize = blockSize;
+        this.maxCachedBlocks = maxCachedBlocks;
+        this.readAheadBlocks = readAheadBlocks;
+        this.prefetchExecutor = prefetchExecutor;
+        this.cache = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, byte[]> eldest) {
+                return size() > CachingSeekableHTTPStream.this.maxCachedBlocks;
+            }
+        };
+
+        // Try to get the file length
+        final String contentLengthString = HttpUtils.getHeaderField(url, "Content-Length");
+        if (contentLengthString != null) {
+            try {
+                contentLength = Long.parseLong(contentLengthString);
+            }
+            catch (NumberFormatException ignored) {
+                log.warn("Invalid content length (" + contentLengthString + ") for: " + url);
+                contentLength = -1;
+            }
+        }
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public long length() {
+        return contentLength;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long bytesToSkip = contentLength < 0 ? n : Math.min(n, contentLength - position);
+        position += bytesToSkip;
+        return bytesToSkip;
+    }
+
+    @Override
+    public boolean eof() throws IOException {
+        return contentLength > 0 && position >= contentLength;
+    }
+
+    @Override
+    public void seek(final long position) {
+        this.position = position;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int len) throws IOException {
+        if (offset < 0 || len < 0 || (offset + len) > buffer.length) {
+            throw new IndexOutOfBoundsException("Offset="+offset+",len="+len+",buflen="+buffer.length);
+        }
+        if (closed) {
+            throw new IOException("Stream is closed: " + url);
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        int n = 0;
+        while (n < len && !(contentLength >= 0 && position >= contentLength)) {
+            final long blockIndex = position / blockSize;
+            final int blockOffset = (int) (position % blockSize);
+            final long lastBlockWanted = (position + (len - n) - 1) / blockSize;
+            final byte[] block = getBlock(blockIndex, lastBlockWanted);
+            if (blockOffset >= block.length) {
+                break;
+            }
+            final int count = Math.min(block.length - blockOffset, len - n);
+            System.arraycopy(block, blockOffset, buffer, offset + n, count);
+            n += count;
+            position += count;
+            if (block.length < blockSize) {
+                // A short block is the last block of the resource
+                break;
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] tmp = new byte[1];
+        return read(tmp, 0, 1) == -1 ? -1 : tmp[0] & 0xFF;
+    }
+
+    /**
+     * Returns the given block, from the cache, from a prefetch, or by fetching it together with any following
+     * uncached blocks up to lastBlockWanted.
+     */
+    private byte[] getBlock(final long blockIndex, final long lastBlockWanted) throws IOException {
+        final Future<byte[]> pending;
+        synchronized (lock) {
+            final byte[] block = cache.get(blockIndex);
+            if (block != null) {
+                cacheHits.incrementAndGet();
+                return block;
+            }
+            pending = inFlight.get(blockIndex);
+        }
+
+        if (pending != null) {
+            final byte[] block = awaitPrefetch(pending);
+            if (block != null) {
+                cacheHits.incrementAndGet();
+                readAhead(blockIndex + 1);
+                return block;
+            }
+            // The prefetch failed; fall through and fetch the block here so that the error is reported to the caller
+        }
+        cacheMisses.incrementAndGet();
+
+        // Coalesce the following blocks that are wanted and neither cached nor being prefetched into one request
+        final long maxRunLength = Math.min(maxCachedBlocks, Integer.MAX_VALUE / blockSize);
+        long lastBlock = blockIndex;
+        synchronized (lock) {
+            while (lastBlock < lastBlockWanted && lastBlock - blockIndex + 1 < maxRunLength &&
+                    !cache.containsKey(lastBlock + 1) && !inFlight.containsKey(lastBlock + 1)) {
+                ++lastBlock;
+            }
+        }
+
+        final int runLength = (int) (lastBlock - blockIndex + 1);
+        final byte[] run = fetch(blockIndex * blockSize, runLength * blockSize);
+        byte[] first = null;
+        synchronized (lock) {
+            for (int i = 0; i < runLength; ++i) {
+                final int from = Math.min(i * blockSize, run.length);
+                final byte[] block = Arrays.copyOfRange(run, from, Math.min(from + blockSize, run.length));
+                cache.put(blockIndex + i, block);
+                if (i == 0) first = block;
+            }
+        }
+        readAhead(lastBlock + 1);
+        return first;
+    }
+
+    /** Returns the result of the given prefetch, or null if it failed. */
+    private static byte[] awaitPrefetch(final Future<byte[]> pending) throws IOException {
+        try {
+            return pending.get();
+        } catch (final ExecutionException | CancellationException e) {
+            return null;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for prefetch", e);
+        }
+    }
+
+    /**
+     * Starts fetching the blocks overlapping the range in the background, up to half the capacity of the cache so
+     * that the prefetched blocks do not evict each other before they are read.
+     */
+    @Override
+    public void prefetch(final long position, final long length) {
+        if (position < 0 || length <= 0) {
+            return;
+        }
+        final long firstBlock = position / blockSize;
+        final long lastBlock = (position + length - 1) / blockSize;
+        startFetches(firstBlock, Math.min(lastBlock + 1, firstBlock + Math.max(1, maxCachedBlocks / 2)));
+    }
+
+    /** Starts fetching up to readAheadBlocks blocks from firstBlock onwards. */
+    private void readAhead(final long firstBlock) {
+        startFetches(firstBlock, firstBlock + readAheadBlocks);
+    }
+
+    /** Starts fetching the blocks from firstBlock up to endBlock, exclusive, that are neither cached nor in flight. */
+    private void startFetches(final long firstBlock, final long endBlock) {
+        synchronized (lock) {
+            for (long blockIndex = firstBlock; blockIndex < endBlock && !closed; ++blockIndex) {
+                if (contentLength >= 0 && blockIndex * blockSize >= contentLength) {
+                    break;
+                }
+                if (cache.containsKey(blockIndex) || inFlight.containsKey(blockIndex)) {
+                    continue;
+                }
+                final long index = blockIndex;
+                final FutureTask<byte[]> task = new FutureTask<>(() -> {
+                    try {
+                        final byte[] block = fetch(index * blockSize, blockSize);
+                        synchronized (lock) {
+                            if (!closed) cache.put(index, block);
+                        }
+                        return block;
+                    } finally {
+                        synchronized (lock) {
+                            inFlight.remove(index);
+                        }
+                    }
+                });
+                inFlight.put(index, task);
+                (prefetchExecutor == null ? defaultPrefetchPool.get() : prefetchExecutor).execute(task);
+            }
+        }
+    }
+
+    /**
+     * Fetches up to length bytes starting at start with a single range request.  Returns fewer bytes only if the
+     * end of the resource is reached.
+     */
+    private byte[] fetch(final long start, final int length) throws IOException {
+        final long knownLength = contentLength;
+        final int toFetch = knownLength < 0 ? length : (int) Math.max(0, Math.min(length, knownLength - start));
+        if (toFetch == 0) {
+            return new byte[0];
+        }
+
+        requests.incrementAndGet();
+        final HttpURLConnection connection = proxy == null ?
+                (HttpURLConnection) url.openConnection() :
+                (HttpURLConnection) url.openConnection(proxy);
+        connection.setRequestProperty("Range", "bytes=" + start + "-" + (start + toFetch - 1));
+
+        boolean reusable = false;
+        try {
+            final int responseCode = connection.getResponseCode();
+            if (responseCode == 416) {
+                // Range starts past the end of the resource
+                markEnd(start);
+                return new byte[0];
+            }
+            final boolean partial = responseCode == HttpURLConnection.HTTP_PARTIAL;
+            if (!partial && !(responseCode == HttpURLConnection.HTTP_OK && start == 0)) {
+                throw new IOException("Unexpected response " + responseCode + " to range request for " + url);
+            }
+
+            final byte[] buffer = new byte[toFetch];
+            int n = 0;
+            try (final InputStream is = connection.getInputStream()) {
+                while (n < toFetch) {
+                    final int count = is.read(buffer, n, toFetch - n);
+                    if (count < 0) break;
+                    n += count;
+                }
+                // A full 206 body has now been consumed, so closing the stream returns the connection to the
+                // keep-alive cache.  A 200 response is the whole resource and may have more to read.
+                reusable = partial;
+            }
+            bytesFetched.addAndGet(n);
+            if (n < toFetch) {
+                markEnd(start + n);
+                return Arrays.copyOf(buffer, n);
+            }
+            return buffer;
+        } finally {
+            if (!reusable) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private void markEnd(final long end) {
+        if (contentLength < 0 || end < contentLength) {
+            contentLength = end;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            for (final Future<byte[]> pending : inFlight.values()) {
+                pending.cancel(false);
+            }
+            cache.clear();
+        }
+    }
+
+    @Override
+    public String getSource() {
+        return url.toString();
+    }
+
+    /** @return the number of block reads satisfied from the cache or by a prefetch. */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /** @return the number of block reads that required a request to be made. */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /** @return the number of range requests made, including prefetches. */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /** @return the number of bytes received from the server, including prefetches. */
+    public long getBytesFetched() {
+        return bytesFetched.get();
+    }
+}
@@ -81,6 +81,11 @@ public class SeekableBufferedStream extends SeekableStream {
         this(stream, DEFAULT_BUFFER_SIZE);
     }
 
+    @Override
+    public void prefetch(final long position, final long length) {
+        wrappedStream.prefetch(position, length);
+    }
+
     @Override
     public long length() {
         return wrappedStream.length();
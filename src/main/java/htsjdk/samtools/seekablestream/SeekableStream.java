@@ -69,6 +69,16 @@ public abstract class SeekableStream extends InputStream {
      */
     public abstract String getSource();
 
+    /**
+     * Advises the stream that the given range of bytes is likely to be read soon, so that implementations with
+     * high latency per read can start fetching it in the background.  The default implementation does nothing.
+     *
+     * @param position the start of the range
+     * @param length the length of the range
+     */
+    public void prefetch(final long position, final long length) {
+    }
+
     /**
      * Read enough bytes to fill the input buffer.
      * @param b
@@ -1,16 +1,18 @@
 package htsjdk.samtools.util;
 
 import java.io.Closeable;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Abstract class that is designed to be extended and specialized to provide an asynchronous
  * wrapper around any kind of Writer class that takes an object and writes it out somehow.
  *
+ * Items are passed to the writer thread through a single producer ring buffer which the writer thread drains in
+ * batches, so that handing over an item takes no lock and the writer thread is only woken when it has run out of
+ * work.  How threads wait on a full or empty buffer is set by a {@link WaitStrategy}, and {@link #getMetrics()}
+ * reports how often the producer had to wait and how busy the writer thread was.  Use an {@link AsyncPipeline} to
+ * split the work of writing an item over several threads.
+ *
  * NOTE: Objects of subclasses of this class are not intended to be shared between threads.
  * In particular there must be only one thread that calls {@link #write} and {@link #close}.
  *
@@ -24,11 +26,21 @@ public abstract class AbstractAsyncWriter<T> implements Closeable {
     private static volatile int threadsCreated = 0; // Just used for thread naming.
     public static final int DEFAULT_QUEUE_SIZE = 2000;
 
+    /** How the producer and writer threads wait when the queue between them is full or empty. */
+    public enum WaitStrategy {
+        /** Spin briefly, then park until woken by the other thread.  Uses the least CPU. */
+        BLOCKING,
+        /** Spin briefly, then yield the processor between checks.  Lower latency, but keeps a core busy while idle. */
+        YIELDING,
+        /**
+         * Check continuously.  The lowest latency, but each waiting thread keeps a core fully busy, so only use this
+         * when every thread has a core of its own.
+         */
+        BUSY_SPIN
+    }
+
     private final AtomicBoolean isClosed = new AtomicBoolean(false);
-    private final BlockingQueue<T> queue;
-    private final Thread writer;
-    private final WriterRunnable writerRunnable;
-    private final AtomicReference<Throwable> ex = new AtomicReference<Throwable>(null);
+    private final AsyncStage<T> stage;
 
     /** Returns the prefix to use when naming threads. */
     protected abstract String getThreadNamePrefix();
@@ -38,15 +50,18 @@ public abstract class AbstractAsyncWriter<T> implements Closeable {
     protected abstract void synchronouslyClose();
 
     /**
-     * Creates an AbstractAsyncWriter that will use the provided WriterRunnable to consume from the
-     * internal queue and write records into the synchronous writer.
+     * Creates an AbstractAsyncWriter with a queue of the given size, whose threads wait by blocking.
      */
     protected AbstractAsyncWriter(final int queueSize) {
-        this.queue = new ArrayBlockingQueue<T>(queueSize);
-        this.writerRunnable = new WriterRunnable();
-        this.writer = new Thread(writerRunnable, getThreadNamePrefix() + threadsCreated++);
-        this.writer.setDaemon(true);
-        this.writer.start();
+        this(queueSize, WaitStrategy.BLOCKING);
+    }
+
+    /**
+     * Creates an AbstractAsyncWriter with a queue of at least the given size, rounded up to a power of two, and
+     * starts the thread that consumes from the queue and writes items into the synchronous writer.
+     */
+    protected AbstractAsyncWriter(final int queueSize, final WaitStrategy waitStrategy) {
+        this.stage = new AsyncStage<>(getThreadNamePrefix() + threadsCreated++, queueSize, waitStrategy, this::synchronouslyWrite);
     }
 
     /**
@@ -57,14 +72,13 @@ public abstract class AbstractAsyncWriter<T> implements Closeable {
         if (this.isClosed.get()) throw new RuntimeIOException("Attempt to add record to closed writer.");
 
         checkAndRethrow();
-        try { this.queue.put(item); }
-        catch (final InterruptedException ie) { throw new RuntimeException("Interrupted queueing item for writing.", ie); }
+        this.stage.put(item);
         checkAndRethrow();
     }
 
     /**
-     * Attempts to finish draining the queue and then calls synchronouslyClose() to allow implementation
-     * to do any one time clean up.
+     * Waits for the writer thread to write every item in the queue and then calls synchronouslyClose() to allow
+     * implementation to do any one time clean up.
      */
     @Override
     public void close() {
@@ -72,18 +86,9 @@ public abstract class AbstractAsyncWriter<T> implements Closeable {
 
         if (!this.isClosed.getAndSet(true)) {
             try {
-            	this.writer.join();
+                this.stage.close();
             } catch (final InterruptedException ie) {
-            	throw new RuntimeException("Interrupted waiting on writer thread.", ie);
-        	}
-
-            //The queue should be empty but if it's not, we'll drain it here to protect against any lost data.
-            //There's no need to timeout on poll because poll is called only when queue is not empty and
-            // at this point the writer thread is definitely dead and noone is removing items from the queue.
-            //The item pulled will never be null (same reasoning).
-            while (!this.queue.isEmpty()) {
-                final T item = queue.poll();
-                synchronouslyWrite(item);
+                throw new RuntimeException("Interrupted waiting on writer thread.", ie);
             }
 
             synchronouslyClose();
@@ -91,12 +96,19 @@ public abstract class AbstractAsyncWriter<T> implements Closeable {
         }
     }
 
+    /**
+     * Returns a snapshot of the counters of the queue and writer thread.
+     */
+    public AsyncWriterMetrics getMetrics() {
+        return this.stage.getMetrics();
+    }
+
     /**
      * Checks to see if an exception has been raised in the writer thread and if so rethrows it as an Error
      * or RuntimeException as appropriate.
      */
     private final void checkAndRethrow() {
-        final Throwable t = this.ex.getAndSet(null);
+        final Throwable t = this.stage.takeError();
         if (t != null) {
             this.isClosed.set(true); // Ensure no further attempts to write
             if (t instanceof Error) throw (Error) t;
@@ -104,35 +116,4 @@ public abstract class AbstractAsyncWriter<T> implements Closeable {
             else throw new RuntimeException(t);
         }
     }
-
-    /**
-     * Small Runnable implementation that simply reads from the blocking queue and writes to the
-     * synchronous writer.
-     */
-    private class WriterRunnable implements Runnable {
-        @Override
-        public void run() {
-            try {
-                //The order of the two conditions is important, see https://github.com/samtools/htsjdk/issues/564
-                //because we want to make sure that emptiness status of the queue does not change after we have evaluated isClosed
-                //as it is now (isClosed checked before queue.isEmpty),
-                //the two operations are effectively atomic if isClosed returns true
-                while (!isClosed.get() || !queue.isEmpty()) {
-                    try {
-                        final T item = queue.poll(50, TimeUnit.MILLISECONDS);
-                        if (item != null) synchronouslyWrite(item);
-                    }
-                    catch (final InterruptedException ie) {
-                        /* Do Nothing */
-                    }
-                }
-            }
-            catch (final Throwable t) {
-                ex.compareAndSet(null, t);
-                // In case a writer was blocking on a full queue before ex has been set, clear the queue
-                // so that the writer will no longer be blocked so that it can see the exception.
-                queue.clear();
-            }
-        }
-    }
 }
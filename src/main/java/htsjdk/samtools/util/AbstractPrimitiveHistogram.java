@@ -0,0 +1,395 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Base class for histograms over integral keys with integral counts.  Counts for keys in the range
+ * [0, maxDenseKey] are held in a dense, lazily grown long[] so that incrementing them is a single array
+ * store; keys outside that range (negative or very large) overflow into a sparse sorted map.
+ *
+ * Summary statistics follow the semantics of the equivalent methods on {@link Histogram} so that the
+ * two can be used interchangeably, and {@link #addHistogram(AbstractPrimitiveHistogram)} allows
+ * per-thread instances to be merged cheaply.
+ *
+ * Keys are handled as longs internally; subclasses expose typed increment and export methods.
+ */
+public abstract class AbstractPrimitiveHistogram implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Default upper bound (inclusive) on the keys that are stored densely. */
+    public static final int DEFAULT_MAX_DENSE_KEY = (1 << 20) - 1;
+
+    private static final int INITIAL_DENSE_SIZE = 256;
+
+    private String binLabel   = "BIN";
+    private String valueLabel = "VALUE";
+
+    private final int maxDenseKey;
+    private long[] dense = new long[0];
+    private final TreeMap<Long, Long> overflow = new TreeMap<>();
+
+    protected AbstractPrimitiveHistogram(final String binLabel, final String valueLabel, final int maxDenseKey) {
+        if (maxDenseKey < 0) throw new IllegalArgumentException("maxDenseKey must be non-negative: " + maxDenseKey);
+        this.binLabel = binLabel;
+        this.valueLabel = valueLabel;
+        this.maxDenseKey = maxDenseKey;
+    }
+
+    public String getBinLabel() { return binLabel; }
+    public void setBinLabel(final String binLabel) { this.binLabel = binLabel; }
+
+    public String getValueLabel() { return valueLabel; }
+    public void setValueLabel(final String valueLabel) { this.valueLabel = valueLabel; }
+
+    /** Returns the largest key that is stored in the dense array rather than the overflow map. */
+    public int getMaxDenseKey() { return maxDenseKey; }
+
+    /** Increments the count for the given key by the given amount. */
+    protected final void incrementKey(final long key, final long increment) {
+        if (key >= 0 && key <= maxDenseKey) {
+            final int index = (int) key;
+            if (index >= dense.length) {
+                growDense(index);
+            }
+            dense[index] += increment;
+        } else {
+            overflow.merge(key, increment, Long::sum);
+        }
+    }
+
+    /** Returns the count stored for the given key, or zero if the key has never been incremented. */
+    protected final long getKeyCount(final long key) {
+        if (key >= 0 && key <= maxDenseKey) {
+            return key < dense.length ? dense[(int) key] : 0;
+        } else {
+            final Long count = overflow.get(key);
+            return count == null ? 0 : count;
+        }
+    }
+
+    private void growDense(final int index) {
+        long newSize = Math.max(INITIAL_DENSE_SIZE, dense.length);
+        while (newSize <= index) newSize *= 2;
+        dense = Arrays.copyOf(dense, (int) Math.min(newSize, (long) maxDenseKey + 1));
+    }
+
+    /**
+     * Adds all the counts from the given histogram into this one.  Intended for merging per-thread
+     * histograms once accumulation is complete.
+     */
+    public void addHistogram(final AbstractPrimitiveHistogram other) {
+        if (other.dense.length > dense.length) {
+            growDense(other.dense.length - 1);
+        }
+        for (int i = 0; i < other.dense.length; ++i) {
+            if (other.dense[i] != 0) incrementKey(i, other.dense[i]);
+        }
+        for (final Map.Entry<Long, Long> entry : other.overflow.entrySet()) {
+            incrementKey(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /** Removes all counts from this histogram, retaining any storage already allocated. */
+    public void clear() {
+        Arrays.fill(dense, 0);
+        overflow.clear();
+    }
+
+    /** Returns true if no key in this histogram has a non-zero count. */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Returns the number of keys with a non-zero count. */
+    public int size() {
+        int size = 0;
+        for (final long count : dense) {
+            if (count != 0) ++size;
+        }
+        for (final long count : overflow.values()) {
+            if (count != 0) ++size;
+        }
+        return size;
+    }
+
+    /** Returns the sum of the counts in all bins. */
+    public long getCount() {
+        long total = 0;
+        for (final long count : dense) total += count;
+        for (final long count : overflow.values()) total += count;
+        return total;
+    }
+
+    /** Returns the sum of the products of the keys and their counts. */
+    public double getSum() {
+        double total = 0;
+        final SortedBins bins = sortedBins();
+        for (int i = 0; i < bins.size; ++i) {
+            total += (double) bins.keys[i] * bins.counts[i];
+        }
+        return total;
+    }
+
+    /** Returns the mean of all the keys added to the histogram. */
+    public double getMean() {
+        return getSum() / getCount();
+    }
+
+    /** Returns the sample standard deviation of the keys added to the histogram. */
+    public double getStandardDeviation() {
+        final double mean = getMean();
+        final SortedBins bins = sortedBins();
+        double total = 0;
+        long count = 0;
+        for (int i = 0; i < bins.size; ++i) {
+            final double delta = bins.keys[i] - mean;
+            total += bins.counts[i] * delta * delta;
+            count += bins.counts[i];
+        }
+        return Math.sqrt(total / (count - 1));
+    }
+
+    /** Returns the smallest key with a non-zero count. */
+    public long getMinKey() {
+        final SortedBins bins = sortedBins();
+        if (bins.size == 0) throw new IllegalStateException("Cannot get the minimum of an empty histogram.");
+        return bins.keys[0];
+    }
+
+    /** Returns the largest key with a non-zero count. */
+    public long getMaxKey() {
+        final SortedBins bins = sortedBins();
+        if (bins.size == 0) throw new IllegalStateException("Cannot get the maximum of an empty histogram.");
+        return bins.keys[bins.size - 1];
+    }
+
+    /** Returns the key with the largest count; ties are broken in favour of the smallest key. */
+    public long getMode() {
+        final SortedBins bins = sortedBins();
+        if (bins.size == 0) throw new IllegalStateException("Cannot get the mode of an empty histogram.");
+        int modeIndex = 0;
+        for (int i = 1; i < bins.size; ++i) {
+            if (bins.counts[i] > bins.counts[modeIndex]) modeIndex = i;
+        }
+        return bins.keys[modeIndex];
+    }
+
+    /**
+     * Gets the key in which the given percentile falls.
+     *
+     * @param percentile a value between 0 and 1
+     * @return the key in which the percentile falls
+     */
+    public long getPercentile(final double percentile) {
+        if (percentile <= 0) throw new IllegalArgumentException("Cannot query percentiles of 0 or below");
+        if (percentile >= 1) throw new IllegalArgumentException("Cannot query percentiles of 1 or above");
+
+        final SortedBins bins = sortedBins();
+        for (int i = 0; i < bins.size; ++i) {
+            if (bins.counts[i] < 0) {
+                throw new IllegalStateException("Cannot calculate Percentile when negative counts are present " +
+                        "in histogram. Bin " + bins.keys[i] + "=" + bins.counts[i]);
+            }
+        }
+
+        final double total = getCount();
+        if (total == 0) throw new IllegalStateException("Cannot calculate percentiles when total is zero.");
+
+        long soFar = 0;
+        for (int i = 0; i < bins.size; ++i) {
+            soFar += bins.counts[i];
+            if (soFar / total >= percentile) return bins.keys[i];
+        }
+
+        throw new IllegalStateException("Could not find percentile: " + percentile);
+    }
+
+    /** Returns the median of the keys added to the histogram, or zero if the histogram is empty. */
+    public double getMedian() {
+        return getMedian(sortedBins());
+    }
+
+    private static double getMedian(final SortedBins bins) {
+        final long count = bins.totalCount();
+        if (count == 0) return 0;
+
+        final long midLow = (count + 1) / 2;
+        final long midHigh = count % 2 == 0 ? midLow + 1 : midLow;
+
+        long total = 0;
+        int i = 0;
+        while (total + bins.counts[i] < midLow) total += bins.counts[i++];
+        final long midLowKey = bins.keys[i];
+        while (total + bins.counts[i] < midHigh) total += bins.counts[i++];
+        final long midHighKey = bins.keys[i];
+
+        return (midLowKey + midHighKey) / 2.0;
+    }
+
+    /**
+     * Gets the median absolute deviation of the distribution.  Deviations are visited in increasing order by
+     * walking outwards from the median over the sorted keys, so no secondary histogram is built.
+     */
+    public double getMedianAbsoluteDeviation() {
+        final SortedBins bins = sortedBins();
+        final long count = bins.totalCount();
+        if (count == 0) return 0;
+
+        final double median = getMedian(bins);
+        final long midLow = (count + 1) / 2;
+        final long midHigh = count % 2 == 0 ? midLow + 1 : midLow;
+
+        // left walks down from the last key <= median, right walks up from the first key > median
+        int right = 0;
+        while (right < bins.size && bins.keys[right] <= median) ++right;
+        int left = right - 1;
+
+        long total = 0;
+        double midLowValue = Double.NaN;
+        while (true) {
+            final double deviation;
+            final long binCount;
+            if (right >= bins.size || (left >= 0 && median - bins.keys[left] <= bins.keys[right] - median)) {
+                deviation = median - bins.keys[left];
+                binCount = bins.counts[left--];
+            } else {
+                deviation = bins.keys[right] - median;
+                binCount = bins.counts[right++];
+            }
+
+            total += binCount;
+            if (Double.isNaN(midLowValue) && total >= midLow) midLowValue = deviation;
+            if (total >= midHigh) return (midLowValue + deviation) / 2;
+        }
+    }
+
+    /**
+     * Returns a value that is intended to estimate the standard deviation of the distribution, if the distribution
+     * is essentially normal, by using the median absolute deviation to remove the effect of erroneous massive outliers.
+     */
+    public double estimateSdViaMad() {
+        return 1.4826 * getMedianAbsoluteDeviation();
+    }
+
+    /**
+     * Collects the non-zero bins into parallel arrays sorted by key.  Negative overflow keys sort before the
+     * dense range and positive overflow keys after it, so this is a simple concatenation.
+     */
+    private SortedBins sortedBins() {
+        final SortedBins bins = new SortedBins(size());
+        for (final Map.Entry<Long, Long> entry : overflow.headMap(0L, false).entrySet()) {
+            bins.add(entry.getKey(), entry.getValue());
+        }
+        for (int i = 0; i < dense.length; ++i) {
+            bins.add(i, dense[i]);
+        }
+        for (final Map.Entry<Long, Long> entry : overflow.tailMap(0L, true).entrySet()) {
+            bins.add(entry.getKey(), entry.getValue());
+        }
+        return bins;
+    }
+
+    /**
+     * Calls the given consumer once for each non-zero bin, in increasing order of key.
+     */
+    protected final void forEachBin(final BinConsumer consumer) {
+        final SortedBins bins = sortedBins();
+        for (int i = 0; i < bins.size; ++i) {
+            consumer.accept(bins.keys[i], bins.counts[i]);
+        }
+    }
+
+    /** Receives the key and count of a single histogram bin. */
+    @FunctionalInterface
+    protected interface BinConsumer {
+        void accept(long key, long count);
+    }
+
+    /** Parallel arrays of keys and counts, in key order, for the non-zero bins of a histogram. */
+    private static final class SortedBins {
+        private final long[] keys;
+        private final long[] counts;
+        private int size = 0;
+
+        private SortedBins(final int capacity) {
+            this.keys = new long[capacity];
+            this.counts = new long[capacity];
+        }
+
+        private void add(final long key, final long count) {
+            if (count == 0) return;
+            keys[size] = key;
+            counts[size] = count;
+            ++size;
+        }
+
+        private long totalCount() {
+            long total = 0;
+            for (int i = 0; i < size; ++i) total += counts[i];
+            return total;
+        }
+    }
+
+    /** Checks that the labels and counts in the two histograms are identical. */
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final AbstractPrimitiveHistogram that = (AbstractPrimitiveHistogram) o;
+        if (!binLabel.equals(that.binLabel) || !valueLabel.equals(that.valueLabel)) return false;
+
+        final SortedBins these = sortedBins();
+        final SortedBins those = that.sortedBins();
+        return these.size == those.size &&
+                Arrays.equals(Arrays.copyOf(these.keys, these.size), Arrays.copyOf(those.keys, those.size)) &&
+                Arrays.equals(Arrays.copyOf(these.counts, these.size), Arrays.copyOf(those.counts, those.size));
+    }
+
+    @Override
+    public int hashCode() {
+        final SortedBins bins = sortedBins();
+        int result = binLabel.hashCode();
+        result = 31 * result + valueLabel.hashCode();
+        for (int i = 0; i < bins.size; ++i) {
+            result = 31 * result + Long.hashCode(bins.keys[i]);
+            result = 31 * result + Long.hashCode(bins.counts[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("{");
+        forEachBin((key, count) -> {
+            if (builder.length() > 1) builder.append(", ");
+            builder.append(key).append('=').append(count);
+        });
+        return builder.append('}').toString();
+    }
+}
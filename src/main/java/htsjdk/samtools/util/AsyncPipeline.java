@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Writes items through a chain of stages, each running on a thread of its own, for example to encode, compress and
+ * write records on three threads while the caller produces more.  Adjacent stages are connected by the same lock-free
+ * ring buffer as {@link AbstractAsyncWriter}, and items pass through every stage in the order in which they were
+ * written.
+ *
+ * <pre>
+ *     final AsyncPipeline&lt;SAMRecord&gt; pipeline = AsyncPipeline.&lt;SAMRecord&gt;newBuilder("BAMWriter-")
+ *             .addStage(encoder::encode)
+ *             .addStage(compressor::compress)
+ *             .build(output::write, output::close);
+ * </pre>
+ *
+ * As with {@link AbstractAsyncWriter}, only one thread may call {@link #write} and {@link #close}, and an exception
+ * thrown by any stage is rethrown to the caller by the next call to either method, after which the pipeline is
+ * closed to further writes.
+ *
+ * @param <T> the type of the items written to the pipeline
+ */
+public final class AsyncPipeline<T> implements Closeable {
+    private final List<AsyncStage<Object>> stages;
+    private final Runnable onClose;
+    private boolean isClosed = false;
+
+    private AsyncPipeline(final List<AsyncStage<Object>> stages, final Runnable onClose) {
+        this.stages = stages;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Starts building a pipeline with queues of {@link AbstractAsyncWriter#DEFAULT_QUEUE_SIZE} items whose threads
+     * wait by blocking.
+     *
+     * @param threadNamePrefix the prefix of the names of the threads of the pipeline
+     */
+    public static <T> Builder<T, T> newBuilder(final String threadNamePrefix) {
+        return newBuilder(threadNamePrefix, AbstractAsyncWriter.DEFAULT_QUEUE_SIZE, AbstractAsyncWriter.WaitStrategy.BLOCKING);
+    }
+
+    /**
+     * Starts building a pipeline.
+     *
+     * @param threadNamePrefix the prefix of the names of the threads of the pipeline
+     * @param queueSize the minimum number of items in each queue between stages
+     * @param waitStrategy how threads wait on a full or empty queue
+     */
+    public static <T> Builder<T, T> newBuilder(final String threadNamePrefix, final int queueSize,
+                                               final AbstractAsyncWriter.WaitStrategy waitStrategy) {
+        return new Builder<>(threadNamePrefix, queueSize, waitStrategy, Collections.emptyList());
+    }
+
+    /**
+     * Builds an {@link AsyncPipeline} one stage at a time.
+     *
+     * @param <T> the type of the items written to the pipeline
+     * @param <U> the type of the items produced by the last stage added
+     */
+    public static final class Builder<T, U> {
+        private final String threadNamePrefix;
+        private final int queueSize;
+        private final AbstractAsyncWriter.WaitStrategy waitStrategy;
+        private final List<Function<Object, Object>> functions;
+
+        private Builder(final String threadNamePrefix, final int queueSize,
+                        final AbstractAsyncWriter.WaitStrategy waitStrategy, final List<Function<Object, Object>> functions) {
+            this.threadNamePrefix = threadNamePrefix;
+            this.queueSize = queueSize;
+            this.waitStrategy = waitStrategy;
+            this.functions = functions;
+        }
+
+        /**
+         * Adds a stage that transforms each item on a thread of its own.
+         *
+         * @param function the transformation, which must not return null
+         */
+        @SuppressWarnings("unchecked")
+        public <V> Builder<T, V> addStage(final Function<? super U, ? extends V> function) {
+            if (function == null) throw new IllegalArgumentException("null function");
+            final List<Function<Object, Object>> newFunctions = new ArrayList<>(functions);
+            newFunctions.add((Function<Object, Object>) function);
+            return new Builder<>(threadNamePrefix, queueSize, waitStrategy, newFunctions);
+        }
+
+        /**
+         * Builds the pipeline and starts its threads.
+         *
+         * @param sink called on a thread of its own with each item produced by the last stage
+         * @param onClose called on the closing thread once every item has been handed to the sink, or null
+         */
+        @SuppressWarnings("unchecked")
+        public AsyncPipeline<T> build(final Consumer<? super U> sink, final Runnable onClose) {
+            if (sink == null) throw new IllegalArgumentException("null sink");
+            final int n = functions.size();
+            final List<AsyncStage<Object>> stages = new ArrayList<>(Collections.nCopies(n + 1, null));
+            stages.set(n, new AsyncStage<>(threadNamePrefix + n, queueSize, waitStrategy, (Consumer<Object>) sink));
+            for (int i = n - 1; i >= 0; --i) {
+                final Function<Object, Object> function = functions.get(i);
+                final AsyncStage<Object> next = stages.get(i + 1);
+                stages.set(i, new AsyncStage<>(threadNamePrefix + i, queueSize, waitStrategy, item -> {
+                    next.put(function.apply(item));
+                    if (next.hasFailed()) {
+                        // Stop this stage too; the pipeline reports the error of the stage that failed first
+                        throw new DownstreamFailure();
+                    }
+                }));
+            }
+            return new AsyncPipeline<>(stages, onClose);
+        }
+    }
+
+    /** Stops a stage whose downstream stage has failed. */
+    private static final class DownstreamFailure extends RuntimeException {
+        private DownstreamFailure() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** Queues an item to be passed through the pipeline. */
+    public void write(final T item) {
+        if (isClosed) throw new RuntimeIOException("Attempt to add record to closed writer.");
+
+        checkAndRethrow();
+        stages.get(0).put(item);
+        checkAndRethrow();
+    }
+
+    /**
+     * Waits for every item to pass through every stage, stops the threads, and runs the close action.
+     */
+    @Override
+    public void close() {
+        checkAndRethrow();
+
+        if (!isClosed) {
+            isClosed = true;
+            try {
+                for (final AsyncStage<Object> stage : stages) {
+                    stage.close();
+                }
+            } catch (final InterruptedException ie) {
+                throw new RuntimeException("Interrupted waiting on pipeline threads.", ie);
+            }
+
+            if (onClose != null) onClose.run();
+            checkAndRethrow();
+        }
+    }
+
+    /** Returns a snapshot of the counters of each stage, in pipeline order, the last being the sink. */
+    public List<AsyncWriterMetrics> getMetrics() {
+        final List<AsyncWriterMetrics> metrics = new ArrayList<>(stages.size());
+        for (final AsyncStage<Object> stage : stages) {
+            metrics.add(stage.getMetrics());
+        }
+        return metrics;
+    }
+
+    /** Rethrows the exception of the stage furthest downstream that failed, which is the one that failed first. */
+    private void checkAndRethrow() {
+        Throwable t = null;
+        for (final AsyncStage<Object> stage : stages) {
+            final Throwable stageError = stage.takeError();
+            if (stageError != null && !(stageError instanceof DownstreamFailure)) {
+                t = stageError;
+            }
+        }
+        if (t != null) {
+            isClosed = true; // Ensure no further attempts to write
+            if (t instanceof Error) throw (Error) t;
+            if (t instanceof RuntimeException) throw (RuntimeException) t;
+            else throw new RuntimeException(t);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A single producer, single consumer ring buffer drained by a thread of its own, which hands each item to a handler.
+ * This is the transport behind {@link AbstractAsyncWriter} and each stage of an {@link AsyncPipeline}.
+ *
+ * Only one thread may call {@link #put} and {@link #close}.  The consumer thread drains all the items published since
+ * it last looked in one batch, releasing each slot as soon as its item has been handled.  When the buffer is full or
+ * empty the producer or consumer waits according to the {@link AbstractAsyncWriter.WaitStrategy}.
+ *
+ * An exception thrown by the handler stops the consumer thread, unblocks the producer, and is returned by
+ * {@link #takeError()}; items published after that are discarded.
+ */
+final class AsyncStage<T> {
+    /** The number of times a waiting thread checks again before it yields or parks. */
+    private static final int SPIN_TRIES = 100;
+    /** Bounds the time a blocked thread parks, so that a missed wake up only costs latency. */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final String name;
+    private final Object[] buffer;
+    private final int mask;
+    private final AbstractAsyncWriter.WaitStrategy waitStrategy;
+    private final Consumer<T> handler;
+    private final Thread consumerThread;
+    private volatile Thread producerThread;
+
+    /** The number of items published by the producer. */
+    private final AtomicLong published = new AtomicLong();
+    /** The number of items handled by the consumer, whose slots may be reused. */
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private volatile boolean closed = false;
+    private volatile boolean failed = false;
+    private volatile boolean consumerWaiting = false;
+    private volatile boolean producerWaiting = false;
+
+    // Producer state
+    private long nextPublish = 0;
+    private long cachedConsumed = 0;
+    private volatile long maxQueueDepth = 0;
+    private volatile long producerStalls = 0;
+    private volatile long producerStallNanos = 0;
+
+    // Consumer state
+    private volatile long batchesWritten = 0;
+    private volatile long writerBusyNanos = 0;
+
+    /**
+     * Creates the stage and starts its consumer thread.
+     *
+     * @param name the name of the consumer thread
+     * @param capacity the minimum number of items the buffer can hold, rounded up to a power of two
+     * @param waitStrategy how threads wait for a full or empty buffer
+     * @param handler called on the consumer thread with each item in order
+     */
+    AsyncStage(final String name, final int capacity, final AbstractAsyncWriter.WaitStrategy waitStrategy, final Consumer<T> handler) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        if (capacity > 1 << 30) throw new IllegalArgumentException("capacity is too large: " + capacity);
+        if (waitStrategy == null) throw new IllegalArgumentException("null waitStrategy");
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.name = name;
+        this.buffer = new Object[size];
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.handler = handler;
+        this.consumerThread = new Thread(this::drain, name);
+        this.consumerThread.setDaemon(true);
+        this.consumerThread.start();
+    }
+
+    /**
+     * Publishes an item, waiting for a free slot if the buffer is full.  Returns without publishing the item if the
+     * consumer has failed.
+     */
+    void put(final T item) {
+        if (nextPublish - cachedConsumed > mask) {
+            cachedConsumed = consumed.get();
+            if (nextPublish - cachedConsumed > mask) {
+                awaitFreeSlot();
+                if (failed) return;
+            }
+        }
+        buffer[(int) nextPublish & mask] = item;
+        ++nextPublish;
+        if (waitStrategy == AbstractAsyncWriter.WaitStrategy.BLOCKING) {
+            published.set(nextPublish);
+            if (consumerWaiting) LockSupport.unpark(consumerThread);
+        } else {
+            published.lazySet(nextPublish);
+        }
+        final long depth = nextPublish - cachedConsumed;
+        if (depth > maxQueueDepth) maxQueueDepth = depth;
+    }
+
+    private void awaitFreeSlot() {
+        final long start = System.nanoTime();
+        producerStalls = producerStalls + 1;
+        int tries = 0;
+        while (!failed && nextPublish - (cachedConsumed = consumed.get()) > mask) {
+            if (waitStrategy == AbstractAsyncWriter.WaitStrategy.BLOCKING && tries >= SPIN_TRIES) {
+                producerThread = Thread.currentThread();
+                producerWaiting = true;
+                if (!failed && nextPublish - consumed.get() > mask) {
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                }
+                producerWaiting = false;
+            } else {
+                idle(tries++);
+            }
+        }
+        producerStallNanos = producerStallNanos + System.nanoTime() - start;
+    }
+
+    /** Called by a thread that found nothing to do, other than blocking, which is handled by the caller. */
+    private void idle(final int tries) {
+        if (tries < SPIN_TRIES || waitStrategy == AbstractAsyncWriter.WaitStrategy.BUSY_SPIN) {
+            return;
+        }
+        Thread.yield();
+    }
+
+    /** The body of the consumer thread. */
+    private void drain() {
+        long next = 0;
+        int tries = 0;
+        try {
+            while (true) {
+                final long available = published.get();
+                if (available == next) {
+                    // Check closed before looking again, since everything was published before the stage was closed
+                    if (closed && published.get() == next) {
+                        break;
+                    }
+                    if (waitStrategy == AbstractAsyncWriter.WaitStrategy.BLOCKING && tries >= SPIN_TRIES) {
+                        consumerWaiting = true;
+                        if (!closed && published.get() == next) {
+                            LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                        }
+                        consumerWaiting = false;
+                    } else {
+                        idle(tries++);
+                    }
+                    continue;
+                }
+                tries = 0;
+                final long start = System.nanoTime();
+                for (; next < available; ++next) {
+                    final int slot = (int) next & mask;
+                    @SuppressWarnings("unchecked")
+                    final T item = (T) buffer[slot];
+                    buffer[slot] = null;
+                    handler.accept(item);
+                    if (waitStrategy == AbstractAsyncWriter.WaitStrategy.BLOCKING) {
+                        consumed.set(next + 1);
+                        if (producerWaiting) LockSupport.unpark(producerThread);
+                    } else {
+                        consumed.lazySet(next + 1);
+                    }
+                }
+                batchesWritten = batchesWritten + 1;
+                writerBusyNanos = writerBusyNanos + System.nanoTime() - start;
+            }
+        } catch (final Throwable t) {
+            error.compareAndSet(null, t);
+            failed = true;
+            // Unblock a producer waiting on a full buffer so that it can see the error
+            final Thread producer = producerThread;
+            if (producer != null) LockSupport.unpark(producer);
+        }
+    }
+
+    /** Returns and clears the exception thrown by the handler, if any. */
+    Throwable takeError() {
+        return error.getAndSet(null);
+    }
+
+    /** True if the handler has thrown an exception. */
+    boolean hasFailed() {
+        return failed;
+    }
+
+    /** Waits for the consumer to handle every item published, or to fail, and stops its thread. */
+    void close() throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(consumerThread);
+        consumerThread.join();
+    }
+
+    AsyncWriterMetrics getMetrics() {
+        final long consumedCount = consumed.get();
+        return new AsyncWriterMetrics(name, consumedCount, batchesWritten, Math.max(0, published.get() - consumedCount),
+                maxQueueDepth, producerStalls, producerStallNanos, writerBusyNanos);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+/**
+ * A snapshot of the counters of an asynchronous writer, or of one stage of an {@link AsyncPipeline}, which show where
+ * time goes when items are handed from one thread to another.  A writer that is often busy and a producer that often
+ * stalls on a full queue point to the writer being the bottleneck; a mostly idle writer with an empty queue points to
+ * the producer.
+ */
+public final class AsyncWriterMetrics {
+    private final String name;
+    private final long itemsWritten;
+    private final long batchesWritten;
+    private final long queueDepth;
+    private final long maxQueueDepth;
+    private final long producerStalls;
+    private final long producerStallNanos;
+    private final long writerBusyNanos;
+
+    AsyncWriterMetrics(final String name, final long itemsWritten, final long batchesWritten, final long queueDepth,
+                       final long maxQueueDepth, final long producerStalls, final long producerStallNanos,
+                       final long writerBusyNanos) {
+        this.name = name;
+        this.itemsWritten = itemsWritten;
+        this.batchesWritten = batchesWritten;
+        this.queueDepth = queueDepth;
+        this.maxQueueDepth = maxQueueDepth;
+        this.producerStalls = producerStalls;
+        this.producerStallNanos = producerStallNanos;
+        this.writerBusyNanos = writerBusyNanos;
+    }
+
+    /** The name of the writer thread. */
+    public String getName() { return name; }
+
+    /** The number of items handed to the underlying writer. */
+    public long getItemsWritten() { return itemsWritten; }
+
+    /** The number of times the writer thread drained the items queued since it last looked. */
+    public long getBatchesWritten() { return batchesWritten; }
+
+    /** The number of items queued but not yet written when the snapshot was taken. */
+    public long getQueueDepth() { return queueDepth; }
+
+    /** The largest number of items queued at once. */
+    public long getMaxQueueDepth() { return maxQueueDepth; }
+
+    /** The number of times the producer found the queue full and had to wait. */
+    public long getProducerStalls() { return producerStalls; }
+
+    /** The total time the producer spent waiting on a full queue. */
+    public long getProducerStallNanos() { return producerStallNanos; }
+
+    /** The total time the writer thread spent writing items, as opposed to waiting for them. */
+    public long getWriterBusyNanos() { return writerBusyNanos; }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d items in %d batches, queue depth %d (max %d), %d producer stalls (%d ms), writer busy %d ms",
+                name, itemsWritten, batchesWritten, queueDepth, maxQueueDepth, producerStalls,
+                producerStallNanos / 1000000, writerBusyNanos / 1000000);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.SAMFormatException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads runs of consecutive BGZF blocks from a stream into a single buffer without inflating them, so that they can
+ * be inflated together on another thread.
+ *
+ * Note that this implementation is not synchronized.
+ */
+public final class BlockCompressedBatchReader {
+    private final InputStream in;
+    private final byte[] header = new byte[BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+    private long address = 0;
+
+    /**
+     * @param in the BGZF data, positioned at the start of a block; it is not closed by this reader
+     */
+    public BlockCompressedBatchReader(final InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next blocks.
+     *
+     * @param maxBlocks the maximum number of blocks to read
+     * @return the blocks read, or null at the end of the data
+     * @throws SAMFormatException if a block header is invalid or a block is truncated
+     */
+    public Batch readBatch(final int maxBlocks) throws IOException {
+        final long[] addresses = new long[maxBlocks];
+        final int[] offsets = new int[maxBlocks + 1];
+        byte[] compressed = new byte[maxBlocks * BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE / 4];
+        int count = 0;
+        while (count < maxBlocks) {
+            final int headerBytes = readFully(header, 0, header.length);
+            if (headerBytes == 0) {
+                break;
+            }
+            if (headerBytes < header.length ||
+                    header[0] != BlockCompressedStreamConstants.GZIP_ID1 ||
+                    header[1] != (byte) BlockCompressedStreamConstants.GZIP_ID2 ||
+                    header[12] != BlockCompressedStreamConstants.BGZF_ID1 ||
+                    header[13] != BlockCompressedStreamConstants.BGZF_ID2) {
+                throw new SAMFormatException("Invalid BGZF block header at offset " + address);
+            }
+            final int blockSize = ((header[BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET] & 0xff) |
+                    (header[BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET + 1] & 0xff) << 8) + 1;
+            final int offset = offsets[count];
+            if (compressed.length < offset + blockSize) {
+                compressed = Arrays.copyOf(compressed, Math.max(compressed.length * 2, offset + blockSize));
+            }
+            System.arraycopy(header, 0, compressed, offset, header.length);
+            final int remaining = blockSize - header.length;
+            if (readFully(compressed, offset + header.length, remaining) != remaining) {
+                throw new SAMFormatException("Truncated BGZF block at offset " + address);
+            }
+            addresses[count] = address;
+            offsets[count + 1] = offset + blockSize;
+            address += blockSize;
+            ++count;
+        }
+        return count == 0 ? null : new Batch(count, addresses, offsets, compressed);
+    }
+
+    private int readFully(final byte[] buffer, final int offset, final int length) throws IOException {
+        int n = 0;
+        while (n < length) {
+            final int count = in.read(buffer, offset + n, length - n);
+            if (count < 0) break;
+            n += count;
+        }
+        return n;
+    }
+
+    /** A run of consecutive compressed BGZF blocks. */
+    public static final class Batch {
+        private final int blockCount;
+        private final long[] addresses;
+        private final int[] compressedOffsets;
+        private final int[] uncompressedOffsets;
+        private final byte[] compressed;
+
+        private Batch(final int blockCount, final long[] addresses, final int[] compressedOffsets, final byte[] compressed) {
+            this.blockCount = blockCount;
+            this.addresses = addresses;
+            this.compressedOffsets = compressedOffsets;
+            this.compressed = compressed;
+            this.uncompressedOffsets = new int[blockCount + 1];
+            for (int i = 0; i < blockCount; ++i) {
+                // ISIZE is the last 4 bytes of each block
+                final int end = compressedOffsets[i + 1];
+                uncompressedOffsets[i + 1] = uncompressedOffsets[i] + ((compressed[end - 4] & 0xff) |
+                        (compressed[end - 3] & 0xff) << 8 | (compressed[end - 2] & 0xff) << 16 | (compressed[end - 1] & 0xff) << 24);
+            }
+        }
+
+        /** @return the number of blocks */
+        public int getBlockCount() {
+            return blockCount;
+        }
+
+        /** @return the offset of a block in the compressed data */
+        public long getAddress(final int block) {
+            return addresses[block];
+        }
+
+        /** @return the size of a compressed block */
+        public int getCompressedSize(final int block) {
+            return compressedOffsets[block + 1] - compressedOffsets[block];
+        }
+
+        /** @return the offset of an inflated block in {@link #inflate(BlockGunzipper)}; the block count gives the total length */
+        public int getUncompressedOffset(final int block) {
+            return uncompressedOffsets[block];
+        }
+
+        /** Inflates all blocks into one array. */
+        public byte[] inflate(final BlockGunzipper gunzipper) {
+            final byte[] uncompressed = new byte[uncompressedOffsets[blockCount]];
+            for (int i = 0; i < blockCount; ++i) {
+                gunzipper.unzipBlock(uncompressed, uncompressedOffsets[i], compressed, compressedOffsets[i], getCompressedSize(i));
+            }
+            return uncompressed;
+        }
+    }
+}
@@ -345,6 +345,19 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         return originalLength - length;
     }
 
+    /**
+     * Advises the underlying stream, if it is seekable, that the given range of compressed bytes is likely to be
+     * read soon.  See {@link SeekableStream#prefetch(long, long)}.
+     *
+     * @param position byte offset in the compressed stream, not a virtual file pointer
+     * @param length number of compressed bytes
+     */
+    public void prefetch(final long position, final long length) {
+        if (mFile != null && !mIsClosed) {
+            mFile.prefetch(position, length);
+        }
+    }
+
     /**
      * Seek to the given position in the file.  Note that pos is a special virtual file pointer,
      * not an actual byte offset.
@@ -60,7 +60,7 @@ public class BlockGunzipper {
      * Create a BlockGunzipper using the provided inflaterFactory
      * @param inflaterFactory
      */
-    BlockGunzipper(InflaterFactory inflaterFactory) {
+    public BlockGunzipper(InflaterFactory inflaterFactory) {
         inflater = inflaterFactory.makeInflater(true); // GZIP mode
     }
 
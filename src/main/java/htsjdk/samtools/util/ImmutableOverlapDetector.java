@@ -0,0 +1,289 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A build-once, immutable alternative to {@link OverlapDetector}.  The intervals on each contig are held in
+ * sorted primitive arrays that are treated as an implicit, augmented binary interval tree (the layout used
+ * by cgranges): the node at array index i has level equal to the number of trailing one bits in i, and
+ * each node records the maximum end of the intervals in its subtree.  There are no per-interval node objects,
+ * and queries touch contiguous memory.
+ *
+ * {@link #forEachOverlap(Locatable, Consumer)} visits overlapping objects without allocating a result
+ * collection; {@link #getOverlaps(Locatable)} is provided for compatibility with OverlapDetector.  Instances are
+ * safe to query from multiple threads.
+ *
+ * Unlike OverlapDetector, an object added with several intervals that all overlap a query is visited once per
+ * overlapping interval by {@link #forEachOverlap(Locatable, Consumer)}.
+ */
+public final class ImmutableOverlapDetector<T> {
+    /** Subtrees at or below this level are scanned linearly rather than descended. */
+    private static final int LINEAR_SCAN_LEVEL = 3;
+
+    private final Map<String, ContigIndex<T>> contigs;
+    private final int rhsBuffer;
+
+    private ImmutableOverlapDetector(final Map<String, ContigIndex<T>> contigs, final int rhsBuffer) {
+        this.contigs = contigs;
+        this.rhsBuffer = rhsBuffer;
+    }
+
+    /**
+     * Creates a new ImmutableOverlapDetector with no trim over the given set of intervals.
+     */
+    public static <T extends Locatable> ImmutableOverlapDetector<T> create(final List<T> intervals) {
+        return create(intervals, intervals, 0, 0);
+    }
+
+    /**
+     * Creates a new ImmutableOverlapDetector.
+     *
+     * @param objects the objects to be returned from queries
+     * @param intervals the interval of each object, in the same order as objects
+     * @param lhsBuffer the amount by which to "trim" coordinates of the given intervals when calculating overlaps
+     * @param rhsBuffer the amount by which to "trim" coordinates of query intervals when calculating overlaps
+     */
+    public static <T> ImmutableOverlapDetector<T> create(final List<T> objects,
+                                                         final List<? extends Locatable> intervals,
+                                                         final int lhsBuffer,
+                                                         final int rhsBuffer) {
+        if (objects == null) {
+            throw new IllegalArgumentException("null objects");
+        }
+        if (intervals == null) {
+            throw new IllegalArgumentException("null intervals");
+        }
+        if (objects.size() != intervals.size()) {
+            throw new IllegalArgumentException("Objects and intervals must be the same size but were " + objects.size() + " and " + intervals.size());
+        }
+
+        // Group the indexes of the intervals by contig, skipping those that have no overlappable bases
+        final Map<String, List<Integer>> byContig = new HashMap<>();
+        for (int i = 0; i < objects.size(); ++i) {
+            if (objects.get(i) == null) {
+                throw new IllegalArgumentException("null object");
+            }
+            final Locatable interval = intervals.get(i);
+            if (interval == null) {
+                throw new IllegalArgumentException("null interval");
+            }
+            if (interval.getStart() + lhsBuffer <= interval.getEnd() - lhsBuffer) {
+                byContig.computeIfAbsent(interval.getContig(), k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        final Map<String, ContigIndex<T>> contigs = new HashMap<>();
+        for (final Map.Entry<String, List<Integer>> entry : byContig.entrySet()) {
+            contigs.put(entry.getKey(), new ContigIndex<>(objects, intervals, entry.getValue(), lhsBuffer));
+        }
+        return new ImmutableOverlapDetector<>(contigs, rhsBuffer);
+    }
+
+    /**
+     * Calls the given consumer with each object whose interval overlaps the provided locatable.
+     */
+    public void forEachOverlap(final Locatable locatable, final Consumer<? super T> consumer) {
+        if (locatable == null) {
+            throw new IllegalArgumentException("null locatable");
+        }
+        forEachOverlap(locatable.getContig(), locatable.getStart(), locatable.getEnd(), consumer);
+    }
+
+    /**
+     * Calls the given consumer with each object whose interval overlaps [start, end] on the given contig.
+     */
+    public void forEachOverlap(final String contig, final int start, final int end, final Consumer<? super T> consumer) {
+        final ContigIndex<T> index = contigs.get(contig);
+        final int queryStart = start + rhsBuffer;
+        final int queryEnd = end - rhsBuffer;
+        if (index == null || queryStart > queryEnd) {
+            return;
+        }
+        index.forEachOverlap(index.rootIndex(), index.maxLevel, queryStart, queryEnd, consumer);
+    }
+
+    /**
+     * Returns true iff the given locatable overlaps any locatable in this detector.
+     */
+    public boolean overlapsAny(final Locatable locatable) {
+        if (locatable == null) {
+            throw new IllegalArgumentException("null locatable");
+        }
+        final ContigIndex<T> index = contigs.get(locatable.getContig());
+        final int start = locatable.getStart() + rhsBuffer;
+        final int end = locatable.getEnd() - rhsBuffer;
+        return index != null && start <= end && index.overlapsAny(index.rootIndex(), index.maxLevel, start, end);
+    }
+
+    /**
+     * Gets the Set of objects that overlap the provided locatable.
+     * The returned set is a new, modifiable set, even if it is empty.
+     */
+    public Set<T> getOverlaps(final Locatable locatable) {
+        final Set<T> matches = new HashSet<>();
+        forEachOverlap(locatable, matches::add);
+        return matches;
+    }
+
+    /**
+     * Gets all the objects that could be returned by this detector.
+     */
+    public Set<T> getAll() {
+        final Set<T> all = new HashSet<>();
+        for (final ContigIndex<T> index : contigs.values()) {
+            Collections.addAll(all, index.objects);
+        }
+        return all;
+    }
+
+    /** The intervals on one contig, sorted by start, with the implicit tree's per-node maximum end. */
+    private static final class ContigIndex<T> {
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] maxEnds;
+        private final T[] objects;
+        private final int maxLevel;
+
+        @SuppressWarnings("unchecked")
+        private ContigIndex(final List<T> allObjects, final List<? extends Locatable> allIntervals,
+                            final List<Integer> indexes, final int lhsBuffer) {
+            final int n = indexes.size();
+
+            // Sort by start, packing the start and the position in the input into a long to sort primitives
+            final long[] packed = new long[n];
+            for (int i = 0; i < n; ++i) {
+                final int index = indexes.get(i);
+                packed[i] = ((long) (allIntervals.get(index).getStart() + lhsBuffer) << 32) | index;
+            }
+            Arrays.sort(packed);
+
+            this.starts = new int[n];
+            this.ends = new int[n];
+            this.maxEnds = new int[n];
+            this.objects = (T[]) new Object[n];
+            for (int i = 0; i < n; ++i) {
+                final int index = (int) packed[i];
+                starts[i] = (int) (packed[i] >> 32);
+                ends[i] = allIntervals.get(index).getEnd() - lhsBuffer;
+                objects[i] = allObjects.get(index);
+            }
+            this.maxLevel = computeMaxEnds();
+        }
+
+        /**
+         * Fills in maxEnds bottom-up, level by level, and returns the level of the root.  Nodes with index >= n
+         * do not exist but may have existing descendants; the running "last" value stands in for their maxEnd.
+         */
+        private int computeMaxEnds() {
+            final int n = starts.length;
+            if (n == 0) return 0;
+
+            int lastIndex = 0;
+            int last = 0;
+            for (int i = 0; i < n; i += 2) {
+                lastIndex = i;
+                last = maxEnds[i] = ends[i];
+            }
+            for (int i = 1; i < n; i += 2) {
+                maxEnds[i] = ends[i];
+            }
+
+            int k;
+            for (k = 1; (1L << k) <= n; ++k) {
+                final int x = 1 << (k - 1);
+                final int i0 = (x << 1) - 1;
+                final int step = x << 2;
+                for (int i = i0; i < n; i += step) {
+                    final int leftMax = maxEnds[i - x];
+                    final int rightMax = i + x < n ? maxEnds[i + x] : last;
+                    maxEnds[i] = Math.max(ends[i], Math.max(leftMax, rightMax));
+                }
+                lastIndex = ((lastIndex >> k) & 1) != 0 ? lastIndex - x : lastIndex + x;
+                if (lastIndex < n && maxEnds[lastIndex] > last) {
+                    last = maxEnds[lastIndex];
+                }
+            }
+            return k - 1;
+        }
+
+        private int rootIndex() {
+            return (1 << maxLevel) - 1;
+        }
+
+        private void forEachOverlap(final int node, final int level, final int start, final int end,
+                                    final Consumer<? super T> consumer) {
+            final int n = starts.length;
+            if (level <= LINEAR_SCAN_LEVEL) {
+                final int first = node >> level << level;
+                final int last = Math.min(first + (1 << (level + 1)) - 1, n);
+                for (int i = first; i < last && starts[i] <= end; ++i) {
+                    if (ends[i] >= start) consumer.accept(objects[i]);
+                }
+                return;
+            }
+
+            final int half = 1 << (level - 1);
+            final int left = node - half;
+            if (left >= n || maxEnds[left] >= start) {
+                forEachOverlap(left, level - 1, start, end, consumer);
+            }
+            if (node < n && starts[node] <= end) {
+                if (ends[node] >= start) consumer.accept(objects[node]);
+                forEachOverlap(node + half, level - 1, start, end, consumer);
+            }
+        }
+
+        private boolean overlapsAny(final int node, final int level, final int start, final int end) {
+            final int n = starts.length;
+            if (level <= LINEAR_SCAN_LEVEL) {
+                final int first = node >> level << level;
+                final int last = Math.min(first + (1 << (level + 1)) - 1, n);
+                for (int i = first; i < last && starts[i] <= end; ++i) {
+                    if (ends[i] >= start) return true;
+                }
+                return false;
+            }
+
+            final int half = 1 << (level - 1);
+            final int left = node - half;
+            if ((left >= n || maxEnds[left] >= start) && overlapsAny(left, level - 1, start, end)) {
+                return true;
+            }
+            if (node < n && starts[node] <= end) {
+                return ends[node] >= start || overlapsAny(node + half, level - 1, start, end);
+            }
+            return false;
+        }
+    }
+}
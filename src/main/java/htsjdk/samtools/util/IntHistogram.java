@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+/**
+ * Histogram of int keys with long counts, backed by a dense array of counts with sparse overflow.  This is
+ * a low-allocation alternative to {@code Histogram<Integer>} for hot loops such as per-read or per-locus
+ * accumulation; use {@link #toHistogram()} to obtain a {@link Histogram} for output via
+ * {@link htsjdk.samtools.metrics.MetricsFile}.
+ *
+ * @see AbstractPrimitiveHistogram
+ */
+public final class IntHistogram extends AbstractPrimitiveHistogram {
+    private static final long serialVersionUID = 1L;
+
+    /** Constructs a new IntHistogram with default bin and value labels. */
+    public IntHistogram() {
+        this("BIN", "VALUE");
+    }
+
+    /** Constructs a new IntHistogram with supplied bin and value labels. */
+    public IntHistogram(final String binLabel, final String valueLabel) {
+        this(binLabel, valueLabel, DEFAULT_MAX_DENSE_KEY);
+    }
+
+    /**
+     * Constructs a new IntHistogram with supplied bin and value labels, storing keys in [0, maxDenseKey]
+     * densely and all other keys in a sparse map.
+     */
+    public IntHistogram(final String binLabel, final String valueLabel, final int maxDenseKey) {
+        super(binLabel, valueLabel, maxDenseKey);
+    }
+
+    /** Increments the count for the designated key by 1. */
+    public void increment(final int key) {
+        incrementKey(key, 1);
+    }
+
+    /** Increments the count for the designated key by the supplied increment. */
+    public void increment(final int key, final long increment) {
+        incrementKey(key, increment);
+    }
+
+    /** Returns the count for the given key, or zero if it has never been incremented. */
+    public long get(final int key) {
+        return getKeyCount(key);
+    }
+
+    /** Mutable method that adds the counts of another IntHistogram into this one. */
+    public void addHistogram(final IntHistogram addHistogram) {
+        super.addHistogram(addHistogram);
+    }
+
+    /**
+     * Returns a new {@link Histogram} with the same labels and the same non-zero bins as this histogram,
+     * suitable for use with the existing Histogram API and {@link htsjdk.samtools.metrics.MetricsFile}.
+     */
+    public Histogram<Integer> toHistogram() {
+        final Histogram<Integer> histogram = new Histogram<>(getBinLabel(), getValueLabel());
+        forEachBin((key, count) -> histogram.increment((int) key, (double) count));
+        return histogram;
+    }
+}
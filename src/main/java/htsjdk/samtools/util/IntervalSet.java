@@ -0,0 +1,370 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.utils.ValidationUtils;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable set of genomic loci, stored per contig as sorted, non-overlapping and non-abutting closed
+ * intervals in primitive int arrays.  Unlike {@link IntervalList}, an IntervalSet does not retain interval
+ * names or strands, which allows set operations to be performed as linear-time sweeps over the arrays of
+ * each contig, with contigs processed in parallel.
+ *
+ * Use {@link #fromIntervalList(IntervalList)} and {@link #toIntervalList()} to convert to and from
+ * IntervalLists.  Coordinates are 1-based and end-inclusive, as in {@link Interval}.
+ */
+public final class IntervalSet {
+    private static final int[] EMPTY = new int[0];
+
+    private final SAMSequenceDictionary dictionary;
+
+    /** For each contig, the interleaved start and end of each interval: {start0, end0, start1, end1, ...}. */
+    private final int[][] bounds;
+
+    private IntervalSet(final SAMSequenceDictionary dictionary, final int[][] bounds) {
+        this.dictionary = dictionary;
+        this.bounds = bounds;
+    }
+
+    /** Returns an empty IntervalSet over the given dictionary. */
+    public static IntervalSet empty(final SAMSequenceDictionary dictionary) {
+        final int[][] bounds = new int[dictionary.size()][];
+        Arrays.fill(bounds, EMPTY);
+        return new IntervalSet(dictionary, bounds);
+    }
+
+    /**
+     * Creates an IntervalSet containing all the loci covered by the intervals in the given list.  The intervals
+     * need not be sorted; overlapping and abutting intervals are merged.
+     *
+     * @throws IllegalArgumentException if an interval is on a contig that is not in the list's sequence dictionary
+     */
+    public static IntervalSet fromIntervalList(final IntervalList list) {
+        final SAMSequenceDictionary dictionary = list.getHeader().getSequenceDictionary();
+        final int[] counts = new int[dictionary.size()];
+        final int[] contigIndexes = new int[list.size()];
+
+        int n = 0;
+        for (final Interval interval : list) {
+            final int sequenceIndex = dictionary.getSequenceIndex(interval.getContig());
+            ValidationUtils.validateArg(sequenceIndex != SAMSequenceRecord.UNAVAILABLE_SEQUENCE_INDEX,
+                    () -> String.format("Cannot add interval %s, contig not in header", interval.toString()));
+            contigIndexes[n++] = sequenceIndex;
+            counts[sequenceIndex]++;
+        }
+
+        // Pack each interval into a single long so that the intervals on a contig can be sorted as primitives
+        final long[][] packed = new long[counts.length][];
+        for (int i = 0; i < counts.length; ++i) {
+            packed[i] = new long[counts[i]];
+        }
+        Arrays.fill(counts, 0);
+        n = 0;
+        for (final Interval interval : list) {
+            final int sequenceIndex = contigIndexes[n++];
+            packed[sequenceIndex][counts[sequenceIndex]++] = pack(interval.getStart(), interval.getEnd());
+        }
+
+        final int[][] bounds = new int[packed.length][];
+        parallelForEachContig(packed.length, i -> {
+            final long[] contig = packed[i];
+            Arrays.sort(contig);
+            final BoundsBuilder builder = new BoundsBuilder(contig.length);
+            for (final long interval : contig) {
+                builder.add((int) (interval >>> 32), (int) interval);
+            }
+            bounds[i] = builder.build();
+        });
+        return new IntervalSet(dictionary, bounds);
+    }
+
+    private static long pack(final int start, final int end) {
+        return ((long) start << 32) | (end & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns an IntervalList with one interval for each maximal run of loci in this set, sorted in coordinate order.
+     * The intervals are on the positive strand and have no names.
+     */
+    public IntervalList toIntervalList() {
+        final SAMFileHeader header = new SAMFileHeader(dictionary);
+        header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+        final IntervalList list = new IntervalList(header);
+        for (int i = 0; i < bounds.length; ++i) {
+            final String contig = dictionary.getSequence(i).getSequenceName();
+            final int[] contigBounds = bounds[i];
+            for (int j = 0; j < contigBounds.length; j += 2) {
+                list.add(new Interval(contig, contigBounds[j], contigBounds[j + 1]));
+            }
+        }
+        return list;
+    }
+
+    /** Returns the sequence dictionary against which this set is defined. */
+    public SAMSequenceDictionary getSequenceDictionary() {
+        return dictionary;
+    }
+
+    /** Returns the number of maximal intervals in this set. */
+    public int size() {
+        int size = 0;
+        for (final int[] contigBounds : bounds) {
+            size += contigBounds.length / 2;
+        }
+        return size;
+    }
+
+    /** Returns true if this set contains no loci. */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Returns the number of loci in this set. */
+    public long getBaseCount() {
+        long count = 0;
+        for (final int[] contigBounds : bounds) {
+            for (int j = 0; j < contigBounds.length; j += 2) {
+                count += contigBounds[j + 1] - contigBounds[j] + 1;
+            }
+        }
+        return count;
+    }
+
+    /** Returns a copy of the interleaved {start, end, ...} bounds of the intervals on the given contig. */
+    public int[] getBounds(final int sequenceIndex) {
+        return bounds[sequenceIndex].clone();
+    }
+
+    /** Returns true if any locus of this set lies within [start, end] on the given contig. */
+    public boolean overlapsAny(final int sequenceIndex, final int start, final int end) {
+        final int[] contigBounds = bounds[sequenceIndex];
+        // find the first interval whose end is >= start
+        int lo = 0;
+        int hi = contigBounds.length / 2;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (contigBounds[2 * mid + 1] < start) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo < contigBounds.length / 2 && contigBounds[2 * lo] <= end;
+    }
+
+    /** Returns true if any locus of this set lies within the given locatable. */
+    public boolean overlapsAny(final Locatable locatable) {
+        final int sequenceIndex = dictionary.getSequenceIndex(locatable.getContig());
+        return sequenceIndex != SAMSequenceRecord.UNAVAILABLE_SEQUENCE_INDEX &&
+                overlapsAny(sequenceIndex, locatable.getStart(), locatable.getEnd());
+    }
+
+    /**
+     * Returns the intervals of the given list that overlap at least one locus of this set, in their original order
+     * and retaining their names and strands.  This is the equivalent of {@link IntervalList#overlaps(IntervalList, IntervalList)}.
+     */
+    public IntervalList overlapping(final IntervalList list) {
+        SequenceUtil.assertSequenceDictionariesEqual(dictionary, list.getHeader().getSequenceDictionary());
+        final SAMFileHeader header = list.getHeader().clone();
+        header.setSortOrder(SAMFileHeader.SortOrder.unsorted);
+        final IntervalList result = new IntervalList(header);
+        for (final Interval interval : list) {
+            if (overlapsAny(interval)) {
+                result.add(interval);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the set of loci that are in this set or the other. */
+    public IntervalSet union(final IntervalSet other) {
+        return combine(other, IntervalSet::union);
+    }
+
+    /** Returns the set of loci that are in both this set and the other. */
+    public IntervalSet intersection(final IntervalSet other) {
+        return combine(other, IntervalSet::intersection);
+    }
+
+    /** Returns the set of loci that are in this set but not the other. */
+    public IntervalSet subtract(final IntervalSet other) {
+        return combine(other, IntervalSet::subtract);
+    }
+
+    /** Returns the set of loci that are in exactly one of this set and the other. */
+    public IntervalSet difference(final IntervalSet other) {
+        return subtract(other).union(other.subtract(this));
+    }
+
+    /** Returns the set of loci in the sequence dictionary that are not in this set. */
+    public IntervalSet invert() {
+        final int[][] result = new int[bounds.length][];
+        parallelForEachContig(bounds.length, i -> {
+            final int[] contigBounds = bounds[i];
+            final int length = dictionary.getSequence(i).getSequenceLength();
+            final BoundsBuilder builder = new BoundsBuilder(contigBounds.length / 2 + 1);
+            int lastCoveredPosition = 0;
+            for (int j = 0; j < contigBounds.length; j += 2) {
+                if (contigBounds[j] > lastCoveredPosition + 1) {
+                    builder.add(lastCoveredPosition + 1, contigBounds[j] - 1);
+                }
+                lastCoveredPosition = contigBounds[j + 1];
+            }
+            if (length > lastCoveredPosition) {
+                builder.add(lastCoveredPosition + 1, length);
+            }
+            result[i] = builder.build();
+        });
+        return new IntervalSet(dictionary, result);
+    }
+
+    @FunctionalInterface
+    private interface ContigOperation {
+        int[] apply(int[] lhs, int[] rhs);
+    }
+
+    private IntervalSet combine(final IntervalSet other, final ContigOperation operation) {
+        SequenceUtil.assertSequenceDictionariesEqual(dictionary, other.dictionary);
+        final int[][] result = new int[bounds.length][];
+        parallelForEachContig(bounds.length, i -> result[i] = operation.apply(bounds[i], other.bounds[i]));
+        return new IntervalSet(dictionary, result);
+    }
+
+    private static void parallelForEachContig(final int contigCount, final IntConsumer action) {
+        IntStream.range(0, contigCount).parallel().forEach(action);
+    }
+
+    private static int[] union(final int[] lhs, final int[] rhs) {
+        final BoundsBuilder builder = new BoundsBuilder((lhs.length + rhs.length) / 2);
+        int i = 0;
+        int j = 0;
+        while (i < lhs.length || j < rhs.length) {
+            if (j >= rhs.length || (i < lhs.length && lhs[i] <= rhs[j])) {
+                builder.add(lhs[i], lhs[i + 1]);
+                i += 2;
+            } else {
+                builder.add(rhs[j], rhs[j + 1]);
+                j += 2;
+            }
+        }
+        return builder.build();
+    }
+
+    private static int[] intersection(final int[] lhs, final int[] rhs) {
+        final BoundsBuilder builder = new BoundsBuilder(Math.min(lhs.length, rhs.length) / 2);
+        int i = 0;
+        int j = 0;
+        while (i < lhs.length && j < rhs.length) {
+            final int start = Math.max(lhs[i], rhs[j]);
+            final int end = Math.min(lhs[i + 1], rhs[j + 1]);
+            if (start <= end) {
+                builder.add(start, end);
+            }
+            // advance whichever interval finishes first
+            if (lhs[i + 1] < rhs[j + 1]) {
+                i += 2;
+            } else {
+                j += 2;
+            }
+        }
+        return builder.build();
+    }
+
+    private static int[] subtract(final int[] lhs, final int[] rhs) {
+        final BoundsBuilder builder = new BoundsBuilder(lhs.length / 2);
+        int j = 0;
+        for (int i = 0; i < lhs.length; i += 2) {
+            int start = lhs[i];
+            final int end = lhs[i + 1];
+            // skip intervals to subtract that finish before this one starts
+            while (j < rhs.length && rhs[j + 1] < start) {
+                j += 2;
+            }
+            // cut out each interval to subtract that overlaps this one
+            int k = j;
+            while (k < rhs.length && rhs[k] <= end) {
+                if (rhs[k] > start) {
+                    builder.add(start, rhs[k] - 1);
+                }
+                start = Math.max(start, rhs[k + 1] + 1);
+                k += 2;
+            }
+            if (start <= end) {
+                builder.add(start, end);
+            }
+        }
+        return builder.build();
+    }
+
+    /** Accumulates sorted intervals, merging any that overlap or abut the last one added. */
+    private static final class BoundsBuilder {
+        private int[] bounds;
+        private int size = 0;
+
+        private BoundsBuilder(final int expectedIntervals) {
+            this.bounds = new int[Math.max(2, 2 * expectedIntervals)];
+        }
+
+        private void add(final int start, final int end) {
+            if (end < start) {
+                // zero-length intervals cover no loci
+                return;
+            }
+            if (size > 0 && start <= bounds[size - 1] + 1) {
+                bounds[size - 1] = Math.max(bounds[size - 1], end);
+            } else {
+                if (size == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                }
+                bounds[size++] = start;
+                bounds[size++] = end;
+            }
+        }
+
+        private int[] build() {
+            return size == 0 ? EMPTY : Arrays.copyOf(bounds, size);
+        }
+    }
+
+    /** Checks that the dictionaries and loci of the two sets are identical. */
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final IntervalSet that = (IntervalSet) o;
+        return dictionary.equals(that.dictionary) && Arrays.deepEquals(bounds, that.bounds);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * dictionary.hashCode() + Arrays.deepHashCode(bounds);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.util.zip.InflaterFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads BGZF sequentially, inflating runs of blocks on several threads.
+ *
+ * The calling thread reads the compressed blocks and hands them to worker threads in batches; at most two batches per
+ * thread are inflated ahead of the reader.  Unlike {@link BlockCompressedInputStream} this stream cannot seek, so it
+ * is meant for reading whole files, such as BGZF-compressed FASTQ.
+ *
+ * Note that this implementation is not synchronized.
+ */
+public class ParallelBlockCompressedInputStream extends InputStream {
+    /** The number of blocks inflated by a single task. */
+    private static final int BLOCKS_PER_TASK = 16;
+
+    private final InputStream in;
+    private final BlockCompressedBatchReader batchReader;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final ThreadLocal<BlockGunzipper> gunzippers;
+    private boolean eof = false;
+    private boolean closed = false;
+
+    private byte[] current = new byte[0];
+    private int position = 0;
+
+    /**
+     * Uses the default {@link InflaterFactory}, see {@link BlockGunzipper#getDefaultInflaterFactory()}.
+     *
+     * @param in the BGZF data, which is closed by {@link #close()}
+     * @param threads the number of inflating threads
+     */
+    public ParallelBlockCompressedInputStream(final InputStream in, final int threads) {
+        this(in, threads, BlockGunzipper.getDefaultInflaterFactory());
+    }
+
+    /**
+     * @param in the BGZF data, which is closed by {@link #close()}
+     * @param threads the number of inflating threads
+     * @param inflaterFactory creates the inflaters used by each thread
+     */
+    public ParallelBlockCompressedInputStream(final InputStream in, final int threads, final InflaterFactory inflaterFactory) {
+        if (threads <= 0) throw new IllegalArgumentException("threads must be positive: " + threads);
+        this.in = in;
+        this.batchReader = new BlockCompressedBatchReader(in);
+        this.maxPending = threads * 2;
+        this.gunzippers = ThreadLocal.withInitial(() -> new BlockGunzipper(inflaterFactory));
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == current.length && !nextBatch()) {
+            return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == current.length && !nextBatch()) {
+            return -1;
+        }
+        final int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        executor.shutdownNow();
+        pending.clear();
+        in.close();
+    }
+
+    /** @return false at the end of the data */
+    private boolean nextBatch() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (true) {
+            while (!eof && pending.size() < maxPending) {
+                submitBatch();
+            }
+            final Future<byte[]> future = pending.pollFirst();
+            if (future == null) {
+                return false;
+            }
+            try {
+                current = future.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while inflating", e);
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new IOException("Error inflating", cause);
+            }
+            position = 0;
+            // Batches of empty blocks, such as the terminator, inflate to nothing
+            if (current.length > 0) {
+                return true;
+            }
+        }
+    }
+
+    /** Reads up to {@link #BLOCKS_PER_TASK} compressed blocks and submits them to be inflated. */
+    private void submitBatch() throws IOException {
+        final BlockCompressedBatchReader.Batch batch = batchReader.readBatch(BLOCKS_PER_TASK);
+        if (batch == null) {
+            eof = true;
+            return;
+        }
+        pending.add(executor.submit(() -> batch.inflate(gunzippers.get())));
+    }
+}
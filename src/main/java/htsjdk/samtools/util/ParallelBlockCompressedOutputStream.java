@@ -0,0 +1,239 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.util.zip.DeflaterFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes BGZF, compressing runs of blocks on several threads.
+ *
+ * The output is the same sequence of blocks that {@link BlockCompressedOutputStream} writes for the same data and
+ * calls to {@link #flush()}, followed by the empty terminator block.  Since BGZF is a series of gzip members, the
+ * output is also readable as ordinary gzip.  Virtual file pointers are not available, so this stream is meant for
+ * files that are not indexed, such as FASTQ.
+ *
+ * Note that this implementation is not synchronized.
+ */
+public class ParallelBlockCompressedOutputStream extends OutputStream {
+    private static final int BLOCK_SIZE = BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE;
+    /** The number of blocks compressed by a single task. */
+    private static final int BLOCKS_PER_TASK = 16;
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final ThreadLocal<BlockDeflater> deflaters;
+    private byte[] buffer = new byte[BLOCK_SIZE * BLOCKS_PER_TASK];
+    private int count = 0;
+    private boolean closed = false;
+
+    /**
+     * Uses the default compression level and {@link DeflaterFactory}, see {@link BlockCompressedOutputStream}.
+     *
+     * @param out the stream to write the compressed data to, which is closed by {@link #close()}
+     * @param threads the number of compression threads
+     */
+    public ParallelBlockCompressedOutputStream(final OutputStream out, final int threads) {
+        this(out, threads, BlockCompressedOutputStream.getDefaultCompressionLevel(), BlockCompressedOutputStream.getDefaultDeflaterFactory());
+    }
+
+    /**
+     * @param out the stream to write the compressed data to, which is closed by {@link #close()}
+     * @param threads the number of compression threads
+     * @param compressionLevel the compression level (0-9)
+     * @param deflaterFactory creates the deflaters used by each thread
+     */
+    public ParallelBlockCompressedOutputStream(final OutputStream out, final int threads, final int compressionLevel, final DeflaterFactory deflaterFactory) {
+        if (threads <= 0) throw new IllegalArgumentException("threads must be positive: " + threads);
+        this.out = out;
+        this.maxPending = threads * 2;
+        this.deflaters = ThreadLocal.withInitial(() -> new BlockDeflater(deflaterFactory, compressionLevel));
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            final Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        ensureOpen();
+        if (count == buffer.length) {
+            submit();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            if (count == buffer.length) {
+                submit();
+            }
+            final int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Compresses the buffered data, which ends the current block, and writes all compressed blocks. */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        submit();
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    /** Writes all remaining data and the terminator block and closes the underlying stream. */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+            out.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+            out.close();
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private void submit() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        while (pending.size() >= maxPending) {
+            writeNext();
+        }
+        final byte[] data = buffer;
+        final int length = count;
+        pending.add(executor.submit(() -> deflaters.get().compress(data, length)));
+        buffer = new byte[buffer.length];
+        count = 0;
+    }
+
+    private void writeNext() throws IOException {
+        try {
+            out.write(pending.removeFirst().get());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException("Error compressing", cause);
+        }
+    }
+
+    /** The deflaters and buffers of one compression thread. */
+    private static final class BlockDeflater {
+        private final Deflater deflater;
+        private final Deflater noCompressionDeflater;
+        private final CRC32 crc32 = new CRC32();
+        private final byte[] compressedBuffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE -
+                BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+
+        BlockDeflater(final DeflaterFactory deflaterFactory, final int compressionLevel) {
+            deflater = deflaterFactory.makeDeflater(compressionLevel, true);
+            noCompressionDeflater = deflaterFactory.makeDeflater(Deflater.NO_COMPRESSION, true);
+        }
+
+        /** @return the BGZF blocks for the data, as {@link BlockCompressedOutputStream} would write them */
+        byte[] compress(final byte[] data, final int length) {
+            byte[] result = new byte[length / 2 + BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
+            int resultLength = 0;
+            for (int offset = 0; offset < length; offset += BLOCK_SIZE) {
+                final int blockLength = Math.min(BLOCK_SIZE, length - offset);
+                deflater.reset();
+                deflater.setInput(data, offset, blockLength);
+                deflater.finish();
+                int compressedSize = deflater.deflate(compressedBuffer, 0, compressedBuffer.length);
+                if (!deflater.finished()) {
+                    noCompressionDeflater.reset();
+                    noCompressionDeflater.setInput(data, offset, blockLength);
+                    noCompressionDeflater.finish();
+                    compressedSize = noCompressionDeflater.deflate(compressedBuffer, 0, compressedBuffer.length);
+                    if (!noCompressionDeflater.finished()) {
+                        throw new IllegalStateException("unpossible");
+                    }
+                }
+                crc32.reset();
+                crc32.update(data, offset, blockLength);
+
+                final int blockSize = compressedSize + BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH +
+                        BlockCompressedStreamConstants.BLOCK_FOOTER_LENGTH;
+                if (result.length < resultLength + blockSize) {
+                    result = Arrays.copyOf(result, Math.max(result.length * 2, resultLength + blockSize));
+                }
+                System.arraycopy(BlockCompressedStreamConstants.GZIP_BLOCK_PREAMBLE, 0, result, resultLength,
+                        BlockCompressedStreamConstants.GZIP_BLOCK_PREAMBLE.length);
+                // Block size - 1, as the spec says
+                writeShort(result, resultLength + BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET, blockSize - 1);
+                System.arraycopy(compressedBuffer, 0, result, resultLength + BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH, compressedSize);
+                writeInt(result, resultLength + blockSize - 8, (int) crc32.getValue());
+                writeInt(result, resultLength + blockSize - 4, blockLength);
+                resultLength += blockSize;
+            }
+            return Arrays.copyOf(result, resultLength);
+        }
+
+        private static void writeShort(final byte[] buffer, final int offset, final int value) {
+            buffer[offset] = (byte) value;
+            buffer[offset + 1] = (byte) (value >>> 8);
+        }
+
+        private static void writeInt(final byte[] buffer, final int offset, final int value) {
+            writeShort(buffer, offset, value);
+            writeShort(buffer, offset + 2, value >>> 16);
+        }
+    }
+}
@@ -202,6 +202,13 @@ public class QualityEncodingDetector {
         this.add(samRecord, false);
     }
 
+    /**
+     * Adds the qualities observed by another detector to this detector.
+     */
+    public void add(final QualityEncodingDetector other) {
+        this.qualityAggregator.observedAsciiQualities.addAll(other.qualityAggregator.observedAsciiQualities);
+    }
+
     /**
      * Tests whether or not the detector can make a determination without guessing (i.e., if all but one quality format
      * can be excluded using established exclusion conventions).
@@ -0,0 +1,380 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.tribble.readers;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.tribble.TribbleException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable tabix index that can be shared by any number of {@link TabixReader}s and threads, and that decodes the
+ * bins and linear index of each sequence only when the sequence is first queried.
+ *
+ * Loading the index reads the header and sequence names, and records where the section of each sequence starts in
+ * the decompressed index, so opening a reader on a large index such as dbSNP's costs one pass of decompression
+ * rather than building a map of chunk objects for every sequence.  A decoded section holds the bin numbers of the
+ * sequence, sorted, with an offset table into a single array of chunk boundaries, and the linear index as a long[].
+ *
+ * {@link #getInstance(Path)} returns instances from a process-wide cache keyed by the path, modification time and
+ * size of the index file, so a changed index file is loaded again.  The cache is bounded by the total size of the
+ * decompressed indexes it holds.
+ */
+public final class SharedTabixIndex {
+    private static final byte[] MAGIC = {'T', 'B', 'I', 1};
+
+    /** The default maximum total size in bytes of the decompressed indexes held by the process-wide cache. */
+    public static final long DEFAULT_MAX_CACHED_BYTES = 256L * 1024 * 1024;
+
+    private static long maxCachedBytes = DEFAULT_MAX_CACHED_BYTES;
+    private static long cachedBytes = 0;
+    private static final LinkedHashMap<CacheKey, SharedTabixIndex> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final int preset;
+    private final int sequenceColumn;
+    private final int beginColumn;
+    private final int endColumn;
+    private final int metaCharacter;
+    private final String[] sequenceNames;
+    private final Map<String, Integer> sequenceIndexes;
+
+    /** The decompressed index, read only through absolute gets so that it can be shared between threads. */
+    private final ByteBuffer data;
+    /** The position in data of the section of each sequence. */
+    private final int[] sectionStarts;
+    private final AtomicReferenceArray<Section> sections;
+
+    /**
+     * Loads a tabix index.  Prefer {@link #getInstance(Path)} to share instances.
+     *
+     * @param source the name of the index, for error messages
+     * @param inputStream the BGZF compressed index, which is closed when it has been read
+     */
+    public SharedTabixIndex(final String source, final InputStream inputStream) throws IOException {
+        byte[] bytes = new byte[64 * 1024];
+        int length = 0;
+        try (final InputStream is = new BlockCompressedInputStream(inputStream)) {
+            int n;
+            while ((n = is.read(bytes, length, bytes.length - length)) > 0) {
+                length += n;
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+            }
+        }
+        // Trim the growth buffer, so that the memory held is what getSize() reports
+        data = ByteBuffer.wrap(length == bytes.length ? bytes : Arrays.copyOf(bytes, length)).order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            final byte[] magic = new byte[MAGIC.length];
+            data.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new TribbleException("Invalid tabix index " + source);
+            }
+            final int numberOfSequences = data.getInt();
+            preset = data.getInt();
+            sequenceColumn = data.getInt();
+            beginColumn = data.getInt();
+            endColumn = data.getInt();
+            metaCharacter = data.getInt();
+            data.getInt(); // skip
+            final int namesLength = data.getInt();
+            sequenceNames = new String[numberOfSequences];
+            final Map<String, Integer> indexes = new HashMap<>(numberOfSequences * 2);
+            int nameStart = data.position();
+            int sequence = 0;
+            for (int i = nameStart; i < nameStart + namesLength && sequence < numberOfSequences; ++i) {
+                if (bytes[i] == 0) {
+                    sequenceNames[sequence] = new String(bytes, nameStart, i - nameStart);
+                    indexes.put(sequenceNames[sequence], sequence);
+                    ++sequence;
+                    nameStart = i + 1;
+                }
+            }
+            sequenceIndexes = Collections.unmodifiableMap(indexes);
+            data.position(data.position() + namesLength);
+
+            sectionStarts = new int[numberOfSequences];
+            for (int s = 0; s < numberOfSequences; ++s) {
+                sectionStarts[s] = data.position();
+                final int nBins = data.getInt();
+                for (int b = 0; b < nBins; ++b) {
+                    data.getInt();
+                    skip(16L * data.getInt());
+                }
+                skip(8L * data.getInt());
+            }
+        } catch (final BufferUnderflowException | IllegalArgumentException e) {
+            throw new TribbleException("Truncated tabix index " + source, e);
+        }
+        sections = new AtomicReferenceArray<>(sectionStarts.length);
+    }
+
+    private void skip(final long length) {
+        if (length < 0 || length > data.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        data.position(data.position() + (int) length);
+    }
+
+    /**
+     * Returns the index for the given tabix file from the process-wide cache, loading it if it is not cached or if
+     * the file has changed since it was cached.
+     */
+    public static SharedTabixIndex getInstance(final Path indexPath) {
+        final CacheKey key;
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+            key = new CacheKey(indexPath.toAbsolutePath().normalize(), attributes.lastModifiedTime().toMillis(), attributes.size());
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading tabix index " + indexPath, e);
+        }
+        synchronized (cache) {
+            final SharedTabixIndex cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // Load outside the lock; if two threads race, both results are equivalent
+        final SharedTabixIndex index;
+        try {
+            index = new SharedTabixIndex(indexPath.toUri().toString(), Files.newInputStream(indexPath));
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Error reading tabix index " + indexPath, e);
+        }
+        synchronized (cache) {
+            final SharedTabixIndex cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            if (index.getSize() <= maxCachedBytes) {
+                cache.put(key, index);
+                cachedBytes += index.getSize();
+                evict();
+            }
+            return index;
+        }
+    }
+
+    /** Removes the least recently used indexes until the cache is within its bound; call while holding the lock. */
+    private static void evict() {
+        final Iterator<SharedTabixIndex> it = cache.values().iterator();
+        while (cachedBytes > maxCachedBytes && it.hasNext()) {
+            cachedBytes -= it.next().getSize();
+            it.remove();
+        }
+    }
+
+    /** Sets the maximum total size in bytes of the decompressed indexes held by the process-wide cache. */
+    public static void setMaxCachedBytes(final long maxCachedBytes) {
+        if (maxCachedBytes < 0) throw new IllegalArgumentException("maxCachedBytes must not be negative: " + maxCachedBytes);
+        synchronized (cache) {
+            SharedTabixIndex.maxCachedBytes = maxCachedBytes;
+            evict();
+        }
+    }
+
+    /** Removes all indexes from the process-wide cache. */
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+            cachedBytes = 0;
+        }
+    }
+
+    /** @return the number of indexes in the process-wide cache */
+    public static int getCachedIndexCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /** @return the size in bytes of the decompressed index */
+    public long getSize() {
+        return data.capacity();
+    }
+
+    public int getPreset() {
+        return preset;
+    }
+
+    public int getSequenceColumn() {
+        return sequenceColumn;
+    }
+
+    public int getBeginColumn() {
+        return beginColumn;
+    }
+
+    public int getEndColumn() {
+        return endColumn;
+    }
+
+    public int getMetaCharacter() {
+        return metaCharacter;
+    }
+
+    public int getNumberOfSequences() {
+        return sequenceNames.length;
+    }
+
+    public String getSequenceName(final int sequence) {
+        return sequenceNames[sequence];
+    }
+
+    /** @return an unmodifiable map from sequence name to sequence index */
+    public Map<String, Integer> getSequenceIndexes() {
+        return sequenceIndexes;
+    }
+
+    /** @return the decoded bins and linear index of the given sequence, decoding them on first use */
+    Section getSection(final int sequence) {
+        Section section = sections.get(sequence);
+        if (section == null) {
+            section = new Section(data, sectionStarts[sequence]);
+            // if two threads race, both sections are equivalent
+            sections.compareAndSet(sequence, null, section);
+        }
+        return section;
+    }
+
+    /** The bins and linear index of one sequence. */
+    static final class Section {
+        /** The bin numbers, in increasing order. */
+        private final int[] binNumbers;
+        /** chunksStart[b] to chunksStart[b + 1] are the indexes into chunks of the chunks of bin b, in pairs. */
+        private final int[] chunksStart;
+        /** Chunk start and end virtual file offsets. */
+        private final long[] chunks;
+        final long[] linearIndex;
+
+        private Section(final ByteBuffer data, final int start) {
+            int position = start;
+            final int nBins = data.getInt(position);
+            position += 4;
+            final int[] numbers = new int[nBins];
+            final int[] binStarts = new int[nBins];
+            int totalChunks = 0;
+            for (int b = 0; b < nBins; ++b) {
+                numbers[b] = data.getInt(position);
+                binStarts[b] = position + 8;
+                final int nChunks = data.getInt(position + 4);
+                totalChunks += nChunks;
+                position += 8 + 16 * nChunks;
+            }
+
+            // Bins are usually, but not necessarily, stored in order
+            final Integer[] order = new Integer[nBins];
+            for (int i = 0; i < nBins; ++i) order[i] = i;
+            Arrays.sort(order, (a, b) -> Integer.compare(numbers[a], numbers[b]));
+            binNumbers = new int[nBins];
+            chunksStart = new int[nBins + 1];
+            chunks = new long[2 * totalChunks];
+            int chunkIndex = 0;
+            for (int b = 0; b < nBins; ++b) {
+                final int i = order[b];
+                binNumbers[b] = numbers[i];
+                chunksStart[b] = chunkIndex;
+                final int nChunks = data.getInt(binStarts[i] - 4);
+                for (int c = 0; c < 2 * nChunks; ++c) {
+                    chunks[chunkIndex++] = data.getLong(binStarts[i] + 8 * c);
+                }
+            }
+            chunksStart[nBins] = chunkIndex;
+
+            linearIndex = new long[data.getInt(position)];
+            position += 4;
+            for (int i = 0; i < linearIndex.length; ++i) {
+                linearIndex[i] = data.getLong(position + 8 * i);
+            }
+        }
+
+        int getBinCount() {
+            return binNumbers.length;
+        }
+
+        int getBinNumber(final int binIndex) {
+            return binNumbers[binIndex];
+        }
+
+        /** @return the position of the bin among the bins of the sequence, or -1 if the bin has no chunks */
+        int findBin(final int bin) {
+            final int b = Arrays.binarySearch(binNumbers, bin);
+            return b < 0 ? -1 : b;
+        }
+
+        int getChunkCount(final int binIndex) {
+            return (chunksStart[binIndex + 1] - chunksStart[binIndex]) / 2;
+        }
+
+        long getChunkStart(final int binIndex, final int chunk) {
+            return chunks[chunksStart[binIndex] + 2 * chunk];
+        }
+
+        long getChunkEnd(final int binIndex, final int chunk) {
+            return chunks[chunksStart[binIndex] + 2 * chunk + 1];
+        }
+    }
+
+    private static final class CacheKey {
+        private final Path path;
+        private final long lastModified;
+        private final long size;
+
+        CacheKey(final Path path, final long lastModified, final long size) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CacheKey)) return false;
+            final CacheKey that = (CacheKey) o;
+            return lastModified == that.lastModified && size == that.size && path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, size);
+        }
+    }
+}
@@ -27,6 +27,7 @@ import htsjdk.samtools.seekablestream.ISeekableStreamFactory;
 import htsjdk.samtools.seekablestream.SeekableStream;
 import htsjdk.samtools.seekablestream.SeekableStreamFactory;
 import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.IOUtil;
 import htsjdk.tribble.util.ParsingUtils;
 import htsjdk.tribble.util.TabixUtils;
 
@@ -35,6 +36,8 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -58,7 +61,6 @@ public class TabixReader {
     private int mMeta;
     
     //private int mSkip; (not used)
-    private String[] mSeq;
 
     private Map<String, Integer> mChr2tid;
 
@@ -87,13 +89,24 @@ public class TabixReader {
         }
     }
 
+    /**
+     * @deprecated the index is now held by a {@link SharedTabixIndex} and decoded lazily; this is populated only for
+     * subclasses of TabixReader, which may read it.
+     */
+    @Deprecated
     protected static class TIndex {
         HashMap<Integer, TPair64[]> b; // binning index
         long[] l; // linear index
     }
 
+    /**
+     * @deprecated see {@link TIndex}; populated only for subclasses of TabixReader.
+     */
+    @Deprecated
     protected TIndex[] mIndex;
 
+    private SharedTabixIndex mSharedIndex;
+
     private static class TIntv {
         int tid, beg, end;
     }
@@ -227,62 +240,53 @@ public class TabixReader {
      */
     private void readIndex(final SeekableStream fp) throws IOException {
         if (fp == null) return;
-        final  BlockCompressedInputStream is = new BlockCompressedInputStream(fp);
-        byte[] buf = new byte[4];
+        setIndex(new SharedTabixIndex(mIndexPath, fp));
+    }
 
-        is.read(buf, 0, 4); // read "TBI\1"
-        mSeq = new String[readInt(is)]; // # sequences
-        mChr2tid = new HashMap<String, Integer>( this.mSeq.length );
-        mPreset = readInt(is);
-        mSc = readInt(is);
-        mBc = readInt(is);
-        mEc = readInt(is);
-        mMeta = readInt(is);
-        readInt(is);//unused
-        // read sequence dictionary
-        int i, j, k, l = readInt(is);
-        buf = new byte[l];
-        is.read(buf);
-        for (i = j = k = 0; i < buf.length; ++i) {
-            if (buf[i] == 0) {
-                byte[] b = new byte[i - j];
-                System.arraycopy(buf, j, b, 0, b.length);
-                final String contig = new String(b);
-                mChr2tid.put(contig, k);
-                mSeq[k++] = contig;
-                j = i + 1;
-            }
+    private void setIndex(final SharedTabixIndex index) {
+        mSharedIndex = index;
+        mPreset = index.getPreset();
+        mSc = index.getSequenceColumn();
+        mBc = index.getBeginColumn();
+        mEc = index.getEndColumn();
+        mMeta = index.getMetaCharacter();
+        mChr2tid = index.getSequenceIndexes();
+        if (getClass() != TabixReader.class) {
+            mIndex = toTIndexes(index);
         }
-        // read the index
-        mIndex = new TIndex[mSeq.length];
-        for (i = 0; i < mSeq.length; ++i) {
-            // the binning index
-            int n_bin = readInt(is);
-            mIndex[i] = new TIndex();
-            mIndex[i].b = new HashMap<Integer, TPair64[]>(n_bin);
-            for (j = 0; j < n_bin; ++j) {
-                int bin = readInt(is);
-                TPair64[] chunks = new TPair64[readInt(is)];
-                for (k = 0; k < chunks.length; ++k) {
-                    long u = readLong(is);
-                    long v = readLong(is);
-                    chunks[k] = new TPair64(u, v); // in C, this is inefficient
+    }
+
+    /** Decodes every section of the index into the deprecated form that subclasses may read. */
+    private static TIndex[] toTIndexes(final SharedTabixIndex index) {
+        final TIndex[] tIndexes = new TIndex[index.getNumberOfSequences()];
+        for (int i = 0; i < tIndexes.length; ++i) {
+            final SharedTabixIndex.Section section = index.getSection(i);
+            tIndexes[i] = new TIndex();
+            tIndexes[i].b = new HashMap<>(section.getBinCount());
+            for (int b = 0; b < section.getBinCount(); ++b) {
+                final TPair64[] chunks = new TPair64[section.getChunkCount(b)];
+                for (int c = 0; c < chunks.length; ++c) {
+                    chunks[c] = new TPair64(section.getChunkStart(b, c), section.getChunkEnd(b, c));
                 }
-                mIndex[i].b.put(bin, chunks);
+                tIndexes[i].b.put(section.getBinNumber(b), chunks);
             }
-            // the linear index
-            mIndex[i].l = new long[readInt(is)];
-            for (k = 0; k < mIndex[i].l.length; ++k)
-                mIndex[i].l[k] = readLong(is);
+            tIndexes[i].l = section.linearIndex.clone();
         }
-        // close
-        is.close();
+        return tIndexes;
     }
 
     /**
-     * Read the Tabix index from the default file.
+     * Read the Tabix index from the default file.  Local index files are shared through the process-wide cache of
+     * {@link SharedTabixIndex}, unless the index is read through a wrapper.
      */
     private void readIndex() throws IOException {
+        if (mIndexWrapper == null && SeekableStreamFactory.isFilePath(mIndexPath)) {
+            final Path indexPath = IOUtil.getPath(mIndexPath);
+            if (Files.isRegularFile(indexPath)) {
+                setIndex(SharedTabixIndex.getInstance(indexPath));
+                return;
+            }
+        }
         final ISeekableStreamFactory ssf = SeekableStreamFactory.getInstance();
         readIndex(ssf.getBufferedStream(ssf.getStreamFor(mIndexPath, mIndexWrapper), 128000));
     }
@@ -453,26 +457,27 @@ public class TabixReader {
      * @return an iterator over the specified interval
      */
     public Iterator query(final int tid, final int beg, final int end) {
-        TPair64[] off, chunks;
+        TPair64[] off;
         long min_off;
-        if (tid < 0 || beg < 0 || end <= 0 || tid >= this.mIndex.length) return EOF_ITERATOR;
-        TIndex idx = mIndex[tid];
+        if (tid < 0 || beg < 0 || end <= 0 || tid >= this.mSharedIndex.getNumberOfSequences()) return EOF_ITERATOR;
+        final SharedTabixIndex.Section idx = mSharedIndex.getSection(tid);
+        final long[] linear = idx.linearIndex;
         int[] bins = new int[MAX_BIN];
         int i, l, n_off, n_bins = reg2bins(beg, end, bins);
-        if (idx.l.length > 0)
-            min_off = (beg >> TAD_LIDX_SHIFT >= idx.l.length) ? idx.l[idx.l.length - 1] : idx.l[beg >> TAD_LIDX_SHIFT];
+        if (linear.length > 0)
+            min_off = (beg >> TAD_LIDX_SHIFT >= linear.length) ? linear[linear.length - 1] : linear[beg >> TAD_LIDX_SHIFT];
         else min_off = 0;
         for (i = n_off = 0; i < n_bins; ++i) {
-            if ((chunks = idx.b.get(bins[i])) != null)
-                n_off += chunks.length;
+            if ((bins[i] = idx.findBin(bins[i])) >= 0)
+                n_off += idx.getChunkCount(bins[i]);
         }
         if (n_off == 0) return EOF_ITERATOR;
         off = new TPair64[n_off];
         for (i = n_off = 0; i < n_bins; ++i)
-            if ((chunks = idx.b.get(bins[i])) != null)
-                for (int j = 0; j < chunks.length; ++j)
-                    if (less64(min_off, chunks[j].v))
-                        off[n_off++] = new TPair64(chunks[j]);
+            if (bins[i] >= 0)
+                for (int j = 0; j < idx.getChunkCount(bins[i]); ++j)
+                    if (less64(min_off, idx.getChunkEnd(bins[i], j)))
+                        off[n_off++] = new TPair64(idx.getChunkStart(bins[i], j), idx.getChunkEnd(bins[i], j));
         Arrays.sort(off, 0, n_off);
         // resolve completely contained adjacent blocks
         for (i = 1, l = 0; i < n_off; ++i) {
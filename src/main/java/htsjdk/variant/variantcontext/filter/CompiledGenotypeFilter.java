@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.variantcontext.filter;
+
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.JexlMissingValueTreatment;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFHeader;
+
+/**
+ * A Predicate on VariantContexts that returns true at sites where the genotype of a sample matches a filter
+ * expression, such as {@code isHet == 1 && GQ >= 20 && DP > 5}.
+ *
+ * This is the compiled counterpart of
+ * {@link htsjdk.variant.variantcontext.VariantContextUtils#match(VariantContext, Genotype, htsjdk.variant.variantcontext.VariantContextUtils.JexlVCMatchExp)};
+ * see {@link CompiledVariantFilter}.  Genotype level names, FORMAT attributes and genotype filters take precedence
+ * over site level names.  {@link #test(VariantContext, Genotype)} can be used to test every genotype of a site.
+ */
+public class CompiledGenotypeFilter implements VariantContextFilter {
+
+    final private String expression;
+    final private String sample;
+    final private FilterExpressionCompiler.Condition condition;
+    final private JexlMissingValueTreatment howToTreatMissingValues;
+
+    /**
+     * Constructor for a filter that treats expressions that refer to missing values as not matching.
+     *
+     * @param expression the filter expression
+     * @param header the header of the variant contexts that will be tested, used to type INFO and FORMAT attributes;
+     *               may be null
+     * @param sample the name of the sample whose genotype should be examined by {@link #test(VariantContext)}. If
+     *               null, the first genotype in the variant context will be used.
+     * @throws IllegalArgumentException if the expression is not valid or uses features that are not supported
+     */
+    public CompiledGenotypeFilter(final String expression, final VCFHeader header, final String sample) {
+        this(expression, header, sample, JexlMissingValueTreatment.TREAT_AS_MISMATCH);
+    }
+
+    /**
+     * @param expression the filter expression
+     * @param header the header of the variant contexts that will be tested; may be null
+     * @param sample the name of the sample whose genotype should be examined by {@link #test(VariantContext)}, or null
+     *               for the first genotype
+     * @param howToTreatMissingValues what to do if the expression refers to a missing value
+     * @throws IllegalArgumentException if the expression is not valid or uses features that are not supported
+     */
+    public CompiledGenotypeFilter(final String expression, final VCFHeader header, final String sample,
+                                  final JexlMissingValueTreatment howToTreatMissingValues) {
+        if (howToTreatMissingValues == null) throw new IllegalArgumentException("null howToTreatMissingValues");
+        this.expression = expression;
+        this.sample = sample;
+        this.condition = FilterExpressionCompiler.compileGenotype(expression, header);
+        this.howToTreatMissingValues = howToTreatMissingValues;
+    }
+
+    /** @return the expression this filter was compiled from */
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return true if the genotype of the sample matches the expression
+     * @param variantContext the record whose genotype should be tested
+     */
+    @Override
+    public boolean test(final VariantContext variantContext) {
+        final Genotype gt = (sample == null) ? variantContext.getGenotype(0) : variantContext.getGenotype(sample);
+
+        if (gt == null) {
+            throw new IllegalArgumentException((sample == null) ?
+                    "Cannot find any genotypes in VariantContext: " + variantContext :
+                    "Cannot find sample requested: " + sample);
+        }
+
+        return test(variantContext, gt);
+    }
+
+    /**
+     * @return true if genotype matches the expression
+     * @param variantContext the record containing genotype
+     * @param genotype the genotype to test
+     */
+    public boolean test(final VariantContext variantContext, final Genotype genotype) {
+        return FilterExpressionCompiler.toBoolean(condition.test(variantContext, genotype), howToTreatMissingValues, expression);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.variantcontext.filter;
+
+import htsjdk.variant.variantcontext.JexlMissingValueTreatment;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFHeader;
+
+/**
+ * A Predicate on VariantContexts that returns true at sites that match a filter expression, such as
+ * {@code QUAL > 30.0 && DP >= 10 && FILTER == 0}.
+ *
+ * Names that have no value at a site, including FILTER names that the site does not carry, are handled as the
+ * {@link JexlMissingValueTreatment} says.  So with the default {@link JexlMissingValueTreatment#TREAT_AS_MISMATCH}
+ * a negated FILTER name such as {@code !LowQual} never matches; use {@code FILTER == 0} to select unfiltered sites.
+ *
+ * The expression language is a subset of the JEXL expressions accepted by
+ * {@link htsjdk.variant.variantcontext.VariantContextUtils#match(VariantContext, htsjdk.variant.variantcontext.VariantContextUtils.JexlVCMatchExp)}
+ * and names resolve to the same values.  Unlike JEXL, the expression is compiled once, names are resolved and INFO
+ * attributes are typed against the header at that time, and each test evaluates a tree of lambdas without creating a
+ * context, so this filter is much cheaper to apply to every record of a large file.
+ */
+public class CompiledVariantFilter implements VariantContextFilter {
+
+    final private String expression;
+    final private FilterExpressionCompiler.Condition condition;
+    final private JexlMissingValueTreatment howToTreatMissingValues;
+
+    /**
+     * Constructor for a filter that treats expressions that refer to values missing from the variant context as not
+     * matching.
+     *
+     * @param expression the filter expression
+     * @param header the header of the variant contexts that will be tested, used to type INFO attributes; may be null,
+     *               in which case attributes are typed as JEXL would type them when each record is tested
+     * @throws IllegalArgumentException if the expression is not valid or uses features that are not supported
+     */
+    public CompiledVariantFilter(final String expression, final VCFHeader header) {
+        this(expression, header, JexlMissingValueTreatment.TREAT_AS_MISMATCH);
+    }
+
+    /**
+     * @param expression the filter expression
+     * @param header the header of the variant contexts that will be tested, used to type INFO attributes; may be null
+     * @param howToTreatMissingValues what to do if the expression refers to a value missing from the variant context
+     * @throws IllegalArgumentException if the expression is not valid or uses features that are not supported
+     */
+    public CompiledVariantFilter(final String expression, final VCFHeader header, final JexlMissingValueTreatment howToTreatMissingValues) {
+        if (howToTreatMissingValues == null) throw new IllegalArgumentException("null howToTreatMissingValues");
+        this.expression = expression;
+        this.condition = FilterExpressionCompiler.compileSite(expression, header);
+        this.howToTreatMissingValues = howToTreatMissingValues;
+    }
+
+    /** @return the expression this filter was compiled from */
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return true if variantContext matches the expression
+     * @throws IllegalArgumentException if a value is missing and missing values are treated as errors, or if a value
+     *                                  cannot be compared as required by the expression
+     */
+    @Override
+    public boolean test(final VariantContext variantContext) {
+        return FilterExpressionCompiler.toBoolean(condition.test(variantContext, null), howToTreatMissingValues, expression);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,825 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.variantcontext.filter;
+
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.JexlMissingValueTreatment;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFCompoundHeaderLine;
+import htsjdk.variant.vcf.VCFConstants;
+import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFHeaderLineCount;
+import htsjdk.variant.vcf.VCFHeaderLineType;
+
+import java.util.Set;
+
+/**
+ * Compiles the commonly used subset of the JEXL expressions accepted by
+ * {@link htsjdk.variant.variantcontext.VariantContextUtils#match} into a tree of lambdas.
+ *
+ * The grammar, from lowest to highest precedence, is
+ * <ul>
+ *     <li>{@code ||}, {@code or}</li>
+ *     <li>{@code &&}, {@code and}</li>
+ *     <li>{@code ==}, {@code !=}, {@code eq}, {@code ne}</li>
+ *     <li>{@code <}, {@code <=}, {@code >}, {@code >=}, {@code lt}, {@code le}, {@code gt}, {@code ge}</li>
+ *     <li>{@code +}, {@code -}</li>
+ *     <li>{@code *}, {@code /}, {@code %}</li>
+ *     <li>{@code !}, {@code not}, unary {@code -}</li>
+ *     <li>numbers, single or double quoted strings, {@code true}, {@code false}, names and parentheses</li>
+ * </ul>
+ *
+ * Names are resolved once, at compile time, the same way as by the JEXL contexts: site level names such as
+ * {@code CHROM}, {@code POS} and {@code QUAL} first, then INFO attributes and then FILTER values; for genotype
+ * expressions, genotype level names such as {@code isHet} and {@code GQ}, FORMAT attributes and genotype filters come
+ * before all of these.  The types of INFO and FORMAT attributes are taken from the header, so that a single valued
+ * Integer or Float attribute is compared as a primitive double and a Flag is a condition.  Attributes that are not in
+ * the header, or that have more than one value, are compared the way JEXL compares them: as numbers if either side is
+ * a number and as strings otherwise.
+ *
+ * Conditions are evaluated to {@link #TRUE}, {@link #FALSE} or {@link #MISSING}.  As in JEXL, a missing value makes
+ * the whole expression missing unless it is short circuited by {@code &&} or {@code ||}.  Unlike JEXL, all arithmetic
+ * is done in double precision, and {@code +} does not concatenate strings.
+ */
+final class FilterExpressionCompiler {
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+    static final int MISSING = -1;
+
+    /** The values JEXL contexts use for true and false built in names; compared by identity when converting to numbers. */
+    private static final String TRUE_STRING = "1";
+    private static final String FALSE_STRING = "0";
+
+    private static final int EQ = 0, NE = 1, LT = 2, LE = 3, GT = 4, GE = 5;
+
+    /** A compiled condition. */
+    interface Condition {
+        /** @return {@link #TRUE}, {@link #FALSE} or {@link #MISSING} */
+        int test(VariantContext vc, Genotype g);
+    }
+
+    private interface NumberValue {
+        /** @return the value, or NaN if it is missing */
+        double get(VariantContext vc, Genotype g);
+    }
+
+    private interface TextValue {
+        /** @return the value, or null if it is missing */
+        String get(VariantContext vc, Genotype g);
+    }
+
+    private interface ObjectValue {
+        /** @return the value, or null if it is missing */
+        Object get(VariantContext vc, Genotype g);
+    }
+
+    private enum Kind { CONDITION, NUMBER, TEXT, OBJECT }
+
+    /** A compiled sub-expression and the static type of its value. */
+    private static final class Expr {
+        final Kind kind;
+        final Condition condition;
+        final NumberValue number;
+        final TextValue text;
+        final ObjectValue object;
+        /** True if the value does not depend on the variant context or genotype. */
+        final boolean constant;
+
+        private Expr(final Kind kind, final Condition condition, final NumberValue number, final TextValue text,
+                     final ObjectValue object, final boolean constant) {
+            this.kind = kind;
+            this.condition = condition;
+            this.number = number;
+            this.text = text;
+            this.object = object;
+            this.constant = constant;
+        }
+
+        static Expr condition(final Condition condition) {
+            return new Expr(Kind.CONDITION, condition, null, null, null, false);
+        }
+
+        static Expr number(final NumberValue number) {
+            return new Expr(Kind.NUMBER, null, number, null, null, false);
+        }
+
+        static Expr text(final TextValue text) {
+            return new Expr(Kind.TEXT, null, null, text, null, false);
+        }
+
+        static Expr object(final ObjectValue object) {
+            return new Expr(Kind.OBJECT, null, null, null, object, false);
+        }
+
+        static Expr constant(final int value) {
+            return new Expr(Kind.CONDITION, (vc, g) -> value, null, null, null, true);
+        }
+
+        static Expr constant(final double value) {
+            return new Expr(Kind.NUMBER, null, (vc, g) -> value, null, null, true);
+        }
+
+        static Expr constant(final String value) {
+            return new Expr(Kind.TEXT, null, null, (vc, g) -> value, null, true);
+        }
+
+        Condition asCondition() {
+            switch (kind) {
+                case CONDITION:
+                    return condition;
+                case NUMBER: {
+                    final NumberValue number = this.number;
+                    return (vc, g) -> {
+                        final double x = number.get(vc, g);
+                        return Double.isNaN(x) ? MISSING : x != 0 ? TRUE : FALSE;
+                    };
+                }
+                case TEXT: {
+                    final TextValue text = this.text;
+                    return (vc, g) -> truth(text.get(vc, g));
+                }
+                default: {
+                    final ObjectValue object = this.object;
+                    return (vc, g) -> truth(object.get(vc, g));
+                }
+            }
+        }
+
+        NumberValue asNumber() {
+            switch (kind) {
+                case NUMBER:
+                    return number;
+                case CONDITION: {
+                    final Condition condition = this.condition;
+                    return (vc, g) -> {
+                        final int c = condition.test(vc, g);
+                        return c == MISSING ? Double.NaN : c;
+                    };
+                }
+                case TEXT: {
+                    final TextValue text = this.text;
+                    if (constant) {
+                        final double value = toNumber(text.get(null, null));
+                        return (vc, g) -> value;
+                    }
+                    return (vc, g) -> toNumber(text.get(vc, g));
+                }
+                default: {
+                    final ObjectValue object = this.object;
+                    return (vc, g) -> toNumber(object.get(vc, g));
+                }
+            }
+        }
+
+        TextValue asText() {
+            switch (kind) {
+                case TEXT:
+                    return text;
+                case CONDITION: {
+                    final Condition condition = this.condition;
+                    return (vc, g) -> {
+                        final int c = condition.test(vc, g);
+                        return c == MISSING ? null : Boolean.toString(c == TRUE);
+                    };
+                }
+                case NUMBER: {
+                    final NumberValue number = this.number;
+                    return (vc, g) -> {
+                        final double x = number.get(vc, g);
+                        return Double.isNaN(x) ? null : x == (long) x ? Long.toString((long) x) : Double.toString(x);
+                    };
+                }
+                default: {
+                    final ObjectValue object = this.object;
+                    return (vc, g) -> {
+                        final Object value = object.get(vc, g);
+                        return value == null ? null : value.toString();
+                    };
+                }
+            }
+        }
+
+        ObjectValue asObject() {
+            switch (kind) {
+                case OBJECT:
+                    return object;
+                case CONDITION: {
+                    final Condition condition = this.condition;
+                    return (vc, g) -> {
+                        final int c = condition.test(vc, g);
+                        return c == MISSING ? null : Boolean.valueOf(c == TRUE);
+                    };
+                }
+                case NUMBER: {
+                    final NumberValue number = this.number;
+                    return (vc, g) -> {
+                        final double x = number.get(vc, g);
+                        return Double.isNaN(x) ? null : Double.valueOf(x);
+                    };
+                }
+                default:
+                    return text::get;
+            }
+        }
+    }
+
+    private final String expression;
+    private final VCFHeader header;
+    private final boolean genotypes;
+    private int pos = 0;
+
+    private FilterExpressionCompiler(final String expression, final VCFHeader header, final boolean genotypes) {
+        if (expression == null) throw new IllegalArgumentException("null expression");
+        this.expression = expression;
+        this.header = header;
+        this.genotypes = genotypes;
+    }
+
+    /**
+     * Compiles an expression over a variant context.
+     *
+     * @param expression the expression
+     * @param header the header used to type INFO attributes, may be null
+     * @throws IllegalArgumentException if the expression is not valid or uses features that are not supported
+     */
+    static Condition compileSite(final String expression, final VCFHeader header) {
+        return new FilterExpressionCompiler(expression, header, false).compile();
+    }
+
+    /**
+     * Compiles an expression over a genotype and its variant context.
+     *
+     * @param expression the expression
+     * @param header the header used to type INFO and FORMAT attributes, may be null
+     * @throws IllegalArgumentException if the expression is not valid or uses features that are not supported
+     */
+    static Condition compileGenotype(final String expression, final VCFHeader header) {
+        return new FilterExpressionCompiler(expression, header, true).compile();
+    }
+
+    /**
+     * Converts the result of a compiled condition to a boolean.
+     *
+     * @throws IllegalArgumentException if the result is missing and missing values are to be treated as an error
+     */
+    static boolean toBoolean(final int result, final JexlMissingValueTreatment howToTreatMissingValues, final String expression) {
+        if (result != MISSING) {
+            return result == TRUE;
+        }
+        switch (howToTreatMissingValues) {
+            case TREAT_AS_MATCH:
+                return true;
+            case TREAT_AS_MISMATCH:
+                return false;
+            default:
+                throw new IllegalArgumentException("Missing value while evaluating " + expression);
+        }
+    }
+
+    private Condition compile() {
+        final Expr expr = parseOr();
+        skipWhitespace();
+        if (pos < expression.length()) {
+            throw error("Unexpected input");
+        }
+        return expr.asCondition();
+    }
+
+    //
+    // Parsing
+    //
+
+    private Expr parseOr() {
+        Expr left = parseAnd();
+        while (acceptSymbol("||") || acceptWord("or")) {
+            final Condition a = left.asCondition();
+            final Condition b = parseAnd().asCondition();
+            left = Expr.condition((vc, g) -> {
+                final int x = a.test(vc, g);
+                return x == FALSE ? b.test(vc, g) : x;
+            });
+        }
+        return left;
+    }
+
+    private Expr parseAnd() {
+        Expr left = parseEquality();
+        while (acceptSymbol("&&") || acceptWord("and")) {
+            final Condition a = left.asCondition();
+            final Condition b = parseEquality().asCondition();
+            left = Expr.condition((vc, g) -> {
+                final int x = a.test(vc, g);
+                return x == TRUE ? b.test(vc, g) : x;
+            });
+        }
+        return left;
+    }
+
+    private Expr parseEquality() {
+        Expr left = parseRelational();
+        while (true) {
+            if (acceptSymbol("==") || acceptWord("eq")) {
+                left = compare(left, parseRelational(), EQ);
+            } else if (acceptSymbol("!=") || acceptWord("ne")) {
+                left = compare(left, parseRelational(), NE);
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expr parseRelational() {
+        Expr left = parseAdditive();
+        while (true) {
+            if (acceptSymbol("<=") || acceptWord("le")) {
+                left = compare(left, parseAdditive(), LE);
+            } else if (acceptSymbol(">=") || acceptWord("ge")) {
+                left = compare(left, parseAdditive(), GE);
+            } else if (acceptSymbol("<") || acceptWord("lt")) {
+                left = compare(left, parseAdditive(), LT);
+            } else if (acceptSymbol(">") || acceptWord("gt")) {
+                left = compare(left, parseAdditive(), GT);
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expr parseAdditive() {
+        Expr left = parseMultiplicative();
+        while (true) {
+            if (acceptSymbol("+")) {
+                left = arithmetic(left, parseMultiplicative(), '+');
+            } else if (acceptSymbol("-")) {
+                left = arithmetic(left, parseMultiplicative(), '-');
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expr parseMultiplicative() {
+        Expr left = parseUnary();
+        while (true) {
+            if (acceptSymbol("*")) {
+                left = arithmetic(left, parseUnary(), '*');
+            } else if (acceptSymbol("/")) {
+                left = arithmetic(left, parseUnary(), '/');
+            } else if (acceptSymbol("%")) {
+                left = arithmetic(left, parseUnary(), '%');
+            } else {
+                return left;
+            }
+        }
+    }
+
+    private Expr parseUnary() {
+        skipWhitespace();
+        if ((peek() == '!' && peek(1) != '=' && acceptSymbol("!")) || acceptWord("not")) {
+            final Condition a = parseUnary().asCondition();
+            return Expr.condition((vc, g) -> {
+                final int x = a.test(vc, g);
+                return x == MISSING ? MISSING : TRUE - x;
+            });
+        }
+        if (acceptSymbol("-")) {
+            final Expr operand = parseUnary();
+            final NumberValue a = operand.asNumber();
+            if (operand.constant) {
+                return Expr.constant(-a.get(null, null));
+            }
+            return Expr.number((vc, g) -> -a.get(vc, g));
+        }
+        return parsePrimary();
+    }
+
+    private Expr parsePrimary() {
+        skipWhitespace();
+        final char c = peek();
+        if (c == '(') {
+            ++pos;
+            final Expr expr = parseOr();
+            if (!acceptSymbol(")")) {
+                throw error("Expected ')'");
+            }
+            return expr;
+        } else if (c == '\'' || c == '"') {
+            return Expr.constant(parseString());
+        } else if (Character.isDigit(c) || (c == '.' && Character.isDigit(peek(1)))) {
+            return Expr.constant(parseNumber());
+        } else if (isNameStart(c)) {
+            final int start = pos;
+            final String name = parseName();
+            switch (name) {
+                case "true":
+                    return Expr.constant(TRUE);
+                case "false":
+                    return Expr.constant(FALSE);
+                case "or": case "and": case "not": case "eq": case "ne": case "lt": case "le": case "gt": case "ge":
+                    pos = start;
+                    throw error("Unexpected operator '" + name + "'");
+                default:
+                    return genotypes ? genotypeVariable(name) : siteVariable(name);
+            }
+        } else if (pos == expression.length()) {
+            throw error("Unexpected end of expression");
+        } else {
+            throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private String parseString() {
+        final char quote = expression.charAt(pos++);
+        final StringBuilder builder = new StringBuilder();
+        while (pos < expression.length()) {
+            final char c = expression.charAt(pos++);
+            if (c == quote) {
+                return builder.toString();
+            } else if (c == '\\' && pos < expression.length()) {
+                builder.append(expression.charAt(pos++));
+            } else {
+                builder.append(c);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private double parseNumber() {
+        final int start = pos;
+        while (Character.isDigit(peek()) || peek() == '.') {
+            ++pos;
+        }
+        if ((peek() == 'e' || peek() == 'E') &&
+                (Character.isDigit(peek(1)) || ((peek(1) == '-' || peek(1) == '+') && Character.isDigit(peek(2))))) {
+            pos += 2;
+            while (Character.isDigit(peek())) {
+                ++pos;
+            }
+        }
+        try {
+            return Double.parseDouble(expression.substring(start, pos));
+        } catch (final NumberFormatException e) {
+            pos = start;
+            throw error("Invalid number");
+        }
+    }
+
+    private String parseName() {
+        final int start = pos;
+        while (pos < expression.length() && (isNameStart(peek()) || Character.isDigit(peek()))) {
+            ++pos;
+        }
+        return expression.substring(start, pos);
+    }
+
+    private static boolean isNameStart(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+    }
+
+    private char peek() {
+        return peek(0);
+    }
+
+    private char peek(final int offset) {
+        return pos + offset < expression.length() ? expression.charAt(pos + offset) : '\0';
+    }
+
+    private void skipWhitespace() {
+        while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))) {
+            ++pos;
+        }
+    }
+
+    private boolean acceptSymbol(final String symbol) {
+        skipWhitespace();
+        if (expression.startsWith(symbol, pos)) {
+            pos += symbol.length();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptWord(final String word) {
+        skipWhitespace();
+        if (expression.startsWith(word, pos)) {
+            final int end = pos + word.length();
+            if (end == expression.length() || !(isNameStart(expression.charAt(end)) || Character.isDigit(expression.charAt(end)))) {
+                pos = end;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private IllegalArgumentException error(final String message) {
+        return new IllegalArgumentException(message + " at position " + pos + " of expression: " + expression);
+    }
+
+    //
+    // Operators
+    //
+
+    private static boolean holds(final int op, final int comparison) {
+        switch (op) {
+            case EQ: return comparison == 0;
+            case NE: return comparison != 0;
+            case LT: return comparison < 0;
+            case LE: return comparison <= 0;
+            case GT: return comparison > 0;
+            default: return comparison >= 0;
+        }
+    }
+
+    private static int compareNumbers(final double x, final double y) {
+        return x < y ? -1 : x > y ? 1 : 0;
+    }
+
+    private static Expr compare(final Expr left, final Expr right, final int op) {
+        final boolean equality = op == EQ || op == NE;
+        if (left.kind == Kind.NUMBER || right.kind == Kind.NUMBER ||
+                (!equality && left.kind == Kind.CONDITION && right.kind == Kind.CONDITION)) {
+            final NumberValue a = left.asNumber();
+            if (right.constant) {
+                final double y = right.asNumber().get(null, null);
+                return Expr.condition((vc, g) -> {
+                    final double x = a.get(vc, g);
+                    return Double.isNaN(x) ? MISSING : holds(op, compareNumbers(x, y)) ? TRUE : FALSE;
+                });
+            }
+            final NumberValue b = right.asNumber();
+            return Expr.condition((vc, g) -> {
+                final double x = a.get(vc, g);
+                final double y = b.get(vc, g);
+                return Double.isNaN(x) || Double.isNaN(y) ? MISSING : holds(op, compareNumbers(x, y)) ? TRUE : FALSE;
+            });
+        } else if (equality && left.kind == Kind.CONDITION && right.kind == Kind.CONDITION) {
+            final Condition a = left.condition;
+            final Condition b = right.condition;
+            return Expr.condition((vc, g) -> {
+                final int x = a.test(vc, g);
+                final int y = b.test(vc, g);
+                return x == MISSING || y == MISSING ? MISSING : holds(op, x - y) ? TRUE : FALSE;
+            });
+        } else if (left.kind == Kind.OBJECT || right.kind == Kind.OBJECT) {
+            final ObjectValue a = left.asObject();
+            final ObjectValue b = right.asObject();
+            return Expr.condition((vc, g) -> {
+                final Object x = a.get(vc, g);
+                final Object y = b.get(vc, g);
+                if (x == null || y == null) {
+                    return MISSING;
+                } else if (x instanceof Number || y instanceof Number) {
+                    return holds(op, compareNumbers(toNumber(x), toNumber(y))) ? TRUE : FALSE;
+                } else {
+                    return holds(op, x.toString().compareTo(y.toString())) ? TRUE : FALSE;
+                }
+            });
+        } else {
+            final TextValue a = left.asText();
+            final TextValue b = right.asText();
+            return Expr.condition((vc, g) -> {
+                final String x = a.get(vc, g);
+                final String y = b.get(vc, g);
+                return x == null || y == null ? MISSING : holds(op, x.compareTo(y)) ? TRUE : FALSE;
+            });
+        }
+    }
+
+    private static Expr arithmetic(final Expr left, final Expr right, final char op) {
+        final NumberValue a = left.asNumber();
+        final NumberValue b = right.asNumber();
+        final NumberValue result;
+        switch (op) {
+            case '+': result = (vc, g) -> a.get(vc, g) + b.get(vc, g); break;
+            case '-': result = (vc, g) -> a.get(vc, g) - b.get(vc, g); break;
+            case '*': result = (vc, g) -> a.get(vc, g) * b.get(vc, g); break;
+            case '/': result = (vc, g) -> a.get(vc, g) / b.get(vc, g); break;
+            default: result = (vc, g) -> a.get(vc, g) % b.get(vc, g); break;
+        }
+        return left.constant && right.constant ? Expr.constant(result.get(null, null)) : Expr.number(result);
+    }
+
+    //
+    // Names
+    //
+
+    private Expr siteVariable(final String name) {
+        switch (name) {
+            case "CHROM":
+                return Expr.text((vc, g) -> vc.getContig());
+            case "POS":
+                return Expr.number((vc, g) -> vc.getStart());
+            case "TYPE":
+                return Expr.text((vc, g) -> vc.getType().toString());
+            case "QUAL":
+                return Expr.number((vc, g) -> -10 * vc.getLog10PError());
+            case "N_ALLELES":
+                return Expr.number((vc, g) -> vc.getNAlleles());
+            case "FILTER":
+                return Expr.text((vc, g) -> vc.isFiltered() ? TRUE_STRING : FALSE_STRING);
+            case "homRefCount":
+                return Expr.number((vc, g) -> vc.getHomRefCount());
+            case "hetCount":
+                return Expr.number((vc, g) -> vc.getHetCount());
+            case "homVarCount":
+                return Expr.number((vc, g) -> vc.getHomVarCount());
+            case "vc":
+            case "ALLELES":
+                throw unsupported(name);
+            default:
+                return typed((vc, g) -> {
+                    final Object value = vc.getAttribute(name);
+                    if (value != null) {
+                        return value;
+                    }
+                    final Set<String> filters = vc.getFiltersMaybeNull();
+                    return filters != null && filters.contains(name) ? TRUE_STRING : null;
+                }, header == null ? null : header.getInfoHeaderLine(name));
+        }
+    }
+
+    private Expr genotypeVariable(final String name) {
+        switch (name) {
+            case "isHom":
+                return Expr.text((vc, g) -> g.isHom() ? TRUE_STRING : FALSE_STRING);
+            case "isHomRef":
+                return Expr.text((vc, g) -> g.isHomRef() ? TRUE_STRING : FALSE_STRING);
+            case "isHet":
+                return Expr.text((vc, g) -> g.isHet() ? TRUE_STRING : FALSE_STRING);
+            case "isHomVar":
+                return Expr.text((vc, g) -> g.isHomVar() ? TRUE_STRING : FALSE_STRING);
+            case "isCalled":
+                return Expr.text((vc, g) -> g.isCalled() ? TRUE_STRING : FALSE_STRING);
+            case "isNoCall":
+                return Expr.text((vc, g) -> g.isNoCall() ? TRUE_STRING : FALSE_STRING);
+            case "isMixed":
+                return Expr.text((vc, g) -> g.isMixed() ? TRUE_STRING : FALSE_STRING);
+            case "isAvailable":
+                return Expr.text((vc, g) -> g.isAvailable() ? TRUE_STRING : FALSE_STRING);
+            case "isPassFT":
+                return Expr.text((vc, g) -> g.isFiltered() ? FALSE_STRING : TRUE_STRING);
+            case VCFConstants.GENOTYPE_KEY:
+                return Expr.text((vc, g) -> g.getGenotypeString());
+            case VCFConstants.GENOTYPE_FILTER_KEY:
+                return Expr.text((vc, g) -> g.isFiltered() ? g.getFilters() : VCFConstants.PASSES_FILTERS_v4);
+            case VCFConstants.GENOTYPE_QUALITY_KEY:
+                return Expr.number((vc, g) -> g.getGQ());
+            case "g":
+                throw unsupported(name);
+            case VCFConstants.DEPTH_KEY:
+                return firstPresent(Expr.number((vc, g) -> g.hasDP() ? g.getDP() : Double.NaN), siteVariable(name));
+            default:
+                return firstPresent(typed((vc, g) -> {
+                    if (g.hasAnyAttribute(name)) {
+                        return g.getAnyAttribute(name);
+                    }
+                    final String filters = g.getFilters();
+                    return filters != null && filters.contains(name) ? TRUE_STRING : null;
+                }, header == null ? null : header.getFormatHeaderLine(name)), siteVariable(name));
+        }
+    }
+
+    private IllegalArgumentException unsupported(final String name) {
+        return new IllegalArgumentException("'" + name + "' is not supported in compiled expressions: " + expression);
+    }
+
+    /** Views an attribute as the type declared for it in the header. */
+    private static Expr typed(final ObjectValue value, final VCFCompoundHeaderLine line) {
+        if (line == null) {
+            return Expr.object(value);
+        } else if (line.getType() == VCFHeaderLineType.Flag) {
+            return Expr.condition((vc, g) -> truth(value.get(vc, g)));
+        } else if (line.getCountType() != VCFHeaderLineCount.INTEGER || line.getCount() != 1) {
+            return Expr.object(value);
+        }
+        switch (line.getType()) {
+            case Integer:
+            case Float:
+                return Expr.number((vc, g) -> toNumber(value.get(vc, g)));
+            case String:
+            case Character:
+                return Expr.text((vc, g) -> {
+                    final Object x = value.get(vc, g);
+                    return x == null ? null : x.toString();
+                });
+            default:
+                return Expr.object(value);
+        }
+    }
+
+    /** Evaluates to the first value if it is present and to the second otherwise. */
+    private static Expr firstPresent(final Expr first, final Expr second) {
+        if (first.kind != second.kind) {
+            final ObjectValue a = first.asObject();
+            final ObjectValue b = second.asObject();
+            return Expr.object((vc, g) -> {
+                final Object x = a.get(vc, g);
+                return x != null ? x : b.get(vc, g);
+            });
+        }
+        switch (first.kind) {
+            case CONDITION: {
+                final Condition a = first.condition;
+                final Condition b = second.condition;
+                return Expr.condition((vc, g) -> {
+                    final int x = a.test(vc, g);
+                    return x != MISSING ? x : b.test(vc, g);
+                });
+            }
+            case NUMBER: {
+                final NumberValue a = first.number;
+                final NumberValue b = second.number;
+                return Expr.number((vc, g) -> {
+                    final double x = a.get(vc, g);
+                    return !Double.isNaN(x) ? x : b.get(vc, g);
+                });
+            }
+            case TEXT: {
+                final TextValue a = first.text;
+                final TextValue b = second.text;
+                return Expr.text((vc, g) -> {
+                    final String x = a.get(vc, g);
+                    return x != null ? x : b.get(vc, g);
+                });
+            }
+            default: {
+                final ObjectValue a = first.object;
+                final ObjectValue b = second.object;
+                return Expr.object((vc, g) -> {
+                    final Object x = a.get(vc, g);
+                    return x != null ? x : b.get(vc, g);
+                });
+            }
+        }
+    }
+
+    //
+    // Conversions, following JEXL
+    //
+
+    private static int truth(final Object value) {
+        if (value == null) {
+            return MISSING;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? TRUE : FALSE;
+        } else if (value instanceof Number) {
+            final double x = ((Number) value).doubleValue();
+            return !Double.isNaN(x) && x != 0 ? TRUE : FALSE;
+        } else if (value instanceof String) {
+            final String s = (String) value;
+            return !s.isEmpty() && !s.equals("false") ? TRUE : FALSE;
+        } else {
+            return TRUE;
+        }
+    }
+
+    private static double toNumber(final Object value) {
+        if (value == null) {
+            return Double.NaN;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        } else if (value instanceof String) {
+            return toNumber((String) value);
+        } else {
+            throw new IllegalArgumentException("Cannot use " + value + " as a number");
+        }
+    }
+
+    private static double toNumber(final String value) {
+        if (value == null || value.equals(VCFConstants.MISSING_VALUE_v4)) {
+            return Double.NaN;
+        } else if (value == TRUE_STRING) {
+            return 1;
+        } else if (value == FALSE_STRING) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Cannot use '" + value + "' as a number", e);
+        }
+    }
+}
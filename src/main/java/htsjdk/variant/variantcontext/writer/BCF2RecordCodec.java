@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.variantcontext.writer;
+
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.SortingCollection;
+import htsjdk.tribble.readers.PositionalBufferedStream;
+import htsjdk.variant.bcf2.BCF2Codec;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFHeader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Writes and reads VariantContexts to and from temporary files as BCF2 records, for use with a
+ * {@link SortingCollection}.  BCF2 records are more compact and faster to decode than VCF lines, and their genotypes
+ * are decoded lazily, so that records written to a BCF file pass their genotype data through without decoding it.
+ *
+ * As with a BCF file, the header must contain contig lines and every INFO and FORMAT field used by the records, and
+ * floating point values are stored with single precision.  Use {@link htsjdk.variant.vcf.VCFRecordCodec} where the
+ * exact text of VCF records must be preserved.
+ */
+public class BCF2RecordCodec implements SortingCollection.Codec<VariantContext> {
+    private final VCFHeader header;
+    /** The BCF2 magic, version and header, which the decoder needs to set up its dictionaries. */
+    private final byte[] headerBytes;
+
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream();
+    private final BCF2Writer encoder;
+    private final BCF2Codec decoder = new BCF2Codec();
+    private OutputStream outputStream;
+    private PositionalBufferedStream inputStream;
+
+    /**
+     * @param header the header of the records
+     * @throws IllegalStateException if the header has no contig lines
+     */
+    public BCF2RecordCodec(final VCFHeader header) {
+        this(header, encodeHeader(header));
+    }
+
+    private BCF2RecordCodec(final VCFHeader header, final byte[] headerBytes) {
+        this.header = header;
+        this.headerBytes = headerBytes;
+        this.encoder = new BCF2Writer((Path) null, recordBuffer, null, false, false);
+        this.encoder.setHeader(header);
+        this.decoder.readHeader(new PositionalBufferedStream(new ByteArrayInputStream(headerBytes)));
+    }
+
+    private static byte[] encodeHeader(final VCFHeader header) {
+        final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        new BCF2Writer((Path) null, headerBytes, null, false, false).writeHeader(header);
+        return headerBytes.toByteArray();
+    }
+
+    @Override
+    public void setOutputStream(final OutputStream stream) {
+        this.outputStream = stream;
+    }
+
+    @Override
+    public void setInputStream(final InputStream stream) {
+        this.inputStream = new PositionalBufferedStream(stream);
+    }
+
+    @Override
+    public void encode(final VariantContext context) {
+        recordBuffer.reset();
+        encoder.add(context);
+        try {
+            recordBuffer.writeTo(outputStream);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Could not write a BCF2 record for a sorting collection: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public VariantContext decode() {
+        try {
+            return inputStream.isDone() ? null : decoder.decode(inputStream);
+        } catch (final IOException e) {
+            throw new RuntimeIOException("Could not read a BCF2 record for a sorting collection: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public BCF2RecordCodec clone() {
+        return new BCF2RecordCodec(header, headerBytes);
+    }
+}
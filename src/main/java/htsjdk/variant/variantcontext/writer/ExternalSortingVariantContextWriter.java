@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.variantcontext.writer;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.SortingCollection;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextComparator;
+import htsjdk.variant.vcf.VCFHeader;
+
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * Writes VariantContexts added in any order to another writer in coordinate order, so that the other writer can
+ * write and index a sorted VCF or BCF file.
+ *
+ * Records are held in a {@link SortingCollection}, which spills them to temporary files when there are more than
+ * {@code maxRecordsInRam} of them, and are merged from those files straight into the other writer on {@link #close()}.
+ * By default the temporary files hold BCF2 records, see {@link BCF2RecordCodec}.  Wrap this writer in an
+ * {@link AsyncVariantContextWriter}, as {@link VariantContextWriterBuilder} does for {@link Options#SORT_RECORDS},
+ * to sort and spill records on a background thread.
+ *
+ * Records are ordered by the contig lines of the header, or by the reference dictionary if the header has none.
+ */
+public class ExternalSortingVariantContextWriter implements VariantContextWriter {
+    public static final int DEFAULT_MAX_RECORDS_IN_RAM = 100000;
+
+    private final VariantContextWriter innerWriter;
+    private final Function<VCFHeader, SortingCollection.Codec<VariantContext>> codecFactory;
+    private final SAMSequenceDictionary refDict;
+    private final int maxRecordsInRam;
+    private final Path tmpDir;
+    private SortingCollection<VariantContext> records;
+
+    /**
+     * Creates a writer that holds records as BCF2 records in temporary files in the default temporary directory.
+     *
+     * @param innerWriter the writer to which sorted records are written, which is closed by {@link #close()}
+     */
+    public ExternalSortingVariantContextWriter(final VariantContextWriter innerWriter) {
+        this(innerWriter, BCF2RecordCodec::new, null, DEFAULT_MAX_RECORDS_IN_RAM, IOUtil.getDefaultTmpDirPath());
+    }
+
+    /**
+     * @param innerWriter the writer to which sorted records are written, which is closed by {@link #close()}
+     * @param codecFactory creates the codec used to write records to temporary files, given the header
+     * @param refDict the dictionary by which records are ordered if the header has no contig lines, may be null
+     * @param maxRecordsInRam the number of records held in memory before they are spilled to a temporary file
+     * @param tmpDir the directory in which to create temporary files
+     */
+    public ExternalSortingVariantContextWriter(final VariantContextWriter innerWriter,
+                                               final Function<VCFHeader, SortingCollection.Codec<VariantContext>> codecFactory,
+                                               final SAMSequenceDictionary refDict,
+                                               final int maxRecordsInRam,
+                                               final Path tmpDir) {
+        if (innerWriter == null) throw new IllegalArgumentException("null innerWriter");
+        if (codecFactory == null) throw new IllegalArgumentException("null codecFactory");
+        if (maxRecordsInRam <= 0) throw new IllegalArgumentException("maxRecordsInRam must be positive: " + maxRecordsInRam);
+        if (tmpDir == null) throw new IllegalArgumentException("null tmpDir");
+        this.innerWriter = innerWriter;
+        this.codecFactory = codecFactory;
+        this.refDict = refDict;
+        this.maxRecordsInRam = maxRecordsInRam;
+        this.tmpDir = tmpDir;
+    }
+
+    @Override
+    public void writeHeader(final VCFHeader header) {
+        innerWriter.writeHeader(header);
+        initialize(header);
+    }
+
+    @Override
+    public void setHeader(final VCFHeader header) {
+        innerWriter.setHeader(header);
+        initialize(header);
+    }
+
+    private void initialize(final VCFHeader header) {
+        if (records != null) {
+            throw new IllegalStateException("The header cannot be modified after it has been set or written.");
+        }
+        final VariantContextComparator comparator;
+        if (!header.getContigLines().isEmpty()) {
+            comparator = new VariantContextComparator(header.getContigLines());
+        } else if (refDict != null) {
+            comparator = new VariantContextComparator(refDict);
+        } else {
+            throw new IllegalArgumentException("Cannot sort records without contig lines in the header or a reference dictionary");
+        }
+        records = SortingCollection.newInstance(VariantContext.class, codecFactory.apply(header), comparator,
+                maxRecordsInRam, tmpDir);
+    }
+
+    @Override
+    public void add(final VariantContext vc) {
+        if (records == null) {
+            throw new IllegalStateException("The header must be set or written before records are added.");
+        }
+        records.add(vc);
+    }
+
+    /** Writes the sorted records to the inner writer and closes it. */
+    @Override
+    public void close() {
+        try {
+            if (records != null) {
+                try (final CloseableIterator<VariantContext> iterator = records.iterator()) {
+                    while (iterator.hasNext()) {
+                        innerWriter.add(iterator.next());
+                    }
+                }
+                records.cleanup();
+                records = null;
+            }
+        } finally {
+            innerWriter.close();
+        }
+    }
+
+    @Override
+    public boolean checkError() {
+        return innerWriter.checkError();
+    }
+}
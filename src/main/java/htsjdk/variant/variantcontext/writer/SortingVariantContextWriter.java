@@ -30,7 +30,7 @@ import htsjdk.variant.variantcontext.VariantContext;
 /**
  * this class writes VCF files, allowing records to be passed in unsorted (up to a certain genomic distance away)
  *
- * @deprecated 9/2017, this class is completely untested and unsupported, there is no replacement at this time
+ * @deprecated 9/2017, this class is completely untested and unsupported, use {@link ExternalSortingVariantContextWriter} instead
  * if you use this class please file an issue on github or it will be removed at some point in the future
  */
 @Deprecated
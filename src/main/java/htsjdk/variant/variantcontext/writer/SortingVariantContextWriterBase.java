@@ -39,7 +39,7 @@ import java.util.concurrent.PriorityBlockingQueue;
  * This class writes VCF files, allowing records to be passed in unsorted.
  * It also enforces that it is never passed records of the same chromosome with any other chromosome in between them.
  *
- * @deprecated 9/2017, this class is completely untested and unsupported, there is no replacement at this time
+ * @deprecated 9/2017, this class is completely untested and unsupported, use {@link ExternalSortingVariantContextWriter} instead
  * if you use this class please file an issue on github or it will be removed at some point in the future
  */
 @Deprecated
@@ -34,6 +34,7 @@ import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.tribble.index.IndexCreator;
 import htsjdk.tribble.index.tabix.TabixFormat;
 import htsjdk.tribble.index.tabix.TabixIndexCreator;
+import htsjdk.variant.vcf.VCFRecordCodec;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -129,6 +130,8 @@ public class VariantContextWriterBuilder {
     private IndexCreator idxCreator = null;
     private int bufferSize = Defaults.BUFFER_SIZE;
     private boolean createMD5 = Defaults.CREATE_MD5;
+    private int maxRecordsInRam = ExternalSortingVariantContextWriter.DEFAULT_MAX_RECORDS_IN_RAM;
+    private Path tmpDir = IOUtil.getDefaultTmpDirPath();
     protected EnumSet<Options> options = DEFAULT_OPTIONS.clone();
 
     /**
@@ -317,6 +320,29 @@ public class VariantContextWriterBuilder {
         return setCreateMD5(false);
     }
 
+    /**
+     * Set the number of records held in memory before they are spilled to a temporary file, when
+     * <code>Options.SORT_RECORDS</code> is set.
+     *
+     * @param maxRecordsInRam the number of records to hold in memory
+     * @return this <code>VariantContextWriterBuilder</code>
+     */
+    public VariantContextWriterBuilder setMaxRecordsInRam(final int maxRecordsInRam) {
+        this.maxRecordsInRam = maxRecordsInRam;
+        return this;
+    }
+
+    /**
+     * Set the directory in which to create temporary files when <code>Options.SORT_RECORDS</code> is set.
+     *
+     * @param tmpDir the directory for temporary files
+     * @return this <code>VariantContextWriterBuilder</code>
+     */
+    public VariantContextWriterBuilder setTempDirectory(final Path tmpDir) {
+        this.tmpDir = tmpDir;
+        return this;
+    }
+
     /**
      * Replace the set of <code>Options</code> for the <code>VariantContextWriterBuilder</code> with a new set.
      *
@@ -496,7 +522,17 @@ public class VariantContextWriterBuilder {
                 break;
         }
 
-        if (this.options.contains(Options.USE_ASYNC_IO))
+        // Sorted records are spilled in the BCF2 format for BCF output, but as VCF lines for VCF output so that
+        // their text is written unchanged.  Sorting always happens on a background thread.
+        if (this.options.contains(Options.SORT_RECORDS)) {
+            final boolean allowMissingFieldsInHeader = options.contains(Options.ALLOW_MISSING_FIELDS_IN_HEADER);
+            writer = new ExternalSortingVariantContextWriter(writer,
+                    typeToBuild == OutputType.BCF || typeToBuild == OutputType.BCF_STREAM ?
+                            BCF2RecordCodec::new : header -> new VCFRecordCodec(header, allowMissingFieldsInHeader),
+                    refDict, maxRecordsInRam, tmpDir);
+        }
+
+        if (this.options.contains(Options.USE_ASYNC_IO) || this.options.contains(Options.SORT_RECORDS))
             writer = new AsyncVariantContextWriter(writer, AsyncVariantContextWriter.DEFAULT_QUEUE_SIZE);
 
         return writer;
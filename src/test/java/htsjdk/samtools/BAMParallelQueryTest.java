@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.util.BlockGunzipper;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.RuntimeIOException;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class BAMParallelQueryTest extends HtsjdkTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+
+    private SamReader reader;
+    private BAMParallelQuery parallelQuery;
+
+    @BeforeClass
+    public void init() {
+        reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(BAM_FILE);
+        parallelQuery = new BAMParallelQuery(() -> {
+            try {
+                return new SeekableFileStream(BAM_FILE);
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }, (BAMIndex) reader.indexing().getIndex(), 4, ValidationStringency.SILENT,
+                DefaultSAMRecordFactory.getInstance(), BlockGunzipper.getDefaultInflaterFactory());
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        parallelQuery.close();
+        reader.close();
+    }
+
+    @DataProvider(name = "queries")
+    public Object[][] queries() {
+        final SAMSequenceDictionary dict = reader.getFileHeader().getSequenceDictionary();
+        final Random random = new Random(7);
+        final List<Object[]> queries = new ArrayList<>();
+        for (final int count : new int[]{1, 10, 200, 2000}) {
+            final QueryInterval[] intervals = new QueryInterval[count];
+            for (int i = 0; i < count; ++i) {
+                final int contig = random.nextInt(dict.size());
+                final int start = 1 + random.nextInt(dict.getSequence(contig).getSequenceLength());
+                intervals[i] = new QueryInterval(contig, start, start + random.nextInt(100_000));
+            }
+            for (final boolean contained : new boolean[]{true, false}) {
+                queries.add(new Object[]{QueryInterval.optimizeIntervals(intervals), contained});
+            }
+        }
+        queries.add(new Object[]{new QueryInterval[0], false});
+        return queries.toArray(new Object[0][]);
+    }
+
+    private List<String> serialQuery(final QueryInterval[] intervals, final boolean contained) {
+        final List<String> records = new ArrayList<>();
+        try (final CloseableIterator<SAMRecord> it = reader.query(intervals, contained)) {
+            it.forEachRemaining(r -> records.add(r.getSAMString()));
+        }
+        return records;
+    }
+
+    private List<String> parallelQuery(final QueryInterval[] intervals, final boolean contained, final boolean ordered) {
+        final List<String> records = new ArrayList<>();
+        try (final CloseableIterator<SAMRecord> it = parallelQuery.query(intervals, contained, ordered)) {
+            it.forEachRemaining(r -> records.add(r.getSAMString()));
+        }
+        return records;
+    }
+
+    @Test(dataProvider = "queries")
+    public void testOrderedMatchesSerialQuery(final QueryInterval[] intervals, final boolean contained) {
+        Assert.assertEquals(parallelQuery(intervals, contained, true), serialQuery(intervals, contained));
+    }
+
+    @Test(dataProvider = "queries")
+    public void testUnorderedHasSameRecords(final QueryInterval[] intervals, final boolean contained) {
+        final List<String> expected = serialQuery(intervals, contained);
+        final List<String> actual = parallelQuery(intervals, contained, false);
+        Collections.sort(expected);
+        Collections.sort(actual);
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testSplitIntoTasks() {
+        final long block = 1L << 16;
+        final int chunks = 1000;
+        final long[] filePointers = new long[chunks * 2];
+        for (int i = 0; i < chunks; ++i) {
+            // Each chunk spans 10 blocks of 64KB, so 640KB compressed
+            filePointers[2 * i] = (i * 20L * 65536) * block;
+            filePointers[2 * i + 1] = ((i * 20L + 10) * 65536) * block + 5;
+        }
+        final List<long[]> tasks = BAMParallelQuery.splitIntoTasks(filePointers, 4);
+        Assert.assertTrue(tasks.size() > 4, "Expected several tasks per thread but got " + tasks.size());
+
+        // Tasks are contiguous and together cover all the chunks in order
+        int next = 0;
+        for (final long[] task : tasks) {
+            Assert.assertTrue(task.length > 0 && task.length % 2 == 0);
+            for (final long filePointer : task) {
+                Assert.assertEquals(filePointer, filePointers[next++]);
+            }
+        }
+        Assert.assertEquals(next, filePointers.length);
+    }
+
+    @Test
+    public void testRecordsShareHeader() {
+        Assert.assertEquals(parallelQuery.getFileHeader(), reader.getFileHeader());
+        final QueryInterval[] intervals = {new QueryInterval(0, 1, -1), new QueryInterval(1, 1, -1)};
+        try (final CloseableIterator<SAMRecord> it = parallelQuery.query(intervals, false, false)) {
+            Assert.assertTrue(it.hasNext());
+            it.forEachRemaining(r -> Assert.assertSame(r.getHeader(), parallelQuery.getFileHeader()));
+        }
+    }
+
+    @Test
+    public void testEarlyClose() {
+        final SAMSequenceDictionary dict = reader.getFileHeader().getSequenceDictionary();
+        final QueryInterval[] intervals = {new QueryInterval(0, 1, dict.getSequence(0).getSequenceLength())};
+        try (final CloseableIterator<SAMRecord> it = parallelQuery.query(intervals, false, true)) {
+            Assert.assertTrue(it.hasNext());
+            it.next();
+            it.close();
+            Assert.assertFalse(it.hasNext());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+public class BinaryTagIndexTest extends HtsjdkTest {
+
+    private static SAMRecord createRecord() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        final SAMRecord record = builder.addFrag("read1", 0, 100, false, false, "10M", null, 30);
+        record.setAttribute("RG", "rg1");
+        record.setAttribute("MD", "10");
+        record.setAttribute("NM", 0);
+        record.setAttribute("AS", -300);
+        record.setAttribute("XS", 70000);
+        record.setAttribute("XL", 3000000000L);
+        record.setAttribute("XC", 'x');
+        record.setAttribute("XF", 1.5f);
+        record.setAttribute("XB", new byte[]{1, -2, 3});
+        record.setUnsignedArrayAttribute("XU", new byte[]{4, 5});
+        record.setAttribute("XI", new int[]{7, 8, 9});
+        record.setAttribute("XA", new float[]{0.5f});
+        return record;
+    }
+
+    private static BAMRecord roundTrip(final SAMRecord record) {
+        final BAMRecordCodec codec = new BAMRecordCodec(record.getHeader());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.setOutputStream(out);
+        codec.encode(record);
+        codec.setInputStream(new ByteArrayInputStream(out.toByteArray()));
+        return (BAMRecord) codec.decode();
+    }
+
+    @Test
+    public void testLookupSingleTags() {
+        final SAMRecord record = createRecord();
+        final BAMRecord bamRecord = roundTrip(record);
+        for (final SAMRecord.SAMTagAndValue tagAndValue : record.getAttributes()) {
+            final Object value = bamRecord.getAttribute(tagAndValue.tag);
+            if (value.getClass().isArray()) {
+                Assert.assertEquals(value, tagAndValue.value, tagAndValue.tag);
+            } else {
+                Assert.assertEquals(value.toString(), tagAndValue.value.toString(), tagAndValue.tag);
+            }
+        }
+        Assert.assertNull(bamRecord.getAttribute("ZZ"));
+        Assert.assertFalse(bamRecord.hasAttribute("ZZ"));
+        Assert.assertEquals(bamRecord.getVariableBinaryRepresentation(), roundTrip(record).getVariableBinaryRepresentation());
+        Assert.assertEquals(bamRecord, record);
+    }
+
+    @Test
+    public void testTypedAccessors() {
+        for (final SAMRecord record : new SAMRecord[]{createRecord(), roundTrip(createRecord())}) {
+            Assert.assertEquals(record.getIntAttribute("NM", -1), 0);
+            Assert.assertEquals(record.getIntAttribute("AS", 0), -300);
+            Assert.assertEquals(record.getIntAttribute("XS", 0), 70000);
+            Assert.assertEquals(record.getIntAttribute("ZZ", -1), -1);
+            Assert.assertEquals(record.getByteArrayAttributeView("XB"), ByteBuffer.wrap(new byte[]{1, -2, 3}));
+            Assert.assertEquals(record.getByteArrayAttributeView("XU"), ByteBuffer.wrap(new byte[]{4, 5}));
+            Assert.assertTrue(record.getByteArrayAttributeView("XB").isReadOnly());
+            Assert.assertNull(record.getByteArrayAttributeView("ZZ"));
+            Assert.assertThrows(SAMException.class, () -> record.getIntAttribute("XL", 0));
+            Assert.assertThrows(SAMException.class, () -> record.getIntAttribute("MD", 0));
+            Assert.assertThrows(SAMException.class, () -> record.getIntAttribute("XF", 0));
+            Assert.assertThrows(SAMException.class, () -> record.getByteArrayAttributeView("XI"));
+        }
+    }
+
+    @Test
+    public void testEditInPlace() {
+        final SAMRecord expected = createRecord();
+        final BAMRecord bamRecord = roundTrip(expected);
+        for (final SAMRecord record : new SAMRecord[]{expected, bamRecord}) {
+            record.setAttribute("MD", "4A5");
+            record.setAttribute("NM", 1);
+            record.setAttribute("RG", null);
+            record.setAttribute("XX", "added");
+            record.setAttribute("XS", null);
+            record.setAttribute("ZZ", null);
+            record.setUnsignedArrayAttribute("XU", new short[]{300});
+        }
+        // the binary block was edited rather than marked as stale
+        Assert.assertNotNull(bamRecord.getVariableBinaryRepresentation());
+        Assert.assertEquals(bamRecord.getAttribute("MD"), "4A5");
+        Assert.assertEquals(bamRecord.getIntAttribute("NM", 0), 1);
+        Assert.assertNull(bamRecord.getAttribute("RG"));
+        Assert.assertNull(bamRecord.getAttribute("XS"));
+        Assert.assertEquals(bamRecord.getAttribute("XX"), "added");
+        Assert.assertEquals(bamRecord, expected);
+        Assert.assertEquals(roundTrip(bamRecord), expected);
+        Assert.assertTrue(bamRecord.isUnsignedArrayAttribute("XU"));
+    }
+
+    @Test
+    public void testEditAfterDecode() {
+        final BAMRecord bamRecord = roundTrip(createRecord());
+        bamRecord.getAttributes();
+        bamRecord.setAttribute("NM", (short) 2);
+        Assert.assertNull(bamRecord.getVariableBinaryRepresentation());
+        Assert.assertEquals(bamRecord.getAttribute("NM"), (short) 2);
+        Assert.assertEquals(roundTrip(bamRecord).getIntAttribute("NM", 0), 2);
+    }
+
+    @Test
+    public void testRepeatedTagFindsLast() {
+        final byte[] block = {'X', 'A', 'C', 1, 'Y', 'B', 'Z', 'a', 0, 'X', 'A', 'C', 2};
+        final BinaryTagIndex index = new BinaryTagIndex(block, 0, block.length);
+        Assert.assertEquals(index.size(), 3);
+        final int entry = index.find(SAMTag.makeBinaryTag("XA"));
+        Assert.assertEquals(entry, 2);
+        Assert.assertEquals(index.getIntegerValue(entry), 2);
+        Assert.assertEquals(index.getStart(entry), 9);
+        Assert.assertEquals(index.getEnd(entry), block.length);
+        Assert.assertEquals(index.getType(index.find(SAMTag.makeBinaryTag("YB"))), 'Z');
+        Assert.assertEquals(index.find(SAMTag.makeBinaryTag("ZZ")), -1);
+        Assert.assertEquals(BinaryTagCodec.readTags(block, 0, block.length, ValidationStringency.STRICT).find(SAMTag.makeBinaryTag("XA")).value, 2);
+    }
+
+    @Test(expectedExceptions = SAMFormatException.class)
+    public void testTruncatedArray() {
+        final byte[] block = {'X', 'A', 'B', 'c', 4, 0, 0, 0, 1, 2};
+        new BinaryTagIndex(block, 0, block.length);
+    }
+
+    @Test(expectedExceptions = SAMFormatException.class)
+    public void testUnterminatedString() {
+        final byte[] block = {'X', 'A', 'Z', 'a', 'b'};
+        new BinaryTagIndex(block, 0, block.length);
+    }
+}
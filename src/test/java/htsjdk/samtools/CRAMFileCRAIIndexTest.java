@@ -6,6 +6,7 @@ import htsjdk.samtools.cram.build.CramContainerIterator;
 import htsjdk.samtools.cram.ref.ReferenceContext;
 import htsjdk.samtools.cram.ref.ReferenceSource;
 import htsjdk.samtools.cram.structure.AlignmentSpan;
+import htsjdk.samtools.cram.structure.CRAMRecordField;
 import htsjdk.samtools.cram.structure.Container;
 import htsjdk.samtools.reference.FakeReferenceSequenceFile;
 import htsjdk.samtools.seekablestream.ByteArraySeekableStream;
@@ -19,8 +20,12 @@ import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.TreeSet;
 
 /**
@@ -327,6 +332,82 @@ public class CRAMFileCRAIIndexTest extends HtsjdkTest {
         reader.close();
     }
 
+    @Test
+    public void testSliceQueryMatchesSpanQuery() throws IOException {
+        final CRAMFileReader reader = new CRAMFileReader(
+                new SeekableFileStream(tmpCramFile),
+                new SeekableFileStream(tmpCraiFile),
+                source,
+                ValidationStringency.SILENT);
+        Assert.assertNotNull(reader.getCraiIndex());
+
+        final SAMSequenceDictionary dict = reader.getFileHeader().getSequenceDictionary();
+        final Random random = new Random(13);
+        for (int i = 0; i < 50; i++) {
+            final int sequenceId = random.nextInt(dict.size());
+            final int start = 1 + random.nextInt(dict.getSequence(sequenceId).getSequenceLength());
+            final QueryInterval[] intervals = {new QueryInterval(sequenceId, start, start + random.nextInt(50_000))};
+            final boolean contained = random.nextBoolean();
+
+            final List<String> bySlice = new ArrayList<>();
+            reader.query(intervals, contained).forEachRemaining(r -> bySlice.add(r.getSAMString()));
+            final List<String> bySpan = new ArrayList<>();
+            reader.createIndexIterator(intervals, contained, BAMFileReader.getFileSpan(intervals, reader.getIndex()).toCoordinateArray())
+                    .forEachRemaining(r -> bySpan.add(r.getSAMString()));
+            Assert.assertEquals(bySlice, bySpan);
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testProjectedQuery() throws IOException {
+        final CRAMFileReader reader = new CRAMFileReader(
+                new SeekableFileStream(tmpCramFile),
+                new SeekableFileStream(tmpCraiFile),
+                source,
+                ValidationStringency.SILENT);
+        // no reference is needed without bases
+        final CRAMFileReader projectedReader = new CRAMFileReader(
+                new SeekableFileStream(tmpCramFile),
+                new SeekableFileStream(tmpCraiFile),
+                (sequenceRecord, tryNameVariants) -> {
+                    throw new AssertionError("Unexpected reference request for " + sequenceRecord.getSequenceName());
+                },
+                ValidationStringency.SILENT);
+
+        final SAMSequenceDictionary dict = reader.getFileHeader().getSequenceDictionary();
+        final Random random = new Random(17);
+        int count = 0;
+        for (int i = 0; i < 20; i++) {
+            final int sequenceId = random.nextInt(dict.size());
+            final int start = 1 + random.nextInt(dict.getSequence(sequenceId).getSequenceLength());
+            final QueryInterval[] intervals = {new QueryInterval(sequenceId, start, start + random.nextInt(100_000))};
+
+            final List<SAMRecord> expected = new ArrayList<>();
+            reader.query(intervals, false).forEachRemaining(expected::add);
+            final List<SAMRecord> actual = new ArrayList<>();
+            projectedReader.query(intervals, false, EnumSet.noneOf(CRAMRecordField.class)).forEachRemaining(actual::add);
+
+            Assert.assertEquals(actual.size(), expected.size());
+            for (int j = 0; j < actual.size(); j++) {
+                Assert.assertEquals(actual.get(j).getReferenceIndex(), expected.get(j).getReferenceIndex());
+                Assert.assertEquals(actual.get(j).getAlignmentStart(), expected.get(j).getAlignmentStart());
+                Assert.assertEquals(actual.get(j).getAlignmentEnd(), expected.get(j).getAlignmentEnd());
+                Assert.assertEquals(actual.get(j).getFlags(), expected.get(j).getFlags());
+                Assert.assertEquals(actual.get(j).getMappingQuality(), expected.get(j).getMappingQuality());
+                Assert.assertEquals(actual.get(j).getCigarString(), expected.get(j).getCigarString());
+                Assert.assertEquals(actual.get(j).getReadBases(), SAMRecord.NULL_SEQUENCE);
+                Assert.assertEquals(actual.get(j).getBaseQualities(), SAMRecord.NULL_QUALS);
+                Assert.assertEquals(actual.get(j).getReadGroup(), expected.get(j).getReadGroup());
+                Assert.assertNull(actual.get(j).getAttribute("NM"));
+            }
+            count += actual.size();
+        }
+        Assert.assertTrue(count > 0);
+        reader.close();
+        projectedReader.close();
+    }
+
     @BeforeTest
     public void prepare() throws IOException {
         Log.setGlobalLogLevel(Log.LogLevel.ERROR);
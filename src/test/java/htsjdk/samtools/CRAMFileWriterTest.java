@@ -24,6 +24,9 @@
 package htsjdk.samtools;
 
 import htsjdk.HtsjdkTest;
+import htsjdk.samtools.cram.build.CRAMReferenceMode;
+import htsjdk.samtools.cram.build.CramContainerIterator;
+import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.ref.ReferenceSource;
 import htsjdk.samtools.reference.InMemoryReferenceSequenceFile;
 import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
@@ -33,6 +36,7 @@ import htsjdk.samtools.util.Log.LogLevel;
 import org.testng.Assert;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
@@ -42,7 +46,10 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class CRAMFileWriterTest extends HtsjdkTest {
@@ -250,6 +257,101 @@ public class CRAMFileWriterTest extends HtsjdkTest {
 
 
 
+    private static final CRAMReferenceSource NO_REFERENCE_SOURCE = (sequenceRecord, tryNameVariants) -> {
+        throw new AssertionError("Unexpected reference request for " + sequenceRecord.getSequenceName());
+    };
+
+    private static byte[] writeCRAM(final File sam, final CRAMReferenceSource source, final CRAMReferenceMode mode) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (SamReader reader = SamReaderFactory.make().validationStringency(ValidationStringency.SILENT).open(sam);
+             CRAMFileWriter writer = new CRAMFileWriter(baos, source, reader.getFileHeader(), "test.cram")) {
+            writer.setReferenceMode(mode);
+            for (final SAMRecord record : reader) {
+                writer.addAlignment(record);
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    private static List<String> readCRAM(final byte[] cram, final CRAMReferenceSource source) throws IOException {
+        final List<String> records = new ArrayList<>();
+        try (CRAMFileReader reader = new CRAMFileReader(new ByteArrayInputStream(cram), (File) null, source, ValidationStringency.SILENT)) {
+            reader.getIterator().forEachRemaining(record -> records.add(record.getSAMString()));
+        }
+        return records;
+    }
+
+    @DataProvider(name = "referenceModes")
+    public Object[][] referenceModes() {
+        final File cramDir = new File(SAM_TOOLS_TEST_DIR, "cram");
+        final List<Object[]> tests = new ArrayList<>();
+        for (final String[] samAndFasta : new String[][]{
+                {"ce#1000.sam", "ce.fa"},
+                {"ce#unmap2.sam", "ce.fa"},
+                {"c1#clip.sam", "c1.fa"},
+                {"c1#noseq.sam", "c1.fa"},
+                {"c1#pad1.sam", "c1.fa"},
+                {"amb#amb.sam", "amb.fa"}}) {
+            for (final CRAMReferenceMode mode : new CRAMReferenceMode[]{
+                    CRAMReferenceMode.EMBEDDED_REFERENCE, CRAMReferenceMode.NO_REFERENCE, CRAMReferenceMode.AUTO}) {
+                tests.add(new Object[]{new File(cramDir, samAndFasta[0]), new File(cramDir, samAndFasta[1]), mode});
+            }
+        }
+        return tests.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "referenceModes")
+    public void testReferenceModeRoundTrip(final File sam, final File fasta, final CRAMReferenceMode mode) throws IOException {
+        final ReferenceSource source = new ReferenceSource(fasta);
+        final List<String> expected = readCRAM(writeCRAM(sam, source, CRAMReferenceMode.REFERENCE), source);
+        final CRAMReferenceSource writeSource = mode == CRAMReferenceMode.NO_REFERENCE ? NO_REFERENCE_SOURCE : source;
+
+        // the records are read back without a reference
+        Assert.assertEquals(readCRAM(writeCRAM(sam, writeSource, mode), NO_REFERENCE_SOURCE), expected);
+    }
+
+    @Test
+    public void testAutoReferenceMode() throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate, true, 2_000_000);
+        builder.setReadLength(50);
+        // reads far apart store fewer bases than the reference they span; enough of them to fill a container
+        for (int i = 0; i < 1500; i++) {
+            builder.addFrag("sparse" + i, 0, 1 + i * 1000, false);
+        }
+        // many overlapping reads store more
+        for (int i = 0; i < 200; i++) {
+            builder.addFrag("dense" + i, 1, 1 + i, false);
+        }
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final Set<String> requestedSequences = new HashSet<>();
+        final CRAMReferenceSource source = (sequenceRecord, tryNameVariants) -> {
+            requestedSequences.add(sequenceRecord.getSequenceName());
+            final byte[] bases = new byte[sequenceRecord.getSequenceLength()];
+            Arrays.fill(bases, (byte) 'A');
+            return bases;
+        };
+        try (CRAMFileWriter writer = new CRAMFileWriter(baos, source, builder.getHeader(), "test.cram")) {
+            writer.setReferenceMode(CRAMReferenceMode.AUTO);
+            builder.getRecords().forEach(writer::addAlignment);
+        }
+        Assert.assertEquals(requestedSequences, Collections.singleton(builder.getHeader().getSequence(1).getSequenceName()));
+
+        final List<Boolean> referenceEmbedded = new ArrayList<>();
+        final List<Boolean> referenceRequired = new ArrayList<>();
+        new CramContainerIterator(new ByteArrayInputStream(baos.toByteArray())).forEachRemaining(container -> {
+            if (!container.isEOF()) {
+                referenceEmbedded.add(container.getSlices()[0].embeddedRefBlock != null);
+                referenceRequired.add(container.compressionHeader.isReferenceRequired());
+            }
+        });
+        Assert.assertEquals(referenceEmbedded, Arrays.asList(false, true));
+        Assert.assertEquals(referenceRequired, Arrays.asList(false, true));
+
+        final List<String> expected = builder.getRecords().stream().map(SAMRecord::getSAMString).collect(Collectors.toList());
+        Assert.assertEquals(readCRAM(baos.toByteArray(), NO_REFERENCE_SOURCE), expected);
+    }
+
     @Test
     public void test_roundtrip_tlen_preserved() throws IOException {
         final ByteArrayOutputStream baos = new ByteArrayOutputStream();
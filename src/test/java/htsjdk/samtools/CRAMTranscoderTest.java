@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.cram.ref.ReferenceSource;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CRAMTranscoderTest extends HtsjdkTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools/cram");
+    private static final File BAM = new File(TEST_DATA_DIR, "CEUTrio.HiSeq.WGS.b37.NA12878.20.first.8000.bam");
+    private static final File REFERENCE = new File(TEST_DATA_DIR, "human_g1k_v37.20.subset.fasta");
+
+    private int originalRecordsPerSlice;
+
+    /** The test BAM has a record whose mate starts past the end of the subset reference. */
+    private static CRAMTranscoder createTranscoder(final int threads) {
+        return new CRAMTranscoder(new ReferenceSource(REFERENCE), threads)
+                .setValidationStringency(ValidationStringency.SILENT)
+                .setCreateIndex(true);
+    }
+    private Path tempDir;
+
+    @BeforeClass
+    public void setUp() throws IOException {
+        // split the input into a number of containers
+        originalRecordsPerSlice = CRAMContainerStreamWriter.DEFAULT_RECORDS_PER_SLICE;
+        CRAMContainerStreamWriter.DEFAULT_RECORDS_PER_SLICE = 500;
+        tempDir = Files.createTempDirectory("CRAMTranscoderTest");
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        CRAMContainerStreamWriter.DEFAULT_RECORDS_PER_SLICE = originalRecordsPerSlice;
+        IOUtil.recursiveDelete(tempDir);
+    }
+
+    private static List<SAMRecord> readRecords(final Path path) throws IOException {
+        final List<SAMRecord> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().referenceSequence(REFERENCE)
+                .validationStringency(ValidationStringency.SILENT).open(path)) {
+            for (final SAMRecord record : reader) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Test
+    public void testToCRAMIsSameAsSingleThreaded() throws IOException {
+        final Path singleThreaded = tempDir.resolve("single.cram");
+        final Path multiThreaded = tempDir.resolve("multi.cram");
+        createTranscoder(1).toCRAM(BAM.toPath(), singleThreaded);
+        createTranscoder(3).toCRAM(BAM.toPath(), multiThreaded);
+
+        Assert.assertEquals(Files.readAllBytes(multiThreaded), Files.readAllBytes(singleThreaded));
+        final Path index = IOUtil.addExtension(multiThreaded, BAMIndex.BAI_INDEX_SUFFIX);
+        Assert.assertEquals(Files.readAllBytes(index),
+                Files.readAllBytes(IOUtil.addExtension(singleThreaded, BAMIndex.BAI_INDEX_SUFFIX)));
+
+        // the index built alongside the containers can be queried
+        final SAMRecord record = readRecords(BAM.toPath()).get(4000);
+        try (final SamReader reader = SamReaderFactory.makeDefault().referenceSequence(REFERENCE)
+                .validationStringency(ValidationStringency.SILENT)
+                .open(SamInputResource.of(multiThreaded).index(index));
+             final CloseableIterator<SAMRecord> iterator = reader.queryOverlapping(record.getContig(),
+                     record.getAlignmentStart(), record.getAlignmentStart())) {
+            boolean found = false;
+            while (iterator.hasNext()) {
+                found |= iterator.next().equals(record);
+            }
+            Assert.assertTrue(found);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final Path cram = tempDir.resolve("roundTrip.cram");
+        final Path bam = tempDir.resolve("roundTrip.bam");
+        final CRAMTranscoder transcoder = createTranscoder(3);
+        transcoder.toCRAM(BAM.toPath(), cram);
+        transcoder.toBAM(cram, bam);
+
+        final List<SAMRecord> originalRecords = readRecords(BAM.toPath());
+        final List<SAMRecord> cramRecords = readRecords(cram);
+        final List<SAMRecord> bamRecords = readRecords(bam);
+        Assert.assertEquals(bamRecords.size(), originalRecords.size());
+        for (int i = 0; i < originalRecords.size(); i++) {
+            Assert.assertEquals(bamRecords.get(i), originalRecords.get(i));
+            Assert.assertEquals(bamRecords.get(i).getSAMString(), cramRecords.get(i).getSAMString());
+        }
+        Assert.assertNotNull(SamFiles.findIndex(bam));
+    }
+
+    @Test
+    public void testToBAMGeneratesSameReadNames() throws IOException {
+        // records stored without names are named from their position in the file, so each container must be
+        // numbered from the records before it
+        final Path cram = tempDir.resolve("noNames.cram");
+        final Path bam = tempDir.resolve("noNames.bam");
+        final List<SAMRecord> originalRecords = readRecords(BAM.toPath());
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM)) {
+            final CRAMFileWriter writer = new CRAMFileWriter(Files.newOutputStream(cram), new ReferenceSource(REFERENCE),
+                    reader.getFileHeader(), cram.toString());
+            writer.setPreserveReadNames(false);
+            for (final SAMRecord record : originalRecords) {
+                writer.addAlignment(record);
+            }
+            writer.close();
+        }
+
+        createTranscoder(3).toBAM(cram, bam);
+
+        final List<SAMRecord> cramRecords = readRecords(cram);
+        final List<SAMRecord> bamRecords = readRecords(bam);
+        Assert.assertEquals(bamRecords.size(), cramRecords.size());
+        for (int i = 0; i < cramRecords.size(); i++) {
+            Assert.assertEquals(bamRecords.get(i).getReadName(), cramRecords.get(i).getReadName());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidThreads() {
+        new CRAMTranscoder(new ReferenceSource(REFERENCE), 0);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.util.CloseableIterator;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class IndexQueryPlannerTest extends HtsjdkTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+    private static final File CRAM_DIR = new File("src/test/resources/htsjdk/samtools/cram");
+    private static final File CRAM_FILE = new File(CRAM_DIR, "cramQueryWithCRAI.cram");
+    private static final File CRAM_REFERENCE = new File(CRAM_DIR, "human_g1k_v37.20.21.10M-10M200k.fasta");
+
+    private static long pointer(final long blockAddress, final int blockOffset) {
+        return blockAddress << 16 | blockOffset;
+    }
+
+    @Test
+    public void testCoalesce() {
+        final IndexQueryPlanner planner = new IndexQueryPlanner(1000, IndexQueryPlanner.DEFAULT_MAX_PREFETCH_BYTES);
+        final BAMFileSpan span = new BAMFileSpan(Arrays.asList(
+                new Chunk(pointer(5000, 10), pointer(5500, 20)),
+                new Chunk(pointer(0, 10), pointer(100, 20)),
+                // within the gap of the first chunk
+                new Chunk(pointer(1100, 0), pointer(1200, 5)),
+                // overlaps the chunk before
+                new Chunk(pointer(1150, 0), pointer(1300, 5)),
+                // too far from the chunk before
+                new Chunk(pointer(2301, 0), pointer(2400, 5))));
+        final List<Chunk> chunks = planner.coalesce(span).getChunks();
+        Assert.assertEquals(chunks, Arrays.asList(
+                new Chunk(pointer(0, 10), pointer(1300, 5)),
+                new Chunk(pointer(2301, 0), pointer(2400, 5)),
+                new Chunk(pointer(5000, 10), pointer(5500, 20))));
+        // the input is not modified
+        Assert.assertEquals(span.getChunks().get(1), new Chunk(pointer(0, 10), pointer(100, 20)));
+
+        Assert.assertEquals(new IndexQueryPlanner(0, 0).coalesce(span).getChunks().size(), 4);
+    }
+
+    @Test
+    public void testByteRanges() {
+        final BAMFileSpan span = new BAMFileSpan(Arrays.asList(
+                new Chunk(pointer(0, 10), pointer(100, 0)),
+                new Chunk(pointer(200_000, 10), pointer(300_000, 5)),
+                new Chunk(pointer(1_000_000, 10), pointer(1_100_000, 5))));
+        final long[] ranges = new IndexQueryPlanner(0, 200_000).getByteRanges(span);
+        final long maxBlock = 64 * 1024;
+        // the last block of a chunk is assumed to be as large as possible, unless the chunk ends at its start
+        Assert.assertEquals(ranges, new long[]{0, 100, 200_000, 100_000 + maxBlock, 1_000_000, 200_000 - 100 - (100_000 + maxBlock)});
+    }
+
+    @Test
+    public void testBlockStarts() {
+        // CRAM style pointers: the block address is the container offset and the block offset the slice index
+        final long[] blockStarts = {0, 100_000, 2_000_000, 5_000_000, 6_000_000};
+        final BAMFileSpan span = new BAMFileSpan(Arrays.asList(
+                new Chunk(pointer(0, 1), pointer(0, 2)),
+                new Chunk(pointer(0, 3), pointer(0, 4)),
+                new Chunk(pointer(100_000, 0), pointer(100_000, 1)),
+                new Chunk(pointer(5_000_000, 2), pointer(5_000_000, 3))));
+        final IndexQueryPlanner planner = new IndexQueryPlanner(0, IndexQueryPlanner.DEFAULT_MAX_PREFETCH_BYTES);
+        // chunks end at the start of the next container, so adjacent containers are merged
+        Assert.assertEquals(planner.coalesce(span, blockStarts).getChunks(), Arrays.asList(
+                new Chunk(pointer(0, 1), pointer(100_000, 1)),
+                new Chunk(pointer(5_000_000, 2), pointer(5_000_000, 3))));
+        Assert.assertEquals(planner.coalesce(span).getChunks().size(), 3);
+        // ranges cover whole containers, the last one up to the end of the file
+        Assert.assertEquals(planner.getByteRanges(span, blockStarts), new long[]{0, 2_000_000, 5_000_000, 1_000_000});
+    }
+
+    @DataProvider(name = "bamOptions")
+    public Object[][] bamOptions() {
+        return new Object[][]{{false}, {true}};
+    }
+
+    @Test(dataProvider = "bamOptions")
+    public void testBamQueriesMatch(final boolean cacheIndex) throws IOException {
+        final SamReaderFactory factory = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT)
+                .setOption(SamReaderFactory.Option.CACHE_FILE_BASED_INDEXES, cacheIndex);
+        final RecordingStream stream = new RecordingStream(BAM_FILE);
+        try (final SamReader expected = factory.open(BAM_FILE);
+             final SamReader planned = factory.enable(SamReaderFactory.Option.PLAN_INDEX_QUERIES)
+                     .open(SamInputResource.of(stream).index(new File(BAM_FILE.getPath() + ".bai")))) {
+            final SAMSequenceDictionary dictionary = expected.getFileHeader().getSequenceDictionary();
+            final Random random = new Random(13);
+            for (int i = 0; i < 100; ++i) {
+                final int count = 1 + random.nextInt(20);
+                final QueryInterval[] intervals = new QueryInterval[count];
+                for (int j = 0; j < count; ++j) {
+                    final int contig = random.nextInt(dictionary.size());
+                    final int start = 1 + random.nextInt(dictionary.getSequence(contig).getSequenceLength());
+                    intervals[j] = new QueryInterval(contig, start, start + random.nextInt(50_000));
+                }
+                final QueryInterval[] optimized = QueryInterval.optimizeIntervals(intervals);
+                final boolean contained = random.nextBoolean();
+                Assert.assertEquals(query(planned, optimized, contained), query(expected, optimized, contained));
+            }
+        }
+        Assert.assertTrue(stream.prefetches > 0);
+    }
+
+    @Test
+    public void testCramQueriesMatch() throws IOException {
+        final SamReaderFactory factory = SamReaderFactory.makeDefault().referenceSequence(CRAM_REFERENCE)
+                .validationStringency(ValidationStringency.SILENT);
+        try (final SamReader expected = factory.open(CRAM_FILE);
+             final SamReader planned = factory.enable(SamReaderFactory.Option.PLAN_INDEX_QUERIES).open(CRAM_FILE)) {
+            final SAMSequenceDictionary dictionary = expected.getFileHeader().getSequenceDictionary();
+            for (int contig = 0; contig < dictionary.size(); ++contig) {
+                for (int start = 9_990_000; start < 10_210_000; start += 7_000) {
+                    final QueryInterval[] intervals = {new QueryInterval(contig, start, start + 3_000),
+                            new QueryInterval(contig, start + 5_000, start + 5_100)};
+                    Assert.assertEquals(query(planned, intervals, false), query(expected, intervals, false));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCramPrefetchesContainers() throws IOException {
+        final SamReaderFactory factory = SamReaderFactory.makeDefault().referenceSequence(CRAM_REFERENCE)
+                .validationStringency(ValidationStringency.SILENT);
+        final RecordingStream stream = new RecordingStream(CRAM_FILE);
+        try (final SamReader expected = factory.open(CRAM_FILE);
+             final SamReader planned = factory.enable(SamReaderFactory.Option.PLAN_INDEX_QUERIES)
+                     .open(SamInputResource.of(stream).index(new File(CRAM_FILE.getPath() + ".crai")))) {
+            final SAMSequenceDictionary dictionary = expected.getFileHeader().getSequenceDictionary();
+            for (int contig = 0; contig < dictionary.size(); ++contig) {
+                final QueryInterval[] intervals = {new QueryInterval(contig, 1, dictionary.getSequence(contig).getSequenceLength())};
+                Assert.assertEquals(query(planned, intervals, false), query(expected, intervals, false));
+            }
+        }
+        Assert.assertTrue(stream.prefetches > 0);
+    }
+
+    private static List<String> query(final SamReader reader, final QueryInterval[] intervals, final boolean contained) {
+        final List<String> records = new ArrayList<>();
+        try (final CloseableIterator<SAMRecord> it = reader.query(intervals, contained)) {
+            it.forEachRemaining(r -> records.add(r.getSAMString()));
+        }
+        return records;
+    }
+
+    /** Counts the prefetch hints it receives. */
+    private static final class RecordingStream extends SeekableFileStream {
+        private int prefetches = 0;
+
+        RecordingStream(final File file) throws IOException {
+            super(file);
+        }
+
+        @Override
+        public void prefetch(final long position, final long length) {
+            Assert.assertTrue(position >= 0 && length > 0 && position + length <= length() + 64 * 1024);
+            ++prefetches;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ParallelBAMIndexerTest extends HtsjdkTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest");
+    private static final File INDEX_TEST_BAM = new File(TEST_DATA_DIR, "index_test.bam");
+    private static final File LONG_REFERENCES_BAM = new File(TEST_DATA_DIR, "long_references.bam");
+
+    @DataProvider(name = "threads")
+    public Object[][] threads() {
+        return new Object[][]{{1}, {4}};
+    }
+
+    @Test(dataProvider = "threads")
+    public void testBaiMatchesBAMIndexer(final int threads) throws IOException {
+        final Path expected = Files.createTempFile("expected.", BAMIndex.BAI_INDEX_SUFFIX);
+        final Path actual = Files.createTempFile("actual.", BAMIndex.BAI_INDEX_SUFFIX);
+        IOUtil.deleteOnExit(expected);
+        IOUtil.deleteOnExit(actual);
+        try (final SamReader reader = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS)
+                .validationStringency(ValidationStringency.SILENT).open(INDEX_TEST_BAM)) {
+            BAMIndexer.createIndex(reader, expected);
+        }
+        ParallelBAMIndexer.createIndex(INDEX_TEST_BAM.toPath(), actual, threads);
+        Assert.assertEquals(Files.readAllBytes(actual), Files.readAllBytes(expected));
+    }
+
+    @Test(dataProvider = "threads")
+    public void testCsiQueriesMatchBai(final int threads) throws IOException {
+        final Path csi = Files.createTempFile("index_test.", BAMIndex.CSI_INDEX_SUFFIX);
+        IOUtil.deleteOnExit(csi);
+        ParallelBAMIndexer.createCsiIndex(INDEX_TEST_BAM.toPath(), csi, threads);
+
+        try (final SamReader expected = open(INDEX_TEST_BAM, new File(TEST_DATA_DIR, "index_test.bam.bai"));
+             final SamReader actual = open(INDEX_TEST_BAM, csi.toFile())) {
+            Assert.assertTrue(actual.indexing().getIndex() instanceof CSIIndex);
+            final SAMSequenceDictionary dictionary = expected.getFileHeader().getSequenceDictionary();
+            final Random random = new Random(11);
+            for (int i = 0; i < 200; ++i) {
+                final SAMSequenceRecord sequence = dictionary.getSequence(random.nextInt(dictionary.size()));
+                final int start = 1 + random.nextInt(sequence.getSequenceLength());
+                final int end = start + random.nextInt(200_000);
+                final boolean contained = random.nextBoolean();
+                Assert.assertEquals(query(actual, sequence.getSequenceName(), start, end, contained),
+                        query(expected, sequence.getSequenceName(), start, end, contained));
+            }
+
+            final BAMIndexMetaData[] expectedStats = BAMIndexMetaData.getIndexStats((BAMFileReader) ((SamReader.PrimitiveSamReaderToSamReaderAdapter) expected).underlyingReader());
+            final BAMIndexMetaData[] actualStats = BAMIndexMetaData.getIndexStats((BAMFileReader) ((SamReader.PrimitiveSamReaderToSamReaderAdapter) actual).underlyingReader());
+            Assert.assertEquals(actualStats.length, expectedStats.length);
+            for (int i = 0; i < expectedStats.length; ++i) {
+                Assert.assertEquals(actualStats[i].getAlignedRecordCount(), expectedStats[i].getAlignedRecordCount());
+                Assert.assertEquals(actualStats[i].getUnalignedRecordCount(), expectedStats[i].getUnalignedRecordCount());
+            }
+            Assert.assertEquals(actualStats[0].getNoCoordinateRecordCount(), expectedStats[0].getNoCoordinateRecordCount());
+        }
+    }
+
+    @Test
+    public void testLongReferences() throws IOException {
+        Assert.assertTrue(ParallelBAMIndexer.requiresCsi(
+                SamReaderFactory.makeDefault().getFileHeader(LONG_REFERENCES_BAM).getSequenceDictionary()));
+        final Path csi = Files.createTempFile("long_references.", BAMIndex.CSI_INDEX_SUFFIX);
+        IOUtil.deleteOnExit(csi);
+        ParallelBAMIndexer.createCsiIndex(LONG_REFERENCES_BAM.toPath(), csi, 2);
+
+        try (final SamReader expected = open(LONG_REFERENCES_BAM, new File(TEST_DATA_DIR, "long_references.bam.csi"));
+             final SamReader actual = open(LONG_REFERENCES_BAM, csi.toFile())) {
+            for (final int[] interval : new int[][]{{558419286, 558424804}, {558414281, 558414323}, {558414281, 558424804}, {1, 600_000_000}}) {
+                Assert.assertEquals(query(actual, "chr1H", interval[0], interval[1], false),
+                        query(expected, "chr1H", interval[0], interval[1], false));
+            }
+        }
+    }
+
+    @Test(expectedExceptions = SAMException.class)
+    public void testLongReferencesRequireCsi() throws IOException {
+        final Path bai = Files.createTempFile("long_references.", BAMIndex.BAI_INDEX_SUFFIX);
+        IOUtil.deleteOnExit(bai);
+        ParallelBAMIndexer.createIndex(LONG_REFERENCES_BAM.toPath(), bai, 2);
+    }
+
+    private static SamReader open(final File bam, final File index) {
+        return SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT)
+                .open(SamInputResource.of(bam).index(index));
+    }
+
+    private static List<String> query(final SamReader reader, final String contig, final int start, final int end, final boolean contained) {
+        final List<String> records = new ArrayList<>();
+        try (final CloseableIterator<SAMRecord> it = reader.query(contig, start, end, contained)) {
+            it.forEachRemaining(r -> records.add(r.getSAMString()));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.util.BlockGunzipper;
+import htsjdk.samtools.util.RuntimeIOException;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+public class ParallelBAMScannerTest extends HtsjdkTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+    private static final long SPLIT_SIZE = 32 * 1024;
+
+    private final List<String> records = new ArrayList<>();
+    private final Set<Long> recordStarts = new HashSet<>();
+
+    @BeforeClass
+    public void init() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT)
+                .enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS).open(BAM_FILE)) {
+            for (final SAMRecord record : reader) {
+                records.add(record.getSAMString());
+                recordStarts.add(((BAMFileSpan) record.getFileSource().getFilePointer()).getFirstOffset());
+            }
+        }
+    }
+
+    private static ParallelBAMScanner open(final SBIIndex sbiIndex, final int threads) {
+        return new ParallelBAMScanner(() -> {
+            try {
+                return new SeekableFileStream(BAM_FILE);
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }, sbiIndex, threads, SPLIT_SIZE, ValidationStringency.SILENT, DefaultSAMRecordFactory.getInstance(),
+                BlockGunzipper.getDefaultInflaterFactory());
+    }
+
+    private static List<String> scanInOrder(final ParallelBAMScanner scanner) {
+        return scanner.collect(Collectors.mapping(SAMRecord::getSAMString, Collectors.toList()));
+    }
+
+    @Test
+    public void testGuessedSplits() {
+        try (final ParallelBAMScanner scanner = open(null, 4)) {
+            Assert.assertTrue(scanner.getSplits().size() > 10, "Expected several splits but got " + scanner.getSplits().size());
+            for (int i = 1; i < scanner.getSplits().size(); ++i) {
+                final long start = scanner.getSplits().get(i).getChunkStart();
+                Assert.assertTrue(recordStarts.contains(start), "Split does not start at a record: " + start);
+                Assert.assertEquals(scanner.getSplits().get(i - 1).getChunkEnd(), start);
+            }
+            Assert.assertEquals(scanInOrder(scanner), records);
+        }
+    }
+
+    @Test
+    public void testSbiSplits() throws IOException {
+        final Path bam = Files.createTempFile("scan", ".bam");
+        final Path sbi = bam.resolveSibling(bam.getFileName() + SBIIndex.FILE_EXTENSION);
+        try {
+            Files.copy(BAM_FILE.toPath(), bam, StandardCopyOption.REPLACE_EXISTING);
+            BAMSBIIndexer.createIndex(bam, 100);
+            try (final ParallelBAMScanner scanner = open(SBIIndex.load(sbi), 3)) {
+                Assert.assertTrue(scanner.getSplits().size() > 10);
+                Assert.assertEquals(scanInOrder(scanner), records);
+            }
+            // The file system constructor picks up the SBI index next to the BAM file
+            try (final ParallelBAMScanner scanner = new ParallelBAMScanner(bam, 2)) {
+                Assert.assertEquals(scanner.stream().count(), records.size());
+            }
+        } finally {
+            Files.deleteIfExists(sbi);
+            Files.delete(bam);
+        }
+    }
+
+    @Test
+    public void testFlagCounts() {
+        final Map<Integer, Long> expected;
+        try (final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(BAM_FILE)) {
+            expected = reader.iterator().stream().collect(Collectors.groupingBy(SAMRecord::getFlags, Collectors.counting()));
+        } catch (final IOException e) {
+            throw new RuntimeIOException(e);
+        }
+        try (final ParallelBAMScanner scanner = open(null, 4)) {
+            Assert.assertEquals(scanner.collect(Collectors.groupingByConcurrent(SAMRecord::getFlags, Collectors.counting())), expected);
+
+            final AtomicLong count = new AtomicLong();
+            scanner.forEach(r -> count.incrementAndGet());
+            Assert.assertEquals(count.get(), records.size());
+        }
+    }
+
+    @Test
+    public void testGuessNextRecordStart() throws IOException {
+        try (final SeekableFileStream stream = new SeekableFileStream(BAM_FILE);
+             final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            final BAMSplitGuesser guesser = new BAMSplitGuesser(stream, reader.getFileHeader().getSequenceDictionary().size(),
+                    BlockGunzipper.getDefaultInflaterFactory());
+            for (long position = 10_000; position < BAM_FILE.length() - 100_000; position += 9_999) {
+                final long start = guesser.guessNextRecordStart(position);
+                Assert.assertTrue(recordStarts.contains(start), "Not a record start: " + start);
+                Assert.assertTrue(start >>> 16 >= position);
+            }
+            Assert.assertEquals(guesser.guessNextRecordStart(BAM_FILE.length()), -1);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.IOUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests that validating with several threads reports the same errors, in the same order, as validating with one.
+ */
+public class SamFileValidatorParallelTest extends HtsjdkTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools/ValidateSamFileTest");
+
+    @DataProvider(name = "files")
+    public Object[][] files() {
+        final List<Object[]> files = new ArrayList<>();
+        for (final String name : new String[]{"duplicated_reads.sam", "invalid_coord_sort_order.sam",
+                "invalid_queryname_sort_order.sam", "invalid_mate_cigar_string.sam",
+                "not_stored_qualities_more_than_100.sam", "mate_cigar_and_no_oqs.sam", "valid.sam", "truncated.bam"}) {
+            files.add(new Object[]{new File(TEST_DATA_DIR, name)});
+        }
+        files.add(new Object[]{new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam")});
+        return files.toArray(new Object[0][]);
+    }
+
+    private static String validate(final File file, final ReferenceSequenceFile reference, final int threads, final boolean verbose) throws IOException {
+        final StringWriter output = new StringWriter();
+        final SamFileValidator validator = new SamFileValidator(new PrintWriter(output), 8000).setThreads(threads);
+        try (final SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(file)) {
+            if (verbose) {
+                validator.setVerbose(true, 100_000);
+                validator.validateSamFileVerbose(reader, reference);
+            } else {
+                validator.validateSamFileSummary(reader, reference);
+            }
+        }
+        return output.toString();
+    }
+
+    @Test(dataProvider = "files")
+    public void testParallelMatchesSerial(final File file) throws IOException {
+        for (final boolean verbose : new boolean[]{false, true}) {
+            Assert.assertEquals(validate(file, null, 4, verbose), validate(file, null, 1, verbose));
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSerialWithReference() throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate, true, 100_000);
+        builder.setUseNmFlag(true);
+        final Random random = new Random(11);
+        for (int i = 0; i < 15_000; ++i) {
+            final int contig = random.nextInt(3);
+            final int start = 1 + random.nextInt(90_000);
+            if (i % 10 == 0) {
+                builder.addFrag("frag" + i, contig, start, random.nextBoolean());
+            } else {
+                builder.addPair("pair" + i, contig, start, start + random.nextInt(500));
+            }
+        }
+        // Introduce errors spread over several batches
+        int n = 0;
+        for (final SAMRecord record : builder.getRecords()) {
+            if (++n % 997 == 0) {
+                record.setAttribute(SAMTag.NM.name(), 1000);
+            } else if (n % 1499 == 0 && record.getReadPairedFlag()) {
+                record.setMateAlignmentStart(record.getMateAlignmentStart() + 1);
+            } else if (n % 2003 == 0) {
+                record.setAttribute(SAMTag.RG.name(), "missing");
+            }
+        }
+
+        final Path dir = Files.createTempDirectory("SamFileValidatorParallelTest");
+        try {
+            final Path fasta = dir.resolve("reference.fasta");
+            builder.writeRandomReference(fasta);
+            final File bam = dir.resolve("records.bam").toFile();
+            try (final SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(builder.getHeader(), true, bam)) {
+                builder.getRecords().forEach(writer::addAlignment);
+            }
+
+            for (final boolean verbose : new boolean[]{false, true}) {
+                final String expected;
+                try (final ReferenceSequenceFile reference = ReferenceSequenceFileFactory.getReferenceSequenceFile(fasta)) {
+                    expected = validate(bam, reference, 1, verbose);
+                }
+                try (final ReferenceSequenceFile reference = ReferenceSequenceFileFactory.getReferenceSequenceFile(fasta)) {
+                    Assert.assertEquals(validate(bam, reference, 3, verbose), expected);
+                }
+                if (!verbose) {
+                    Assert.assertTrue(expected.contains("INVALID_TAG_NM"), expected);
+                    Assert.assertTrue(expected.contains("MISMATCH_MATE_ALIGNMENT_START"), expected);
+                }
+            }
+        } finally {
+            IOUtil.recursiveDelete(dir);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidThreads() {
+        new SamFileValidator(new PrintWriter(new StringWriter()), 8000).setThreads(0);
+    }
+}
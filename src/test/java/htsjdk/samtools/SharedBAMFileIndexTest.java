@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SharedBAMFileIndexTest extends HtsjdkTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+    private static final File INDEX_FILE = new File(BAM_FILE.getPath() + ".bai");
+
+    private SAMSequenceDictionary dict;
+    private CachingBAMFileIndex expectedIndex;
+    private SharedBAMFileIndex index;
+
+    @BeforeClass
+    public void init() throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            dict = reader.getFileHeader().getSequenceDictionary();
+        }
+        expectedIndex = new CachingBAMFileIndex(INDEX_FILE, dict);
+        index = new SharedBAMFileIndex(INDEX_FILE.toPath());
+    }
+
+    @AfterClass
+    public void tearDown() {
+        expectedIndex.close();
+    }
+
+    @Test
+    public void testSpansMatchCachingIndex() {
+        final Random random = new Random(11);
+        for (int i = 0; i < 5000; ++i) {
+            final int reference = random.nextInt(dict.size() + 1);
+            final int length = reference < dict.size() ? dict.getSequence(reference).getSequenceLength() : 1_000_000;
+            final int start = random.nextInt(length + 1);
+            final int end = random.nextInt(10) == 0 ? -1 : start + random.nextInt(200_000);
+            Assert.assertEquals(spanString(index, reference, start, end), spanString(expectedIndex, reference, start, end),
+                    "reference " + reference + " " + start + "-" + end);
+        }
+    }
+
+    private static String spanString(final BAMIndex index, final int reference, final int start, final int end) {
+        final BAMFileSpan span = index.getSpanOverlapping(reference, start, end);
+        return span == null ? null : span.toString();
+    }
+
+    @Test
+    public void testMetaDataMatchesCachingIndex() {
+        Assert.assertEquals(index.getNumberOfReferences(), dict.size());
+        Assert.assertEquals(index.getStartOfLastLinearBin(), expectedIndex.getStartOfLastLinearBin());
+        Assert.assertEquals(index.getNoCoordinateCount(), expectedIndex.getNoCoordinateCount());
+        for (int i = 0; i < dict.size(); ++i) {
+            final BAMIndexMetaData expected = expectedIndex.getMetaData(i);
+            final BAMIndexMetaData actual = index.getMetaData(i);
+            Assert.assertEquals(actual.getAlignedRecordCount(), expected.getAlignedRecordCount());
+            Assert.assertEquals(actual.getUnalignedRecordCount(), expected.getUnalignedRecordCount());
+            Assert.assertEquals(actual.getFirstOffset(), expected.getFirstOffset());
+            Assert.assertEquals(actual.getLastOffset(), expected.getLastOffset());
+            Assert.assertEquals(index.getMinimumOffset(i, 1), expectedIndex.getQueryResults(i) == null ? 0
+                    : expectedIndex.getQueryResults(i).getLinearIndex().getMinimumOffset(1));
+        }
+        Assert.assertNull(index.getMetaData(dict.size()));
+    }
+
+    @Test
+    public void testInstancesAreShared() throws IOException {
+        SharedBAMFileIndex.clearCache();
+        final SharedBAMFileIndex first = SharedBAMFileIndex.getInstance(INDEX_FILE.toPath());
+        Assert.assertSame(SharedBAMFileIndex.getInstance(INDEX_FILE.getAbsoluteFile().toPath()), first);
+
+        // A changed index file is parsed again
+        final Path copy = Files.createTempFile("shared", ".bai");
+        try {
+            Files.copy(INDEX_FILE.toPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+            final SharedBAMFileIndex copyIndex = SharedBAMFileIndex.getInstance(copy);
+            Assert.assertNotSame(copyIndex, first);
+            Assert.assertSame(SharedBAMFileIndex.getInstance(copy), copyIndex);
+            Files.setLastModifiedTime(copy, FileTime.fromMillis(Files.getLastModifiedTime(copy).toMillis() - 10_000));
+            Assert.assertNotSame(SharedBAMFileIndex.getInstance(copy), copyIndex);
+
+            SharedBAMFileIndex.clearCache();
+            Assert.assertNotSame(SharedBAMFileIndex.getInstance(INDEX_FILE.toPath()), first);
+        } finally {
+            Files.delete(copy);
+        }
+    }
+
+    @Test
+    public void testBrowseableIndexMatchesCachingIndex() throws IOException {
+        final SamReaderFactory factory = SamReaderFactory.makeDefault().enable(SamReaderFactory.Option.SHARE_FILE_BASED_INDEXES);
+        try (final SamReader reader = factory.open(BAM_FILE)) {
+            Assert.assertTrue(reader.indexing().hasBrowseableIndex());
+            final BrowseableBAMIndex browseable = reader.indexing().getBrowseableIndex();
+            Assert.assertTrue(browseable instanceof SharedBAMFileIndex);
+
+            final Random random = new Random(17);
+            for (int i = 0; i < 200; ++i) {
+                final int reference = random.nextInt(dict.size());
+                final int start = 1 + random.nextInt(dict.getSequence(reference).getSequenceLength());
+                final int end = start + random.nextInt(100_000);
+                final BinList bins = browseable.getBinsOverlapping(reference, start, end);
+                Assert.assertEquals(bins.getBins(), expectedIndex.getBinsOverlapping(reference, start, end).getBins());
+                for (final Bin bin : bins) {
+                    Assert.assertEquals(browseable.getLevelForBin(bin), expectedIndex.getLevelForBin(bin));
+                    Assert.assertEquals(browseable.getFirstLocusInBin(bin), expectedIndex.getFirstLocusInBin(bin));
+                    Assert.assertEquals(browseable.getLastLocusInBin(bin), expectedIndex.getLastLocusInBin(bin));
+                    Assert.assertEquals(browseable.getSpanOverlapping(bin).toString(), expectedIndex.getSpanOverlapping(bin).toString(),
+                            "bin " + bin.getBinNumber() + " of reference " + reference);
+                }
+            }
+            for (int level = 0; level < AbstractBAMFileIndex.getNumIndexLevels(); ++level) {
+                Assert.assertEquals(browseable.getLevelSize(level), expectedIndex.getLevelSize(level));
+            }
+        }
+    }
+
+    @Test
+    public void testQueriesWithSharedIndexes() throws IOException {
+        final SamReaderFactory factory = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT);
+        try (final SamReader expected = factory.open(BAM_FILE);
+             final SamReader shared1 = factory.enable(SamReaderFactory.Option.SHARE_FILE_BASED_INDEXES).open(BAM_FILE);
+             final SamReader shared2 = factory.open(BAM_FILE)) {
+            Assert.assertTrue(shared1.indexing().getIndex() instanceof SharedBAMFileIndex);
+            Assert.assertSame(shared1.indexing().getIndex(), shared2.indexing().getIndex());
+
+            final Random random = new Random(13);
+            for (int i = 0; i < 50; ++i) {
+                final int reference = random.nextInt(dict.size());
+                final int start = 1 + random.nextInt(dict.getSequence(reference).getSequenceLength());
+                final QueryInterval[] intervals = {new QueryInterval(reference, start, start + random.nextInt(100_000))};
+                final List<String> expectedRecords = query(expected, intervals);
+                Assert.assertEquals(query(shared1, intervals), expectedRecords);
+                Assert.assertEquals(query(shared2, intervals), expectedRecords);
+            }
+        }
+    }
+
+    private static List<String> query(final SamReader reader, final QueryInterval[] intervals) {
+        final List<String> records = new ArrayList<>();
+        try (final CloseableIterator<SAMRecord> it = reader.query(intervals, false)) {
+            it.forEachRemaining(r -> records.add(r.getSAMString()));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.QueryInterval;
+import htsjdk.samtools.cram.ref.ReferenceContext;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class CRAISliceIndexTest extends HtsjdkTest {
+
+    private static CRAIEntry entry(final int sequenceId, final int start, final int span, final long containerOffset, final int sliceOffset) {
+        return new CRAIEntry(sequenceId, start, span, containerOffset, sliceOffset, 100);
+    }
+
+    @Test
+    public void testOverlappingSlices() {
+        final CRAIEntry a = entry(0, 1, 100, 1000, 10);
+        final CRAIEntry b = entry(0, 101, 100, 1000, 110);
+        final CRAIEntry c = entry(0, 201, 100, 2000, 10);
+        final CRAIEntry d = entry(1, 1, 100, 3000, 10);
+        final CRAISliceIndex index = new CRAISliceIndex(Arrays.asList(d, c, b, a));
+
+        Assert.assertEquals(index.getSlicesOverlapping(new QueryInterval[]{new QueryInterval(0, 50, 150)}), Arrays.asList(a, b));
+        Assert.assertEquals(index.getSlicesOverlapping(new QueryInterval[]{new QueryInterval(0, 100, 100)}), Collections.singletonList(a));
+        Assert.assertEquals(index.getSlicesOverlapping(new QueryInterval[]{new QueryInterval(0, 301, 400)}), Collections.emptyList());
+        Assert.assertEquals(index.getSlicesOverlapping(new QueryInterval[]{new QueryInterval(0, 150, 0)}), Arrays.asList(b, c));
+        Assert.assertEquals(index.getSlicesOverlapping(new QueryInterval[]{new QueryInterval(2, 1, 0)}), Collections.emptyList());
+        Assert.assertEquals(index.getSlicesOverlapping(new QueryInterval[]{
+                new QueryInterval(0, 1, 10), new QueryInterval(0, 250, 260), new QueryInterval(1, 1, 0)}), Arrays.asList(a, c, d));
+    }
+
+    @Test
+    public void testLongSliceIsFound() {
+        final CRAIEntry longSlice = entry(0, 1, 10_000, 1000, 10);
+        final CRAIEntry shortSlice = entry(0, 2, 10, 2000, 10);
+        final CRAIEntry later = entry(0, 500, 10, 3000, 10);
+        final CRAISliceIndex index = new CRAISliceIndex(Arrays.asList(longSlice, shortSlice, later));
+
+        Assert.assertEquals(index.getSlicesOverlapping(new QueryInterval[]{new QueryInterval(0, 5000, 5001)}), Collections.singletonList(longSlice));
+        Assert.assertEquals(index.getSlicesOverlapping(new QueryInterval[]{new QueryInterval(0, 505, 505)}), Arrays.asList(longSlice, later));
+    }
+
+    @Test
+    public void testMultipleReferenceSliceIsReturnedOnce() {
+        // a multiple reference slice has an entry per reference, all with the same location in the file
+        final CRAIEntry first = entry(0, 100, 100, 1000, 10);
+        final CRAIEntry second = entry(1, 1, 100, 1000, 10);
+        final CRAIEntry unmapped = entry(ReferenceContext.UNMAPPED_UNPLACED_ID, 0, 0, 1000, 10);
+        final CRAISliceIndex index = new CRAISliceIndex(Arrays.asList(first, second, unmapped));
+
+        final List<CRAIEntry> slices = index.getSlicesOverlapping(new QueryInterval[]{new QueryInterval(0, 1, 0), new QueryInterval(1, 1, 0)});
+        Assert.assertEquals(slices.size(), 1);
+        Assert.assertEquals(slices.get(0).getContainerStartByteOffset(), 1000);
+        Assert.assertEquals(index.getUnmappedSlices(), Collections.singletonList(unmapped));
+    }
+
+    @Test
+    public void testMatchesExhaustiveSearch() {
+        final Random random = new Random(11);
+        final List<CRAIEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            entries.add(entry(random.nextInt(3), 1 + random.nextInt(100_000), random.nextInt(2000), 1000L * i, 10));
+        }
+        final CRAISliceIndex index = new CRAISliceIndex(entries);
+
+        for (int i = 0; i < 200; i++) {
+            final int sequenceId = random.nextInt(3);
+            final int start = 1 + random.nextInt(100_000);
+            final int end = start + random.nextInt(5000);
+            final List<CRAIEntry> expected = new ArrayList<>();
+            for (final CRAIEntry e : entries) {
+                final int sliceEnd = e.getAlignmentStart() + Math.max(e.getAlignmentSpan(), 1) - 1;
+                if (e.getSequenceId() == sequenceId && e.getAlignmentStart() <= end && sliceEnd >= start) {
+                    expected.add(e);
+                }
+            }
+            Assert.assertEquals(index.getSlicesOverlapping(new QueryInterval[]{new QueryInterval(sequenceId, start, end)}), expected);
+        }
+    }
+}
@@ -1,13 +1,17 @@
 package htsjdk.samtools.cram.build;
 
 import htsjdk.HtsjdkTest;
+import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.cram.CRAMException;
 import htsjdk.samtools.cram.io.CountingInputStream;
 import htsjdk.samtools.cram.structure.CRAMStructureTestUtil;
 import htsjdk.samtools.cram.common.CramVersions;
 import htsjdk.samtools.cram.common.Version;
 import htsjdk.samtools.cram.ref.ReferenceContext;
 import htsjdk.samtools.cram.structure.*;
+import htsjdk.samtools.cram.structure.block.Block;
+import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -51,6 +55,36 @@ public class ContainerParserTest extends HtsjdkTest {
         }
     }
 
+    @Test
+    public void testProjectedRecords() {
+        final Container container = FACTORY.buildContainer(CRAMStructureTestUtil.getSingleRefRecords(3 * TEST_RECORD_COUNT, 0), 0);
+        Assert.assertEquals(container.getSlices().length, 3);
+
+        // replace the read name and base blocks with blocks which cannot be decompressed
+        for (final Slice slice : container.getSlices()) {
+            for (final DataSeries dataSeries : new DataSeries[]{DataSeries.RN_ReadName, DataSeries.BA_Base}) {
+                final int contentId = dataSeries.getExternalBlockContentId();
+                Assert.assertTrue(slice.external.containsKey(contentId));
+                slice.external.put(contentId, Block.createExternalBlock(BlockCompressionMethod.RAW, contentId, new byte[]{1, 2, 3}, 4));
+            }
+        }
+        Assert.assertThrows(CRAMException.class, () -> PARSER.getRecords(container, null, ValidationStringency.STRICT));
+
+        final int skippedSliceStart = TEST_RECORD_COUNT + 1;
+        final List<CramCompressionRecord> records = PARSER.getRecords(container, null, ValidationStringency.STRICT,
+                slice -> slice.alignmentStart != skippedSliceStart, EnumSet.of(CRAMRecordField.QUALITY_SCORES));
+        Assert.assertEquals(records.size(), 2 * TEST_RECORD_COUNT);
+        for (int i = 0; i < records.size(); i++) {
+            final CramCompressionRecord record = records.get(i);
+            Assert.assertEquals(record.alignmentStart, i < TEST_RECORD_COUNT ? i + 1 : i + TEST_RECORD_COUNT + 1);
+            Assert.assertEquals(record.readLength, READ_LENGTH_FOR_TEST_RECORDS);
+            Assert.assertNull(record.readName);
+            if (record.isSegmentUnmapped()) {
+                Assert.assertEquals(record.readBases, SAMRecord.NULL_SEQUENCE);
+            }
+        }
+    }
+
     @DataProvider(name = "getRecordsTestCases")
     private Object[][] getRecordsTestCases() {
         final int mappedSequenceId = 0;  // arbitrary
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.build;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.cram.structure.CramCompressionRecord;
+import htsjdk.samtools.cram.structure.ReadTag;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class Cram2SamRecordFactoryTest extends HtsjdkTest {
+
+    private static SAMFileHeader createHeader() {
+        final SAMFileHeader header = new SAMFileHeader();
+        header.addReadGroup(new SAMReadGroupRecord("rg0"));
+        header.addReadGroup(new SAMReadGroupRecord("rg1"));
+        return header;
+    }
+
+    /** Creates a record whose tags are held in encoded form, as they are when decoded from a CRAM stream. */
+    private static CramCompressionRecord createCramRecord(final int readGroupID, final ReadTag... tags) {
+        final CramCompressionRecord cramRecord = new CramCompressionRecord();
+        cramRecord.readName = "read1";
+        cramRecord.setSegmentUnmapped(true);
+        cramRecord.sequenceId = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+        cramRecord.readLength = 4;
+        cramRecord.readBases = "ACGT".getBytes();
+        cramRecord.qualityScores = new byte[]{10, 20, 30, 40};
+        cramRecord.readGroupID = readGroupID;
+        if (tags.length > 0) {
+            cramRecord.tags = new ReadTag[tags.length];
+            for (int i = 0; i < tags.length; i++) {
+                cramRecord.tags[i] = new ReadTag(tags[i].keyType3BytesAsInt, tags[i].getValueAsByteArray(),
+                        ValidationStringency.STRICT);
+            }
+        }
+        return cramRecord;
+    }
+
+    private static SAMRecord createExpectedRecord(final SAMFileHeader header) {
+        final SAMRecord expected = new SAMRecord(header);
+        expected.setReadName("read1");
+        expected.setReadUnmappedFlag(true);
+        expected.setReferenceIndex(SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX);
+        expected.setMateReferenceIndex(SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX);
+        expected.setMappingQuality(SAMRecord.NO_MAPPING_QUALITY);
+        expected.setCigarString(SAMRecord.NO_ALIGNMENT_CIGAR);
+        expected.setReadBases("ACGT".getBytes());
+        expected.setBaseQualities(new byte[]{10, 20, 30, 40});
+        return expected;
+    }
+
+    @Test
+    public void testTagsAreRestored() {
+        final SAMFileHeader header = createHeader();
+        final CramCompressionRecord cramRecord = createCramRecord(1,
+                ReadTag.deriveTypeFromValue("NM", 3),
+                ReadTag.deriveTypeFromValue("XS", "some text"),
+                ReadTag.deriveTypeFromValue("AS", -70000),
+                ReadTag.deriveTypeFromValue("XF", 1.5f),
+                ReadTag.deriveTypeFromValue("XA", 'c'),
+                ReadTag.deriveTypeFromValue("XB", new short[]{1, -2, 3}));
+
+        final SAMRecord samRecord = new Cram2SamRecordFactory(header).create(cramRecord);
+
+        final SAMRecord expected = createExpectedRecord(header);
+        expected.setAttribute("NM", 3);
+        expected.setAttribute("XS", "some text");
+        expected.setAttribute("AS", -70000);
+        expected.setAttribute("XF", 1.5f);
+        expected.setAttribute("XA", 'c');
+        expected.setAttribute("XB", new short[]{1, -2, 3});
+        expected.setAttribute("RG", "rg1");
+
+        Assert.assertEquals(samRecord.getSAMString(), expected.getSAMString());
+        Assert.assertEquals(samRecord.getIntegerAttribute("NM").intValue(), 3);
+        Assert.assertEquals(samRecord.getReadGroup().getId(), "rg1");
+        Assert.assertEquals(samRecord, expected);
+        Assert.assertEquals(samRecord.hashCode(), expected.hashCode());
+    }
+
+    @Test
+    public void testRecordWithoutTags() {
+        final SAMFileHeader header = createHeader();
+        final CramCompressionRecord cramRecord = createCramRecord(-1);
+
+        final SAMRecord samRecord = new Cram2SamRecordFactory(header).create(cramRecord);
+
+        Assert.assertNull(samRecord.getAttribute("RG"));
+        Assert.assertTrue(samRecord.getAttributes().isEmpty());
+        Assert.assertEquals(samRecord, createExpectedRecord(header));
+    }
+
+    @Test
+    public void testReadGroupReplacesStoredTag() {
+        final SAMFileHeader header = createHeader();
+        final CramCompressionRecord cramRecord = createCramRecord(0, ReadTag.deriveTypeFromValue("RG", "rg1"));
+
+        final SAMRecord samRecord = new Cram2SamRecordFactory(header).create(cramRecord);
+
+        Assert.assertEquals(samRecord.getAttribute("RG"), "rg0");
+        Assert.assertEquals(samRecord.getAttributes().size(), 1);
+    }
+
+    @Test
+    public void testModifyTagsBeforeAccess() {
+        final SAMFileHeader header = createHeader();
+        final SAMRecord setRecord = new Cram2SamRecordFactory(header).create(createCramRecord(-1,
+                ReadTag.deriveTypeFromValue("NM", 3), ReadTag.deriveTypeFromValue("MD", "4")));
+        setRecord.setAttribute("NM", 1);
+        setRecord.setAttribute("MD", null);
+        Assert.assertEquals(setRecord.getAttribute("NM"), 1);
+        Assert.assertNull(setRecord.getAttribute("MD"));
+        Assert.assertEquals(setRecord.getAttributes().size(), 1);
+
+        final SAMRecord clearedRecord = new Cram2SamRecordFactory(header).create(createCramRecord(0,
+                ReadTag.deriveTypeFromValue("NM", 3)));
+        clearedRecord.clearAttributes();
+        Assert.assertTrue(clearedRecord.getAttributes().isEmpty());
+        Assert.assertEquals(clearedRecord, createExpectedRecord(header));
+    }
+}
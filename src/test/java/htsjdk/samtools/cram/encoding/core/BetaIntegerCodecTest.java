@@ -2,6 +2,7 @@ package htsjdk.samtools.cram.encoding.core;
 
 import htsjdk.HtsjdkTest;
 import htsjdk.samtools.cram.encoding.CRAMCodec;
+import htsjdk.samtools.cram.encoding.CRAMIntCodec;
 import htsjdk.samtools.cram.io.BitOutputStream;
 import htsjdk.samtools.cram.io.DefaultBitInputStream;
 import htsjdk.samtools.cram.io.DefaultBitOutputStream;
@@ -57,6 +58,50 @@ public class BetaIntegerCodecTest extends HtsjdkTest {
         testCodec(offset, bitsPerValue, values);
     }
 
+    // the unboxed methods write and read the same bits as the boxed ones
+
+    @Test(dataProvider = "basicTest")
+    public void primitiveTest(final int bitsPerValue, final int offset, final int[] values) throws IOException {
+        byte[] boxed;
+        try (final ByteArrayOutputStream os = new ByteArrayOutputStream();
+             final BitOutputStream bos = new DefaultBitOutputStream(os)) {
+
+            final CRAMCodec<Integer> writeCodec = new BetaIntegerCodec(null, bos, offset, bitsPerValue);
+            for (final int value : values) {
+                writeCodec.write(value);
+            }
+
+            bos.flush();
+            boxed = os.toByteArray();
+        }
+
+        byte[] written;
+        try (final ByteArrayOutputStream os = new ByteArrayOutputStream();
+             final BitOutputStream bos = new DefaultBitOutputStream(os)) {
+
+            final CRAMIntCodec writeCodec = new BetaIntegerCodec(null, bos, offset, bitsPerValue);
+            for (final int value : values) {
+                writeCodec.writeInt(value);
+            }
+
+            bos.flush();
+            written = os.toByteArray();
+        }
+        Assert.assertEquals(written, boxed);
+
+        final int[] actual = new int[values.length];
+        try (final InputStream is = new ByteArrayInputStream(written);
+             final DefaultBitInputStream dbis = new DefaultBitInputStream(is)) {
+
+            final CRAMIntCodec readCodec = new BetaIntegerCodec(dbis, null, offset, bitsPerValue);
+            for (int i = 0; i < values.length; i++) {
+                actual[i] = readCodec.readInt();
+            }
+        }
+
+        Assert.assertEquals(actual, values);
+    }
+
     // test that values fit into N bits without offsets
 
     @DataProvider(name = "basicTestNoOffset")
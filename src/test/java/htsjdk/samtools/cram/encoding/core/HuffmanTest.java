@@ -4,6 +4,7 @@ import htsjdk.HtsjdkTest;
 import htsjdk.samtools.cram.encoding.core.huffmanUtils.HuffmanByteHelper;
 import htsjdk.samtools.cram.encoding.core.huffmanUtils.HuffmanIntHelper;
 import htsjdk.samtools.cram.encoding.core.huffmanUtils.HuffmanParamsCalculator;
+import htsjdk.samtools.cram.io.ByteArrayBitInputStream;
 import htsjdk.samtools.cram.io.DefaultBitInputStream;
 import htsjdk.samtools.cram.io.DefaultBitOutputStream;
 import htsjdk.samtools.cram.structure.ReadTag;
@@ -13,6 +14,7 @@ import org.testng.annotations.Test;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Random;
 
 /**
  * Created by vadim on 22/04/2015.
@@ -106,4 +108,42 @@ public class HuffmanTest extends HtsjdkTest {
             }
         }
     }
+
+    @Test
+    public void testTableDecodingMatchesBitwiseDecoding() throws IOException {
+        // doubling frequencies give code lengths from 1 to 19 bits, exercising lookups past the primary table
+        final HuffmanParamsCalculator cal = new HuffmanParamsCalculator();
+        for (int i = 0; i < 20; i++) {
+            cal.add(1000 + i, 1 << i);
+        }
+        cal.calculate();
+
+        final HuffmanIntHelper helper = new HuffmanIntHelper(cal.values(), cal.bitLens());
+        final Random random = new Random(42);
+        final int[] values = new int[100000];
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (final DefaultBitOutputStream bos = new DefaultBitOutputStream(baos)) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = cal.values()[random.nextInt(cal.values().length)];
+                helper.write(bos, values[i]);
+            }
+        }
+
+        final DefaultBitInputStream bitwise = new DefaultBitInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        final ByteArrayBitInputStream table = new ByteArrayBitInputStream(baos.toByteArray());
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(helper.read(bitwise), values[i]);
+            Assert.assertEquals(helper.read(table), values[i]);
+        }
+    }
+
+    @Test
+    public void testTableDecodingSingleSymbol() {
+        // a single symbol has a zero length code and consumes no bits
+        final HuffmanByteHelper helper = new HuffmanByteHelper(new byte[]{'A'}, new int[]{0});
+        final ByteArrayBitInputStream bis = new ByteArrayBitInputStream(new byte[0]);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(helper.read(bis), (byte) 'A');
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package htsjdk.samtools.cram.encoding.external;
 
 import htsjdk.HtsjdkTest;
+import htsjdk.samtools.cram.encoding.CRAMByteCodec;
 import htsjdk.samtools.cram.encoding.CRAMCodec;
 import htsjdk.samtools.cram.io.IOTestCases;
 import org.testng.Assert;
@@ -8,6 +9,7 @@ import org.testng.annotations.Test;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class ExternalByteCodecTest extends HtsjdkTest {
@@ -37,6 +39,49 @@ public class ExternalByteCodecTest extends HtsjdkTest {
         Assert.assertEquals(actual, values);
     }
 
+    @Test(dataProvider = "testByteLists", dataProviderClass = IOTestCases.class)
+    public void primitiveCodecTest(final List<Byte> values) throws IOException {
+        final byte[] expected = new byte[values.size()];
+        byte[] written;
+        try (final ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+            final CRAMByteCodec writeCodec = new ExternalByteCodec(null, os);
+
+            for (int i = 0; i < values.size(); i++) {
+                expected[i] = values.get(i);
+                writeCodec.writeByte(expected[i]);
+            }
+            os.flush();
+            written = os.toByteArray();
+        }
+
+        final byte[] actual = new byte[values.size() + 2];
+        try (final ByteArrayInputStream is = new ByteArrayInputStream(written)) {
+            final CRAMByteCodec readCodec = new ExternalByteCodec(is, null);
+
+            final int half = values.size() / 2;
+            for (int i = 0; i < half; i++) {
+                actual[i + 1] = readCodec.readByte();
+            }
+            readCodec.readByteArray(actual, half + 1, values.size() - half);
+        }
+
+        Assert.assertEquals(Arrays.copyOfRange(actual, 1, values.size() + 1), expected);
+        Assert.assertEquals(actual[0], 0);
+        Assert.assertEquals(actual[values.size() + 1], 0);
+    }
+
+    @Test
+    public void readArrayPastEnd() throws IOException {
+        try (final ByteArrayInputStream is = new ByteArrayInputStream(new byte[]{1, 2})) {
+            final CRAMByteCodec readCodec = new ExternalByteCodec(is, null);
+
+            final byte[] actual = new byte[4];
+            readCodec.readByteArray(actual, 0, 3);
+            Assert.assertEquals(actual, new byte[]{1, 2, -1, 0});
+            Assert.assertEquals(readCodec.readByte(), -1);
+        }
+    }
+
     @Test(expectedExceptions = RuntimeException.class)
     public void readWithLength() throws IOException {
         try (final ByteArrayInputStream is = new ByteArrayInputStream(new byte[0])) {
@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.io;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.RuntimeEOFException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class ByteArrayBitInputStreamTest extends HtsjdkTest {
+
+    @Test
+    public void testMatchesDefaultBitInputStream() {
+        final Random random = new Random(11);
+        final byte[] data = new byte[10000];
+        random.nextBytes(data);
+        // long runs of 0s and 1s for the unary reads
+        for (int i = 1000; i < 1100; i++) {
+            data[i] = 0;
+            data[i + 200] = -1;
+        }
+
+        final DefaultBitInputStream expected = new DefaultBitInputStream(new ByteArrayInputStream(data));
+        final ByteArrayBitInputStream actual = new ByteArrayBitInputStream(data);
+        long remaining = 8L * data.length;
+        while (remaining > 200 * 8) {
+            Assert.assertEquals(actual.available(), remaining);
+            switch (random.nextInt(5)) {
+                case 0:
+                    Assert.assertEquals(actual.readBit(), expected.readBit());
+                    remaining--;
+                    break;
+                case 1: {
+                    final int n = random.nextInt(33);
+                    Assert.assertEquals(actual.readBits(n), expected.readBits(n));
+                    remaining -= n;
+                    break;
+                }
+                case 2: {
+                    final int n = random.nextInt(65);
+                    Assert.assertEquals(actual.readLongBits(n), expected.readLongBits(n));
+                    remaining -= n;
+                    break;
+                }
+                case 3: {
+                    final boolean bit = random.nextBoolean();
+                    final int run = expected.readUnary(bit);
+                    Assert.assertEquals(actual.readUnary(bit), run);
+                    remaining -= run + 1;
+                    break;
+                }
+                default: {
+                    final int n = random.nextInt(33);
+                    final int peeked = actual.peekBits(n);
+                    Assert.assertEquals(actual.readBits(n), peeked);
+                    Assert.assertEquals(peeked, expected.readBits(n));
+                    remaining -= n;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testByteBuffer() {
+        final byte[] data = {(byte) 0xFF, 0x12, 0x34, 0x56};
+        final ByteBuffer heap = ByteBuffer.wrap(data);
+        heap.get();
+        final ByteBuffer direct = ByteBuffer.allocateDirect(3);
+        direct.put(data, 1, 3).flip();
+
+        for (final ByteBuffer buffer : new ByteBuffer[]{heap.slice(), heap, direct}) {
+            final ByteArrayBitInputStream bis = new ByteArrayBitInputStream(buffer);
+            Assert.assertEquals(bis.available(), 24);
+            Assert.assertEquals(bis.readBits(24), 0x123456);
+        }
+        Assert.assertEquals(heap.position(), 1);
+    }
+
+    @Test
+    public void testPeekPastEnd() {
+        final ByteArrayBitInputStream bis = new ByteArrayBitInputStream(new byte[]{(byte) 0xA5});
+        Assert.assertEquals(bis.peekBits(12), 0xA50);
+        bis.skipBits(8);
+        Assert.assertEquals(bis.available(), 0);
+        Assert.assertEquals(bis.peekBits(4), 0);
+    }
+
+    @Test(expectedExceptions = RuntimeEOFException.class)
+    public void testReadBitsPastEnd() {
+        final ByteArrayBitInputStream bis = new ByteArrayBitInputStream(new byte[]{1, 2});
+        bis.readBits(10);
+        bis.readBits(7);
+    }
+
+    @Test(expectedExceptions = RuntimeEOFException.class)
+    public void testReadBitPastEnd() {
+        final ByteArrayBitInputStream bis = new ByteArrayBitInputStream(new byte[]{1});
+        bis.readBits(8);
+        bis.readBit();
+    }
+
+    @Test(expectedExceptions = RuntimeEOFException.class)
+    public void testUnterminatedUnary() {
+        new ByteArrayBitInputStream(new byte[]{0, 0}).readUnary(false);
+    }
+
+    @Test(expectedExceptions = RuntimeEOFException.class)
+    public void testSkipPastEnd() {
+        final ByteArrayBitInputStream bis = new ByteArrayBitInputStream(new byte[]{1});
+        bis.peekBits(10);
+        bis.skipBits(10);
+    }
+}
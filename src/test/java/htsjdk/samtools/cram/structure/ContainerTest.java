@@ -5,11 +5,16 @@ import htsjdk.samtools.ValidationStringency;
 import htsjdk.samtools.cram.CRAMException;
 import htsjdk.samtools.cram.build.CompressionHeaderFactory;
 import htsjdk.samtools.cram.build.ContainerFactory;
+import htsjdk.samtools.cram.build.ContainerParser;
+import htsjdk.samtools.cram.common.CramVersions;
 import htsjdk.samtools.cram.ref.ReferenceContext;
+import htsjdk.samtools.seekablestream.ByteArraySeekableStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -165,6 +170,53 @@ public class ContainerTest extends HtsjdkTest {
 
     // single slice
 
+    @Test
+    public void readContainerSlicesTest() {
+        final int recordsPerSlice = 100;
+        final long containerByteOffset = 1000;
+        final ContainerFactory factory = new ContainerFactory(CRAMStructureTestUtil.getSAMFileHeaderForTests(), recordsPerSlice);
+        final Container written = factory.buildContainer(CRAMStructureTestUtil.getSingleRefRecords(4 * recordsPerSlice, 0), containerByteOffset);
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(new byte[(int) containerByteOffset], 0, (int) containerByteOffset);
+        ContainerIO.writeContainer(CramVersions.CRAM_v3, written, baos);
+        Assert.assertEquals(written.landmarks.length, 4);
+
+        final SeekableStream stream = new ByteArraySeekableStream(baos.toByteArray());
+        final int[] sliceOffsets = {written.landmarks[1], written.landmarks[3]};
+        final Container container = ContainerIO.readContainerSlices(CramVersions.CRAM_v3, stream, containerByteOffset, sliceOffsets);
+
+        Assert.assertEquals(container.byteOffset, containerByteOffset);
+        Assert.assertEquals(container.getSlices().length, 2);
+        for (int i = 0; i < 2; i++) {
+            final Slice slice = container.getSlices()[i];
+            final Slice expected = written.getSlices()[2 * i + 1];
+            Assert.assertEquals(slice.index, 2 * i + 1);
+            Assert.assertEquals(slice.containerByteOffset, containerByteOffset);
+            Assert.assertEquals(slice.byteOffsetFromCompressionHeaderStart, expected.byteOffsetFromCompressionHeaderStart);
+            Assert.assertEquals(slice.byteSize, expected.byteSize);
+            Assert.assertEquals(slice.alignmentStart, expected.alignmentStart);
+            Assert.assertEquals(slice.nofRecords, recordsPerSlice);
+        }
+
+        final List<CramCompressionRecord> records = new ContainerParser(CRAMStructureTestUtil.getSAMFileHeaderForTests())
+                .getRecords(container, null, ValidationStringency.SILENT);
+        Assert.assertEquals(records.size(), 2 * recordsPerSlice);
+        Assert.assertEquals(records.get(0).alignmentStart, recordsPerSlice + 1);
+        Assert.assertEquals(records.get(recordsPerSlice).alignmentStart, 3 * recordsPerSlice + 1);
+    }
+
+    @Test(expectedExceptions = CRAMException.class)
+    public void readContainerSlicesNotALandmarkTest() {
+        final ContainerFactory factory = new ContainerFactory(CRAMStructureTestUtil.getSAMFileHeaderForTests(), 10);
+        final Container written = factory.buildContainer(CRAMStructureTestUtil.getSingleRefRecords(20, 0), 0);
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ContainerIO.writeContainer(CramVersions.CRAM_v3, written, baos);
+
+        ContainerIO.readContainerSlices(CramVersions.CRAM_v3, new ByteArraySeekableStream(baos.toByteArray()), 0,
+                new int[]{written.landmarks[1] + 1});
+    }
+
     @Test
     public static void distributeIndexingParametersToSlicesOneSlice() {
         // this container starts 100,000 bytes into the CRAM stream
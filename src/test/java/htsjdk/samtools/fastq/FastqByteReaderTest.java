@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.fastq;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+public class FastqByteReaderTest extends HtsjdkTest {
+    private static final File FASTQ = new File("src/test/resources/htsjdk/samtools/util/QualityEncodingDetectorTest/5k-30BB2AAXX.3.aligned.sam.fastq");
+
+    private static List<FastqRecord> readWithFastqReader(final File file) {
+        final List<FastqRecord> records = new ArrayList<>();
+        try (final FastqReader reader = new FastqReader(file)) {
+            reader.forEach(records::add);
+        }
+        return records;
+    }
+
+    private static List<FastqRecord> readAll(final FastqByteReader reader) {
+        final List<FastqRecord> records = new ArrayList<>();
+        final FastqRecordView view = new FastqRecordView();
+        while (reader.next(view)) {
+            records.add(view.toFastqRecord());
+        }
+        reader.close();
+        return records;
+    }
+
+    private static FastqByteReader reader(final String fastq) {
+        return new FastqByteReader(new ByteArrayInputStream(fastq.getBytes(StandardCharsets.US_ASCII)), "test", 16);
+    }
+
+    @DataProvider(name = "bufferSizes")
+    public Object[][] bufferSizes() {
+        return new Object[][]{{1}, {100}, {4096}, {FastqByteReader.DEFAULT_BUFFER_SIZE}};
+    }
+
+    @Test(dataProvider = "bufferSizes")
+    public void testMatchesFastqReader(final int bufferSize) throws IOException {
+        final List<FastqRecord> expected = readWithFastqReader(FASTQ);
+        Assert.assertFalse(expected.isEmpty());
+        final FastqByteReader reader = new FastqByteReader(Files.newInputStream(FASTQ.toPath()), FASTQ.getPath(), bufferSize);
+        Assert.assertEquals(readAll(reader), expected);
+        Assert.assertEquals(reader.getLineNumber(), 4L * expected.size() + 1);
+    }
+
+    @Test
+    public void testViewAccessors() {
+        final FastqByteReader reader = reader("@name\nACGTN\n+qual\n!#+5?\n");
+        final FastqRecordView view = new FastqRecordView();
+        Assert.assertTrue(reader.next(view));
+        Assert.assertEquals(view.getReadName(), "name");
+        Assert.assertEquals(view.getReadLength(), 5);
+        Assert.assertEquals(view.copyReadBases(), "ACGTN".getBytes(StandardCharsets.US_ASCII));
+        Assert.assertEquals(view.copyBaseQualities(), new byte[]{0, 2, 10, 20, 30});
+        Assert.assertEquals(view.toFastqRecord(), new FastqRecord("name", "ACGTN", "qual", "!#+5?"));
+        Assert.assertFalse(reader.next(view));
+    }
+
+    @Test
+    public void testLineTerminators() {
+        final List<FastqRecord> expected = new ArrayList<>();
+        expected.add(new FastqRecord("a", "AC", null, "##"));
+        expected.add(new FastqRecord("b", "G", "b", "#"));
+        Assert.assertEquals(readAll(reader("@a\r\nAC\r\n+\r\n##\r\n@b\nG\n+b\n#")), expected);
+        Assert.assertEquals(readAll(reader("")), new ArrayList<>());
+    }
+
+    @DataProvider(name = "malformed")
+    public Object[][] malformed() {
+        return new Object[][]{
+                {"@a\nAC\n+\n"},
+                {"@a\nAC\n"},
+                {"a\nAC\n+\n##\n"},
+                {"@a\nAC\n-\n##\n"},
+                {"@a\nAC\n+\n#\n"},
+                {"@a\n\n+\n\n"},
+                {"\n@a\nAC\n+\n##\n"},
+                {"@a\nAC\n+\n##\n\n"},
+        };
+    }
+
+    @Test(dataProvider = "malformed", expectedExceptions = SAMException.class)
+    public void testMalformed(final String fastq) {
+        readAll(reader(fastq));
+    }
+
+    private static byte[] writeWithBasicFastqWriter(final List<FastqRecord> records) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final BasicFastqWriter writer = new BasicFastqWriter(new PrintStream(out))) {
+            records.forEach(writer::write);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testWriterMatchesBasicFastqWriter() throws IOException {
+        final List<FastqRecord> records = readWithFastqReader(FASTQ);
+        records.add(new FastqRecord(null, "", null, ""));
+        final byte[] expected = writeWithBasicFastqWriter(records);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final FastqByteWriter writer = new FastqByteWriter(out, null)) {
+            records.forEach(writer::write);
+        }
+        Assert.assertEquals(out.toByteArray(), expected);
+
+        // Copying views gives the same output
+        final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        try (final FastqByteReader reader = new FastqByteReader(new ByteArrayInputStream(expected), null, 64);
+             final FastqByteWriter writer = new FastqByteWriter(copy, null)) {
+            final FastqRecordView view = new FastqRecordView();
+            while (reader.next(view)) {
+                writer.write(view);
+            }
+        } catch (final SAMException e) {
+            // The empty record cannot be read back
+            Assert.assertTrue(e.getMessage().contains("Missing"), e.getMessage());
+        }
+        Assert.assertEquals(copy.toByteArray(), writeWithBasicFastqWriter(records.subList(0, records.size() - 1)));
+    }
+
+    @Test
+    public void testCompressedFiles() throws IOException {
+        final List<FastqRecord> records = readWithFastqReader(FASTQ);
+        final File dir = Files.createTempDirectory("fastq").toFile();
+        try {
+            // BGZF written with several threads
+            final FastqWriterFactory factory = new FastqWriterFactory();
+            factory.setUseAsyncIo(false);
+            factory.setCompressionThreads(3);
+            final File bgzf = new File(dir, "test.fastq.gz");
+            try (final FastqWriter writer = factory.newWriter(bgzf)) {
+                records.forEach(writer::write);
+            }
+            Assert.assertTrue(BlockCompressedInputStream.isValidFile(new BufferedInputStream(Files.newInputStream(bgzf.toPath()))));
+            Assert.assertEquals(readWithFastqReader(bgzf), records);
+            Assert.assertEquals(readAll(FastqByteReader.open(bgzf.toPath(), 4)), records);
+
+            // Plain gzip
+            final File gzip = new File(dir, "plain.fastq.gz");
+            try (final OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip.toPath()))) {
+                Files.copy(FASTQ.toPath(), out);
+            }
+            Assert.assertEquals(readAll(FastqByteReader.open(gzip.toPath(), 2)), records);
+
+            // Uncompressed
+            Assert.assertEquals(readAll(FastqByteReader.open(FASTQ.toPath(), 1)), records);
+        } finally {
+            for (final File file : dir.listFiles()) {
+                Assert.assertTrue(file.delete());
+            }
+            Assert.assertTrue(dir.delete());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.liftover;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.Interval;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Random;
+
+public class LiftOverIndexTest extends HtsjdkTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools/liftover");
+    private static final File CHAIN_FILE = new File(TEST_DATA_DIR, "hg18ToHg19.over.chain");
+
+    private LiftOver liftOver;
+    private LiftOverIndex index;
+
+    @BeforeClass
+    public void init() {
+        liftOver = new LiftOver(CHAIN_FILE);
+        liftOver.setShouldLogFailedIntervalsBelowThreshold(false);
+        index = liftOver.compileIndex();
+    }
+
+    @DataProvider(name = "minMatches")
+    public Object[][] minMatches() {
+        return new Object[][]{{0.0}, {0.5}, {0.95}, {1.0}};
+    }
+
+    @Test(dataProvider = "minMatches")
+    public void testMatchesLiftOver(final double minMatch) {
+        final Random random = new Random(42);
+        final String[] contigs = {"chr1", "chr2", "chr3", "chr7", "chr17", "chrX", "chrY", "chr6_random", "chrNotThere"};
+        for (int i = 0; i < 20000; ++i) {
+            final String contig = contigs[random.nextInt(contigs.length)];
+            final int start = 1 + random.nextInt(150_000_000);
+            final int length = random.nextInt(4) == 0 ? 1 : 1 + random.nextInt(random.nextBoolean() ? 100 : 100_000);
+            final Interval in = new Interval(contig, start, start + length - 1, random.nextBoolean(), "test" + i);
+
+            final Interval expected = liftOver.liftOver(in, minMatch);
+            final Interval actual = index.liftOver(in, minMatch);
+            if (expected == null) {
+                Assert.assertNull(actual, in.toString());
+            } else {
+                Assert.assertNotNull(actual, in.toString());
+                Assert.assertTrue(expected.equalsWithStrandAndName(actual), in + ": " + expected + " != " + actual);
+            }
+        }
+    }
+
+    @Test
+    public void testFileConstructor() {
+        final Interval in = new Interval("chr1", 16776377, 16776452);
+        Assert.assertEquals(new LiftOverIndex(CHAIN_FILE).liftOver(in, LiftOver.DEFAULT_LIFTOVER_MINMATCH),
+                new Interval("chr1", 16903790, 16903865));
+    }
+
+    @Test
+    public void testBatch() {
+        final int n = 1000;
+        final int[] starts = new int[n + 2];
+        final int[] ends = new int[n + 2];
+        for (int i = 0; i < n + 2; ++i) {
+            starts[i] = 1_000_000 + i * 10_000;
+            ends[i] = starts[i] + (i % 7) * 50;
+        }
+        final LiftOverIndex.LiftedIntervals results = new LiftOverIndex.LiftedIntervals(n);
+        final int lifted = index.liftOver("chr4", starts, ends, 1, n, 0.95, results);
+
+        int expectedLifted = 0;
+        for (int i = 0; i < n; ++i) {
+            final Interval expected = liftOver.liftOver(new Interval("chr4", starts[i + 1], ends[i + 1]), 0.95);
+            Assert.assertEquals(results.isLifted(i), expected != null);
+            if (expected != null) {
+                ++expectedLifted;
+                Assert.assertEquals(index.getToSequenceName(results.getContigIndex(i)), expected.getContig());
+                Assert.assertEquals(results.getStart(i), expected.getStart());
+                Assert.assertEquals(results.getEnd(i), expected.getEnd());
+                Assert.assertEquals(results.isNegativeStrand(i), expected.isNegativeStrand());
+            } else {
+                Assert.assertEquals(results.getContigIndex(i), -1);
+            }
+        }
+        Assert.assertEquals(lifted, expectedLifted);
+        Assert.assertTrue(lifted > 0);
+    }
+
+    @Test
+    public void testPositions() {
+        final int[] positions = new int[500];
+        for (int i = 0; i < positions.length; ++i) {
+            positions[i] = 5_000_000 + i * 7919;
+        }
+        final LiftOverIndex.LiftedIntervals results = new LiftOverIndex.LiftedIntervals(positions.length);
+        index.liftOverPositions("chr9", positions, 0, positions.length, results);
+        for (int i = 0; i < positions.length; ++i) {
+            final Interval expected = liftOver.liftOver(new Interval("chr9", positions[i], positions[i]), 1.0);
+            if (expected == null) {
+                Assert.assertFalse(results.isLifted(i));
+            } else {
+                Assert.assertEquals(results.getStart(i), expected.getStart());
+                Assert.assertEquals(results.getEnd(i), expected.getEnd());
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownContig() {
+        final LiftOverIndex.LiftedIntervals results = new LiftOverIndex.LiftedIntervals(1);
+        Assert.assertFalse(index.liftOver("chrNotThere", 100, 200, 0.95, results, 0));
+        Assert.assertEquals(results.getContigIndex(0), -1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testZeroLength() {
+        index.liftOver("chr1", 100, 99, 0.95, new LiftOverIndex.LiftedIntervals(1), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testResultsTooSmall() {
+        index.liftOver("chr1", new int[10], new int[10], 0, 10, 0.95, new LiftOverIndex.LiftedIntervals(5));
+    }
+}
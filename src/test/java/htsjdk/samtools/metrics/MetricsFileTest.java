@@ -37,6 +37,9 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Date;
 
 /**
@@ -197,6 +200,89 @@ public class MetricsFileTest extends HtsjdkTest {
         Assert.assertFalse(MetricsFile.areMetricsAndHistogramsEqual(file1, fileModifiedMet));
     }
 
+    @Test
+    public void testStreamingWriterAndReader() throws IOException {
+        final MetricsFile<FloatingPointMetric, Integer> file = new MetricsFile<>();
+        final StringHeader header = new StringHeader();
+        header.setValue("Streamed");
+        file.addHeader(header);
+        for (int i = 0; i < 100; ++i) {
+            final FloatingPointMetric metric = new FloatingPointMetric();
+            metric.DOUBLE_PRIMITIVE = i / 3.0;
+            metric.DOUBLE_PROP = i % 2 == 0 ? null : i * 2.0;
+            metric.FLOAT_PRIMITIVE = i;
+            metric.FLOAT_PROP = i + 0.5f;
+            file.addMetric(metric);
+        }
+        final Histogram<Integer> histogram = new Histogram<>("X", "COUNT");
+        histogram.increment(1, 10);
+        histogram.increment(5);
+        file.addHistogram(histogram);
+
+        final StringWriter expected = new StringWriter();
+        file.write(expected);
+
+        final StringWriter streamed = new StringWriter();
+        try (final MetricsFileWriter<FloatingPointMetric, Integer> writer =
+                     new MetricsFileWriter<>(streamed, file.getHeaders())) {
+            for (final FloatingPointMetric metric : file.getMetrics()) {
+                writer.write(metric);
+            }
+            writer.addHistogram(histogram);
+        }
+        Assert.assertEquals(streamed.toString(), expected.toString());
+
+        try (final MetricsFileReader<FloatingPointMetric, Integer> reader =
+                     new MetricsFileReader<>(new StringReader(streamed.toString()))) {
+            Assert.assertEquals(reader.getHeaders(), file.getHeaders());
+            Assert.assertEquals(reader.getBeanType(), FloatingPointMetric.class);
+            Assert.assertEquals(reader.getColumnLabels().size(), 4);
+            int i = 0;
+            while (reader.hasNext()) {
+                Assert.assertEquals(reader.next(), file.getMetrics().get(i++));
+            }
+            Assert.assertEquals(i, file.getMetrics().size());
+            Assert.assertEquals(reader.getHistograms(), file.getAllHistograms());
+        }
+    }
+
+    @Test
+    public void testReaderColumnProjection() {
+        final MetricsFile<TestMetric, Integer> file = new MetricsFile<>();
+        final TestMetric metric = new TestMetric();
+        metric.STRING_PROP = "projected";
+        metric.INT_PRIMITIVE = 42;
+        metric.LONG_PROP = 17L;
+        metric.DOUBLE_PRIMITIVE = 0.5;
+        file.addMetric(metric);
+        final StringWriter out = new StringWriter();
+        file.write(out);
+
+        try (final MetricsFileReader<TestMetric, Integer> reader = new MetricsFileReader<>(
+                new StringReader(out.toString()), Arrays.asList("INT_PRIMITIVE", "STRING_PROP"))) {
+            final TestMetric read = reader.next();
+            Assert.assertEquals(read.STRING_PROP, "projected");
+            Assert.assertEquals(read.INT_PRIMITIVE, 42);
+            Assert.assertNull(read.LONG_PROP);
+            Assert.assertEquals(read.DOUBLE_PRIMITIVE, 0.0);
+            Assert.assertFalse(reader.hasNext());
+            Assert.assertTrue(reader.getHistograms().isEmpty());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testReaderHistogramsBeforeMetricsConsumed() {
+        final MetricsFile<FloatingPointMetric, Integer> file = new MetricsFile<>();
+        file.addMetric(new FloatingPointMetric());
+        final StringWriter out = new StringWriter();
+        file.write(out);
+
+        try (final MetricsFileReader<FloatingPointMetric, Integer> reader =
+                     new MetricsFileReader<>(new StringReader(out.toString()))) {
+            reader.getHistograms();
+        }
+    }
+
     /** Helper method to persist metrics to file and read them back again. */
     private <METRIC extends MetricBase> MetricsFile<METRIC, Integer> writeThenReadBack(MetricsFile<METRIC, Integer> in) throws IOException {
         File f = File.createTempFile("test", ".metrics");
@@ -0,0 +1,248 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.seekablestream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import htsjdk.HtsjdkTest;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tests CachingSeekableHTTPStream against a local HTTP server that serves a fixed array of bytes and honours
+ * single range requests.
+ */
+public class CachingSeekableHTTPStreamTest extends HtsjdkTest {
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private static final int BLOCK_SIZE = 1024;
+
+    private final byte[] data = new byte[100_000];
+    private HttpServer server;
+    private URL url;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        new Random(17).nextBytes(data);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/data.bin", this::serve);
+        server.start();
+        url = new URL("http://localhost:" + server.getAddress().getPort() + "/data.bin");
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void serve(final HttpExchange exchange) throws IOException {
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", Integer.toString(data.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        final String range = exchange.getRequestHeaders().getFirst("Range");
+        int start = 0;
+        int end = data.length - 1;
+        int code = 200;
+        if (range != null) {
+            final Matcher m = RANGE.matcher(range);
+            Assert.assertTrue(m.matches(), range);
+            start = Integer.parseInt(m.group(1));
+            end = Math.min(Integer.parseInt(m.group(2)), data.length - 1);
+            if (start >= data.length) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            code = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+        }
+        exchange.sendResponseHeaders(code, end - start + 1);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(data, start, end - start + 1);
+        }
+    }
+
+    private CachingSeekableHTTPStream open(final int maxCachedBlocks, final int readAheadBlocks) {
+        return new CachingSeekableHTTPStream(url, null, BLOCK_SIZE, maxCachedBlocks, readAheadBlocks);
+    }
+
+    @Test
+    public void testLength() throws IOException {
+        try (final CachingSeekableHTTPStream stream = open(16, 0)) {
+            Assert.assertEquals(stream.length(), data.length);
+            Assert.assertEquals(stream.getSource(), url.toString());
+        }
+    }
+
+    @Test
+    public void testSequentialRead() throws IOException {
+        final Random random = new Random(3);
+        try (final CachingSeekableHTTPStream stream = open(8, 3)) {
+            final byte[] result = new byte[data.length];
+            int n = 0;
+            while (n < data.length) {
+                final int count = stream.read(result, n, Math.min(1 + random.nextInt(3000), data.length - n));
+                Assert.assertTrue(count > 0);
+                n += count;
+            }
+            Assert.assertEquals(result, data);
+            Assert.assertTrue(stream.eof());
+            Assert.assertEquals(stream.read(), -1);
+            Assert.assertEquals(stream.read(new byte[10], 0, 10), -1);
+            Assert.assertTrue(stream.getCacheHits() > 0);
+        }
+    }
+
+    @Test
+    public void testRandomReads() throws IOException {
+        final Random random = new Random(5);
+        try (final CachingSeekableHTTPStream stream = open(4, 1)) {
+            for (int i = 0; i < 500; ++i) {
+                final int start = random.nextInt(data.length);
+                final int length = 1 + random.nextInt(5000);
+                final byte[] result = new byte[length];
+                stream.seek(start);
+                int n = 0;
+                int count;
+                while (n < length && (count = stream.read(result, n, length - n)) > 0) {
+                    n += count;
+                }
+                Assert.assertEquals(n, Math.min(length, data.length - start));
+                Assert.assertEquals(Arrays.copyOf(result, n), Arrays.copyOfRange(data, start, start + n));
+                Assert.assertEquals(stream.position(), start + n);
+            }
+        }
+    }
+
+    @Test
+    public void testRepeatedReadsAreCached() throws IOException {
+        try (final CachingSeekableHTTPStream stream = open(16, 0)) {
+            final byte[] buffer = new byte[100];
+            for (int i = 0; i < 50; ++i) {
+                stream.seek(4 * BLOCK_SIZE + (i % 5) * 100);
+                stream.readFully(buffer);
+            }
+            Assert.assertEquals(stream.getRequestCount(), 1);
+            Assert.assertEquals(stream.getCacheMisses(), 1);
+            Assert.assertEquals(stream.getCacheHits(), 49);
+            Assert.assertEquals(stream.getBytesFetched(), BLOCK_SIZE);
+        }
+    }
+
+    @Test
+    public void testAdjacentBlocksAreCoalesced() throws IOException {
+        try (final CachingSeekableHTTPStream stream = open(16, 0)) {
+            final byte[] buffer = new byte[4 * BLOCK_SIZE];
+            stream.seek(BLOCK_SIZE / 2);
+            stream.readFully(buffer);
+            Assert.assertEquals(buffer, Arrays.copyOfRange(data, BLOCK_SIZE / 2, BLOCK_SIZE / 2 + buffer.length));
+            Assert.assertEquals(stream.getRequestCount(), 1);
+            Assert.assertEquals(stream.getBytesFetched(), 5 * BLOCK_SIZE);
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws IOException {
+        try (final CachingSeekableHTTPStream stream = open(16, 2)) {
+            final byte[] buffer = new byte[BLOCK_SIZE];
+            stream.readFully(buffer);
+            Assert.assertEquals(stream.getCacheMisses(), 1);
+
+            // The next two blocks were prefetched, so reading them waits for the prefetch rather than missing
+            stream.readFully(buffer);
+            Assert.assertEquals(buffer, Arrays.copyOfRange(data, BLOCK_SIZE, 2 * BLOCK_SIZE));
+            stream.readFully(buffer);
+            Assert.assertEquals(buffer, Arrays.copyOfRange(data, 2 * BLOCK_SIZE, 3 * BLOCK_SIZE));
+            Assert.assertEquals(stream.getCacheMisses(), 1);
+            Assert.assertEquals(stream.getCacheHits(), 2);
+        }
+    }
+
+    @Test
+    public void testPrefetchExecutor() throws IOException {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicInteger tasks = new AtomicInteger();
+        try (final CachingSeekableHTTPStream stream = new CachingSeekableHTTPStream(url, null, BLOCK_SIZE, 16, 2,
+                task -> {
+                    tasks.incrementAndGet();
+                    executor.execute(task);
+                })) {
+            final byte[] buffer = new byte[3 * BLOCK_SIZE];
+            stream.readFully(buffer);
+            Assert.assertEquals(buffer, Arrays.copyOf(data, buffer.length));
+            Assert.assertEquals(tasks.get(), 2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPrefetchHint() throws IOException {
+        try (final CachingSeekableHTTPStream stream = open(16, 0)) {
+            stream.prefetch(10 * BLOCK_SIZE + 5, 3 * BLOCK_SIZE);
+            final byte[] buffer = new byte[4 * BLOCK_SIZE];
+            stream.seek(10 * BLOCK_SIZE);
+            stream.readFully(buffer);
+            Assert.assertEquals(buffer, Arrays.copyOfRange(data, 10 * BLOCK_SIZE, 14 * BLOCK_SIZE));
+            Assert.assertEquals(stream.getCacheMisses(), 0);
+            Assert.assertEquals(stream.getCacheHits(), 4);
+        }
+    }
+
+    @Test
+    public void testEvictionRefetches() throws IOException {
+        try (final CachingSeekableHTTPStream stream = open(2, 0)) {
+            final byte[] buffer = new byte[10];
+            for (final int block : new int[]{0, 1, 2, 0}) {
+                stream.seek(block * BLOCK_SIZE);
+                stream.readFully(buffer);
+            }
+            Assert.assertEquals(stream.getCacheMisses(), 4);
+            Assert.assertEquals(stream.getRequestCount(), 4);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testReadAfterClose() throws IOException {
+        final CachingSeekableHTTPStream stream = open(2, 0);
+        stream.close();
+        stream.read(new byte[1], 0, 1);
+    }
+}
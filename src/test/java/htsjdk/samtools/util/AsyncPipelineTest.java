@@ -0,0 +1,99 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AsyncPipelineTest extends HtsjdkTest {
+
+    @Test
+    public void testItemsPassThroughEveryStageInOrder() {
+        final List<String> written = new ArrayList<>();
+        final boolean[] closed = {false};
+        final AsyncPipeline<Integer> pipeline = AsyncPipeline.<Integer>newBuilder("AsyncPipelineTest-", 16, AbstractAsyncWriter.WaitStrategy.BLOCKING)
+                .addStage(i -> i * 2)
+                .addStage(i -> "item" + i)
+                .build(written::add, () -> closed[0] = true);
+        final int n = 50_000;
+        for (int i = 0; i < n; ++i) {
+            pipeline.write(i);
+        }
+        pipeline.close();
+        Assert.assertTrue(closed[0]);
+        Assert.assertEquals(written.size(), n);
+        for (int i = 0; i < n; ++i) {
+            Assert.assertEquals(written.get(i), "item" + 2 * i);
+        }
+
+        final List<AsyncWriterMetrics> metrics = pipeline.getMetrics();
+        Assert.assertEquals(metrics.size(), 3);
+        for (final AsyncWriterMetrics stage : metrics) {
+            Assert.assertEquals(stage.getItemsWritten(), n);
+            Assert.assertEquals(stage.getQueueDepth(), 0);
+        }
+    }
+
+    @Test
+    public void testPipelineWithoutStages() {
+        final List<Integer> written = new ArrayList<>();
+        try (final AsyncPipeline<Integer> pipeline = AsyncPipeline.<Integer>newBuilder("AsyncPipelineTest-").build(written::add, null)) {
+            for (int i = 0; i < 100; ++i) {
+                pipeline.write(i);
+            }
+        }
+        Assert.assertEquals(written.size(), 100);
+    }
+
+    @Test
+    public void testStageExceptionIsRethrown() {
+        final IllegalStateException failure = new IllegalStateException("sink failed");
+        final AsyncPipeline<Integer> pipeline = AsyncPipeline.<Integer>newBuilder("AsyncPipelineTest-", 1, AbstractAsyncWriter.WaitStrategy.YIELDING)
+                .addStage(i -> i + 1)
+                .build(i -> {
+                    if (i == 10) throw failure;
+                }, null);
+        try {
+            for (int i = 0; i < 100_000; ++i) {
+                pipeline.write(i);
+            }
+            pipeline.close();
+            Assert.fail("Expected exception");
+        } catch (final IllegalStateException e) {
+            Assert.assertSame(e, failure);
+        }
+        // Further writes fail
+        try {
+            pipeline.write(0);
+            Assert.fail("Expected exception");
+        } catch (final RuntimeIOException e) {
+            // Expected
+        }
+        pipeline.close();
+    }
+}
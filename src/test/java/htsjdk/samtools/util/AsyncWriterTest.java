@@ -25,8 +25,12 @@ package htsjdk.samtools.util;
 
 import htsjdk.HtsjdkTest;
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class AsyncWriterTest extends HtsjdkTest {
     private static class MyException extends RuntimeException {
         final Integer item;
@@ -75,4 +79,85 @@ public class AsyncWriterTest extends HtsjdkTest {
             }
         }
     }
+
+    private static class CollectingAsyncWriter extends AbstractAsyncWriter<Integer> {
+        final List<Integer> written = new ArrayList<>();
+        boolean closed = false;
+
+        protected CollectingAsyncWriter(final int queueSize, final WaitStrategy waitStrategy) {
+            super(queueSize, waitStrategy);
+        }
+
+        @Override
+        protected String getThreadNamePrefix() {
+            return "CollectingAsyncWriter";
+        }
+
+        @Override
+        protected void synchronouslyWrite(final Integer item) {
+            written.add(item);
+        }
+
+        @Override
+        protected void synchronouslyClose() {
+            closed = true;
+        }
+    }
+
+    @DataProvider(name = "waitStrategies")
+    public Object[][] waitStrategies() {
+        final List<Object[]> result = new ArrayList<>();
+        for (final AbstractAsyncWriter.WaitStrategy waitStrategy : AbstractAsyncWriter.WaitStrategy.values()) {
+            for (final int queueSize : new int[]{1, 3, 2000}) {
+                result.add(new Object[]{waitStrategy, queueSize});
+            }
+        }
+        return result.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "waitStrategies")
+    public void testAllItemsWrittenInOrder(final AbstractAsyncWriter.WaitStrategy waitStrategy, final int queueSize) {
+        // Spinning threads only make progress when they have a processor each, so write fewer items
+        final int n = waitStrategy == AbstractAsyncWriter.WaitStrategy.BUSY_SPIN ? 100 : 100_000;
+        final CollectingAsyncWriter writer = new CollectingAsyncWriter(queueSize, waitStrategy);
+        for (int i = 0; i < n; ++i) {
+            writer.write(i);
+        }
+        writer.close();
+        Assert.assertTrue(writer.closed);
+        Assert.assertEquals(writer.written.size(), n);
+        for (int i = 0; i < n; ++i) {
+            Assert.assertEquals(writer.written.get(i).intValue(), i);
+        }
+
+        final AsyncWriterMetrics metrics = writer.getMetrics();
+        Assert.assertEquals(metrics.getItemsWritten(), n);
+        Assert.assertEquals(metrics.getQueueDepth(), 0);
+        Assert.assertTrue(metrics.getBatchesWritten() > 0 && metrics.getBatchesWritten() <= n);
+        Assert.assertTrue(metrics.getMaxQueueDepth() >= 1 && metrics.getMaxQueueDepth() <= Math.max(queueSize, 4096));
+        Assert.assertTrue(metrics.getName().startsWith("CollectingAsyncWriter"));
+    }
+
+    @Test
+    public void testProducerStallsAreCounted() {
+        final CollectingAsyncWriter writer = new CollectingAsyncWriter(1, AbstractAsyncWriter.WaitStrategy.BLOCKING) {
+            @Override
+            protected void synchronouslyWrite(final Integer item) {
+                try {
+                    Thread.sleep(1);
+                } catch (final InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                super.synchronouslyWrite(item);
+            }
+        };
+        for (int i = 0; i < 20; ++i) {
+            writer.write(i);
+        }
+        writer.close();
+        final AsyncWriterMetrics metrics = writer.getMetrics();
+        Assert.assertTrue(metrics.getProducerStalls() > 0, metrics.toString());
+        Assert.assertTrue(metrics.getProducerStallNanos() > 0, metrics.toString());
+        Assert.assertTrue(metrics.getWriterBusyNanos() > 0, metrics.toString());
+    }
 }
@@ -0,0 +1,87 @@
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class ImmutableOverlapDetectorTest extends HtsjdkTest {
+
+    @DataProvider(name = "randomIntervals")
+    public Object[][] randomIntervals() {
+        final List<Object[]> tests = new ArrayList<>();
+        for (final int count : new int[] {0, 1, 2, 7, 8, 9, 100, 1000, 5000}) {
+            for (final int buffer : new int[] {0, 2}) {
+                tests.add(new Object[] {count, buffer});
+            }
+        }
+        return tests.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "randomIntervals")
+    public void testMatchesOverlapDetector(final int count, final int buffer) {
+        final Random random = new Random(count * 31 + buffer);
+        final List<Interval> intervals = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            final String contig = random.nextInt(4) == 0 ? "chr2" : "chr1";
+            final int start = 1 + random.nextInt(100000);
+            // mostly short intervals with the occasional very long one, which stresses the max-end pruning
+            final int length = random.nextInt(20) == 0 ? random.nextInt(50000) : random.nextInt(500);
+            intervals.add(new Interval(contig, start, start + length, false, "i" + i));
+        }
+
+        final OverlapDetector<Interval> expected = new OverlapDetector<>(buffer, buffer);
+        expected.addAll(intervals, intervals);
+        final ImmutableOverlapDetector<Interval> actual = ImmutableOverlapDetector.create(intervals, intervals, buffer, buffer);
+
+        Assert.assertEquals(actual.getAll(), expected.getAll());
+        for (int i = 0; i < 2000; ++i) {
+            final String contig = random.nextInt(10) == 0 ? "chr3" : (random.nextBoolean() ? "chr1" : "chr2");
+            final int start = 1 + random.nextInt(110000);
+            final Interval query = new Interval(contig, start, start + random.nextInt(1000));
+
+            final Set<Interval> expectedOverlaps = expected.getOverlaps(query);
+            Assert.assertEquals(actual.getOverlaps(query), expectedOverlaps, query.toString());
+            Assert.assertEquals(actual.overlapsAny(query), expected.overlapsAny(query), query.toString());
+
+            final List<Interval> visited = new ArrayList<>();
+            actual.forEachOverlap(query, visited::add);
+            Assert.assertEquals(visited.size(), expectedOverlaps.size());
+            Assert.assertEquals(new HashSet<>(visited), expectedOverlaps);
+        }
+    }
+
+    @Test
+    public void testEdges() {
+        final Interval a = new Interval("1", 10, 20);
+        final Interval b = new Interval("1", 20, 30);
+        final Interval empty = new Interval("1", 40, 39);
+        final ImmutableOverlapDetector<Interval> detector = ImmutableOverlapDetector.create(Arrays.asList(a, b, empty));
+
+        Assert.assertEquals(detector.getOverlaps(new Interval("1", 1, 9)), Collections.emptySet());
+        Assert.assertEquals(detector.getOverlaps(new Interval("1", 1, 10)), Collections.singleton(a));
+        Assert.assertEquals(detector.getOverlaps(new Interval("1", 20, 20)), new HashSet<>(Arrays.asList(a, b)));
+        Assert.assertEquals(detector.getOverlaps(new Interval("1", 30, 50)), Collections.singleton(b));
+        Assert.assertFalse(detector.overlapsAny(new Interval("1", 31, 50)));
+        Assert.assertFalse(detector.overlapsAny(new Interval("2", 1, 50)));
+        Assert.assertEquals(detector.getAll(), new HashSet<>(Arrays.asList(a, b)));
+
+        // the result is always a new, modifiable set
+        final Set<Interval> none = detector.getOverlaps(new Interval("2", 1, 50));
+        none.add(a);
+        Assert.assertEquals(detector.getOverlaps(new Interval("2", 1, 50)), Collections.emptySet());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMismatchedSizes() {
+        ImmutableOverlapDetector.create(Collections.singletonList("a"), Collections.emptyList(), 0, 0);
+    }
+}
@@ -0,0 +1,137 @@
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.metrics.MetricsFile;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+
+public class IntHistogramTest extends HtsjdkTest {
+
+    @DataProvider(name = "histogramData")
+    public Object[][] histogramData() {
+        return new Object[][] {
+                new Object[] {new int[] {1,2,3,4,5,6,7,8,9,10}, 1024},
+                new Object[] {new int[] {1,2,2,3,3,3,4,4,4,4,5,5,5,5,5,6,6,6,6,6,6,7,7,7,7,7,7,7,8,8,8,8,8,8,8,8,9,9,9,9,9,9,9,9,9}, 1024},
+                new Object[] {new int[] {-5, -4, -3, -2, -1, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15}, 1024},
+                new Object[] {new int[] {1,2,3,4,5,6,7,8,9,10, 11, 11, 12, 100, 1000}, 10},
+                new Object[] {new int[] {-5, -4, 101, 102, 103, 200, 2000, 2000, 3}, 100},
+                new Object[] {new int[] {7}, 1024},
+                new Object[] {new int[] {4, 4, 4, 4, 100000, 100000}, 0},
+        };
+    }
+
+    @Test(dataProvider = "histogramData")
+    public void testMatchesHistogram(final int[] values, final int maxDenseKey) {
+        final IntHistogram primitive = new IntHistogram("BIN", "VALUE", maxDenseKey);
+        final Histogram<Integer> boxed = new Histogram<>();
+        for (final int value : values) {
+            primitive.increment(value);
+            boxed.increment(value);
+        }
+
+        Assert.assertEquals(primitive.getCount(), (long) boxed.getCount());
+        Assert.assertEquals(primitive.size(), boxed.size());
+        Assert.assertEquals(primitive.getSum(), boxed.getSum(), 1e-9);
+        Assert.assertEquals(primitive.getMean(), boxed.getMean(), 1e-9);
+        Assert.assertEquals(primitive.getMedian(), boxed.getMedian(), 1e-9);
+        Assert.assertEquals(primitive.getMedianAbsoluteDeviation(), boxed.getMedianAbsoluteDeviation(), 1e-9);
+        Assert.assertEquals((double) primitive.getMinKey(), boxed.getMin());
+        Assert.assertEquals((double) primitive.getMaxKey(), boxed.getMax());
+        Assert.assertEquals((double) primitive.getMode(), boxed.getMode());
+        if (values.length > 1) {
+            Assert.assertEquals(primitive.getStandardDeviation(), boxed.getStandardDeviation(), 1e-9);
+        }
+        for (final double p : new double[] {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99}) {
+            Assert.assertEquals((double) primitive.getPercentile(p), boxed.getPercentile(p), "percentile " + p);
+        }
+        Assert.assertEquals(primitive.toHistogram(), boxed);
+    }
+
+    @Test
+    public void testGetAndIncrementBy() {
+        final IntHistogram histo = new IntHistogram();
+        histo.increment(3, 5);
+        histo.increment(3);
+        histo.increment(-1, 2);
+        Assert.assertEquals(histo.get(3), 6);
+        Assert.assertEquals(histo.get(-1), 2);
+        Assert.assertEquals(histo.get(100), 0);
+        Assert.assertEquals(histo.size(), 2);
+        Assert.assertFalse(histo.isEmpty());
+
+        histo.clear();
+        Assert.assertTrue(histo.isEmpty());
+        Assert.assertEquals(histo.get(3), 0);
+    }
+
+    @Test
+    public void testEmpty() {
+        final IntHistogram histo = new IntHistogram();
+        Assert.assertTrue(histo.isEmpty());
+        Assert.assertEquals(histo.getCount(), 0);
+        Assert.assertEquals(histo.getMedian(), 0.0);
+        Assert.assertTrue(histo.toHistogram().isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testPercentileOfEmpty() {
+        new IntHistogram().getPercentile(0.5);
+    }
+
+    @Test
+    public void testMergePerThreadHistograms() {
+        final IntHistogram first = new IntHistogram("COVERAGE", "COUNT", 50);
+        final IntHistogram second = new IntHistogram("COVERAGE", "COUNT", 50);
+        final IntHistogram expected = new IntHistogram("COVERAGE", "COUNT", 50);
+        for (int i = -10; i < 100; ++i) {
+            first.increment(i, i + 20);
+            second.increment(i * 2, 3);
+            expected.increment(i, i + 20);
+            expected.increment(i * 2, 3);
+        }
+
+        first.addHistogram(second);
+        Assert.assertEquals(first, expected);
+        Assert.assertEquals(first.hashCode(), expected.hashCode());
+        Assert.assertEquals(first.toHistogram(), expected.toHistogram());
+    }
+
+    @Test
+    public void testLongHistogram() {
+        final LongHistogram primitive = new LongHistogram("POSITION", "COUNT", 16);
+        final Histogram<Long> boxed = new Histogram<>("POSITION", "COUNT");
+        for (final long value : new long[] {1, 1, 3, 5_000_000_000L, 5_000_000_000L, 17, -2}) {
+            primitive.increment(value);
+            boxed.increment(value);
+        }
+
+        Assert.assertEquals(primitive.get(5_000_000_000L), 2);
+        Assert.assertEquals(primitive.getMedian(), boxed.getMedian());
+        Assert.assertEquals(primitive.getMedianAbsoluteDeviation(), boxed.getMedianAbsoluteDeviation());
+        Assert.assertEquals(primitive.toHistogram(), boxed);
+    }
+
+    @Test
+    public void testMetricsFileOutput() {
+        final IntHistogram primitive = new IntHistogram("INSERT_SIZE", "COUNT");
+        final Histogram<Integer> boxed = new Histogram<>("INSERT_SIZE", "COUNT");
+        for (final int value : new int[] {150, 151, 151, 300, 2}) {
+            primitive.increment(value);
+            boxed.increment(value);
+        }
+
+        final MetricsFile<?, Integer> fromPrimitive = new MetricsFile<>();
+        fromPrimitive.addHistogram(primitive.toHistogram());
+        final MetricsFile<?, Integer> fromBoxed = new MetricsFile<>();
+        fromBoxed.addHistogram(boxed);
+
+        final StringWriter primitiveOut = new StringWriter();
+        final StringWriter boxedOut = new StringWriter();
+        fromPrimitive.write(primitiveOut);
+        fromBoxed.write(boxedOut);
+        Assert.assertEquals(primitiveOut.toString(), boxedOut.toString());
+    }
+}
@@ -0,0 +1,113 @@
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class IntervalSetTest extends HtsjdkTest {
+    private final SAMFileHeader header;
+
+    public IntervalSetTest() {
+        final SAMSequenceDictionary dictionary = new SAMSequenceDictionary(Arrays.asList(
+                new SAMSequenceRecord("1", 10000),
+                new SAMSequenceRecord("2", 5000),
+                new SAMSequenceRecord("3", 2000)));
+        header = new SAMFileHeader(dictionary);
+    }
+
+    private IntervalList randomList(final Random random, final int count) {
+        final IntervalList list = new IntervalList(header.clone());
+        for (int i = 0; i < count; ++i) {
+            final SAMSequenceRecord contig = header.getSequence(random.nextInt(header.getSequenceDictionary().size()));
+            final int start = 1 + random.nextInt(contig.getSequenceLength());
+            final int end = Math.min(contig.getSequenceLength(), start + random.nextInt(200));
+            list.add(new Interval(contig.getSequenceName(), start, end, random.nextBoolean(), "i" + i));
+        }
+        return list;
+    }
+
+    /** Strips names and strands so that only the loci covered are compared. */
+    private List<Interval> loci(final IntervalList list) {
+        final List<Interval> loci = new ArrayList<>();
+        for (final Interval interval : list.uniqued()) {
+            loci.add(new Interval(interval.getContig(), interval.getStart(), interval.getEnd()));
+        }
+        return loci;
+    }
+
+    @DataProvider(name = "randomLists")
+    public Object[][] randomLists() {
+        final Random random = new Random(42);
+        final List<Object[]> tests = new ArrayList<>();
+        for (final int count : new int[] {0, 1, 10, 100, 1000}) {
+            tests.add(new Object[] {randomList(random, count), randomList(random, count / 2 + 1)});
+        }
+        return tests.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "randomLists")
+    public void testSetOperationsMatchIntervalList(final IntervalList lhs, final IntervalList rhs) {
+        final IntervalSet lhsSet = IntervalSet.fromIntervalList(lhs);
+        final IntervalSet rhsSet = IntervalSet.fromIntervalList(rhs);
+
+        Assert.assertEquals(loci(lhsSet.toIntervalList()), loci(lhs));
+        Assert.assertEquals(lhsSet.getBaseCount(), lhs.getUniqueBaseCount());
+        Assert.assertEquals(lhsSet.size(), lhs.uniqued().size());
+
+        Assert.assertEquals(loci(lhsSet.union(rhsSet).toIntervalList()), loci(IntervalList.union(lhs, rhs)));
+        Assert.assertEquals(loci(lhsSet.intersection(rhsSet).toIntervalList()), loci(IntervalList.intersection(lhs, rhs)));
+        Assert.assertEquals(loci(lhsSet.subtract(rhsSet).toIntervalList()), loci(IntervalList.subtract(lhs, rhs)));
+        Assert.assertEquals(loci(lhsSet.difference(rhsSet).toIntervalList()),
+                loci(IntervalList.difference(Arrays.asList(lhs), Arrays.asList(rhs))));
+        Assert.assertEquals(loci(lhsSet.invert().toIntervalList()), loci(IntervalList.invert(lhs)));
+        Assert.assertEquals(rhsSet.overlapping(lhs).getIntervals(), IntervalList.overlaps(lhs, rhs).getIntervals());
+    }
+
+    @Test
+    public void testMergesAbuttingAndDropsEmpty() {
+        final IntervalList list = new IntervalList(header.clone());
+        list.add(new Interval("1", 101, 200));
+        list.add(new Interval("1", 1, 100));
+        list.add(new Interval("1", 150, 160));
+        list.add(new Interval("2", 50, 49));
+        list.add(new Interval("2", 300, 400));
+
+        final IntervalSet set = IntervalSet.fromIntervalList(list);
+        Assert.assertEquals(set.size(), 2);
+        Assert.assertEquals(set.getBounds(0), new int[] {1, 200});
+        Assert.assertEquals(set.getBounds(1), new int[] {300, 400});
+        Assert.assertEquals(set.getBounds(2), new int[0]);
+        Assert.assertEquals(set.getBaseCount(), 301);
+
+        Assert.assertTrue(set.overlapsAny(new Interval("1", 200, 250)));
+        Assert.assertFalse(set.overlapsAny(new Interval("1", 201, 250)));
+        Assert.assertFalse(set.overlapsAny(new Interval("2", 1, 299)));
+        Assert.assertTrue(set.overlapsAny(1, 400, 401));
+        Assert.assertFalse(set.overlapsAny(new Interval("3", 1, 2000)));
+    }
+
+    @Test
+    public void testEmptyAndInvert() {
+        final IntervalSet empty = IntervalSet.empty(header.getSequenceDictionary());
+        Assert.assertTrue(empty.isEmpty());
+        Assert.assertEquals(empty.invert().getBaseCount(), header.getSequenceDictionary().getReferenceLength());
+        Assert.assertTrue(empty.invert().invert().isEmpty());
+        Assert.assertEquals(empty, IntervalSet.fromIntervalList(new IntervalList(header)));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownContig() {
+        final IntervalList list = new IntervalList(header.clone());
+        list.add(new Interval("chrUn", 1, 10));
+        IntervalSet.fromIntervalList(list);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+public class ParallelBlockCompressedStreamTest extends HtsjdkTest {
+
+    /** Data that compresses somewhat, with some incompressible stretches. */
+    private static byte[] makeData(final int length) {
+        final Random random = new Random(42);
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            data[i] = (i / 100_000) % 5 == 4 ? (byte) random.nextInt() : (byte) "ACGTN\n".charAt(random.nextInt(6));
+        }
+        return data;
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[7919];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testOutputMatchesBlockCompressedOutputStream() throws IOException {
+        final byte[] data = makeData(3_000_000);
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (final BlockCompressedOutputStream out = new BlockCompressedOutputStream(expected, (Path) null)) {
+            out.write(data);
+        }
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (final ParallelBlockCompressedOutputStream out = new ParallelBlockCompressedOutputStream(actual, 4)) {
+            int offset = 0;
+            final Random random = new Random(1);
+            while (offset < data.length) {
+                final int n = Math.min(data.length - offset, random.nextInt(100_000));
+                out.write(data, offset, n);
+                offset += n;
+            }
+        }
+        Assert.assertEquals(actual.toByteArray(), expected.toByteArray());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final byte[] data = makeData(2_500_000);
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (final ParallelBlockCompressedOutputStream out = new ParallelBlockCompressedOutputStream(compressed, 3)) {
+            out.write(data, 0, 1000);
+            out.flush();
+            out.write(data[1000]);
+            out.write(data, 1001, data.length - 1001);
+        }
+        final byte[] bytes = compressed.toByteArray();
+        Assert.assertEquals(readAll(new GZIPInputStream(new ByteArrayInputStream(bytes))), data);
+        Assert.assertEquals(readAll(new BlockCompressedInputStream(new ByteArrayInputStream(bytes))), data);
+        for (final int threads : new int[]{1, 2, 5}) {
+            Assert.assertEquals(readAll(new ParallelBlockCompressedInputStream(new ByteArrayInputStream(bytes), threads)), data);
+        }
+        try (final ParallelBlockCompressedInputStream in = new ParallelBlockCompressedInputStream(new ByteArrayInputStream(bytes), 2)) {
+            for (int i = 0; i < 100; ++i) {
+                Assert.assertEquals(in.read(), data[i] & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelBlockCompressedOutputStream(compressed, 2).close();
+        Assert.assertEquals(compressed.toByteArray(), BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+        Assert.assertEquals(new ParallelBlockCompressedInputStream(new ByteArrayInputStream(compressed.toByteArray()), 2).read(), -1);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testWriteAfterClose() throws IOException {
+        final ParallelBlockCompressedOutputStream out = new ParallelBlockCompressedOutputStream(new ByteArrayOutputStream(), 1);
+        out.close();
+        out.write(1);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.tribble.readers;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.tribble.TestUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+public class SharedTabixIndexTest extends HtsjdkTest {
+    private static final String VCF = TestUtils.DATA_DIR + "tabix/YRI.trio.2010_07.indel.sites.vcf.gz";
+
+    @AfterMethod
+    public void resetCache() {
+        SharedTabixIndex.setMaxCachedBytes(SharedTabixIndex.DEFAULT_MAX_CACHED_BYTES);
+        SharedTabixIndex.clearCache();
+    }
+
+    private static List<String> query(final TabixReader reader, final int tid, final int beg, final int end) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        final TabixReader.Iterator iterator = reader.query(tid, beg, end);
+        String line;
+        while ((line = iterator.next()) != null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    @Test
+    public void testQueriesMatchScan() throws IOException {
+        final List<int[]> records = new ArrayList<>();
+        try (final BufferedReader in = new BufferedReader(new InputStreamReader(new BlockCompressedInputStream(new File(VCF))))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    final String[] fields = line.split("\t", 5);
+                    final int start = Integer.parseInt(fields[1]) - 1;
+                    records.add(new int[]{start, start + fields[3].length()});
+                }
+            }
+        }
+
+        // the identity wrapper makes the reader load the index from a stream rather than from the cache
+        final TabixReader cached = new TabixReader(VCF);
+        final TabixReader uncached = new TabixReader(VCF, null, (Function<SeekableByteChannel, SeekableByteChannel>) null, channel -> channel);
+        try {
+            Assert.assertEquals(SharedTabixIndex.getCachedIndexCount(), 1);
+            Assert.assertEquals(cached.getChromosomes(), uncached.getChromosomes());
+            final int tid = cached.chr2tid("1");
+            final Random random = new Random(11);
+            for (int i = 0; i < 100; ++i) {
+                final int beg = random.nextInt(80_000_000);
+                final int end = beg + 1 + random.nextInt(i % 2 == 0 ? 1000 : 1_000_000);
+                final List<String> lines = query(cached, tid, beg, end);
+                Assert.assertEquals(lines, query(uncached, tid, beg, end));
+                final long expected = records.stream().filter(r -> r[1] > beg && r[0] < end).count();
+                Assert.assertEquals(lines.size(), expected, beg + "-" + end);
+            }
+            Assert.assertTrue(query(cached, cached.chr2tid("X"), 0, 1000).isEmpty());
+        } finally {
+            cached.close();
+            uncached.close();
+        }
+    }
+
+    @Test
+    public void testCacheSharesInstances() throws IOException {
+        final Path index = new File(VCF + ".tbi").toPath();
+        final SharedTabixIndex first = SharedTabixIndex.getInstance(index);
+        Assert.assertSame(SharedTabixIndex.getInstance(index), first);
+        Assert.assertEquals(first.getNumberOfSequences(), 1);
+        Assert.assertEquals(first.getSequenceName(0), "1");
+        Assert.assertEquals((int) first.getSequenceIndexes().get("1"), 0);
+        Assert.assertSame(first.getSection(0), first.getSection(0));
+
+        SharedTabixIndex.clearCache();
+        Assert.assertNotSame(SharedTabixIndex.getInstance(index), first);
+
+        SharedTabixIndex.setMaxCachedBytes(first.getSize() - 1);
+        Assert.assertEquals(SharedTabixIndex.getCachedIndexCount(), 0);
+        Assert.assertNotSame(SharedTabixIndex.getInstance(index), SharedTabixIndex.getInstance(index));
+    }
+
+    @Test
+    public void testChangedFileIsReloaded() throws IOException {
+        final Path index = Files.createTempFile("shared", ".tbi");
+        try {
+            Files.copy(new File(VCF + ".tbi").toPath(), index, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(index, FileTime.fromMillis(1_000_000));
+            final SharedTabixIndex first = SharedTabixIndex.getInstance(index);
+            Assert.assertSame(SharedTabixIndex.getInstance(index), first);
+            Files.setLastModifiedTime(index, FileTime.fromMillis(2_000_000));
+            Assert.assertNotSame(SharedTabixIndex.getInstance(index), first);
+        } finally {
+            Files.delete(index);
+        }
+    }
+
+    @Test
+    public void testSizeIsDecompressedLength() throws IOException {
+        int length = 0;
+        try (final BlockCompressedInputStream is = new BlockCompressedInputStream(new File(VCF + ".tbi"))) {
+            while (is.read() >= 0) {
+                ++length;
+            }
+        }
+        Assert.assertEquals(SharedTabixIndex.getInstance(new File(VCF + ".tbi").toPath()).getSize(), length);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedIndexIsPopulatedForSubclasses() throws IOException {
+        final TabixReader reader = new TabixReader(VCF);
+        final TabixReader subclass = new TabixReader(VCF) {
+        };
+        try {
+            Assert.assertNull(reader.mIndex);
+            Assert.assertEquals(subclass.mIndex.length, 1);
+            final SharedTabixIndex.Section section = SharedTabixIndex.getInstance(new File(VCF + ".tbi").toPath()).getSection(0);
+            Assert.assertEquals(subclass.mIndex[0].l, section.linearIndex);
+            Assert.assertEquals(subclass.mIndex[0].b.size(), section.getBinCount());
+            for (int b = 0; b < section.getBinCount(); ++b) {
+                final TabixReader.TPair64[] chunks = subclass.mIndex[0].b.get(section.getBinNumber(b));
+                Assert.assertEquals(chunks.length, section.getChunkCount(b));
+                Assert.assertEquals(chunks[0].u, section.getChunkStart(b, 0));
+                Assert.assertEquals(chunks[0].v, section.getChunkEnd(b, 0));
+            }
+        } finally {
+            reader.close();
+            subclass.close();
+        }
+    }
+}
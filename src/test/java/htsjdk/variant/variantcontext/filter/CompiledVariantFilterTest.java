@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.variantcontext.filter;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.JexlMissingValueTreatment;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextUtils;
+import htsjdk.variant.variantcontext.VariantContextUtils.JexlVCMatchExp;
+import htsjdk.variant.vcf.VCFFileReader;
+import htsjdk.variant.vcf.VCFHeader;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks that compiled filter expressions agree with the JEXL matching in VariantContextUtils.
+ */
+public class CompiledVariantFilterTest extends HtsjdkTest {
+    private static final File VCF = new File("src/test/resources/htsjdk/variant/ex2.vcf");
+
+    private VCFHeader header;
+    private List<VariantContext> variants;
+
+    @BeforeClass
+    public void readVariants() {
+        try (final VCFFileReader reader = new VCFFileReader(VCF, false)) {
+            header = reader.getFileHeader();
+            variants = reader.iterator().toList();
+        }
+    }
+
+    private static JexlVCMatchExp jexl(final String expression) {
+        return VariantContextUtils.initializeMatchExps(Collections.singletonList(expression), Collections.singletonList(expression)).get(0);
+    }
+
+    @DataProvider
+    public Object[][] siteExpressions() {
+        return new Object[][]{
+                {"QUAL > 30"},
+                {"QUAL > 30.0 && DP >= 11"},
+                {"QUAL > 30.0 && DP >= 10 && FILTER == 0"},
+                {"DP < 12 || NS != 3"},
+                {"DB"},
+                {"!DB"},
+                {"DB && DP > 10"},
+                {"H2 || DB"},
+                {"q10 == 1"},
+                {"s50 && q10"},
+                {"FILTER == 1"},
+                {"FILTER == '0'"},
+                {"CHROM == '20'"},
+                {"CHROM == 20"},
+                {"POS >= 17330 and POS le 1230237"},
+                {"TYPE == 'SNP'"},
+                {"TYPE != \"SNP\""},
+                {"N_ALLELES > 2"},
+                {"AA == 'T'"},
+                {"AF == '0.5'"},
+                {"NS * 2 > 5"},
+                {"DP - NS >= 8"},
+                {"DP / 2.0 >= 6.5"},
+                {"homRefCount >= 2"},
+                {"hetCount == 0 || homVarCount > 0"},
+                {"not (DP gt 12)"},
+                {"DB == true"},
+                {"NOT_THERE > 3"},
+                {"NOT_THERE > 3 || DP > 0"},
+                {"DP > 0 || NOT_THERE > 3"},
+                {"DP > 100 && NOT_THERE > 3"},
+        };
+    }
+
+    @Test(dataProvider = "siteExpressions")
+    public void testSiteExpressionsMatchJexl(final String expression) {
+        final JexlVCMatchExp exp = jexl(expression);
+        for (final CompiledVariantFilter filter : new CompiledVariantFilter[]{
+                new CompiledVariantFilter(expression, header), new CompiledVariantFilter(expression, null)}) {
+            for (final VariantContext vc : variants) {
+                Assert.assertEquals(filter.test(vc), VariantContextUtils.match(vc, exp), expression + " at " + vc.getStart());
+            }
+        }
+    }
+
+    @DataProvider
+    public Object[][] genotypeExpressions() {
+        return new Object[][]{
+                {"isHet == 1"},
+                {"isHomRef == 1 && GQ > 40"},
+                {"DP > 4"},
+                {"GQ < 10 || isNoCall == 1"},
+                {"isPassFT == 1"},
+                {"FT == 'PASS'"},
+                {"GT == 'G|A'"},
+                {"DP > 4 && NS == 3"},
+                {"DB && isHet == 1"},
+                {"CNL == '1'"},
+                {"POS > 20000 && isCalled == 1"},
+        };
+    }
+
+    @Test(dataProvider = "genotypeExpressions")
+    public void testGenotypeExpressionsMatchJexl(final String expression) {
+        final JexlVCMatchExp exp = jexl(expression);
+        final CompiledGenotypeFilter filter = new CompiledGenotypeFilter(expression, header, null);
+        for (final VariantContext vc : variants) {
+            for (final Genotype g : vc.getGenotypes()) {
+                Assert.assertEquals(filter.test(vc, g), VariantContextUtils.match(vc, g, exp), expression + " at " + vc.getStart() + " for " + g);
+            }
+        }
+    }
+
+    @Test
+    public void testGenotypeFilterSample() {
+        final CompiledGenotypeFilter first = new CompiledGenotypeFilter("isHet == 1", header, null);
+        final CompiledGenotypeFilter second = new CompiledGenotypeFilter("isHet == 1", header, "NA00002");
+        final VariantContext vc = variants.get(0);
+        Assert.assertFalse(first.test(vc));
+        Assert.assertTrue(second.test(vc));
+    }
+
+    @Test
+    public void testMissingValueTreatment() {
+        final VariantContext vc = variants.get(0);
+        Assert.assertFalse(new CompiledVariantFilter("NOT_THERE > 3", header).test(vc));
+        Assert.assertTrue(new CompiledVariantFilter("NOT_THERE > 3", header, JexlMissingValueTreatment.TREAT_AS_MATCH).test(vc));
+        Assert.assertFalse(new CompiledVariantFilter("!(NOT_THERE > 3)", header).test(vc));
+        Assert.assertTrue(new CompiledVariantFilter("DP > 3 || NOT_THERE", header, JexlMissingValueTreatment.THROW).test(vc));
+        Assert.assertThrows(IllegalArgumentException.class,
+                () -> new CompiledVariantFilter("NOT_THERE > 3", header, JexlMissingValueTreatment.THROW).test(vc));
+    }
+
+    @Test
+    public void testArithmetic() {
+        final CompiledVariantFilter filter = new CompiledVariantFilter("-DP < -11 && DP / 2 == 7 && DP % 4 == 2", header);
+        Assert.assertTrue(filter.test(variants.get(0)));
+        Assert.assertFalse(filter.test(variants.get(1)));
+    }
+
+    @Test
+    public void testNonNumericValue() {
+        Assert.assertThrows(IllegalArgumentException.class, () -> new CompiledVariantFilter("AA > 3", null).test(variants.get(2)));
+    }
+
+    @DataProvider
+    public Object[][] invalidExpressions() {
+        return new Object[][]{
+                {""},
+                {"DP >"},
+                {"(DP > 3"},
+                {"DP > 3)"},
+                {"DP = 3"},
+                {"'unterminated"},
+                {"DP > 'x'"},
+                {"vc.getStart() > 3"},
+                {"ALLELES == 2"},
+                {"DP =~ '1.*'"},
+                {"DP > 3 and"},
+        };
+    }
+
+    @Test(dataProvider = "invalidExpressions", expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidExpressions(final String expression) {
+        new CompiledVariantFilter(expression, header);
+    }
+
+    @Test
+    public void testFilteringIterator() {
+        final CompiledVariantFilter filter = new CompiledVariantFilter("QUAL >= 29 && FILTER == 0", header);
+        try (final VCFFileReader reader = new VCFFileReader(VCF, false);
+             final FilteringVariantContextIterator iterator = new FilteringVariantContextIterator(reader.iterator(), filter)) {
+            int count = 0;
+            while (iterator.hasNext()) {
+                Assert.assertTrue(iterator.next().getPhredScaledQual() >= 29);
+                ++count;
+            }
+            Assert.assertEquals(count, 4);
+        }
+    }
+}
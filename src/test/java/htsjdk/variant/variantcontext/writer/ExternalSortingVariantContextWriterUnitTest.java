@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.variant.variantcontext.writer;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.SortingCollection;
+import htsjdk.tribble.Tribble;
+import htsjdk.variant.VariantBaseTest;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextComparator;
+import htsjdk.variant.vcf.VCFFileReader;
+import htsjdk.variant.vcf.VCFHeader;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class ExternalSortingVariantContextWriterUnitTest extends VariantBaseTest {
+    private static final File INPUT = new File(variantTestDataRoot + "ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf");
+
+    private VCFHeader header;
+    private List<VariantContext> sorted;
+    private List<VariantContext> shuffled;
+
+    @BeforeClass
+    public void readInput() {
+        try (final VCFFileReader reader = new VCFFileReader(INPUT, false)) {
+            header = reader.getFileHeader();
+            sorted = reader.iterator().stream().collect(Collectors.toList());
+        }
+        shuffled = new ArrayList<>(sorted);
+        Collections.shuffle(shuffled, new Random(42));
+    }
+
+    private static List<String> vcfLines(final File vcf) throws IOException {
+        return Files.readAllLines(vcf.toPath()).stream().filter(line -> !line.startsWith("#")).collect(Collectors.toList());
+    }
+
+    private File write(final List<VariantContext> records, final String extension, final boolean sort, final int maxRecordsInRam) throws IOException {
+        final Path dir = Files.createTempDirectory("ExternalSortingVariantContextWriterUnitTest");
+        dir.toFile().deleteOnExit();
+        final File output = dir.resolve("output" + extension).toFile();
+        output.deleteOnExit();
+        try (final VariantContextWriter writer = new VariantContextWriterBuilder()
+                .setOutputFile(output)
+                .setReferenceDictionary(header.getSequenceDictionary())
+                .modifyOption(Options.SORT_RECORDS, sort)
+                .setMaxRecordsInRam(maxRecordsInRam)
+                .setTempDirectory(dir)
+                .build()) {
+            writer.writeHeader(header);
+            records.forEach(writer::add);
+        }
+        return output;
+    }
+
+    private File writeSorted(final String extension, final int maxRecordsInRam) throws IOException {
+        return write(shuffled, extension, true, maxRecordsInRam);
+    }
+
+    @Test
+    public void testSortedVcfMatchesInput() throws IOException {
+        final File output = writeSorted(".vcf", 10);
+        Assert.assertEquals(vcfLines(output), vcfLines(write(sorted, ".vcf", false, 10)));
+        Assert.assertTrue(Tribble.indexFile(output).exists());
+    }
+
+    @Test
+    public void testSortedBcfMatchesInput() throws IOException {
+        final File output = writeSorted(".bcf", 10);
+        Assert.assertTrue(Tribble.indexFile(output).exists());
+        try (final VCFFileReader reader = new VCFFileReader(output, true)) {
+            final List<VariantContext> actual = reader.iterator().stream().collect(Collectors.toList());
+            Assert.assertEquals(actual.size(), sorted.size());
+            for (int i = 0; i < actual.size(); ++i) {
+                assertVariantContextsAreEqual(actual.get(i), sorted.get(i).fullyDecode(header, false));
+            }
+        }
+    }
+
+    @Test
+    public void testBCF2RecordCodecRoundTrip() {
+        final SortingCollection<VariantContext> collection = SortingCollection.newInstance(VariantContext.class,
+                new BCF2RecordCodec(header), new VariantContextComparator(header.getContigLines()), 7);
+        shuffled.forEach(collection::add);
+        final List<VariantContext> actual = new ArrayList<>();
+        try (final CloseableIterator<VariantContext> iterator = collection.iterator()) {
+            iterator.forEachRemaining(actual::add);
+        }
+        collection.cleanup();
+        Assert.assertEquals(actual.size(), sorted.size());
+        for (int i = 0; i < actual.size(); ++i) {
+            assertVariantContextsAreEqual(actual.get(i).fullyDecode(header, false), sorted.get(i).fullyDecode(header, false));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testAddBeforeHeader() {
+        new ExternalSortingVariantContextWriter(new VariantContextWriterBuilder()
+                .setOutputStream(new ByteArrayOutputStream()).unsetOption(Options.INDEX_ON_THE_FLY).build())
+                .add(sorted.get(0));
+    }
+}